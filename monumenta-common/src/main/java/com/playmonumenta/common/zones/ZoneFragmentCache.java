@@ -0,0 +1,86 @@
+package com.playmonumenta.common.zones;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.Set;
+import org.bukkit.util.BoundingBox;
+import org.bukkit.util.Vector;
+import org.jetbrains.annotations.Nullable;
+
+/*
+ * Caches which zone fragments overlap each 16x16x16 chunk section, so repeated lookups in the
+ * same section check a few fragments directly instead of descending the zone tree.
+ *
+ * Fragments do not depend on the world (worlds are matched against their parent zones), so one cache
+ * serves every world. A cache belongs to a single tree and is replaced along with it when zones reload.
+ *
+ * Not thread safe; only used by the player tracker on the main thread.
+ */
+public class ZoneFragmentCache {
+	private static final int SECTION_SHIFT = 4;
+	private static final int SECTION_SIZE = 1 << SECTION_SHIFT;
+	// Sections overlapping more fragments than this fall back to the tree, which is faster than a long scan
+	private static final int MAX_CANDIDATES = 8;
+	// Bounds memory use if players spread out over a very large area; the cache simply refills
+	private static final int MAX_SECTIONS = 1 << 16;
+
+	private static final ZoneFragment[] NO_FRAGMENTS = new ZoneFragment[0];
+
+	private final ZoneTreeBase mTree;
+	// Candidate fragments for each section, or null for sections that use the tree
+	private final Long2ObjectOpenHashMap<ZoneFragment[]> mSections = new Long2ObjectOpenHashMap<>();
+
+	public ZoneFragmentCache(ZoneTreeBase tree) {
+		mTree = tree;
+	}
+
+	/*
+	 * For a given location, return the fragment that contains it.
+	 * Returns null if no fragment overlaps it.
+	 */
+	public @Nullable ZoneFragment getZoneFragment(Vector loc) {
+		int sectionX = loc.getBlockX() >> SECTION_SHIFT;
+		int sectionY = loc.getBlockY() >> SECTION_SHIFT;
+		int sectionZ = loc.getBlockZ() >> SECTION_SHIFT;
+		long key = sectionKey(sectionX, sectionY, sectionZ);
+
+		@Nullable ZoneFragment[] candidates = mSections.get(key);
+		if (candidates == null && !mSections.containsKey(key)) {
+			candidates = findCandidates(sectionX, sectionY, sectionZ);
+			if (mSections.size() >= MAX_SECTIONS) {
+				mSections.clear();
+			}
+			mSections.put(key, candidates);
+		}
+
+		if (candidates == null) {
+			return mTree.getZoneFragment(loc);
+		}
+		for (ZoneFragment candidate : candidates) {
+			if (candidate.within(loc)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	private @Nullable ZoneFragment[] findCandidates(int sectionX, int sectionY, int sectionZ) {
+		double minX = (double) sectionX * SECTION_SIZE;
+		double minY = (double) sectionY * SECTION_SIZE;
+		double minZ = (double) sectionZ * SECTION_SIZE;
+		BoundingBox section = new BoundingBox(minX, minY, minZ, minX + SECTION_SIZE, minY + SECTION_SIZE, minZ + SECTION_SIZE);
+
+		Set<ZoneFragment> fragments = mTree.getZoneFragments(section);
+		if (fragments.isEmpty()) {
+			return NO_FRAGMENTS;
+		}
+		if (fragments.size() > MAX_CANDIDATES) {
+			return null;
+		}
+		return fragments.toArray(NO_FRAGMENTS);
+	}
+
+	// Same packing as Minecraft block positions, applied to section coordinates
+	private static long sectionKey(int sectionX, int sectionY, int sectionZ) {
+		return ((long) sectionX & 0x3FFFFFL) << 42 | ((long) sectionZ & 0x3FFFFFL) << 20 | ((long) sectionY & 0xFFFFFL);
+	}
+}
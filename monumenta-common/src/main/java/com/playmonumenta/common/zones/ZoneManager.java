@@ -41,6 +41,8 @@ public class ZoneManager {
 		protected final Map<String, ZoneNamespace> mNamespaces = new HashMap<>();
 		protected @MonotonicNonNull WorldRegexMatcher mWorldRegexMatcher = null;
 		protected @MonotonicNonNull ZoneTreeBase mZoneTree = null;
+		// Section lookup cache for mZoneTree, replaced along with it
+		protected @MonotonicNonNull ZoneFragmentCache mFragmentCache = null;
 	}
 
 	private final MonumentaCommonPlugin mPlugin;
@@ -458,6 +460,8 @@ public class ZoneManager {
 			return;
 		}
 
+		mReloadingState.mFragmentCache = new ZoneFragmentCache(mReloadingState.mZoneTree);
+
 		if (mPlugin.mShowZonesDynmap) {
 			mReloadingState.mZoneTree.refreshDynmapTree();
 		}
@@ -516,7 +520,7 @@ public class ZoneManager {
 						continue;
 					}
 
-					@Nullable ZoneFragment currentZoneFragment = getZoneFragment(playerVector);
+					@Nullable ZoneFragment currentZoneFragment = mActiveState.mFragmentCache.getZoneFragment(playerVector);
 					if (lastZoneFragment == null && currentZoneFragment == null) {
 						// Player was not in a previous zone fragment, and isn't in one now; no zone change.
 						continue;
@@ -6,6 +6,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -33,6 +36,42 @@ public abstract class ZoneTreeBase {
 		return result;
 	}
 
+	// Creates a zone tree as a fork/join task, allowing large branches to be built in parallel
+	protected static ForkJoinTask<ZoneTreeBase> createZoneTreeTask(List<ZoneFragment> zones) {
+		return ForkJoinTask.adapt(() -> {
+			try {
+				return createZoneTree(zones);
+			} catch (RuntimeException ex) {
+				throw ex;
+			} catch (Exception ex) {
+				// Unwrapped again by joinZoneTree
+				throw new CompletionException(ex);
+			}
+		});
+	}
+
+	protected static ZoneTreeBase joinZoneTree(ForkJoinTask<ZoneTreeBase> task) throws Exception {
+		try {
+			return task.get();
+		} catch (ExecutionException ex) {
+			/*
+			 * Checked exceptions are wrapped in a CompletionException by createZoneTreeTask,
+			 * and fork/join may wrap the task's exception again when rethrowing it on another thread
+			 */
+			Throwable cause = ex;
+			while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof Exception exception) {
+				throw exception;
+			}
+			if (cause instanceof Error error) {
+				throw error;
+			}
+			throw ex;
+		}
+	}
+
 	/*
 	 * Invalidate all fragments in the tree, causing any players inside them to be
 	 * considered outside them. This updates them to the correct zone automagically.
@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
@@ -15,6 +16,12 @@ import net.kyori.adventure.text.format.TextDecoration;
 import org.jetbrains.annotations.Nullable;
 
 public class ZoneTreeFactory {
+	/*
+	 * Large branches of the tree are built in parallel. Builds share this pool rather than the common pool, which
+	 * they would otherwise tie up; its idle threads exit on their own, so it never needs to be shut down.
+	 */
+	private static final ForkJoinPool BUILD_POOL = new ForkJoinPool();
+
 	// Fragments of a particular zone
 	private static class ZoneFragments {
 		private final Zone mZone;
@@ -200,7 +207,7 @@ public class ZoneTreeFactory {
 	}
 
 	public ZoneTreeBase build() throws Exception {
-		return ZoneTreeBase.createZoneTree(mFragments);
+		return ZoneTreeBase.joinZoneTree(BUILD_POOL.submit(ZoneTreeBase.createZoneTreeTask(mFragments)));
 	}
 
 	private void mergeNamespaces(List<NamespaceFragments> namespaces) {
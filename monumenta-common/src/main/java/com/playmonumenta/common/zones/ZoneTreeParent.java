@@ -3,9 +3,11 @@ package com.playmonumenta.common.zones;
 import com.playmonumenta.common.utils.VectorUtils;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
 import org.bukkit.Axis;
 import org.bukkit.util.BoundingBox;
 import org.bukkit.util.Vector;
@@ -13,21 +15,6 @@ import org.dynmap.markers.MarkerSet;
 import org.jetbrains.annotations.Nullable;
 
 public class ZoneTreeParent extends ZoneTreeBase {
-	private static class ParentData {
-		public int mPriority;
-		public Axis mAxis;
-		public double mPivot;
-		public double mMidMin;
-		public double mMidMax;
-		public final List<ZoneFragment> mLess = new ArrayList<>();
-		public final List<ZoneFragment> mMid = new ArrayList<>();
-		public final List<ZoneFragment> mMore = new ArrayList<>();
-
-		protected ParentData(Axis axis) {
-			mAxis = axis;
-		}
-	}
-
 	// The axis this node is split over.
 	private final Axis mAxis;
 	// The pivot for mMore/mLess
@@ -49,55 +36,58 @@ public class ZoneTreeParent extends ZoneTreeBase {
 
 	private static final Axis[] AXIS_ORDER = {Axis.X, Axis.Z, Axis.Y};
 
-	public ZoneTreeParent(List<ZoneFragment> zones) throws Exception {
-		/*
-		 * Local class is used to get best balance without
-		 * exposing incomplete results or creating tree nodes.
-		 */
+	// Nodes with at least this many fragments build their child branches in parallel
+	private static final int PARALLEL_THRESHOLD = 256;
 
+	public ZoneTreeParent(List<ZoneFragment> zones) throws Exception {
 		mFragmentCount = zones.size();
 
-		Vector minVector = zones.getFirst().minCorner();
-		Vector maxVector = zones.getFirst().maxCornerExclusive();
+		/*
+		 * Each fragment's bounds on each axis, indexed the same as AXIS_ORDER. Sorted copies allow counting how
+		 * many fragments fall on each side of a candidate pivot with a binary search rather than a full pass.
+		 */
+		double[][] mins = new double[AXIS_ORDER.length][mFragmentCount];
+		double[][] maxes = new double[AXIS_ORDER.length][mFragmentCount];
+		for (int i = 0; i < mFragmentCount; i++) {
+			ZoneFragment zone = zones.get(i);
+			Vector minCorner = zone.minCorner();
+			Vector maxCorner = zone.maxCornerExclusive();
+			for (int axisIndex = 0; axisIndex < AXIS_ORDER.length; axisIndex++) {
+				mins[axisIndex][i] = VectorUtils.vectorAxis(minCorner, AXIS_ORDER[axisIndex]);
+				maxes[axisIndex][i] = VectorUtils.vectorAxis(maxCorner, AXIS_ORDER[axisIndex]);
+			}
+		}
+		double[][] sortedMins = new double[AXIS_ORDER.length][];
+		double[][] sortedMaxes = new double[AXIS_ORDER.length][];
+		for (int axisIndex = 0; axisIndex < AXIS_ORDER.length; axisIndex++) {
+			sortedMins[axisIndex] = mins[axisIndex].clone();
+			Arrays.sort(sortedMins[axisIndex]);
+			sortedMaxes[axisIndex] = maxes[axisIndex].clone();
+			Arrays.sort(sortedMaxes[axisIndex]);
+		}
 
 		// Default is an impossibly worst case scenario, so it will never be chosen.
-		ParentData bestSplit = new ParentData(Axis.Y);
-		bestSplit.mPriority = mFragmentCount;
+		int bestPriority = mFragmentCount;
+		int bestAxisIndex = -1;
+		double bestPivot = 0.0;
 		int sufficientPriority = mFragmentCount / 2;
 
+		// Candidates are tried in the same order as before, so the first sufficient pivot found is unchanged
 		findSufficientPivot:
-		for (ZoneFragment pivotZone : zones) {
-			for (Axis axis : AXIS_ORDER) {
-				double[] possiblePivots = {
-					VectorUtils.vectorAxis(pivotZone.minCorner(), axis),
-					VectorUtils.vectorAxis(pivotZone.maxCornerExclusive(), axis)
-				};
+		for (int i = 0; i < mFragmentCount; i++) {
+			for (int axisIndex = 0; axisIndex < AXIS_ORDER.length; axisIndex++) {
+				double[] possiblePivots = {mins[axisIndex][i], maxes[axisIndex][i]};
 				for (double pivot : possiblePivots) {
-					ParentData testSplit = new ParentData(axis);
-					testSplit.mPivot = pivot;
-					testSplit.mMidMin = Double.MAX_VALUE;
-					testSplit.mMidMax = Double.MIN_VALUE;
-
-					for (ZoneFragment zone : zones) {
-						if (pivot >= VectorUtils.vectorAxis(zone.maxCornerExclusive(), axis)) {
-							testSplit.mLess.add(zone);
-						} else if (pivot >= VectorUtils.vectorAxis(zone.minCorner(), axis)) {
-							testSplit.mMidMin = Math.min(testSplit.mMidMin,
-								VectorUtils.vectorAxis(zone.minCorner(), axis));
-							testSplit.mMidMax = Math.max(testSplit.mMidMax,
-								VectorUtils.vectorAxis(zone.maxCornerExclusive(), axis));
-							testSplit.mMid.add(zone);
-						} else {
-							testSplit.mMore.add(zone);
-						}
-					}
-
-					testSplit.mPriority = Math.max(testSplit.mLess.size(), testSplit.mMore.size());
-					testSplit.mPriority = Math.max(testSplit.mPriority, testSplit.mMid.size());
+					int lessCount = countAtMost(sortedMaxes[axisIndex], pivot);
+					int moreCount = mFragmentCount - countAtMost(sortedMins[axisIndex], pivot);
+					int midCount = mFragmentCount - lessCount - moreCount;
 
-					if (testSplit.mPriority < bestSplit.mPriority) {
-						bestSplit = testSplit;
-						if (bestSplit.mPriority <= sufficientPriority) {
+					int priority = Math.max(Math.max(lessCount, moreCount), midCount);
+					if (priority < bestPriority) {
+						bestPriority = priority;
+						bestAxisIndex = axisIndex;
+						bestPivot = pivot;
+						if (bestPriority <= sufficientPriority) {
 							break findSufficientPivot;
 						}
 					}
@@ -105,20 +95,7 @@ public class ZoneTreeParent extends ZoneTreeBase {
 			}
 		}
 
-		for (ZoneFragment pivotZone : zones) {
-			minVector = Vector.getMinimum(minVector, pivotZone.minCorner());
-			maxVector = Vector.getMaximum(maxVector, pivotZone.maxCornerExclusive());
-		}
-
-		// This is the answer we want. Copy values to self.
-		mAxis = bestSplit.mAxis;
-		mMin = VectorUtils.vectorAxis(minVector, mAxis);
-		mMax = VectorUtils.vectorAxis(maxVector, mAxis);
-		mPivot = bestSplit.mPivot;
-		mMidMin = bestSplit.mMidMin;
-		mMidMax = bestSplit.mMidMax;
-
-		if (bestSplit.mPriority >= mFragmentCount) {
+		if (bestAxisIndex < 0) {
 			/*
 			 * The priority of our best case scenario is equal to or worse than our worst case.
 			 *
@@ -131,11 +108,62 @@ public class ZoneTreeParent extends ZoneTreeBase {
 				message.append("\n- ").append(zone.toString());
 			}
 			throw new Exception(message.toString());
+		}
+
+		// This is the answer we want. Copy values to self.
+		mAxis = AXIS_ORDER[bestAxisIndex];
+		mMin = sortedMins[bestAxisIndex][0];
+		mMax = sortedMaxes[bestAxisIndex][mFragmentCount - 1];
+		mPivot = bestPivot;
+
+		List<ZoneFragment> less = new ArrayList<>();
+		List<ZoneFragment> mid = new ArrayList<>();
+		List<ZoneFragment> more = new ArrayList<>();
+		double midMin = Double.MAX_VALUE;
+		double midMax = Double.MIN_VALUE;
+		for (int i = 0; i < mFragmentCount; i++) {
+			ZoneFragment zone = zones.get(i);
+			double zoneMin = mins[bestAxisIndex][i];
+			double zoneMax = maxes[bestAxisIndex][i];
+			if (mPivot >= zoneMax) {
+				less.add(zone);
+			} else if (mPivot >= zoneMin) {
+				midMin = Math.min(midMin, zoneMin);
+				midMax = Math.max(midMax, zoneMax);
+				mid.add(zone);
+			} else {
+				more.add(zone);
+			}
+		}
+		mMidMin = midMin;
+		mMidMax = midMax;
+
+		if (mFragmentCount >= PARALLEL_THRESHOLD && ForkJoinTask.inForkJoinPool()) {
+			ForkJoinTask<ZoneTreeBase> lessTask = createZoneTreeTask(less).fork();
+			ForkJoinTask<ZoneTreeBase> moreTask = createZoneTreeTask(more).fork();
+			mMid = createZoneTree(mid);
+			mMore = joinZoneTree(moreTask);
+			mLess = joinZoneTree(lessTask);
 		} else {
-			mLess = createZoneTree(bestSplit.mLess);
-			mMid = createZoneTree(bestSplit.mMid);
-			mMore = createZoneTree(bestSplit.mMore);
+			mLess = createZoneTree(less);
+			mMid = createZoneTree(mid);
+			mMore = createZoneTree(more);
+		}
+	}
+
+	// Returns the number of values in a sorted array that are less than or equal to the key
+	private static int countAtMost(double[] sorted, double key) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] <= key) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
 		}
+		return low;
 	}
 
 	@Override
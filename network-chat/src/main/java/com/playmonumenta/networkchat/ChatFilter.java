@@ -13,6 +13,8 @@ import com.playmonumenta.networkchat.utils.MessagingUtils;
 import com.playmonumenta.networkchat.utils.ReplacerWithEscape;
 import dev.jorel.commandapi.exceptions.WrapperCommandSyntaxException;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -178,10 +180,18 @@ public class ChatFilter {
 			return mId;
 		}
 
+		public boolean isLiteral() {
+			return mIsLiteral;
+		}
+
 		public String patternString() {
 			return mPatternString;
 		}
 
+		public Pattern pattern() {
+			return mPattern;
+		}
+
 		public boolean isBadWord() {
 			return mIsBadWord;
 		}
@@ -327,6 +337,8 @@ public class ChatFilter {
 	}
 
 	private final Map<String, ChatFilterPattern> mFilters = new HashMap<>();
+	// Rebuilt on first use after the set of patterns changes
+	private @Nullable ChatFilterIndex mIndex = null;
 
 	public static ChatFilter globalFilter(CommandSender sender) {
 		ChatFilter filter = new ChatFilter();
@@ -505,11 +517,13 @@ public class ChatFilter {
 	                      boolean isBadWord) throws WrapperCommandSyntaxException {
 		ChatFilterPattern filterPattern = new ChatFilterPattern(sender, id, isLiteral, regex, isBadWord);
 		mFilters.put(id, filterPattern);
+		mIndex = null;
 		return filterPattern;
 	}
 
 	public void removeFilter(String id) {
 		mFilters.remove(id);
+		mIndex = null;
 	}
 
 	public Map<String, ChatFilterPattern> getFilters() {
@@ -523,9 +537,26 @@ public class ChatFilter {
 	public void run(CommandSender sender, ChatFilterResult filterResult) {
 		MMLog.trace("Start:");
 		MMLog.trace(() -> MessagingUtils.getSenderFmtMinimessage().serialize(filterResult.component()));
-		for (ChatFilterPattern filterPattern : mFilters.values()) {
-			filterPattern.run(sender, filterResult);
+		ChatFilterIndex index = mIndex;
+		if (index == null) {
+			index = new ChatFilterIndex(new ArrayList<>(mFilters.values()));
+			mIndex = index;
+		}
+
+		// Only patterns that can match are run; rescan whenever a pattern changes the text the remaining ones will see
+		List<ChatFilterPattern> patterns = index.patterns();
+		BitSet candidates = index.candidates(filterResult.component());
+		int patternsRun = 0;
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+			Component before = filterResult.component();
+			patterns.get(i).run(sender, filterResult);
+			patternsRun++;
+			if (filterResult.component() != before) {
+				candidates = index.candidates(filterResult.component());
+			}
 		}
+		int finalPatternsRun = patternsRun;
+		MMLog.trace(() -> "Ran " + finalPatternsRun + " of " + patterns.size() + " filter pattern(s)");
 	}
 
 	public ChatFilterResult run(CommandSender sender, Component component) {
@@ -0,0 +1,166 @@
+package com.playmonumenta.networkchat;
+
+import com.playmonumenta.networkchat.utils.MessagingUtils;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+
+/*
+ * Compiled view of a ChatFilter's patterns, used to find which patterns can match a message in one scan.
+ *
+ * Patterns are still applied one at a time in order, since each pattern sees the result of the ones before it;
+ * this only lets ChatFilter skip the component rewrite for patterns that cannot match, which is nearly all of them.
+ * Literal patterns are merged into a single case-insensitive Aho-Corasick automaton. Regex patterns may use
+ * lookaround and back-references, so they are checked individually against the same scanned text.
+ *
+ * Matching must never miss a pattern that would have matched: the text scanned is the flattened plain text
+ * (as used by ChatFilterPattern's plain text pass) plus the content of each text component (as used by
+ * Component.replaceText), and any component that is not plain text disables the index for that message.
+ */
+final class ChatFilterIndex {
+	private static final int ROOT = 0;
+
+	private final List<ChatFilter.ChatFilterPattern> mPatterns;
+	// Patterns that must be tested on their own, either regex or literals the automaton cannot fold safely
+	private final int[] mUnindexedPatterns;
+
+	// Aho-Corasick automaton over case-folded literal patterns
+	private final List<Map<Character, Integer>> mTransitions = new ArrayList<>();
+	private final List<Integer> mFailure = new ArrayList<>();
+	private final List<BitSet> mOutputs = new ArrayList<>();
+
+	ChatFilterIndex(List<ChatFilter.ChatFilterPattern> patterns) {
+		mPatterns = List.copyOf(patterns);
+		addNode();
+
+		List<Integer> unindexed = new ArrayList<>();
+		for (int i = 0; i < mPatterns.size(); i++) {
+			ChatFilter.ChatFilterPattern pattern = mPatterns.get(i);
+			if (pattern.isLiteral() && isAscii(pattern.patternString()) && !pattern.patternString().isEmpty()) {
+				addLiteral(pattern.patternString(), i);
+			} else {
+				unindexed.add(i);
+			}
+		}
+		mUnindexedPatterns = unindexed.stream().mapToInt(Integer::intValue).toArray();
+		buildFailureLinks();
+	}
+
+	// Patterns in the order they are applied
+	List<ChatFilter.ChatFilterPattern> patterns() {
+		return mPatterns;
+	}
+
+	// Returns the indexes of all patterns that may match the component
+	BitSet candidates(Component component) {
+		BitSet result = new BitSet(mPatterns.size());
+		List<String> texts = new ArrayList<>();
+		texts.add(MessagingUtils.plainText(component));
+		if (!collectTextContent(component, texts)) {
+			result.set(0, mPatterns.size());
+			return result;
+		}
+
+		for (String text : texts) {
+			scanLiterals(text, result);
+		}
+		for (int patternIndex : mUnindexedPatterns) {
+			for (String text : texts) {
+				if (mPatterns.get(patternIndex).pattern().matcher(text).find()) {
+					result.set(patternIndex);
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	private static boolean collectTextContent(Component component, List<String> texts) {
+		if (!(component instanceof TextComponent textComponent)) {
+			return false;
+		}
+		texts.add(textComponent.content());
+		for (Component child : component.children()) {
+			if (!collectTextContent(child, texts)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void scanLiterals(String text, BitSet result) {
+		int state = ROOT;
+		for (int i = 0; i < text.length(); i++) {
+			char c = fold(text.charAt(i));
+			Integer next = mTransitions.get(state).get(c);
+			while (next == null && state != ROOT) {
+				state = mFailure.get(state);
+				next = mTransitions.get(state).get(c);
+			}
+			state = next == null ? ROOT : next;
+			result.or(mOutputs.get(state));
+		}
+	}
+
+	private int addNode() {
+		mTransitions.add(new HashMap<>());
+		mFailure.add(ROOT);
+		mOutputs.add(new BitSet());
+		return mTransitions.size() - 1;
+	}
+
+	private void addLiteral(String literal, int patternIndex) {
+		int state = ROOT;
+		for (int i = 0; i < literal.length(); i++) {
+			char c = fold(literal.charAt(i));
+			Integer next = mTransitions.get(state).get(c);
+			if (next == null) {
+				next = addNode();
+				mTransitions.get(state).put(c, next);
+			}
+			state = next;
+		}
+		mOutputs.get(state).set(patternIndex);
+	}
+
+	private void buildFailureLinks() {
+		// Breadth-first, so each node's failure target is final before its children are visited
+		List<Integer> queue = new ArrayList<>(mTransitions.get(ROOT).values());
+		for (int head = 0; head < queue.size(); head++) {
+			int state = queue.get(head);
+			for (Map.Entry<Character, Integer> transition : mTransitions.get(state).entrySet()) {
+				char c = transition.getKey();
+				int child = transition.getValue();
+				queue.add(child);
+
+				int fallback = mFailure.get(state);
+				Integer target = mTransitions.get(fallback).get(c);
+				while (target == null && fallback != ROOT) {
+					fallback = mFailure.get(fallback);
+					target = mTransitions.get(fallback).get(c);
+				}
+				int failure = target == null || target == child ? ROOT : target;
+				mFailure.set(child, failure);
+				mOutputs.get(child).or(mOutputs.get(failure));
+			}
+		}
+	}
+
+	// Matches the case-insensitive comparison used by Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE for ASCII literals
+	private static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static boolean isAscii(String str) {
+		for (int i = 0; i < str.length(); i++) {
+			if (str.charAt(i) > 0x7f) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
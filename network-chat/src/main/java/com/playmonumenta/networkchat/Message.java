@@ -9,7 +9,9 @@ import com.playmonumenta.networkchat.utils.MessagingUtils;
 import dev.jorel.commandapi.exceptions.WrapperCommandSyntaxException;
 import java.lang.ref.Cleaner;
 import java.time.Instant;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.format.TextDecoration;
@@ -24,9 +26,11 @@ import org.jetbrains.annotations.Nullable;
 public class Message implements AutoCloseable {
 	static class State implements Runnable {
 		private final UUID mId;
+		private final @Nullable UUID mSenderId;
 
-		State(UUID id) {
+		State(UUID id, @Nullable UUID senderId) {
 			mId = id;
+			mSenderId = senderId;
 		}
 
 		@Override
@@ -39,6 +43,7 @@ public class Message implements AutoCloseable {
 				}
 				MessageManager.unregisterMessage(mId);
 			}
+			MessageManager.unregisterSenderMessage(mSenderId, mId);
 		}
 	}
 
@@ -56,6 +61,8 @@ public class Message implements AutoCloseable {
 	private final @Nullable JsonObject mExtraData;
 	private final Component mMessage;
 	private boolean mIsDeleted = false;
+	// Players whose chat history this message has been added to, so deleting it only refreshes their chat
+	private final Set<UUID> mHistoryPlayerIds = ConcurrentHashMap.newKeySet();
 
 	private Message(UUID id,
 					Instant instant,
@@ -79,7 +86,7 @@ public class Message implements AutoCloseable {
 		mMessage = message;
 
 		// Member variable used to garbage collect Message objects
-		mState = new State(mId);
+		mState = new State(mId, mSenderId);
 		mCleanable = MessageManager.cleaner().register(this, mState);
 		MessageManager.registerMessage(this);
 	}
@@ -435,4 +442,14 @@ public class Message implements AutoCloseable {
 	protected void markDeleted() {
 		mIsDeleted = true;
 	}
+
+	// Called by PlayerChatHistory whenever this message is added to a player's history
+	protected void addHistoryPlayer(UUID playerId) {
+		mHistoryPlayerIds.add(playerId);
+	}
+
+	// May include players that have since had the message scroll out of their history
+	protected Set<UUID> getHistoryPlayerIds() {
+		return mHistoryPlayerIds;
+	}
 }
@@ -13,8 +13,10 @@ import dev.jorel.commandapi.exceptions.WrapperCommandSyntaxException;
 import java.lang.ref.Cleaner;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import org.bukkit.Bukkit;
@@ -34,6 +36,8 @@ public class MessageManager implements Listener {
 	private static @Nullable MessageManager INSTANCE = null;
 	private static final Cleaner mCleaner = Cleaner.create();
 	private static final Map<UUID, WeakReference<Message>> mMessages = new ConcurrentHashMap<>();
+	// IDs of the tracked messages from each sender, for deleting all of a sender's messages
+	private static final Map<UUID, Set<UUID>> mMessageIdsBySender = new ConcurrentHashMap<>();
 
 	private MessageManager() {
 		INSTANCE = this;
@@ -59,6 +63,21 @@ public class MessageManager implements Listener {
 	}
 
 	public void broadcastMessage(CommandSender sender, Message message) throws WrapperCommandSyntaxException {
+		Channel channel = message.getChannel();
+		if (NetworkChatProperties.getOriginShardRouting()
+			&& channel != null
+			&& channel.getDeliveryScope() == Channel.DeliveryScope.ORIGIN_SHARD) {
+			// No other shard has recipients; deliver in-process and only forward a copy to the chat logger
+			if (Bukkit.isPrimaryThread()) {
+				processMessage(channel, message);
+			} else {
+				// Chat events arrive on an async thread, but player states and chat histories are main thread only
+				Bukkit.getScheduler().runTask(NetworkChatPlugin.getInstance(), () -> processMessage(channel, message));
+			}
+			sendToChatLogger(message);
+			return;
+		}
+
 		try {
 			NetworkRelayAPI.sendExpiringBroadcastMessage(NETWORK_CHAT_MESSAGE,
 				message.toJson(),
@@ -70,6 +89,21 @@ public class MessageManager implements Listener {
 		}
 	}
 
+	private static void sendToChatLogger(Message message) {
+		String chatLogger = NetworkChatProperties.getChatLoggerDestination();
+		if (chatLogger.isEmpty()) {
+			return;
+		}
+		try {
+			NetworkRelayAPI.sendExpiringMessage(chatLogger,
+				NETWORK_CHAT_MESSAGE,
+				message.toJson(),
+				NetworkChatPlugin.getMessageTtl());
+		} catch (Exception e) {
+			MMLog.warning("Catch exception sending " + NETWORK_CHAT_MESSAGE + " to " + chatLogger + " reason: " + e.getMessage());
+		}
+	}
+
 	public static void deleteMessage(CommandSender moderator, UUID messageId) {
 		Message message = getMessage(messageId);
 		if (message == null) {
@@ -205,9 +239,7 @@ public class MessageManager implements Listener {
 
 		if (message != null) {
 			message.markDeleted();
-			for (PlayerState state : PlayerStateManager.getPlayerStates().values()) {
-				state.refreshChat();
-			}
+			refreshChatContaining(List.of(message));
 		}
 	}
 
@@ -220,23 +252,46 @@ public class MessageManager implements Listener {
 			return;
 		}
 
-		boolean changeFound = false;
-		List<WeakReference<Message>> messagesCopy = new ArrayList<>(mMessages.values());
-		for (WeakReference<Message> messageWeakReference : messagesCopy) {
-			@Nullable Message message = messageWeakReference.get();
+		@Nullable Set<UUID> messageIds = mMessageIdsBySender.get(senderId);
+		if (messageIds == null) {
+			return;
+		}
+
+		List<Message> deletedMessages = new ArrayList<>();
+		for (UUID messageId : messageIds) {
+			@Nullable Message message = getMessage(messageId);
 			if (message == null || message.isDeleted()) {
 				continue;
 			}
 
 			if (senderId.equals(message.getSenderId())) {
 				message.markDeleted();
-				changeFound = true;
+				deletedMessages.add(message);
 			}
 		}
 
-		if (changeFound) {
-			for (PlayerState state : PlayerStateManager.getPlayerStates().values()) {
-				state.refreshChat();
+		refreshChatContaining(deletedMessages);
+	}
+
+	// Refreshes chat only for the online players whose history holds one of the messages
+	private static void refreshChatContaining(List<Message> messages) {
+		Set<UUID> candidates = new HashSet<>();
+		for (Message message : messages) {
+			candidates.addAll(message.getHistoryPlayerIds());
+		}
+
+		Map<UUID, PlayerState> playerStates = PlayerStateManager.getPlayerStates();
+		for (UUID playerId : candidates) {
+			@Nullable PlayerState state = playerStates.get(playerId);
+			if (state == null) {
+				continue;
+			}
+			PlayerChatHistory history = state.getPlayerChatHistory();
+			for (Message message : messages) {
+				if (history.contains(message)) {
+					state.refreshChat();
+					break;
+				}
 			}
 		}
 	}
@@ -262,6 +317,10 @@ public class MessageManager implements Listener {
 			MMLog.severe("Attempting to register previously registered message ID!");
 		}
 		mMessages.put(messageId, new WeakReference<>(message));
+		UUID senderId = message.getSenderId();
+		if (senderId != null) {
+			mMessageIdsBySender.computeIfAbsent(senderId, k -> ConcurrentHashMap.newKeySet()).add(messageId);
+		}
 		MMLog.trace(() -> "New message ID " + messageId + ", tracked message IDs: " + mMessages.size());
 	}
 
@@ -273,4 +332,15 @@ public class MessageManager implements Listener {
 		MMLog.trace(() -> "unregistering message ID " + messageId + ", tracked message IDs: " + mMessages.size());
 		mMessages.remove(messageId);
 	}
+
+	// Internal use only; drop a finalized Message from its sender's index, unless another live Message shares its ID
+	protected static void unregisterSenderMessage(@Nullable UUID senderId, UUID messageId) {
+		if (senderId == null || getMessage(messageId) != null) {
+			return;
+		}
+		mMessageIdsBySender.computeIfPresent(senderId, (k, messageIds) -> {
+			messageIds.remove(messageId);
+			return messageIds.isEmpty() ? null : messageIds;
+		});
+	}
 }
@@ -22,6 +22,8 @@ public class NetworkChatProperties {
 	private boolean mChatRequiresPlayer = false;
 	private boolean mSudoEnabled = false;
 	private boolean mChatLogAllServers = true;
+	private boolean mOriginShardRouting = false;
+	private String mChatLoggerDestination = "chat-logger";
 
 	private NetworkChatProperties() {
 		INSTANCE = this;
@@ -62,6 +64,14 @@ public class NetworkChatProperties {
 		return getInstance().mChatLogAllServers;
 	}
 
+	public static boolean getOriginShardRouting() {
+		return getInstance().mOriginShardRouting;
+	}
+
+	public static String getChatLoggerDestination() {
+		return getInstance().mChatLoggerDestination;
+	}
+
 	public static void load(Plugin plugin, @Nullable CommandSender sender) {
 		getInstance().loadInternal(plugin, sender);
 	}
@@ -98,6 +108,15 @@ public class NetworkChatProperties {
 			mChatLogAllServers = config.getBoolean("ChatLogAllServers", mChatLogAllServers);
 		}
 
+		if (config.isBoolean("OriginShardRouting")) {
+			mOriginShardRouting = config.getBoolean("OriginShardRouting", mOriginShardRouting);
+		}
+
+		String chatLoggerDestination = config.getString("ChatLoggerDestination");
+		if (chatLoggerDestination != null) {
+			mChatLoggerDestination = chatLoggerDestination;
+		}
+
 		MMLog.info("Properties:");
 		if (sender != null) {
 			sender.sendMessage("Properties:");
@@ -120,6 +139,8 @@ public class NetworkChatProperties {
 		out.add("mChatRequiresPlayer = " + mChatRequiresPlayer);
 		out.add("mSudoEnabled = " + mSudoEnabled);
 		out.add("mChatLogAllServers = " + mChatLogAllServers);
+		out.add("mOriginShardRouting = " + mOriginShardRouting);
+		out.add("mChatLoggerDestination = " + mChatLoggerDestination);
 
 		return out;
 	}
@@ -172,6 +193,14 @@ public class NetworkChatProperties {
 			config.set("ChatLogAllServers", mChatLogAllServers);
 		}
 
+		if (!config.contains("OriginShardRouting")) {
+			config.set("OriginShardRouting", mOriginShardRouting);
+		}
+
+		if (!config.contains("ChatLoggerDestination")) {
+			config.set("ChatLoggerDestination", mChatLoggerDestination);
+		}
+
 		try {
 			config.save(configFile);
 		} catch (IOException e) {
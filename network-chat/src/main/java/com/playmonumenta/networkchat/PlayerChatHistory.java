@@ -3,6 +3,7 @@ package com.playmonumenta.networkchat;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.playmonumenta.networkchat.utils.RingBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -24,12 +25,12 @@ public class PlayerChatHistory {
 	private final UUID mPlayerId;
 	private boolean mIsReplayingChat = false;
 	private boolean mIsDisplayingMessage = false;
-	// Messages the player has seen
-	private List<Message> mSeenMessages = new ArrayList<>(MAX_DISPLAYED_MESSAGES);
+	// Messages the player has seen; adding to a full buffer drops the oldest message
+	private final RingBuffer<Message> mSeenMessages = new RingBuffer<>(MAX_DISPLAYED_MESSAGES);
 	// Messages the player should see, but has not yet due to paused chat
-	private List<Message> mUnseenMessages = new ArrayList<>(MAX_DISPLAYED_MESSAGES);
+	private final RingBuffer<Message> mUnseenMessages = new RingBuffer<>(MAX_DISPLAYED_MESSAGES);
 	// Messages received while chat is being refreshed, to be sorted into seen/unseen
-	private List<Message> mUnprocessedMessages = new ArrayList<>(MAX_DISPLAYED_MESSAGES);
+	private final RingBuffer<Message> mUnprocessedMessages = new RingBuffer<>(MAX_DISPLAYED_MESSAGES);
 
 	public PlayerChatHistory(UUID playerId) {
 		mPlayerId = playerId;
@@ -38,39 +39,33 @@ public class PlayerChatHistory {
 	public void updateFromJson(JsonObject obj) {
 		JsonArray seenMessagesJson = obj.getAsJsonArray("seenMessages");
 		if (seenMessagesJson != null) {
-			mSeenMessages = new ArrayList<>(MAX_DISPLAYED_MESSAGES);
+			mSeenMessages.clear();
 			for (JsonElement messageJson : seenMessagesJson) {
 				if (messageJson instanceof JsonObject messageJsonObject) {
 					Message message = Message.fromJson(messageJsonObject);
-					mSeenMessages.add(message);
+					addTo(mSeenMessages, message);
 				}
 			}
 		}
 
 		JsonArray unseenMessagesJson = obj.getAsJsonArray("unseenMessages");
 		if (unseenMessagesJson != null) {
-			mUnseenMessages = new ArrayList<>(MAX_DISPLAYED_MESSAGES);
+			mUnseenMessages.clear();
 			for (JsonElement messageJson : unseenMessagesJson) {
 				if (messageJson instanceof JsonObject messageJsonObject) {
 					Message message = Message.fromJson(messageJsonObject);
-					while (mUnseenMessages.size() >= MAX_DISPLAYED_MESSAGES) {
-						mUnseenMessages.remove(0);
-					}
-					mUnseenMessages.add(message);
+					addTo(mUnseenMessages, message);
 				}
 			}
 		}
 
 		JsonArray unprocessedMessagesJson = obj.getAsJsonArray("unprocessedMessages");
 		if (unprocessedMessagesJson != null) {
-			mUnprocessedMessages = new ArrayList<>(MAX_DISPLAYED_MESSAGES);
+			mUnprocessedMessages.clear();
 			for (JsonElement messageJson : unprocessedMessagesJson) {
 				if (messageJson instanceof JsonObject messageJsonObject) {
 					Message message = Message.fromJson(messageJsonObject);
-					while (mUnprocessedMessages.size() >= MAX_DISPLAYED_MESSAGES) {
-						mUnprocessedMessages.remove(0);
-					}
-					mUnprocessedMessages.add(message);
+					addTo(mUnprocessedMessages, message);
 				}
 			}
 		}
@@ -126,32 +121,17 @@ public class PlayerChatHistory {
 		}
 
 		if (mIsReplayingChat) {
-			while (mUnprocessedMessages.size() >= MAX_DISPLAYED_MESSAGES) {
-				// The message may be used elsewhere
-				//noinspection resource
-				mUnprocessedMessages.remove(0);
-			}
-			mUnprocessedMessages.add(message);
+			addTo(mUnprocessedMessages, message);
 			return;
 		}
 
 		if (getPlayerState().isPaused()) {
-			while (mUnseenMessages.size() >= MAX_DISPLAYED_MESSAGES) {
-				// The message may be used elsewhere
-				//noinspection resource
-				mUnseenMessages.remove(0);
-			}
-			mUnseenMessages.add(message);
+			addTo(mUnseenMessages, message);
 		} else {
-			while (mSeenMessages.size() >= MAX_DISPLAYED_MESSAGES) {
-				// The message may be used elsewhere
-				//noinspection resource
-				mSeenMessages.remove(0);
-			}
 			mIsDisplayingMessage = true;
 			message.showMessage(getPlayer());
 			mIsDisplayingMessage = false;
-			mSeenMessages.add(message);
+			addTo(mSeenMessages, message);
 		}
 	}
 
@@ -165,21 +145,11 @@ public class PlayerChatHistory {
 		}
 
 		if (mIsReplayingChat) {
-			while (mUnprocessedMessages.size() >= MAX_DISPLAYED_MESSAGES) {
-				// The message may be used elsewhere
-				//noinspection resource
-				mUnprocessedMessages.remove(0);
-			}
-			mUnprocessedMessages.add(message);
+			addTo(mUnprocessedMessages, message);
 			return;
 		}
 
-		while (mSeenMessages.size() >= MAX_DISPLAYED_MESSAGES) {
-			// The message may be used elsewhere
-			//noinspection resource
-			mSeenMessages.remove(0);
-		}
-		mSeenMessages.add(message);
+		addTo(mSeenMessages, message);
 	}
 
 	/**
@@ -187,7 +157,7 @@ public class PlayerChatHistory {
 	 */
 	public void processUnprocessedMessages() {
 		while (!mUnprocessedMessages.isEmpty()) {
-			Message message = mUnprocessedMessages.remove(0);
+			Message message = mUnprocessedMessages.removeFirst();
 
 			if (message.isDeleted()) {
 				continue;
@@ -243,10 +213,25 @@ public class PlayerChatHistory {
 	public void clearChat() {
 		mUnseenMessages.clear();
 		mSeenMessages.clear();
-		mSeenMessages.add(Message.createRawMessage(null, null, Component.text("Chat has been cleared.", NamedTextColor.RED, TextDecoration.BOLD)));
+		addTo(mSeenMessages, Message.createRawMessage(null, null, Component.text("Chat has been cleared.", NamedTextColor.RED, TextDecoration.BOLD)));
 		refreshChat();
 	}
 
+	// Whether this message is anywhere in the player's history, and so would change on refresh if deleted
+	public boolean contains(Message message) {
+		return mSeenMessages.contains(message) || mUnseenMessages.contains(message) || mUnprocessedMessages.contains(message);
+	}
+
+	private void addTo(RingBuffer<Message> messages, Message message) {
+		message.addHistoryPlayer(mPlayerId);
+		messages.add(message);
+	}
+
+	// While true, packets sent to the player are our own messages, which receiveExternalMessage ignores
+	public boolean isDisplayingMessage() {
+		return mIsDisplayingMessage;
+	}
+
 	public boolean isReplayingChat() {
 		return mIsReplayingChat;
 	}
@@ -261,18 +246,12 @@ public class PlayerChatHistory {
 
 	public void unpauseChat() {
 		// Delete old seen messages
-		if (mUnseenMessages.size() + mSeenMessages.size() > MAX_DISPLAYED_MESSAGES) {
-			int newSeenStartIndex = Integer.min(MAX_DISPLAYED_MESSAGES, mUnseenMessages.size() + mSeenMessages.size() - MAX_DISPLAYED_MESSAGES);
-			int newSeenToIndex = Integer.min(MAX_DISPLAYED_MESSAGES, mSeenMessages.size());
-			mSeenMessages = mSeenMessages.subList(newSeenStartIndex, newSeenToIndex);
-		}
+		mSeenMessages.trimTo(MAX_DISPLAYED_MESSAGES - mUnseenMessages.size());
 		showUnseen();
 	}
 
 	private void showUnseen() {
-		while (mUnseenMessages.size() >= MAX_DISPLAYED_MESSAGES) {
-			mUnseenMessages.remove(0);
-		}
+		mUnseenMessages.trimTo(MAX_DISPLAYED_MESSAGES - 1);
 
 		Player player = getPlayer();
 		if (player == null) {
@@ -288,8 +267,6 @@ public class PlayerChatHistory {
 		mIsDisplayingMessage = false;
 
 		getPlayerState().setPauseState(false);
-		while (mSeenMessages.size() >= MAX_DISPLAYED_MESSAGES) {
-			mSeenMessages.remove(0);
-		}
+		mSeenMessages.trimTo(MAX_DISPLAYED_MESSAGES - 1);
 	}
 }
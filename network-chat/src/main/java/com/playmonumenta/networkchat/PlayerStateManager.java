@@ -6,6 +6,7 @@ import com.comphenix.protocol.events.ListenerPriority;
 import com.comphenix.protocol.events.PacketAdapter;
 import com.comphenix.protocol.events.PacketContainer;
 import com.comphenix.protocol.events.PacketEvent;
+import com.comphenix.protocol.reflect.StructureModifier;
 import com.comphenix.protocol.wrappers.EnumWrappers.ChatType;
 import com.comphenix.protocol.wrappers.WrappedChatComponent;
 import com.google.gson.Gson;
@@ -36,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.Bukkit;
@@ -61,6 +63,17 @@ public class PlayerStateManager implements Listener {
 	private static final Map<UUID, PlayerChatHistory> mPlayerChatHistories = new HashMap<>();
 	private static MessageVisibility mMessageVisibility = new MessageVisibility();
 	private static boolean mIsDefaultChatPlugin = true;
+	// Bounds the per-tick cache when a plugin floods players with distinct messages
+	private static final int MAX_CAPTURED_MESSAGES_PER_TICK = 256;
+	private static volatile CapturedMessages mCapturedMessages = new CapturedMessages(-1, new ConcurrentHashMap<>());
+
+	// Content is the packet's Adventure component if it has one, otherwise its JSON
+	private record CapturedMessageKey(@Nullable UUID mSender, Object mContent) {
+	}
+
+	// Messages captured from outgoing packets during one tick
+	private record CapturedMessages(int mTick, Map<CapturedMessageKey, Message> mMessages) {
+	}
 
 	private PlayerStateManager() {
 		INSTANCE = this;
@@ -461,6 +474,10 @@ public class PlayerStateManager implements Listener {
 	}
 
 	private void onSendingChat(PacketEvent event) {
+		PlayerState playerState = getRecordingPlayerState(event);
+		if (playerState == null) {
+			return;
+		}
 		PacketContainer packet = event.getPacket();
 		/*
 		 * This should never have any more or less than one ChatType in 1.19.4.
@@ -472,8 +489,8 @@ public class PlayerStateManager implements Listener {
 		 * missing any chat messages that are of other types, such as system messages
 		 * or hotbar messages that 1.19.4 previously bundled into the same packet type.
 		 */
-		List<ChatType> chatTypes = packet.getChatTypes().getValues();
-		if (!chatTypes.isEmpty() && chatTypes.get(0).equals(ChatType.GAME_INFO)) {
+		ChatType chatType = packet.getChatTypes().readSafely(0);
+		if (ChatType.GAME_INFO.equals(chatType)) {
 			// Ignore hotbar messages
 			return;
 		}
@@ -482,92 +499,73 @@ public class PlayerStateManager implements Listener {
 		if (uuids.size() == 1) {
 			sender = uuids.get(0);
 		}
-		List<WrappedChatComponent> messageParts = packet.getChatComponents().getValues();
-		if (messageParts.isEmpty()) {
+		captureMessage(playerState, packet, sender);
+	}
+
+	private void onSendingSystemChat(PacketEvent event) {
+		PlayerState playerState = getRecordingPlayerState(event);
+		if (playerState == null) {
 			return;
 		}
-
-		Gson gson = new Gson();
-		String messageJsonStr;
-		JsonElement messageJson;
-		Component messageComponent = null;
-		WrappedChatComponent messagePart = messageParts.get(0);
-		if (messagePart != null) {
-			messageJsonStr = messagePart.getJson();
-			messageJson = gson.fromJson("{\"data\":" + messageJsonStr + "}", JsonObject.class).get("data");
-			try {
-				messageComponent = MessagingUtils.GSON_SERIALIZER.deserializeFromTree(messageJson);
-			} catch (JsonParseException e) {
-				// This is the fault of some other plugin, with no way to trace it. Silently ignore it.
-				return;
-			}
-		} else {
-			List<Object> packetParts = packet.getModifier().getValues();
-			for (Object possiblyMessage : packetParts) {
-				if (possiblyMessage instanceof Component) {
-					messageComponent = (Component) possiblyMessage;
-					break;
-				}
-			}
-			if (messageComponent == null) {
-				return;
-			}
+		PacketContainer packet = event.getPacket();
+		StructureModifier<Boolean> booleans = packet.getBooleans();
+		if (booleans.size() > 0 && Boolean.TRUE.equals(booleans.readSafely(booleans.size() - 1))) {
+			// Ignore hotbar messages
+			return;
 		}
+		captureMessage(playerState, packet, null);
+	}
 
-		Message message = Message.createRawMessage(sender, null, messageComponent);
-
+	/* Returns null if a message sent to this player now would not be recorded, so the packet needn't be decoded */
+	private static @Nullable PlayerState getRecordingPlayerState(PacketEvent event) {
 		PlayerState playerState = mPlayerStates.get(event.getPlayer().getUniqueId());
-		if (playerState != null) {
+		if (playerState == null) {
 			// A message or two may get lost when a player first joins, and their chat state hasn't loaded yet.
-			playerState.receiveExternalMessage(message);
+			return null;
+		}
+		if (playerState.getPlayerChatHistory().isDisplayingMessage()) {
+			// Our own messages being shown again, which are already in the player's history
+			return null;
 		}
+		return playerState;
 	}
 
-	private void onSendingSystemChat(PacketEvent event) {
-		PacketContainer packet = event.getPacket();
-		List<Boolean> overlay = packet.getBooleans().getValues();
-		if (!overlay.isEmpty() && overlay.get(overlay.size() - 1)) {
-			// Ignore hotbar messages
-			return;
+	private static void captureMessage(PlayerState playerState, PacketContainer packet, @Nullable UUID sender) {
+		// Paper keeps the Adventure component on packets it sends, which saves converting to and from JSON
+		Component messageComponent = packet.getSpecificModifier(Component.class).readSafely(0);
+		String messageJsonStr = null;
+		if (messageComponent == null) {
+			WrappedChatComponent messagePart = packet.getChatComponents().readSafely(0);
+			if (messagePart == null) {
+				return;
+			}
+			messageJsonStr = messagePart.getJson();
 		}
-		List<WrappedChatComponent> messageParts = packet.getChatComponents().getValues();
-		if (messageParts.isEmpty()) {
-			return;
+
+		/* Messages broadcast to every player are decoded once per tick, and the resulting Message is shared */
+		CapturedMessageKey key = new CapturedMessageKey(sender, messageComponent != null ? messageComponent : messageJsonStr);
+		int tick = Bukkit.getCurrentTick();
+		CapturedMessages captured = mCapturedMessages;
+		if (captured.mTick() != tick) {
+			captured = new CapturedMessages(tick, new ConcurrentHashMap<>());
+			mCapturedMessages = captured;
 		}
 
-		Gson gson = new Gson();
-		String messageJsonStr;
-		JsonElement messageJson;
-		Component messageComponent = null;
-		WrappedChatComponent messagePart = messageParts.get(0);
-		if (messagePart != null) {
-			messageJsonStr = messagePart.getJson();
-			messageJson = gson.fromJson("{\"data\":" + messageJsonStr + "}", JsonObject.class).get("data");
-			try {
-				messageComponent = MessagingUtils.GSON_SERIALIZER.deserializeFromTree(messageJson);
-			} catch (JsonParseException e) {
-				// This is the fault of some other plugin, with no way to trace it. Silently ignore it.
-				return;
-			}
-		} else {
-			List<Object> packetParts = packet.getModifier().getValues();
-			for (Object possiblyMessage : packetParts) {
-				if (possiblyMessage instanceof Component) {
-					messageComponent = (Component) possiblyMessage;
-					break;
+		Message message = captured.mMessages().get(key);
+		if (message == null) {
+			if (messageComponent == null) {
+				try {
+					messageComponent = MessagingUtils.GSON_SERIALIZER.deserialize(messageJsonStr);
+				} catch (JsonParseException | IllegalArgumentException e) {
+					// This is the fault of some other plugin, with no way to trace it. Silently ignore it.
+					return;
 				}
 			}
-			if (messageComponent == null) {
-				return;
+			message = Message.createRawMessage(sender, null, messageComponent);
+			if (captured.mMessages().size() < MAX_CAPTURED_MESSAGES_PER_TICK) {
+				captured.mMessages().putIfAbsent(key, message);
 			}
 		}
-
-		Message message = Message.createRawMessage(null, null, messageComponent);
-
-		PlayerState playerState = mPlayerStates.get(event.getPlayer().getUniqueId());
-		if (playerState != null) {
-			// A message or two may get lost when a player first joins, and their chat state hasn't loaded yet.
-			playerState.receiveExternalMessage(message);
-		}
+		playerState.receiveExternalMessage(message);
 	}
 }
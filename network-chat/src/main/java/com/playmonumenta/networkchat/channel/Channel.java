@@ -25,6 +25,14 @@ import org.bukkit.entity.Player;
 import org.jetbrains.annotations.Nullable;
 
 public abstract class Channel {
+	// Which shards need to receive a message sent in this channel
+	public enum DeliveryScope {
+		// Every shard may have recipients; broadcast to the whole network
+		NETWORK,
+		// Only the shard the message was sent from has recipients
+		ORIGIN_SHARD,
+	}
+
 	protected final UUID mId;
 	protected Instant mLastUpdate;
 	protected String mName;
@@ -283,6 +291,11 @@ public abstract class Channel {
 	// Note that sending to player chat state allows chat to be paused.
 	public abstract void distributeMessage(Message message);
 
+	// Which shards need to receive messages sent in this channel. Default: the whole network.
+	public DeliveryScope getDeliveryScope() {
+		return DeliveryScope.NETWORK;
+	}
+
 	// Returns the shard that originated this message, or null for network-wide channels.
 	public @Nullable String getOriginShard(Message message) {
 		return null;
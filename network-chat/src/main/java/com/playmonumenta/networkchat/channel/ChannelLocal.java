@@ -218,6 +218,11 @@ public class ChannelLocal extends Channel implements ChannelAutoJoin, ChannelPer
 		MessageManager.getInstance().broadcastMessage(sender, message);
 	}
 
+	@Override
+	public DeliveryScope getDeliveryScope() {
+		return DeliveryScope.ORIGIN_SHARD;
+	}
+
 	@Override
 	public @Nullable String getOriginShard(Message message) {
 		JsonObject extraData = message.getExtraData();
@@ -0,0 +1,134 @@
+package com.playmonumenta.networkchat.utils;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Fixed-capacity collection that keeps its elements in insertion order, oldest first.
+ * <p>
+ * Adding to a full buffer evicts the oldest element, and both adding and removing the oldest element take
+ * constant time. Not thread safe, and iterators are not fail-fast.
+ */
+public final class RingBuffer<E> extends AbstractCollection<E> {
+	private final Object[] mElements;
+	// Index of the oldest element
+	private int mHead = 0;
+	private int mSize = 0;
+
+	public RingBuffer(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+		}
+		mElements = new Object[capacity];
+	}
+
+	public int capacity() {
+		return mElements.length;
+	}
+
+	@Override
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * Appends the element, evicting the oldest element if the buffer is full.
+	 */
+	@Override
+	public boolean add(E element) {
+		if (mSize == mElements.length) {
+			mElements[mHead] = element;
+			mHead = wrap(mHead + 1);
+		} else {
+			mElements[wrap(mHead + mSize)] = element;
+			mSize++;
+		}
+		return true;
+	}
+
+	public E get(int index) {
+		if (index < 0 || index >= mSize) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + mSize);
+		}
+		return elementAt(wrap(mHead + index));
+	}
+
+	public E removeFirst() {
+		if (mSize == 0) {
+			throw new NoSuchElementException();
+		}
+		E element = elementAt(mHead);
+		mElements[mHead] = null;
+		mHead = wrap(mHead + 1);
+		mSize--;
+		return element;
+	}
+
+	/**
+	 * Removes the oldest elements until at most maxSize remain.
+	 */
+	public void trimTo(int maxSize) {
+		while (mSize > Math.max(0, maxSize)) {
+			removeFirst();
+		}
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super E> filter) {
+		int kept = 0;
+		for (int i = 0; i < mSize; i++) {
+			E element = elementAt(wrap(mHead + i));
+			if (!filter.test(element)) {
+				mElements[wrap(mHead + kept)] = element;
+				kept++;
+			}
+		}
+		if (kept == mSize) {
+			return false;
+		}
+		for (int i = kept; i < mSize; i++) {
+			mElements[wrap(mHead + i)] = null;
+		}
+		mSize = kept;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(mElements, null);
+		mHead = 0;
+		mSize = 0;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<>() {
+			private int mIndex = 0;
+
+			@Override
+			public boolean hasNext() {
+				return mIndex < mSize;
+			}
+
+			@Override
+			public E next() {
+				if (mIndex >= mSize) {
+					throw new NoSuchElementException();
+				}
+				return elementAt(wrap(mHead + mIndex++));
+			}
+		};
+	}
+
+	private int wrap(int index) {
+		return index >= mElements.length ? index - mElements.length : index;
+	}
+
+	@SuppressWarnings("unchecked")
+	private E elementAt(int slot) {
+		return (E) mElements[slot];
+	}
+}
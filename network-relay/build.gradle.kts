@@ -17,6 +17,7 @@ repositories {
 
 dependencies {
 	testImplementation(libs.snakeyaml)
+	testImplementation(libs.gson)
 	implementation(libs.rabbitmq)
 	compileOnly(libs.monumenta.common)
 	testRuntimeOnly(libs.monumenta.common)
@@ -0,0 +1,39 @@
+package com.playmonumenta.networkrelay;
+
+import java.util.TreeSet;
+
+/*
+ * Finds how far deliveries can be acknowledged with a single multiple=true ack, when they may finish processing in
+ * any order: up to just before the oldest delivery still being processed, or up to the newest delivery if none are.
+ *
+ * Not thread safe; MessageDispatcher guards it with its own lock.
+ */
+final class AckWatermark {
+	// Delivery tags received but not yet processed
+	private final TreeSet<Long> mUnprocessed = new TreeSet<>();
+	private long mHighestReceived = 0;
+	private long mHighestAcked = 0;
+
+	/* Must be called for every delivery, in the order they arrive */
+	void received(long deliveryTag) {
+		mUnprocessed.add(deliveryTag);
+		mHighestReceived = Math.max(mHighestReceived, deliveryTag);
+	}
+
+	void processed(long deliveryTag) {
+		mUnprocessed.remove(deliveryTag);
+	}
+
+	/*
+	 * Returns the delivery tag to acknowledge with multiple=true, which is then considered acknowledged,
+	 * or 0 if no delivery has been processed since the last one returned
+	 */
+	long advance() {
+		long ackUpTo = mUnprocessed.isEmpty() ? mHighestReceived : mUnprocessed.first() - 1;
+		if (ackUpTo <= mHighestAcked) {
+			return 0;
+		}
+		mHighestAcked = ackUpTo;
+		return ackUpTo;
+	}
+}
@@ -0,0 +1,218 @@
+package com.playmonumenta.networkrelay;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.jetbrains.annotations.Nullable;
+
+/*
+ * Sends heartbeat plugin data as occasional full keyframes with deltas of the changed keys in between.
+ *
+ * Every message carrying heartbeat data also carries a root HEARTBEAT_KEY object with the sender's session
+ * (new each time it starts) and a sequence number that increases with each such message. Keyframes carry the
+ * full "pluginData" as before. Deltas leave it out and instead carry the keys that changed and the keys that
+ * were removed since the message numbered "base".
+ *
+ * A receiver only applies a delta on top of exactly that base; after a missed, expired or reordered message it
+ * keeps its last known data and asks the sender for a keyframe with a resync request. Shards that don't send a
+ * HEARTBEAT_KEY object can't read deltas, so deltas are only broadcast while every online destination sends one.
+ *
+ * The heartbeat object also says whether its sender only receives broadcasts on channels it subscribes to.
+ */
+final class HeartbeatDelta {
+	static final String HEARTBEAT_KEY = "heartbeat";
+
+	private static final String SESSION_KEY = "session";
+	private static final String SEQUENCE_KEY = "seq";
+	private static final String BASE_KEY = "base";
+	private static final String CHANGED_KEY = "changed";
+	private static final String REMOVED_KEY = "removed";
+	private static final String RESYNC_KEY = "resync";
+	// Set by shards that only receive broadcasts on channels they subscribe to
+	private static final String SUBSCRIPTIONS_KEY = "subscriptions";
+
+	private HeartbeatDelta() {
+	}
+
+	static JsonObject resyncRequest() {
+		JsonObject info = new JsonObject();
+		info.addProperty(RESYNC_KEY, true);
+		return info;
+	}
+
+	static boolean usesBroadcastSubscriptions(@Nullable JsonObject info) {
+		return info != null
+			&& info.get(SUBSCRIPTIONS_KEY) instanceof JsonPrimitive subscriptions
+			&& subscriptions.isBoolean()
+			&& subscriptions.getAsBoolean();
+	}
+
+	static boolean isResyncRequest(@Nullable JsonObject info) {
+		return info != null
+			&& info.get(RESYNC_KEY) instanceof JsonPrimitive resync
+			&& resync.isBoolean()
+			&& resync.getAsBoolean();
+	}
+
+	static final class Sender {
+		private final String mSession = UUID.randomUUID().toString();
+		// Full plugin data is sent at least this often; 0 or 1 sends it every time
+		private final int mKeyframeInterval;
+		private final boolean mBroadcastSubscriptions;
+		private long mSequence = 0;
+		private @Nullable JsonObject mLastSent = null;
+		private int mDeltasSinceKeyframe = 0;
+		private boolean mKeyframeRequested = true;
+
+		Sender(int keyframeInterval, boolean broadcastSubscriptions) {
+			mKeyframeInterval = keyframeInterval;
+			mBroadcastSubscriptions = broadcastSubscriptions;
+		}
+
+		synchronized void requestKeyframe() {
+			mKeyframeRequested = true;
+		}
+
+		/* Adds the heartbeat data to a message root, as a delta if deltasAllowed and no keyframe is due */
+		synchronized void addTo(JsonObject root, JsonObject pluginData, boolean deltasAllowed) {
+			long base = mSequence;
+			mSequence++;
+			@Nullable JsonObject lastSent = mLastSent;
+			mLastSent = pluginData;
+
+			JsonObject info = new JsonObject();
+			info.addProperty(SESSION_KEY, mSession);
+			info.addProperty(SEQUENCE_KEY, mSequence);
+			if (mBroadcastSubscriptions) {
+				info.addProperty(SUBSCRIPTIONS_KEY, true);
+			}
+			root.add(HEARTBEAT_KEY, info);
+
+			if (!deltasAllowed
+				|| lastSent == null
+				|| mKeyframeRequested
+				|| mDeltasSinceKeyframe + 1 >= mKeyframeInterval) {
+				mKeyframeRequested = false;
+				mDeltasSinceKeyframe = 0;
+				root.add("pluginData", pluginData);
+				return;
+			}
+
+			mDeltasSinceKeyframe++;
+			info.addProperty(BASE_KEY, base);
+			JsonObject changed = new JsonObject();
+			for (Map.Entry<String, JsonElement> entry : pluginData.entrySet()) {
+				if (!entry.getValue().equals(lastSent.get(entry.getKey()))) {
+					changed.add(entry.getKey(), entry.getValue());
+				}
+			}
+			JsonArray removed = new JsonArray();
+			for (String key : lastSent.keySet()) {
+				if (!pluginData.has(key)) {
+					removed.add(key);
+				}
+			}
+			if (changed.size() > 0) {
+				info.add(CHANGED_KEY, changed);
+			}
+			if (removed.size() > 0) {
+				info.add(REMOVED_KEY, removed);
+			}
+		}
+	}
+
+	static final class Receiver {
+		private record SourceState(String mSession, long mSequence, JsonObject mPluginData) {
+		}
+
+		private final long mResyncIntervalMillis;
+		private final Map<String, SourceState> mSources = new HashMap<>();
+		private final Map<String, Long> mLastResyncRequest = new HashMap<>();
+
+		Receiver(long resyncIntervalMillis) {
+			mResyncIntervalMillis = resyncIntervalMillis;
+		}
+
+		/*
+		 * Returns the source's full plugin data as of this message, which is null if the message had no heartbeat
+		 * data or was a delta that can't be applied. Plugin data already returned is never modified.
+		 */
+		synchronized @Nullable JsonObject receive(String source, @Nullable JsonObject info, @Nullable JsonObject pluginData) {
+			@Nullable String session = null;
+			long sequence = 0;
+			if (info != null
+				&& info.get(SESSION_KEY) instanceof JsonPrimitive sessionPrimitive && sessionPrimitive.isString()
+				&& info.get(SEQUENCE_KEY) instanceof JsonPrimitive sequencePrimitive && sequencePrimitive.isNumber()) {
+				session = sessionPrimitive.getAsString();
+				sequence = sequencePrimitive.getAsLong();
+			}
+
+			if (pluginData != null) {
+				if (session == null) {
+					mSources.remove(source);
+				} else {
+					mSources.put(source, new SourceState(session, sequence, pluginData));
+					mLastResyncRequest.remove(source);
+				}
+				return pluginData;
+			}
+
+			if (session == null || info == null || !(info.get(BASE_KEY) instanceof JsonPrimitive basePrimitive) || !basePrimitive.isNumber()) {
+				return null;
+			}
+			@Nullable SourceState state = mSources.get(source);
+			if (state == null || !state.mSession().equals(session) || state.mSequence() != basePrimitive.getAsLong()) {
+				return null;
+			}
+
+			JsonObject result = state.mPluginData();
+			@Nullable JsonObject changed = info.get(CHANGED_KEY) instanceof JsonObject changedObject ? changedObject : null;
+			@Nullable JsonArray removed = info.get(REMOVED_KEY) instanceof JsonArray removedArray ? removedArray : null;
+			if (changed != null || removed != null) {
+				Set<String> removedKeys = new HashSet<>();
+				if (removed != null) {
+					for (JsonElement key : removed) {
+						if (key instanceof JsonPrimitive keyPrimitive && keyPrimitive.isString()) {
+							removedKeys.add(keyPrimitive.getAsString());
+						}
+					}
+				}
+				result = new JsonObject();
+				for (Map.Entry<String, JsonElement> entry : state.mPluginData().entrySet()) {
+					if (!removedKeys.contains(entry.getKey())) {
+						result.add(entry.getKey(), entry.getValue());
+					}
+				}
+				if (changed != null) {
+					for (Map.Entry<String, JsonElement> entry : changed.entrySet()) {
+						result.add(entry.getKey(), entry.getValue());
+					}
+				}
+			}
+			mSources.put(source, new SourceState(session, sequence, result));
+			return result;
+		}
+
+		/* Whether to ask the source for a keyframe now, limited to once per resync interval */
+		synchronized boolean shouldRequestResync(String source) {
+			long now = System.currentTimeMillis();
+			@Nullable Long lastRequest = mLastResyncRequest.get(source);
+			if (lastRequest != null && now - lastRequest < mResyncIntervalMillis) {
+				return false;
+			}
+			mLastResyncRequest.put(source, now);
+			return true;
+		}
+
+		synchronized void forget(String source) {
+			mSources.remove(source);
+			mLastResyncRequest.remove(source);
+		}
+	}
+}
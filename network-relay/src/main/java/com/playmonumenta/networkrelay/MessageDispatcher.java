@@ -0,0 +1,202 @@
+package com.playmonumenta.networkrelay;
+
+import com.google.gson.JsonObject;
+import com.playmonumenta.networkrelay.util.MMLog;
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.Nullable;
+
+/*
+ * Delivers messages to thread safe listeners, and acknowledges processed messages.
+ *
+ * With no dispatch threads, thread safe listeners are called wherever the message is processed, and every message
+ * is acknowledged on its own as soon as it has been processed, as before.
+ *
+ * With dispatch threads, messages for channels with thread safe listeners are handed straight from the consumer
+ * to a worker instead of waiting for the main thread. Each source always uses the same worker, so its messages are
+ * still handled in the order they were sent. Acknowledgements are batched: once a message has been processed, a
+ * single ack with multiple=true is sent shortly afterwards for every message up to the oldest one still in progress.
+ * Messages that were processed but not yet acknowledged when the connection drops are delivered again.
+ */
+final class MessageDispatcher {
+	// Processed messages wait at most this long to be acknowledged, along with any others processed meanwhile
+	private static final long ACK_DELAY_MILLIS = 50;
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+	private static final Map<String, List<ThreadSafeMessageListener>> LISTENERS = new ConcurrentHashMap<>();
+
+	private final Channel mChannel;
+	private final @Nullable ExecutorService[] mWorkers;
+	private final @Nullable ScheduledExecutorService mAckThread;
+
+	// Only used with dispatch threads, guarded by the instance lock
+	private final AckWatermark mWatermark = new AckWatermark();
+	private boolean mAckScheduled = false;
+
+	MessageDispatcher(Channel channel, int dispatchThreads) {
+		mChannel = channel;
+		if (dispatchThreads <= 0) {
+			mWorkers = null;
+			mAckThread = null;
+			return;
+		}
+
+		mWorkers = new ExecutorService[dispatchThreads];
+		for (int i = 0; i < dispatchThreads; i++) {
+			String name = "NetworkRelay Dispatch Thread " + i;
+			mWorkers[i] = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		mAckThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "NetworkRelay Ack Thread");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	static void register(String channel, ThreadSafeMessageListener listener) {
+		LISTENERS.computeIfAbsent(channel, unused -> new CopyOnWriteArrayList<>()).add(listener);
+	}
+
+	static void unregister(String channel, ThreadSafeMessageListener listener) {
+		LISTENERS.computeIfPresent(channel, (unused, listeners) -> {
+			listeners.remove(listener);
+			return listeners.isEmpty() ? null : listeners;
+		});
+	}
+
+	static boolean hasListeners(String channel) {
+		return LISTENERS.containsKey(channel);
+	}
+
+	boolean hasWorkers() {
+		return mWorkers != null;
+	}
+
+	/* Must be called by the consumer for every delivery, in the order they arrive */
+	void received(long deliveryTag) {
+		if (mWorkers == null) {
+			return;
+		}
+		synchronized (this) {
+			mWatermark.received(deliveryTag);
+		}
+	}
+
+	/* Called once a delivery has been handled, whether or not that succeeded */
+	void acknowledge(long deliveryTag) throws IOException {
+		if (mWorkers == null || mAckThread == null) {
+			mChannel.basicAck(deliveryTag, false);
+			return;
+		}
+		synchronized (this) {
+			mWatermark.processed(deliveryTag);
+			if (mAckScheduled) {
+				return;
+			}
+			mAckScheduled = true;
+		}
+		try {
+			mAckThread.schedule(this::flushAcks, ACK_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException ex) {
+			// Stopping - stop() acknowledges whatever is left
+		}
+	}
+
+	/*
+	 * Calls the channel's thread safe listeners on the current thread.
+	 * Returns false without doing anything if the channel has no thread safe listeners.
+	 */
+	static boolean callListeners(String channel, String source, Supplier<JsonObject> data) {
+		@Nullable List<ThreadSafeMessageListener> listeners = LISTENERS.get(channel);
+		if (listeners == null) {
+			return false;
+		}
+
+		NetworkRelayMessageEventGeneric event = new NetworkRelayMessageEventGeneric(channel, source, data);
+		for (ThreadSafeMessageListener listener : listeners) {
+			try {
+				listener.onNetworkRelayMessage(event);
+			} catch (Exception ex) {
+				MMLog.warning("Thread safe listener failed to handle message from=" + source + " channel=" + channel, ex);
+			}
+		}
+		return true;
+	}
+
+	/* Calls the channel's thread safe listeners on the source's worker, then acknowledges the delivery */
+	void dispatch(String channel, String source, Supplier<JsonObject> data, long deliveryTag) {
+		if (mWorkers == null) {
+			throw new IllegalStateException("No dispatch threads to dispatch messages on");
+		}
+		try {
+			mWorkers[Math.floorMod(source.hashCode(), mWorkers.length)].execute(() -> {
+				try {
+					callListeners(channel, source, data);
+				} finally {
+					try {
+						acknowledge(deliveryTag);
+					} catch (IOException ex) {
+						MMLog.warning("Failed to acknowledge rabbit message from=" + source + " channel=" + channel);
+					}
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			// Stopping - left unacknowledged, so it is delivered again once the connection closes
+			MMLog.debug(() -> "Dropped message from=" + source + " channel=" + channel + " received while stopping");
+		}
+	}
+
+	/* Waits briefly for queued messages to be handled and acknowledges them, before the connection closes */
+	void stop() {
+		if (mWorkers == null || mAckThread == null) {
+			return;
+		}
+		for (ExecutorService worker : mWorkers) {
+			worker.shutdown();
+		}
+		try {
+			for (ExecutorService worker : mWorkers) {
+				if (!worker.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+					MMLog.warning("Timed out waiting for network relay messages to be handled");
+					break;
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		mAckThread.shutdownNow();
+		flushAcks();
+	}
+
+	/* Sends the ack while holding the lock, as acks must never go out of order */
+	private synchronized void flushAcks() {
+		mAckScheduled = false;
+		long ackUpTo = mWatermark.advance();
+		if (ackUpTo == 0) {
+			return;
+		}
+		try {
+			mChannel.basicAck(ackUpTo, true);
+		} catch (IOException ex) {
+			/*
+			 * If the channel disconnects, these messages just won't be acknowledged
+			 * They will be redelivered later
+			 */
+			MMLog.warning("Failed to acknowledge rabbit messages up to delivery tag " + ackUpTo + ": " + ex.getMessage());
+		}
+	}
+}
@@ -24,6 +24,7 @@ public class NetworkMessageListener implements Listener {
 			data.addProperty("server-address", mServerAddress);
 		}
 		data.addProperty("server-type", "minecraft");
+		data.addProperty(RemotePlayerBatch.SUPPORT_KEY, true);
 		data.add("shard_health", ShardHealth.averageHealth().toJson());
 		event.setPluginData(NetworkRelayAPI.NETWORK_RELAY_HEARTBEAT_IDENTIFIER, data);
 	}
@@ -42,6 +42,7 @@ public class NetworkMessageListenerVelocity {
 	public void gatherHeartbeatData(GatherHeartbeatDataEventVelocity event) {
 		JsonObject data = new JsonObject();
 		data.addProperty("server-type", "proxy");
+		data.addProperty(RemotePlayerBatch.SUPPORT_KEY, true);
 		data.add("shard-pings", VelocityShardPingManager.getShardPingsJson());
 		event.setPluginData(NetworkRelayAPI.NETWORK_RELAY_HEARTBEAT_IDENTIFIER, data);
 	}
@@ -10,6 +10,7 @@ import com.playmonumenta.networkrelay.config.BukkitConfig;
 import com.playmonumenta.networkrelay.shardhealth.ShardHealthManager;
 import com.playmonumenta.networkrelay.util.MMLog;
 import java.io.File;
+import java.util.List;
 import java.util.Objects;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -49,6 +50,11 @@ public class NetworkRelay extends JavaPlugin {
 		int heartbeatInterval = config.mHeartbeatInterval;
 		int destinationTimeout = config.mDestinationTimeout;
 		long defaultTTL = config.mDefaultTtl;
+		boolean binaryWireFormat = config.mBinaryWireFormat;
+		int heartbeatKeyframeInterval = config.mHeartbeatKeyframeInterval;
+		int dispatchThreads = config.mDispatchThreads;
+		boolean broadcastSubscriptions = config.mBroadcastSubscriptions;
+		List<String> broadcastChannels = config.mBroadcastChannels;
 
 		Bukkit.getServer().getPluginManager().registerEvents(new NetworkMessageListener(serverAddress), this);
 
@@ -59,7 +65,7 @@ public class NetworkRelay extends JavaPlugin {
 		}
 
 		try {
-			mRabbitMQManager = new RabbitMQManager(new RabbitMQManagerAbstractionBukkit(this), shardName, rabbitURI, heartbeatInterval, destinationTimeout, defaultTTL);
+			mRabbitMQManager = new RabbitMQManager(new RabbitMQManagerAbstractionBukkit(this), shardName, rabbitURI, heartbeatInterval, destinationTimeout, defaultTTL, binaryWireFormat, heartbeatKeyframeInterval, dispatchThreads, broadcastSubscriptions, broadcastChannels);
 		} catch (Exception e) {
 			MMLog.severe("RabbitMQ manager failed to initialize. This plugin will not function", e);
 		}
@@ -99,6 +99,48 @@ public class NetworkRelayAPI {
 		sendExpiringCommand("*", command, ttlSeconds, serverType);
 	}
 
+	/**
+	 * Registers a listener for messages on a channel that may be called from any thread
+	 * <p>
+	 * Once a channel has a thread safe listener, its messages are only delivered to thread safe listeners and are
+	 * no longer sent as NetworkRelayMessageEvent / NetworkRelayMessageEventGeneric. If dispatch-threads is set,
+	 * messages from shards that are already online are handled on a network relay thread without waiting for the
+	 * main thread; messages from the same shard are still handled in the order they were sent.
+	 * <p>
+	 * May be called before this plugin has connected to the network relay
+	 *
+	 * @param channel Channel to listen on
+	 * @param listener Listener to call for each message on the channel
+	 * @throws IllegalArgumentException if the channel has a dot-separated word that is exactly * or #
+	 */
+	public static void registerThreadSafeListener(String channel, ThreadSafeMessageListener listener) {
+		subscribeBroadcastChannel(channel);
+		MessageDispatcher.register(channel, listener);
+	}
+
+	public static void unregisterThreadSafeListener(String channel, ThreadSafeMessageListener listener) {
+		MessageDispatcher.unregister(channel, listener);
+	}
+
+	/**
+	 * Declares that this shard consumes broadcast messages on a channel
+	 * <p>
+	 * When broadcast-subscriptions is enabled, a shard only receives broadcasts on channels it has subscribed to,
+	 * either here, through registerThreadSafeListener, or in the broadcast-channels config list. Channels are exact
+	 * names: they are bound as AMQP topic binding keys, so a channel with a dot-separated word that is exactly * or #
+	 * would act as a wildcard and is rejected. Channels longer than 255 UTF-8 bytes cannot be routed by name, so
+	 * subscribing to one also receives broadcasts on every other channel that long.
+	 * Messages sent directly to this shard are always received.
+	 * <p>
+	 * May be called before this plugin has connected to the network relay
+	 *
+	 * @param channel Channel to receive broadcasts on
+	 * @throws IllegalArgumentException if the channel has a dot-separated word that is exactly * or #
+	 */
+	public static void subscribeBroadcastChannel(String channel) {
+		RabbitMQManager.subscribeBroadcastChannel(channel);
+	}
+
 	public static String getShardName() {
 		return getInstance().getShardName();
 	}
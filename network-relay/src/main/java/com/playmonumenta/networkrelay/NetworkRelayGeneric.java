@@ -49,7 +49,12 @@ public class NetworkRelayGeneric {
 				config.mRabbitUri,
 				config.mHeartbeatInterval,
 				config.mDestinationTimeout,
-				config.mDefaultTtl);
+				config.mDefaultTtl,
+				config.mBinaryWireFormat,
+				config.mHeartbeatKeyframeInterval,
+				config.mDispatchThreads,
+				config.mBroadcastSubscriptions,
+				config.mBroadcastChannels);
 		} catch (Exception e) {
 			MMLog.severe("RabbitMQ manager failed to initialize. This plugin will not function", e);
 		}
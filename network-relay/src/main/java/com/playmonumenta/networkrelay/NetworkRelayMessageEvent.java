@@ -1,6 +1,7 @@
 package com.playmonumenta.networkrelay;
 
 import com.google.gson.JsonObject;
+import java.util.function.Supplier;
 import org.bukkit.event.Event;
 import org.bukkit.event.HandlerList;
 
@@ -10,9 +11,17 @@ public class NetworkRelayMessageEvent extends Event {
 
 	private final String mChannel;
 	private final String mSource;
-	private final JsonObject mData;
+	private final Supplier<JsonObject> mData;
 
 	public NetworkRelayMessageEvent(String channel, String source, JsonObject data) {
+		this(channel, source, () -> data);
+	}
+
+	/**
+	 * Creates an event whose data is only decoded when {@link #getData()} is first called.
+	 * The supplier must return the same object on every call.
+	 */
+	public NetworkRelayMessageEvent(String channel, String source, Supplier<JsonObject> data) {
 		mChannel = channel;
 		mSource = source;
 		mData = data;
@@ -27,7 +36,7 @@ public class NetworkRelayMessageEvent extends Event {
 	}
 
 	public JsonObject getData() {
-		return mData;
+		return mData.get();
 	}
 
 	@Override
@@ -1,14 +1,23 @@
 package com.playmonumenta.networkrelay;
 
 import com.google.gson.JsonObject;
+import java.util.function.Supplier;
 
 public class NetworkRelayMessageEventGeneric {
 
 	private final String mChannel;
 	private final String mSource;
-	private final JsonObject mData;
+	private final Supplier<JsonObject> mData;
 
 	public NetworkRelayMessageEventGeneric(String channel, String source, JsonObject data) {
+		this(channel, source, () -> data);
+	}
+
+	/**
+	 * Creates an event whose data is only decoded when {@link #getData()} is first called.
+	 * The supplier must return the same object on every call.
+	 */
+	public NetworkRelayMessageEventGeneric(String channel, String source, Supplier<JsonObject> data) {
 		mChannel = channel;
 		mSource = source;
 		mData = data;
@@ -23,6 +32,6 @@ public class NetworkRelayMessageEventGeneric {
 	}
 
 	public JsonObject getData() {
-		return mData;
+		return mData.get();
 	}
 }
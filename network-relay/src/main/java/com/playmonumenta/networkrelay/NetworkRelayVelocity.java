@@ -13,6 +13,8 @@ import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.ProxyServer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.jetbrains.annotations.Nullable;
@@ -80,7 +82,7 @@ public class NetworkRelayVelocity {
 		this.mServer.getEventManager().register(this, new NetworkMessageListenerVelocity(mConfig.mRunRecievedCommands, mConfig.mAutoRegisterServersToProxy, mConfig.mAutoUnregisterInactiveServersFromProxy));
 		try {
 			String shardName = System.getenv("NETWORK_RELAY_NAME") == null ? mConfig.mShardName : System.getenv("NETWORK_RELAY_NAME");
-			mRabbitMQManager = new RabbitMQManager(new RabbitMQManagerAbstractionVelocity(this), shardName, mConfig.mRabbitUri, mConfig.mHeartbeatInterval, mConfig.mDestinationTimeout, mConfig.mDefaultTtl);
+			mRabbitMQManager = new RabbitMQManager(new RabbitMQManagerAbstractionVelocity(this), shardName, mConfig.mRabbitUri, mConfig.mHeartbeatInterval, mConfig.mDestinationTimeout, mConfig.mDefaultTtl, mConfig.mBinaryWireFormat, mConfig.mHeartbeatKeyframeInterval, mConfig.mDispatchThreads, mConfig.mBroadcastSubscriptions, mConfig.mBroadcastChannels);
 		} catch (Exception e) {
 			MMLog.severe("RabbitMQ manager failed to initialize. This plugin will not function", e);
 		}
@@ -163,5 +165,20 @@ public class NetworkRelayVelocity {
 
 		@Setting(value = "default-time-to-live")
 		public long mDefaultTtl = CommonConfig.DEFAULT_DEFAULT_TTL;
+
+		@Setting(value = "binary-wire-format")
+		public boolean mBinaryWireFormat = CommonConfig.DEFAULT_BINARY_WIRE_FORMAT;
+
+		@Setting(value = "heartbeat-keyframe-interval")
+		public int mHeartbeatKeyframeInterval = CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL;
+
+		@Setting(value = "dispatch-threads")
+		public int mDispatchThreads = CommonConfig.DEFAULT_DISPATCH_THREADS;
+
+		@Setting(value = "broadcast-subscriptions")
+		public boolean mBroadcastSubscriptions = CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS;
+
+		@Setting(value = "broadcast-channels")
+		public List<String> mBroadcastChannels = new ArrayList<>(CommonConfig.DEFAULT_BROADCAST_CHANNELS);
 	}
 }
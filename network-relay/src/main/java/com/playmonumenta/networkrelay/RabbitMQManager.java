@@ -1,7 +1,6 @@
 package com.playmonumenta.networkrelay;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 import com.playmonumenta.networkrelay.util.MMLog;
@@ -20,16 +19,39 @@ import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.Nullable;
 
 public class RabbitMQManager {
 	private static final String CONSUMER_TAG = "consumerTag";
 	private static final String BROADCAST_EXCHANGE_NAME = "broadcast";
+	private static final String BROADCAST_CHANNELS_EXCHANGE_NAME = "broadcast.channels";
+	// AMQP limit on the length of a routing key
+	private static final int MAX_ROUTING_KEY_BYTES = 255;
+	// Broadcasts on channels too long to be a routing key are all routed with this key, which subscribers to them bind
+	private static final String OVERSIZED_CHANNEL_ROUTING_KEY = "";
+	// Oversized channels already warned about when publishing, so each is only logged once
+	private static final Set<String> WARNED_OVERSIZED_CHANNELS = ConcurrentHashMap.newKeySet();
+
+	/*
+	 * Broadcast channels this shard consumes, the only broadcasts it receives when broadcast subscriptions are enabled.
+	 * Plugins may add to this before the manager starts.
+	 */
+	private static final Set<String> SUBSCRIBED_CHANNELS = new ConcurrentSkipListSet<>(List.of(
+		NetworkRelayAPI.HEARTBEAT_CHANNEL,
+		NetworkRelayAPI.COMMAND_CHANNEL,
+		RemotePlayerManagerAbstraction.REMOTE_PLAYER_REFRESH_CHANNEL,
+		RemotePlayerManagerAbstraction.REMOTE_PLAYER_UPDATE_CHANNEL,
+		RemotePlayerManagerAbstraction.REMOTE_PLAYER_BATCH_CHANNEL
+	));
 
 	private static @Nullable RabbitMQManager INSTANCE = null;
 
@@ -42,12 +64,17 @@ public class RabbitMQManager {
 	private final int mHeartbeatInterval;
 	private final int mDestinationTimeout;
 	private final long mDefaultTTL;
+	private final boolean mBinaryWireFormat;
+	private final boolean mBroadcastSubscriptions;
+	private final HeartbeatDelta.Sender mHeartbeatSender;
+	private final HeartbeatDelta.Receiver mHeartbeatReceiver;
+	private final MessageDispatcher mDispatcher;
 
 	/*
 	 * All messages will be queued until the server finishes starting.
 	 * This avoids calling DestOnlineEvents before plugins have finished loading to handle them.
 	 */
-	private boolean mServerFinishedStarting = false;
+	private volatile boolean mServerFinishedStarting = false;
 
 	/*
 	 * If mShutdown = false, this is expected to run normally
@@ -90,9 +117,9 @@ public class RabbitMQManager {
 
 	private static class QueuedMessage {
 		final String mChannel;
-		final JsonObject mData;
+		final Supplier<JsonObject> mData;
 
-		private QueuedMessage(String channel, JsonObject data) {
+		private QueuedMessage(String channel, Supplier<JsonObject> data) {
 			mChannel = channel;
 			mData = data;
 		}
@@ -101,13 +128,31 @@ public class RabbitMQManager {
 			return mChannel;
 		}
 
-		private JsonObject getData() {
+		private Supplier<JsonObject> getData() {
 			return mData;
 		}
 	}
 
 	private final Map<String, Deque<QueuedMessage>> mDestinationQueuedMessages = new ConcurrentSkipListMap<>();
 
+	/*
+	 * Destinations that can decode binary messages, based on the most recent heartbeat from each.
+	 * Removed when the destination goes offline.
+	 */
+	private final Set<String> mBinaryDestinations = new ConcurrentSkipListSet<>();
+
+	/*
+	 * Destinations that can apply heartbeat deltas, based on the most recent heartbeat from each.
+	 * Removed when the destination goes offline.
+	 */
+	private final Set<String> mDeltaDestinations = new ConcurrentSkipListSet<>();
+
+	/*
+	 * Destinations that only receive broadcasts on channels they subscribe to, based on the most recent heartbeat
+	 * from each. Removed when the destination goes offline.
+	 */
+	private final Set<String> mSubscribingDestinations = new ConcurrentSkipListSet<>();
+
 	private class RelayShutdownHandler implements ShutdownListener {
 		@Override
 		public void shutdownCompleted(ShutdownSignalException cause) {
@@ -121,7 +166,7 @@ public class RabbitMQManager {
 	}
 
 	// Must be called on primary thread
-	protected RabbitMQManager(RabbitMQManagerAbstractionInterface abstraction, String shardName, String rabbitURI, int heartbeatInterval, int destinationTimeout, long defaultTTL) throws Exception {
+	protected RabbitMQManager(RabbitMQManagerAbstractionInterface abstraction, String shardName, String rabbitURI, int heartbeatInterval, int destinationTimeout, long defaultTTL, boolean binaryWireFormat, int heartbeatKeyframeInterval, int dispatchThreads, boolean broadcastSubscriptions, List<String> broadcastChannels) throws Exception {
 		// Once this project is running on Java 19 or higher, switch to Thread.threadId() instead
 		// (does not exist in this version)
 		mPrimaryThread = Thread.currentThread();
@@ -130,6 +175,10 @@ public class RabbitMQManager {
 		mHeartbeatInterval = heartbeatInterval;
 		mDestinationTimeout = destinationTimeout;
 		mDefaultTTL = defaultTTL;
+		mBinaryWireFormat = binaryWireFormat;
+		mBroadcastSubscriptions = broadcastSubscriptions;
+		mHeartbeatSender = new HeartbeatDelta.Sender(heartbeatKeyframeInterval, broadcastSubscriptions);
+		mHeartbeatReceiver = new HeartbeatDelta.Receiver(heartbeatInterval * 1000L);
 
 		mAbstraction.startHeartbeatRunnable(() -> {
 			Instant now = Instant.now();
@@ -149,6 +198,10 @@ public class RabbitMQManager {
 					sendDestOfflineEvent(dest);
 					mDestinationHeartbeatData.remove(dest);
 					mDestinationTypes.remove(dest);
+					mBinaryDestinations.remove(dest);
+					mDeltaDestinations.remove(dest);
+					mSubscribingDestinations.remove(dest);
+					mHeartbeatReceiver.forget(dest);
 					iter.remove();
 				}
 			}
@@ -162,9 +215,13 @@ public class RabbitMQManager {
 		mChannel = mConnection.createChannel();
 		// Print out the reason for disconnection if it happens
 		mConnection.addShutdownListener(new RelayShutdownHandler());
+		mDispatcher = new MessageDispatcher(mChannel, dispatchThreads);
 
 		/* Declare a broadcast exchange which routes messages to all attached queues */
 		mChannel.exchangeDeclare(BROADCAST_EXCHANGE_NAME, "fanout");
+		/* Declare a topic exchange which gets every broadcast, and routes it by channel to queues subscribed to that channel */
+		mChannel.exchangeDeclare(BROADCAST_CHANNELS_EXCHANGE_NAME, "topic");
+		mChannel.exchangeBind(BROADCAST_CHANNELS_EXCHANGE_NAME, BROADCAST_EXCHANGE_NAME, "");
 
 		/* Declare queue arguments */
 		Map<String, Object> queueArgs = new HashMap<>();
@@ -172,168 +229,220 @@ public class RabbitMQManager {
 		queueArgs.put("x-expires", 1200000); // 20 minutes of inactivity (shard not responding/down) until the queue deletes itself
 		/* Declare the queue for this shard */
 		mChannel.queueDeclare(shardName, false, false, false, queueArgs);
-		/* Bind the queue to the exchange */
-		mChannel.queueBind(shardName, BROADCAST_EXCHANGE_NAME, "");
+		for (String channel : broadcastChannels) {
+			if (isWildcardChannel(channel)) {
+				MMLog.warning("Ignoring broadcast channel " + channel + " from the config: channels may not contain * or # words");
+			} else {
+				SUBSCRIBED_CHANNELS.add(channel);
+			}
+		}
+		if (mBroadcastSubscriptions) {
+			/* Only receive broadcasts on subscribed channels - the queue may still be bound to every broadcast from an earlier run */
+			mChannel.queueUnbind(shardName, BROADCAST_EXCHANGE_NAME, "");
+			MMLog.info("Subscribing to broadcasts on " + SUBSCRIBED_CHANNELS.size() + " channels");
+		} else {
+			/* Bind the queue to the exchange */
+			mChannel.queueBind(shardName, BROADCAST_EXCHANGE_NAME, "");
+		}
+		for (String channel : SUBSCRIBED_CHANNELS) {
+			applySubscription(channel);
+		}
 
 		/* Consumer to receive messages */
 		DeliverCallback deliverCallback = (consumerTag, delivery) -> {
-			final String message;
-			final JsonObject root;
+			final long deliveryTag = delivery.getEnvelope().getDeliveryTag();
+			mDispatcher.received(deliveryTag);
+			final RelayMessageCodec.Envelope envelope;
 
 			try {
-				message = new String(delivery.getBody(), StandardCharsets.UTF_8);
-
-				root = mGson.fromJson(message, JsonObject.class);
-				if (root == null) {
-					throw new Exception("Failed to parse rabbit message as json: " + message);
-				}
-				if (!root.has("channel") || !root.get("channel").isJsonPrimitive() || !root.get("channel").getAsJsonPrimitive().isString()) {
-					throw new Exception("Rabbit message missing 'channel': " + message);
-				}
-				if (!root.has("source") || !root.get("source").isJsonPrimitive() || !root.get("source").getAsJsonPrimitive().isString()) {
-					throw new Exception("Rabbit message missing 'source': " + message);
-				}
-				if (!root.has("data") || !root.get("data").isJsonObject()) {
-					throw new Exception("Rabbit message missing 'data': " + message);
-				}
+				envelope = RelayMessageCodec.decode(delivery.getProperties().getContentType(), delivery.getBody());
 			} catch (Exception ex) {
 				MMLog.warning("Failed to parse rabbit message", ex);
 				/* Parsing this message failed - but ack it anyway, because it's not going to parse next time either */
-				mChannel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
+				mDispatcher.acknowledge(deliveryTag);
 				return;
 			}
 
-			String channel = root.get("channel").getAsString();
-			String source = root.get("source").getAsString();
-			JsonObject data = root.get("data").getAsJsonObject();
-			JsonObject pluginData = null;
+			String channel = envelope.mChannel;
+			String source = envelope.mSource;
+			Supplier<JsonObject> data = envelope.mData;
 
-			/* Check for heartbeat data - pluginData */
-			if (root.has("pluginData")) {
-				JsonElement pluginDataElement = root.get("pluginData");
-				if (pluginDataElement != null && pluginDataElement.isJsonObject()) {
-					pluginData = pluginDataElement.getAsJsonObject();
-				}
+			/* A resync request only asks for full heartbeat data next time, and isn't delivered to plugins */
+			if (HeartbeatDelta.isResyncRequest(envelope.mHeartbeat)) {
+				MMLog.debug(() -> "Shard " + source + " requested full heartbeat data");
+				mHeartbeatSender.requestKeyframe();
+				mDispatcher.acknowledge(deliveryTag);
+				return;
+			}
+
+			/*
+			 * Plain messages from a shard that is already online don't change any tracked state, so if their channel
+			 * has thread safe listeners they can skip the main thread entirely when there are dispatch threads
+			 */
+			if (mDispatcher.hasWorkers()
+				&& MessageDispatcher.hasListeners(channel)
+				&& envelope.mOnline == null
+				&& envelope.mPluginData == null
+				&& envelope.mHeartbeat == null
+				&& mServerFinishedStarting
+				&& mDestinationLastHeartbeat.containsKey(source)) {
+				MMLog.trace("Dispatching message from=" + source + " channel=" + channel);
+				mDispatcher.dispatch(channel, source, data, deliveryTag);
+				return;
 			}
-			final JsonObject pluginDataFinal = pluginData;
 
 			/* Process the packet on the main thread */
 			mAbstraction.scheduleProcessPacket(() -> {
-				MMLog.trace("Processing message from=" + source + " channel=" + channel);
-				MMLog.trace(() -> "content=" + mGson.toJson(root));
-
-				/* Check for heartbeat data - online status */
-				boolean isDestShutdown = false;
-				JsonElement onlineJson = root.get("online");
-				if (onlineJson instanceof JsonPrimitive onlinePrimitive) {
-					if (onlinePrimitive.isBoolean() && !onlinePrimitive.getAsBoolean()) {
+				try {
+					MMLog.trace("Processing message from=" + source + " channel=" + channel);
+					MMLog.trace(() -> "content=" + mGson.toJson(data.get()));
+
+					/* Check for heartbeat data - online status */
+					boolean isDestShutdown = false;
+					if (Boolean.FALSE.equals(envelope.mOnline)) {
 						isDestShutdown = true;
 						sendDestOfflineEvent(source);
 						mDestinationLastHeartbeat.remove(source);
 						mDestinationHeartbeatData.remove(source);
 						mDestinationTypes.remove(source);
+						mBinaryDestinations.remove(source);
+						mDeltaDestinations.remove(source);
+						mSubscribingDestinations.remove(source);
+						mHeartbeatReceiver.forget(source);
 					}
-				}
 
-				if (!isDestShutdown) {
-					boolean heartbeatDataPresent = mDestinationLastHeartbeat.containsKey(source);
+					if (!isDestShutdown) {
+						boolean heartbeatDataPresent = mDestinationLastHeartbeat.containsKey(source);
+						boolean isHeartbeat = envelope.mPluginData != null || envelope.mHeartbeat != null;
 
-					if (mServerFinishedStarting && pluginDataFinal != null) {
-						/* This message contained heartbeat data - record it */
-						mDestinationLastHeartbeat.put(source, Instant.now());
-						mDestinationHeartbeatData.put(source, pluginDataFinal);
+						/* Rebuild the full plugin data if this is a heartbeat delta */
+						final JsonObject pluginDataFinal = mHeartbeatReceiver.receive(source, envelope.mHeartbeat, envelope.mPluginData);
+						if (isHeartbeat && pluginDataFinal == null) {
+							/* Missed the heartbeat this delta is based on - keep the last known data until a keyframe arrives */
+							mDestinationLastHeartbeat.computeIfPresent(source, (unused, lastHeartbeat) -> Instant.now());
+							requestHeartbeatResync(source);
+						}
 
-						/* Get the server type, defaulting to "minecraft" */
-						JsonObject networkRelayPluginData
-							= pluginDataFinal.getAsJsonObject(NetworkRelayAPI.NETWORK_RELAY_HEARTBEAT_IDENTIFIER);
-						if (networkRelayPluginData == null) {
-							networkRelayPluginData = new JsonObject();
+						/* Binary messages and heartbeats both say whether the source can decode binary messages */
+						if (envelope.mSupportsBinary) {
+							mBinaryDestinations.add(source);
+						} else if (isHeartbeat) {
+							mBinaryDestinations.remove(source);
 						}
-						JsonPrimitive serverTypeJson
-							= networkRelayPluginData.getAsJsonPrimitive("server-type");
-						String serverType;
-						if (serverTypeJson != null && serverTypeJson.isString()) {
-							serverType = serverTypeJson.getAsString();
-						} else {
-							serverType = "minecraft";
+
+						/* Heartbeats say whether the source can apply heartbeat deltas */
+						if (envelope.mHeartbeat != null) {
+							mDeltaDestinations.add(source);
+						} else if (isHeartbeat) {
+							mDeltaDestinations.remove(source);
 						}
-						mDestinationTypes.put(source, serverType);
-					}
 
-					if (heartbeatDataPresent) {
-						/* This shard was already marked online - deliver normally */
-						mAbstraction.sendMessageEvent(channel, source, data);
-					} else {
-						/* This shard was not known to be online until this message */
-						if (!mServerFinishedStarting || pluginDataFinal == null) {
-							/*
-							 * Got a message from this shard, but unfortunately it doesn't contain any plugin data
-							 * (i.e. it's not a heartbeat message)
-							 * This can happen randomly when other traffic is happening and this receiving shard just started
-							 * Can't send the online event yet - there's no heartbeat data which plugins might depend on while handling the online event
-							 * Also can't deliver the message to plugins, since they may be doing state tracking based on online status
-							 *
-							 * Instead, queue the packet for later delivery, once we do receive a heartbeat message containing plugin data
-							 *
-							 * This same logic applies if the server has not finished starting yet - queue all messages
-							 */
-
-							/* Get existing queue or create and insert a new one */
-							Deque<QueuedMessage> queue = mDestinationQueuedMessages.computeIfAbsent(source, (unused) -> new ConcurrentLinkedDeque<>());
-							queue.addLast(new QueuedMessage(channel, data));
-
-							StringBuilder msg = new StringBuilder()
-								.append("Queued packet from ")
-								.append(source)
-								.append(" as this shard ");
-							if (!mServerFinishedStarting) {
-								msg.append("is not ready to receive heartbeat data yet");
-							} else {
-								msg.append("has not received heartbeat data yet");
+						/* ...and whether it only receives broadcasts on channels it subscribes to */
+						if (HeartbeatDelta.usesBroadcastSubscriptions(envelope.mHeartbeat)) {
+							mSubscribingDestinations.add(source);
+						} else if (isHeartbeat) {
+							mSubscribingDestinations.remove(source);
+						}
+
+						if (mServerFinishedStarting && pluginDataFinal != null) {
+							/* This message contained heartbeat data - record it */
+							mDestinationLastHeartbeat.put(source, Instant.now());
+							mDestinationHeartbeatData.put(source, pluginDataFinal);
+
+							/* Get the server type, defaulting to "minecraft" */
+							JsonObject networkRelayPluginData
+								= pluginDataFinal.getAsJsonObject(NetworkRelayAPI.NETWORK_RELAY_HEARTBEAT_IDENTIFIER);
+							if (networkRelayPluginData == null) {
+								networkRelayPluginData = new JsonObject();
 							}
-							msg.append(". Current queue size is ").append(queue.size());
-							if (queue.size() > 100) {
-								MMLog.warning(msg.toString());
+							JsonPrimitive serverTypeJson
+								= networkRelayPluginData.getAsJsonPrimitive("server-type");
+							String serverType;
+							if (serverTypeJson != null && serverTypeJson.isString()) {
+								serverType = serverTypeJson.getAsString();
 							} else {
-								MMLog.info(msg.toString());
+								serverType = "minecraft";
 							}
+							mDestinationTypes.put(source, serverType);
+						}
+
+						if (heartbeatDataPresent) {
+							/* This shard was already marked online - deliver normally */
+							deliverMessage(channel, source, data);
 						} else {
-							/*
-							 * Got a message from this shard, and it has plugin data - great!
-							 * Have everything needed to send online event and deliver the message
-							 */
-
-							MMLog.debug("Shard " + source + " is online");
-							mAbstraction.sendDestOnlineEvent(source);
-
-							/* Deliver this current message */
-							mAbstraction.sendMessageEvent(channel, source, data);
-
-							/* Check if there were any queued messages from before heartbeat data was available and deliver them */
-							Deque<QueuedMessage> queue = mDestinationQueuedMessages.remove(source);
-							if (queue != null) {
-								for (QueuedMessage msg : queue) {
-									MMLog.debug(() -> "Delivering queued message from " + source + " now that it is marked as online");
-									mAbstraction.sendMessageEvent(msg.getChannel(), source, msg.getData());
+							/* This shard was not known to be online until this message */
+							if (!mServerFinishedStarting || pluginDataFinal == null) {
+								/*
+								 * Got a message from this shard, but unfortunately it doesn't contain any plugin data
+								 * (i.e. it's not a heartbeat message)
+								 * This can happen randomly when other traffic is happening and this receiving shard just started
+								 * Can't send the online event yet - there's no heartbeat data which plugins might depend on while handling the online event
+								 * Also can't deliver the message to plugins, since they may be doing state tracking based on online status
+								 *
+								 * Instead, queue the packet for later delivery, once we do receive a heartbeat message containing plugin data
+								 *
+								 * This same logic applies if the server has not finished starting yet - queue all messages
+								 */
+
+								/* Get existing queue or create and insert a new one */
+								Deque<QueuedMessage> queue = mDestinationQueuedMessages.computeIfAbsent(source, (unused) -> new ConcurrentLinkedDeque<>());
+								queue.addLast(new QueuedMessage(channel, data));
+
+								StringBuilder msg = new StringBuilder()
+									.append("Queued packet from ")
+									.append(source)
+									.append(" as this shard ");
+								if (!mServerFinishedStarting) {
+									msg.append("is not ready to receive heartbeat data yet");
+								} else {
+									msg.append("has not received heartbeat data yet");
+								}
+								msg.append(". Current queue size is ").append(queue.size());
+								if (queue.size() > 100) {
+									MMLog.warning(msg.toString());
+								} else {
+									MMLog.info(msg.toString());
+								}
+							} else {
+								/*
+								 * Got a message from this shard, and it has plugin data - great!
+								 * Have everything needed to send online event and deliver the message
+								 */
+
+								MMLog.debug("Shard " + source + " is online");
+								mAbstraction.sendDestOnlineEvent(source);
+
+								/* The new shard has none of this shard's heartbeat data yet */
+								mHeartbeatSender.requestKeyframe();
+
+								/* Deliver this current message */
+								deliverMessage(channel, source, data);
+
+								/* Check if there were any queued messages from before heartbeat data was available and deliver them */
+								Deque<QueuedMessage> queue = mDestinationQueuedMessages.remove(source);
+								if (queue != null) {
+									for (QueuedMessage msg : queue) {
+										MMLog.debug(() -> "Delivering queued message from " + source + " now that it is marked as online");
+										deliverMessage(msg.getChannel(), source, msg.getData());
+									}
 								}
 							}
 						}
 					}
-				}
-
-				/*
-				 * Always acknowledge messages after attempting to handle them, even if there's an error
-				 * Don't want a failing message to get stuck in an infinite loop
-				 */
-
-				try {
-					mChannel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
-				} catch (IOException ex) {
+				} finally {
 					/*
-					 * If the channel disconnects, we just won't ack this message
-					 * It will be redelivered later
+					 * Always acknowledge messages after attempting to handle them, even if there's an error
+					 * Don't want a failing message to get stuck in an infinite loop
 					 */
-					MMLog.warning("Failed to acknowledge rabbit message '" + message + "'");
+					try {
+						mDispatcher.acknowledge(deliveryTag);
+					} catch (IOException ex) {
+						/*
+						 * If the channel disconnects, we just won't ack this message
+						 * It will be redelivered later
+						 */
+						MMLog.warning("Failed to acknowledge rabbit message from=" + source + " channel=" + channel);
+					}
 				}
 			});
 		};
@@ -383,6 +492,7 @@ public class RabbitMQManager {
 			} catch (Exception ex) {
 				MMLog.warning("Failed to send shutdown heartbeat: " + ex.getMessage());
 			}
+			mDispatcher.stop();
 			try {
 				mConnection.close();
 			} catch (Exception ex) {
@@ -422,10 +532,12 @@ public class RabbitMQManager {
 
 		/* Broadcasting a non-heartbeat message - add heartbeat data to it if running on the primary thread,
 		 * and it's been more than half the normal heartbeat time since the last heartbeat
-		 * Note that heartbeats also go through this same method, so need to not add the same data to them twice */
+		 * Note that heartbeats also go through this same method, so need to not add the same data to them twice
+		 * Not done while any destination subscribes to channels, as it may not receive this one */
 		if (isPrimaryThread() &&
 			destination.equals("*") &&
-			!channel.equals(NetworkRelayAPI.HEARTBEAT_CHANNEL)) {
+			!channel.equals(NetworkRelayAPI.HEARTBEAT_CHANNEL) &&
+			mSubscribingDestinations.isEmpty()) {
 			Instant now = Instant.now();
 			// * 500 because of converting seconds to milliseconds (*1000) divided by 2 (half the heartbeat interval as threshold to send early)
 			if (now.minusMillis(mHeartbeatInterval * 500L).compareTo(mLastHeartbeat) >= 0) {
@@ -436,11 +548,21 @@ public class RabbitMQManager {
 		}
 
 		try {
-			byte[] msg = mGson.toJson(root).getBytes(StandardCharsets.UTF_8);
+			final byte[] msg;
+			if (mBinaryWireFormat && canSendBinary(destination)) {
+				msg = RelayMessageCodec.encodeBinary(root);
+				properties = properties.builder().contentType(RelayMessageCodec.BINARY_CONTENT_TYPE).build();
+			} else {
+				msg = RelayMessageCodec.encodeJson(root);
+			}
 
 			if (destination.equals("*")) {
-				/* Broadcast message - send to the broadcast exchange to route to all queues */
-				mChannel.basicPublish(BROADCAST_EXCHANGE_NAME, "", properties, msg);
+				/* Broadcast message - send to the broadcast exchange to route to all queues, and by channel to subscribed queues */
+				String routingKey = broadcastRoutingKey(channel);
+				if (routingKey.equals(OVERSIZED_CHANNEL_ROUTING_KEY) && WARNED_OVERSIZED_CHANNELS.add(channel)) {
+					MMLog.warning("Broadcast channel " + channel + " is longer than " + MAX_ROUTING_KEY_BYTES + " bytes; shards subscribed to it also receive every other oversized channel");
+				}
+				mChannel.basicPublish(BROADCAST_EXCHANGE_NAME, routingKey, properties, msg);
 			} else {
 				/* Non-broadcast message - send to the default exchange, routing to the appropriate queue */
 				mChannel.basicPublish("", destination, properties, msg);
@@ -509,8 +631,105 @@ public class RabbitMQManager {
 	}
 
 	private void addHeartbeatDataToMessage(JsonObject root) {
-		root.add("pluginData", mAbstraction.gatherHeartbeatData());
+		mHeartbeatSender.addTo(root, mAbstraction.gatherHeartbeatData(), canSendHeartbeatDeltas());
 		root.addProperty("online", true);
+		/* Always advertised, so peers can switch to binary as soon as they enable it */
+		root.addProperty(RelayMessageCodec.BINARY_SUPPORT_KEY, RelayMessageCodec.BINARY_VERSION);
+	}
+
+	/*
+	 * Binary messages are only sent to destinations known to decode them.
+	 * Broadcasts are always JSON: programs other than shards (such as the chat logger) read the broadcast
+	 * exchange directly, and they neither send heartbeats nor decode the binary format.
+	 */
+	private boolean canSendBinary(String destination) {
+		return !destination.equals("*") && mBinaryDestinations.contains(destination);
+	}
+
+	/* Heartbeats are broadcast, so deltas can only be sent when every online destination can apply them */
+	private boolean canSendHeartbeatDeltas() {
+		Set<String> onlineDestinations = mDestinationLastHeartbeat.keySet();
+		return !onlineDestinations.isEmpty() && mDeltaDestinations.containsAll(onlineDestinations);
+	}
+
+	/* Asks the source for full heartbeat data, at most once per heartbeat interval */
+	private void requestHeartbeatResync(String source) {
+		if (!mHeartbeatReceiver.shouldRequestResync(source)) {
+			return;
+		}
+		MMLog.debug(() -> "Missed heartbeat data from " + source + ", requesting full heartbeat data");
+		try {
+			JsonObject root = new JsonObject();
+			root.add("data", new JsonObject());
+			root.add(HeartbeatDelta.HEARTBEAT_KEY, HeartbeatDelta.resyncRequest());
+
+			/* Only useful until the next keyframe, which is at most a few heartbeats away anyway */
+			AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+				.expiration(Long.toString(mHeartbeatInterval * 1000L * 5L))
+				.build();
+
+			sendNetworkMessageInternal(source, NetworkRelayAPI.HEARTBEAT_CHANNEL, root, properties);
+		} catch (Exception ex) {
+			MMLog.warning("Failed to request heartbeat resync from " + source + ": " + ex.getMessage());
+		}
+	}
+
+	/*
+	 * Records that this shard consumes broadcasts on a channel, and subscribes to it if broadcast subscriptions are enabled.
+	 * Throws IllegalArgumentException for channels that would be bound as a topic wildcard, receiving other channels too.
+	 */
+	protected static void subscribeBroadcastChannel(String channel) {
+		if (isWildcardChannel(channel)) {
+			throw new IllegalArgumentException("Broadcast channel may not contain * or # words: " + channel);
+		}
+		if (SUBSCRIBED_CHANNELS.add(channel)) {
+			RabbitMQManager instance = INSTANCE;
+			if (instance != null) {
+				instance.applySubscription(channel);
+			}
+		}
+	}
+
+	/*
+	 * Binds the queue to the channel's broadcasts if broadcast subscriptions are enabled, and otherwise removes
+	 * any binding left by an earlier run that had them enabled, which would deliver those broadcasts twice
+	 */
+	private void applySubscription(String channel) {
+		String routingKey = broadcastRoutingKey(channel);
+		try {
+			if (mBroadcastSubscriptions) {
+				if (routingKey.equals(OVERSIZED_CHANNEL_ROUTING_KEY)) {
+					MMLog.warning("Broadcast channel " + channel + " is longer than " + MAX_ROUTING_KEY_BYTES + " bytes; also receiving broadcasts on every other oversized channel");
+				}
+				mChannel.queueBind(mShardName, BROADCAST_CHANNELS_EXCHANGE_NAME, routingKey);
+			} else {
+				mChannel.queueUnbind(mShardName, BROADCAST_CHANNELS_EXCHANGE_NAME, routingKey);
+			}
+		} catch (Exception ex) {
+			MMLog.warning("Failed to update broadcast subscription for channel " + channel + ": " + ex.getMessage());
+		}
+	}
+
+	/* The routing key broadcasts on a channel are published with, and subscribers bind to receive them */
+	private static String broadcastRoutingKey(String channel) {
+		return channel.getBytes(StandardCharsets.UTF_8).length <= MAX_ROUTING_KEY_BYTES ? channel : OVERSIZED_CHANNEL_ROUTING_KEY;
+	}
+
+	/* Channels are bound as topic binding keys, where * and # words are wildcards rather than literal names */
+	private static boolean isWildcardChannel(String channel) {
+		for (String word : channel.split("\\.", -1)) {
+			if (word.equals("*") || word.equals("#")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* Messages on channels with thread safe listeners go only to those listeners */
+	private void deliverMessage(String channel, String source, Supplier<JsonObject> data) {
+		if (!MessageDispatcher.callListeners(channel, source, data)) {
+			mAbstraction.sendMessageEvent(channel, source, data);
+		}
 	}
 
 	private void sendDestOfflineEvent(String dest) {
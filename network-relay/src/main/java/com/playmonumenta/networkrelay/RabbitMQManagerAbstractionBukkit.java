@@ -1,6 +1,7 @@
 package com.playmonumenta.networkrelay;
 
 import com.google.gson.JsonObject;
+import java.util.function.Supplier;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitTask;
@@ -37,7 +38,7 @@ public class RabbitMQManagerAbstractionBukkit implements RabbitMQManagerAbstract
 	}
 
 	@Override
-	public void sendMessageEvent(String channel, String source, JsonObject data) {
+	public void sendMessageEvent(String channel, String source, Supplier<JsonObject> data) {
 		NetworkRelayMessageEvent event = new NetworkRelayMessageEvent(channel, source, data);
 		Bukkit.getPluginManager().callEvent(event);
 	}
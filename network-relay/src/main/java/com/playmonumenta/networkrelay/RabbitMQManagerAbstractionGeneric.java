@@ -5,6 +5,7 @@ import com.playmonumenta.networkrelay.util.MMLog;
 import java.util.TimerTask;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import org.jetbrains.annotations.Nullable;
 
 public class RabbitMQManagerAbstractionGeneric implements RabbitMQManagerAbstractionInterface {
@@ -46,7 +47,7 @@ public class RabbitMQManagerAbstractionGeneric implements RabbitMQManagerAbstrac
 	}
 
 	@Override
-	public void sendMessageEvent(String channel, String source, JsonObject data) {
+	public void sendMessageEvent(String channel, String source, Supplier<JsonObject> data) {
 		NetworkRelayMessageEventGeneric event = new NetworkRelayMessageEventGeneric(channel, source, data);
 		mPlugin.callEvent(event);
 	}
@@ -1,6 +1,7 @@
 package com.playmonumenta.networkrelay;
 
 import com.google.gson.JsonObject;
+import java.util.function.Supplier;
 
 public interface RabbitMQManagerAbstractionInterface {
 	void startHeartbeatRunnable(Runnable runnable, int delaySeconds, int periodSeconds);
@@ -11,7 +12,8 @@ public interface RabbitMQManagerAbstractionInterface {
 
 	void stopServer();
 
-	void sendMessageEvent(String channel, String source, JsonObject data);
+	/* The message data is decoded on first use, so it is not parsed at all for channels nothing listens to */
+	void sendMessageEvent(String channel, String source, Supplier<JsonObject> data);
 
 	JsonObject gatherHeartbeatData();
 
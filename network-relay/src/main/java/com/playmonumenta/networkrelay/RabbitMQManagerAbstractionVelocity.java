@@ -4,6 +4,7 @@ import com.google.gson.JsonObject;
 import com.playmonumenta.networkrelay.util.MMLog;
 import com.velocitypowered.api.proxy.ProxyServer;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import net.kyori.adventure.text.Component;
 
 public class RabbitMQManagerAbstractionVelocity implements RabbitMQManagerAbstractionInterface {
@@ -46,7 +47,7 @@ public class RabbitMQManagerAbstractionVelocity implements RabbitMQManagerAbstra
 	}
 
 	@Override
-	public void sendMessageEvent(String channel, String source, JsonObject data) {
+	public void sendMessageEvent(String channel, String source, Supplier<JsonObject> data) {
 		NetworkRelayMessageEventGeneric event = new NetworkRelayMessageEventGeneric(channel, source, data);
 		mServer.getEventManager().fireAndForget(event);
 	}
@@ -0,0 +1,333 @@
+package com.playmonumenta.networkrelay;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.jetbrains.annotations.Nullable;
+
+/*
+ * Encodes and decodes the envelope of messages sent between shards.
+ *
+ * Two formats exist on the wire:
+ * - JSON: a single object with "source", "dest", "channel", "data" and optionally "pluginData", "online" and
+ *   HeartbeatDelta.HEARTBEAT_KEY.
+ *   Messages without a content type are always JSON, which is what older shards send and expect.
+ * - Binary (content type BINARY_CONTENT_TYPE): a small header carrying the routing fields, followed by
+ *   the pluginData and data objects as separately length-prefixed JSON sections that are deflated when large.
+ *   The heartbeat object, if any, is a final section after data, which older decoders never read.
+ *
+ * Shards always accept both formats, and only send binary to destinations that have advertised support
+ * for it in their heartbeats (see BINARY_SUPPORT_KEY). Broadcasts, heartbeats included, are always JSON, as
+ * programs other than shards read them too, so only direct messages benefit from the binary format.
+ *
+ * The data section is not parsed (or inflated) until something asks for it, so messages on channels that
+ * nothing on this shard handles never have their body decoded.
+ */
+final class RelayMessageCodec {
+	static final String BINARY_CONTENT_TYPE = "application/x-monumenta-relay";
+	// Root key added to JSON heartbeats by shards that can decode binary messages, set to BINARY_VERSION
+	static final String BINARY_SUPPORT_KEY = "binaryVersion";
+	static final int BINARY_VERSION = 1;
+
+	private static final int FLAG_HAS_ONLINE = 0x01;
+	private static final int FLAG_ONLINE = 0x02;
+	private static final int FLAG_HAS_PLUGIN_DATA = 0x04;
+	private static final int FLAG_HAS_HEARTBEAT = 0x08;
+
+	private static final int SECTION_RAW = 0;
+	private static final int SECTION_DEFLATED = 1;
+	// Sections smaller than this are sent uncompressed, as deflate would save little or nothing
+	private static final int COMPRESSION_THRESHOLD = 512;
+	/*
+	 * Limits on the inflated size claimed by a message, which is allocated up front: RabbitMQ's default maximum
+	 * message size, and the best compression ratio deflate can achieve
+	 */
+	static final int MAX_INFLATED_BYTES = 128 * 1024 * 1024;
+	private static final int MAX_DEFLATE_RATIO = 1032;
+
+	private static final Gson GSON = new Gson();
+
+	static final class Envelope {
+		final String mSource;
+		final String mChannel;
+		final @Nullable Boolean mOnline;
+		final @Nullable JsonObject mPluginData;
+		// Heartbeat sequencing and plugin data changes, see HeartbeatDelta
+		final @Nullable JsonObject mHeartbeat;
+		final Supplier<JsonObject> mData;
+		final boolean mSupportsBinary;
+
+		private Envelope(String source, String channel, @Nullable Boolean online, @Nullable JsonObject pluginData,
+		                 @Nullable JsonObject heartbeat, Supplier<JsonObject> data, boolean supportsBinary) {
+			mSource = source;
+			mChannel = channel;
+			mOnline = online;
+			mPluginData = pluginData;
+			mHeartbeat = heartbeat;
+			mData = data;
+			mSupportsBinary = supportsBinary;
+		}
+	}
+
+	/*
+	 * Memoizing supplier for a message body, parsed from its encoded section on first use.
+	 * Thread safe, as event handlers may pass the data on to other threads.
+	 */
+	static final class LazyJsonObject implements Supplier<JsonObject> {
+		private @Nullable byte[] mEncoded;
+		private final boolean mDeflated;
+		private final int mRawLength;
+		private @Nullable JsonObject mValue;
+
+		private LazyJsonObject(byte[] encoded, boolean deflated, int rawLength) {
+			mEncoded = encoded;
+			mDeflated = deflated;
+			mRawLength = rawLength;
+		}
+
+		static Supplier<JsonObject> of(JsonObject value) {
+			return () -> value;
+		}
+
+		@Override
+		public synchronized JsonObject get() {
+			if (mValue == null) {
+				byte[] encoded = mEncoded;
+				if (encoded == null) {
+					throw new IllegalStateException("Message data is missing");
+				}
+				try {
+					mValue = parseObject(mDeflated ? inflate(encoded, mRawLength) : encoded, "data");
+				} catch (IOException ex) {
+					throw new IllegalStateException("Failed to decode message data: " + ex.getMessage(), ex);
+				}
+				mEncoded = null;
+			}
+			return mValue;
+		}
+	}
+
+	private RelayMessageCodec() {
+	}
+
+	static byte[] encodeJson(JsonObject root) {
+		return GSON.toJson(root).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/* Encodes a root object as built by RabbitMQManager into the binary format */
+	static byte[] encodeBinary(JsonObject root) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		int flags = 0;
+		JsonElement online = root.get("online");
+		if (online instanceof JsonPrimitive onlinePrimitive && onlinePrimitive.isBoolean()) {
+			flags |= FLAG_HAS_ONLINE;
+			if (onlinePrimitive.getAsBoolean()) {
+				flags |= FLAG_ONLINE;
+			}
+		}
+		JsonElement pluginData = root.get("pluginData");
+		if (pluginData != null && pluginData.isJsonObject()) {
+			flags |= FLAG_HAS_PLUGIN_DATA;
+		}
+		JsonElement heartbeat = root.get(HeartbeatDelta.HEARTBEAT_KEY);
+		if (heartbeat != null && heartbeat.isJsonObject()) {
+			flags |= FLAG_HAS_HEARTBEAT;
+		}
+
+		out.writeByte(BINARY_VERSION);
+		out.writeByte(flags);
+		out.writeUTF(root.get("source").getAsString());
+		out.writeUTF(root.get("dest").getAsString());
+		out.writeUTF(root.get("channel").getAsString());
+		if (pluginData != null && (flags & FLAG_HAS_PLUGIN_DATA) != 0) {
+			writeSection(out, pluginData);
+		}
+		writeSection(out, root.get("data"));
+		if (heartbeat != null && (flags & FLAG_HAS_HEARTBEAT) != 0) {
+			writeSection(out, heartbeat);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	static Envelope decode(@Nullable String contentType, byte[] body) throws IOException {
+		if (BINARY_CONTENT_TYPE.equals(contentType)) {
+			return decodeBinary(body);
+		}
+		return decodeJson(body);
+	}
+
+	private static Envelope decodeJson(byte[] body) throws IOException {
+		JsonObject root = parseObject(body, "message");
+		if (!root.has("channel") || !root.get("channel").isJsonPrimitive() || !root.get("channel").getAsJsonPrimitive().isString()) {
+			throw new IOException("Rabbit message missing 'channel': " + new String(body, StandardCharsets.UTF_8));
+		}
+		if (!root.has("source") || !root.get("source").isJsonPrimitive() || !root.get("source").getAsJsonPrimitive().isString()) {
+			throw new IOException("Rabbit message missing 'source': " + new String(body, StandardCharsets.UTF_8));
+		}
+		if (!root.has("data") || !root.get("data").isJsonObject()) {
+			throw new IOException("Rabbit message missing 'data': " + new String(body, StandardCharsets.UTF_8));
+		}
+
+		Boolean online = null;
+		if (root.get("online") instanceof JsonPrimitive onlinePrimitive && onlinePrimitive.isBoolean()) {
+			online = onlinePrimitive.getAsBoolean();
+		}
+
+		/* Check for heartbeat data - pluginData */
+		JsonObject pluginData = null;
+		JsonElement pluginDataElement = root.get("pluginData");
+		if (pluginDataElement != null && pluginDataElement.isJsonObject()) {
+			pluginData = pluginDataElement.getAsJsonObject();
+		}
+
+		JsonObject heartbeat = null;
+		if (root.get(HeartbeatDelta.HEARTBEAT_KEY) instanceof JsonObject heartbeatObject) {
+			heartbeat = heartbeatObject;
+		}
+
+		boolean supportsBinary = false;
+		if (root.get(BINARY_SUPPORT_KEY) instanceof JsonPrimitive versionPrimitive && versionPrimitive.isNumber()) {
+			supportsBinary = versionPrimitive.getAsInt() >= BINARY_VERSION;
+		}
+
+		return new Envelope(root.get("source").getAsString(), root.get("channel").getAsString(), online, pluginData,
+			heartbeat, LazyJsonObject.of(root.get("data").getAsJsonObject()), supportsBinary);
+	}
+
+	private static Envelope decodeBinary(byte[] body) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+		int version = in.readUnsignedByte();
+		if (version != BINARY_VERSION) {
+			throw new IOException("Unsupported binary message version " + version);
+		}
+		int flags = in.readUnsignedByte();
+		String source = in.readUTF();
+		in.readUTF(); // dest - routing is done by the broker
+		String channel = in.readUTF();
+
+		Boolean online = null;
+		if ((flags & FLAG_HAS_ONLINE) != 0) {
+			online = (flags & FLAG_ONLINE) != 0;
+		}
+
+		/* Heartbeat data is needed to track the source shard, so it is always decoded */
+		JsonObject pluginData = null;
+		if ((flags & FLAG_HAS_PLUGIN_DATA) != 0) {
+			pluginData = readSection(in, "pluginData").get();
+		}
+
+		LazyJsonObject data = readSection(in, "data");
+
+		JsonObject heartbeat = null;
+		if ((flags & FLAG_HAS_HEARTBEAT) != 0) {
+			heartbeat = readSection(in, "heartbeat").get();
+		}
+
+		return new Envelope(source, channel, online, pluginData, heartbeat, data, true);
+	}
+
+	private static void writeSection(DataOutputStream out, JsonElement element) throws IOException {
+		byte[] raw = GSON.toJson(element).getBytes(StandardCharsets.UTF_8);
+		if (raw.length >= COMPRESSION_THRESHOLD) {
+			byte[] deflated = deflate(raw);
+			if (deflated.length < raw.length) {
+				out.writeByte(SECTION_DEFLATED);
+				out.writeInt(raw.length);
+				out.writeInt(deflated.length);
+				out.write(deflated);
+				return;
+			}
+		}
+		out.writeByte(SECTION_RAW);
+		out.writeInt(raw.length);
+		out.write(raw);
+	}
+
+	private static LazyJsonObject readSection(DataInputStream in, String label) throws IOException {
+		int encoding = in.readUnsignedByte();
+		int rawLength = in.readInt();
+		int storedLength = rawLength;
+		if (encoding == SECTION_DEFLATED) {
+			storedLength = in.readInt();
+		} else if (encoding != SECTION_RAW) {
+			throw new IOException("Unknown encoding " + encoding + " for binary message " + label);
+		}
+		if (rawLength < 0 || storedLength < 0 || storedLength > in.available()) {
+			throw new IOException("Invalid length for binary message " + label);
+		}
+		byte[] stored = new byte[storedLength];
+		in.readFully(stored);
+		return new LazyJsonObject(stored, encoding == SECTION_DEFLATED, rawLength);
+	}
+
+	private static JsonObject parseObject(byte[] utf8, String label) throws IOException {
+		JsonObject result;
+		try {
+			result = GSON.fromJson(new InputStreamReader(new ByteArrayInputStream(utf8), StandardCharsets.UTF_8), JsonObject.class);
+		} catch (Exception ex) {
+			throw new IOException("Failed to parse rabbit " + label + " as json: " + ex.getMessage(), ex);
+		}
+		if (result == null) {
+			throw new IOException("Failed to parse rabbit " + label + " as json: " + new String(utf8, StandardCharsets.UTF_8));
+		}
+		return result;
+	}
+
+	static byte[] deflate(byte[] raw) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(raw);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2);
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	static byte[] inflate(byte[] deflated, int rawLength) throws IOException {
+		if (rawLength < 0 || rawLength > MAX_INFLATED_BYTES || rawLength > (long) deflated.length * MAX_DEFLATE_RATIO) {
+			throw new IOException("Invalid inflated length " + rawLength + " for " + deflated.length + " deflated bytes");
+		}
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(deflated);
+			byte[] raw = new byte[rawLength];
+			int offset = 0;
+			while (offset < rawLength && !inflater.finished()) {
+				int count = inflater.inflate(raw, offset, rawLength - offset);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				offset += count;
+			}
+			if (offset != rawLength) {
+				throw new IOException("Binary message section inflated to " + offset + " bytes, expected " + rawLength);
+			}
+			return raw;
+		} catch (DataFormatException ex) {
+			throw new IOException("Failed to inflate binary message section: " + ex.getMessage(), ex);
+		} finally {
+			inflater.end();
+		}
+	}
+}
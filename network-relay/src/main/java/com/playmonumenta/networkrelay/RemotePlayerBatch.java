@@ -0,0 +1,116 @@
+package com.playmonumenta.networkrelay;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/*
+ * Packs many players' remote data into a few messages, so a refresh costs one message per shard instead of one
+ * per player.
+ *
+ * Players are split into chunks of at most MAX_CHUNK_BYTES of JSON, each of which becomes one message. Small
+ * chunks carry the players as a plain "players" array; larger ones carry the same array deflated and base64
+ * encoded as "deflated", along with its "rawLength", whichever wire format the message is sent in.
+ *
+ * Shards that can read batches say so in their network relay heartbeat data (see SUPPORT_KEY); others are still
+ * sent one message per player.
+ */
+final class RemotePlayerBatch {
+	// Set to true in the network relay heartbeat data of shards that can read batches
+	static final String SUPPORT_KEY = "remote-player-batches";
+
+	// Uncompressed size at which a batch is split into another message
+	static final int MAX_CHUNK_BYTES = 64 * 1024;
+	// Largest chunk accepted when decoding; only a single unusually large player can push a chunk past MAX_CHUNK_BYTES
+	static final int MAX_DECODED_CHUNK_BYTES = MAX_CHUNK_BYTES * 16;
+	// Chunks smaller than this are sent uncompressed, as deflate would save little or nothing
+	static final int COMPRESSION_THRESHOLD = 512;
+
+	private static final String PLAYERS_KEY = "players";
+	private static final String DEFLATED_KEY = "deflated";
+	private static final String RAW_LENGTH_KEY = "rawLength";
+
+	private RemotePlayerBatch() {
+	}
+
+	/* Returns the message data for each chunk of the batch, in order */
+	static List<JsonObject> encode(List<? extends RemotePlayerAbstraction> players) {
+		List<JsonObject> messages = new ArrayList<>();
+		JsonArray chunk = new JsonArray();
+		int chunkBytes = 2;
+		for (RemotePlayerAbstraction player : players) {
+			JsonObject playerJson = player.toJson();
+			// Close enough; only the decision to split depends on it
+			int playerBytes = playerJson.toString().length() + 1;
+			if (chunk.size() > 0 && chunkBytes + playerBytes > MAX_CHUNK_BYTES) {
+				messages.add(encodeChunk(chunk));
+				chunk = new JsonArray();
+				chunkBytes = 2;
+			}
+			chunk.add(playerJson);
+			chunkBytes += playerBytes;
+		}
+		if (chunk.size() > 0) {
+			messages.add(encodeChunk(chunk));
+		}
+		return messages;
+	}
+
+	private static JsonObject encodeChunk(JsonArray chunk) {
+		JsonObject data = new JsonObject();
+		byte[] raw = chunk.toString().getBytes(StandardCharsets.UTF_8);
+		if (raw.length < COMPRESSION_THRESHOLD) {
+			data.add(PLAYERS_KEY, chunk);
+		} else {
+			data.addProperty(RAW_LENGTH_KEY, raw.length);
+			data.addProperty(DEFLATED_KEY, Base64.getEncoder().encodeToString(RelayMessageCodec.deflate(raw)));
+		}
+		return data;
+	}
+
+	/* Returns the remote data of each player in one chunk of a batch */
+	static List<JsonObject> decode(JsonObject data) throws IOException {
+		JsonArray chunk;
+		if (data.get(PLAYERS_KEY) instanceof JsonArray players) {
+			chunk = players;
+		} else if (data.get(DEFLATED_KEY) instanceof JsonPrimitive deflated && deflated.isString()
+			&& data.get(RAW_LENGTH_KEY) instanceof JsonPrimitive rawLength && rawLength.isNumber()) {
+			if (rawLength.getAsInt() < 0 || rawLength.getAsInt() > MAX_DECODED_CHUNK_BYTES) {
+				throw new IOException("Remote player batch has invalid " + RAW_LENGTH_KEY + ": " + rawLength);
+			}
+			byte[] raw;
+			try {
+				raw = RelayMessageCodec.inflate(Base64.getDecoder().decode(deflated.getAsString()), rawLength.getAsInt());
+			} catch (IllegalArgumentException ex) {
+				throw new IOException("Remote player batch is not valid base64: " + ex.getMessage(), ex);
+			}
+			JsonElement parsed;
+			try {
+				parsed = JsonParser.parseString(new String(raw, StandardCharsets.UTF_8));
+			} catch (Exception ex) {
+				throw new IOException("Failed to parse remote player batch as json: " + ex.getMessage(), ex);
+			}
+			if (!(parsed instanceof JsonArray players)) {
+				throw new IOException("Remote player batch is not a json array");
+			}
+			chunk = players;
+		} else {
+			throw new IOException("Remote player batch has neither " + PLAYERS_KEY + " nor " + DEFLATED_KEY);
+		}
+
+		List<JsonObject> result = new ArrayList<>(chunk.size());
+		for (JsonElement player : chunk) {
+			if (player instanceof JsonObject playerJson) {
+				result.add(playerJson);
+			}
+		}
+		return result;
+	}
+}
@@ -1,8 +1,11 @@
 package com.playmonumenta.networkrelay;
 
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import com.playmonumenta.networkrelay.util.MMLog;
+import java.io.IOException;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -17,6 +20,8 @@ public abstract class RemotePlayerManagerAbstraction {
 	public static final String REMOTE_PLAYER_CHANNEL_BASE = "monumenta.networkrelay.remote_player";
 	public static final String REMOTE_PLAYER_REFRESH_CHANNEL = REMOTE_PLAYER_CHANNEL_BASE + ".refresh";
 	public static final String REMOTE_PLAYER_UPDATE_CHANNEL = REMOTE_PLAYER_CHANNEL_BASE + ".update";
+	// Many players' data at once, see RemotePlayerBatch
+	public static final String REMOTE_PLAYER_BATCH_CHANNEL = REMOTE_PLAYER_CHANNEL_BASE + ".batch";
 
 	// Fast lookup of player by UUID
 	protected static final ConcurrentMap<UUID, RemotePlayerData> mRemotePlayersByUuid = new ConcurrentSkipListMap<>();
@@ -172,6 +177,28 @@ public abstract class RemotePlayerManagerAbstraction {
 		updateLocalPlayer(player, true, false);
 	}
 
+	// We received a batch of players' data from another server, add all of it
+	protected void remotePlayerBatch(JsonObject data) {
+		List<JsonObject> players;
+		try {
+			players = RemotePlayerBatch.decode(data);
+		} catch (IOException ex) {
+			MMLog.severe(() -> "Failed to read remote player batch: " + ex.getMessage());
+			return;
+		}
+		for (JsonObject playerData : players) {
+			// One malformed player must not stop the rest of the batch from being applied
+			RemotePlayerAbstraction player;
+			try {
+				player = RemotePlayerAbstraction.from(playerData);
+			} catch (Exception ex) {
+				MMLog.severe(() -> "Failed to read player from remote player batch: " + ex.getMessage());
+				continue;
+			}
+			updateLocalPlayer(player, true, false);
+		}
+	}
+
 	protected void remotePlayerRefresh(JsonObject data) {
 		if (data != null && data.has("uuid")) {
 			String uuidString = data.get("uuid").getAsString();
@@ -362,6 +389,51 @@ public abstract class RemotePlayerManagerAbstraction {
 		return true;
 	}
 
+	/**
+	 * Broadcast local players' data to other servers, as batches if every server can read them
+	 * @param players - local players whose changes should be broadcast
+	 */
+	protected void broadcastLocalPlayers(List<? extends RemotePlayerAbstraction> players) {
+		if (players.size() <= 1 || !allServersReadBatches()) {
+			for (RemotePlayerAbstraction player : players) {
+				player.broadcast();
+			}
+			return;
+		}
+
+		MMLog.debug(() -> "Broadcasting " + players.size() + " players as a batch");
+		for (JsonObject data : RemotePlayerBatch.encode(players)) {
+			try {
+				NetworkRelayAPI.sendExpiringBroadcastMessage(REMOTE_PLAYER_BATCH_CHANNEL,
+					data,
+					REMOTE_PLAYER_MESSAGE_TTL);
+			} catch (Exception ex) {
+				MMLog.severe(() -> "Failed to broadcast to channel " + REMOTE_PLAYER_BATCH_CHANNEL);
+			}
+		}
+	}
+
+	// Servers that keep track of remote players only see batches if they advertise support in their heartbeats
+	private boolean allServersReadBatches() {
+		String localServerId = getServerId();
+		for (String serverType : List.of(RemotePlayerMinecraft.SERVER_TYPE, RemotePlayerProxy.SERVER_TYPE)) {
+			for (String serverId : NetworkRelayAPI.getOnlineDestinationsOfType(serverType)) {
+				if (serverId.equals(localServerId)) {
+					continue;
+				}
+				@Nullable JsonObject networkRelayData
+					= NetworkRelayAPI.getHeartbeatPluginData(serverId, NetworkRelayAPI.NETWORK_RELAY_HEARTBEAT_IDENTIFIER);
+				if (networkRelayData == null
+					|| !(networkRelayData.get(RemotePlayerBatch.SUPPORT_KEY) instanceof JsonPrimitive support)
+					|| !support.isBoolean()
+					|| !support.getAsBoolean()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	protected void refreshRemotePlayer(UUID uuid) {
 		JsonObject data = new JsonObject();
 		data.addProperty("uuid", uuid.toString());
@@ -2,6 +2,8 @@ package com.playmonumenta.networkrelay;
 
 import com.google.gson.JsonObject;
 import com.playmonumenta.networkrelay.util.MMLog;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
@@ -117,9 +119,14 @@ public final class RemotePlayerManagerPaper extends RemotePlayerManagerAbstracti
 
 	@Override
 	void refreshLocalPlayers(boolean forceBroadcast) {
+		List<RemotePlayerMinecraft> toBroadcast = new ArrayList<>();
 		for (Player player : Bukkit.getOnlinePlayers()) {
-			refreshLocalPlayer(player, forceBroadcast);
+			RemotePlayerMinecraft localPlayer = fromLocal(player, true);
+			if (updateLocalPlayer(localPlayer, false, forceBroadcast)) {
+				toBroadcast.add(localPlayer);
+			}
 		}
+		broadcastLocalPlayers(toBroadcast);
 	}
 
 	@Override
@@ -258,6 +265,17 @@ public final class RemotePlayerManagerPaper extends RemotePlayerManagerAbstracti
 				}
 				break;
 			}
+			case REMOTE_PLAYER_BATCH_CHANNEL: {
+				@Nullable JsonObject data = event.getData();
+				if (!Objects.equals(event.getSource(), getServerId())) {
+					if (data == null) {
+						MMLog.severe(() -> "Got " + REMOTE_PLAYER_BATCH_CHANNEL + " channel with null data");
+						return;
+					}
+					remotePlayerBatch(data);
+				}
+				break;
+			}
 			case REMOTE_PLAYER_REFRESH_CHANNEL: {
 				@Nullable JsonObject data = event.getData();
 				remotePlayerRefresh(data);
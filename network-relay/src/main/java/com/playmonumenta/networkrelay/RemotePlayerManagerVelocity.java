@@ -12,6 +12,8 @@ import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.proxy.ServerConnection;
 import com.velocitypowered.api.scheduler.ScheduledTask;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
@@ -116,9 +118,14 @@ public final class RemotePlayerManagerVelocity extends RemotePlayerManagerAbstra
 
 	@Override
 	void refreshLocalPlayers(boolean forceBroadcast) {
+		List<RemotePlayerProxy> toBroadcast = new ArrayList<>();
 		for (Player player : mServer.getAllPlayers()) {
-			refreshLocalPlayer(player, forceBroadcast);
+			RemotePlayerProxy localPlayer = fromLocal(player, true);
+			if (updateLocalPlayer(localPlayer, false, forceBroadcast)) {
+				toBroadcast.add(localPlayer);
+			}
 		}
+		broadcastLocalPlayers(toBroadcast);
 	}
 
 	@Override
@@ -274,6 +281,17 @@ public final class RemotePlayerManagerVelocity extends RemotePlayerManagerAbstra
 				}
 				break;
 			}
+			case REMOTE_PLAYER_BATCH_CHANNEL: {
+				@Nullable JsonObject data = event.getData();
+				if (!Objects.equals(event.getSource(), getServerId())) {
+					if (data == null) {
+						MMLog.severe(() -> "Got " + REMOTE_PLAYER_BATCH_CHANNEL + " channel with null data");
+						break;
+					}
+					remotePlayerBatch(data);
+				}
+				break;
+			}
 			case REMOTE_PLAYER_REFRESH_CHANNEL: {
 				@Nullable JsonObject data = event.getData();
 				remotePlayerRefresh(data);
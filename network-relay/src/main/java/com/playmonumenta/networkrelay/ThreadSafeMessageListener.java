@@ -0,0 +1,11 @@
+package com.playmonumenta.networkrelay;
+
+/**
+ * Receives network relay messages on a channel, and can be called from any thread.
+ *
+ * @see NetworkRelayAPI#registerThreadSafeListener(String, ThreadSafeMessageListener)
+ */
+@FunctionalInterface
+public interface ThreadSafeMessageListener {
+	void onNetworkRelayMessage(NetworkRelayMessageEventGeneric event);
+}
@@ -1,5 +1,7 @@
 package com.playmonumenta.networkrelay.config;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -11,6 +13,11 @@ public class CommonConfig {
 	public static final int DEFAULT_HEARTBEAT_INTERVAL = 1;
 	public static final int DEFAULT_DESTINATION_TIMEOUT = 5;
 	public static final long DEFAULT_DEFAULT_TTL = 604800L;
+	public static final boolean DEFAULT_BINARY_WIRE_FORMAT = false;
+	public static final int DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL = 0;
+	public static final int DEFAULT_DISPATCH_THREADS = 0;
+	public static final boolean DEFAULT_BROADCAST_SUBSCRIPTIONS = false;
+	public static final List<String> DEFAULT_BROADCAST_CHANNELS = List.of();
 
 	public Level mLogLevel = DEFAULT_LOG_LEVEL;
 	public String mShardName = DEFAULT_SHARD_NAME;
@@ -18,6 +25,11 @@ public class CommonConfig {
 	public int mHeartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL;
 	public int mDestinationTimeout = DEFAULT_DESTINATION_TIMEOUT;
 	public long mDefaultTtl = DEFAULT_DEFAULT_TTL;
+	public boolean mBinaryWireFormat = DEFAULT_BINARY_WIRE_FORMAT;
+	public int mHeartbeatKeyframeInterval = DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL;
+	public int mDispatchThreads = DEFAULT_DISPATCH_THREADS;
+	public boolean mBroadcastSubscriptions = DEFAULT_BROADCAST_SUBSCRIPTIONS;
+	public List<String> mBroadcastChannels = DEFAULT_BROADCAST_CHANNELS;
 
 	protected void loadCommon(Logger logger, Map<String, Object> config) {
 		Level logLevel = null;
@@ -80,6 +92,33 @@ public class CommonConfig {
 		} else {
 			logger.info("default-time-to-live=" + mDefaultTtl);
 		}
+
+		mBinaryWireFormat = getBoolean(config, "binary-wire-format", DEFAULT_BINARY_WIRE_FORMAT);
+		logger.info("binary-wire-format=" + mBinaryWireFormat);
+
+		mHeartbeatKeyframeInterval = getInt(config, "heartbeat-keyframe-interval", DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL);
+		if (mHeartbeatKeyframeInterval < 0) {
+			logger.warning("heartbeat-keyframe-interval is < 0 which is invalid! Using default of "
+				+ DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL + ".");
+			mHeartbeatKeyframeInterval = DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL;
+		} else {
+			logger.info("heartbeat-keyframe-interval=" + mHeartbeatKeyframeInterval);
+		}
+
+		mDispatchThreads = getInt(config, "dispatch-threads", DEFAULT_DISPATCH_THREADS);
+		if (mDispatchThreads < 0) {
+			logger.warning("dispatch-threads is < 0 which is invalid! Using default of "
+				+ DEFAULT_DISPATCH_THREADS + ".");
+			mDispatchThreads = DEFAULT_DISPATCH_THREADS;
+		} else {
+			logger.info("dispatch-threads=" + mDispatchThreads);
+		}
+
+		mBroadcastSubscriptions = getBoolean(config, "broadcast-subscriptions", DEFAULT_BROADCAST_SUBSCRIPTIONS);
+		logger.info("broadcast-subscriptions=" + mBroadcastSubscriptions);
+
+		mBroadcastChannels = getStringList(config, "broadcast-channels", DEFAULT_BROADCAST_CHANNELS);
+		logger.info("broadcast-channels=" + mBroadcastChannels);
 	}
 
 	public static String getString(Map<String, Object> config, String key, String fallback) {
@@ -106,6 +145,21 @@ public class CommonConfig {
 		return fallback;
 	}
 
+	/* Non-string entries are skipped */
+	public static List<String> getStringList(Map<String, Object> config, String key, List<String> fallback) {
+		Object o = config.get(key);
+		if (!(o instanceof List<?> list)) {
+			return fallback;
+		}
+		List<String> result = new ArrayList<>();
+		for (Object entry : list) {
+			if (entry instanceof String string) {
+				result.add(string);
+			}
+		}
+		return result;
+	}
+
 	public static int getInt(Map<String, Object> config, String key, int fallback) {
 		Object o = config.get(key);
 		if (o instanceof Integer) {
@@ -6,7 +6,6 @@ import com.google.gson.JsonPrimitive;
 import com.playmonumenta.networkrelay.shardhealth.g1.G1GcHealth;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -59,25 +58,7 @@ public class ShardHealth implements ComponentLike {
 	 * @return The shard's health over a specified number of ticks
 	 */
 	public static ShardHealth averageHealth(int ticks) {
-		Iterator<ShardHealth> previousHealthIt = ShardHealthManager.previousInstantHealthIterator();
-		int remainingTicks = ticks;
-		int actualTicks = 0;
-
-		ShardHealth averageHealth = zeroHealth();
-		Map<String, JsonObject> allPluginDataSampleCounts = new HashMap<>();
-
-		while (remainingTicks > 0 && previousHealthIt.hasNext()) {
-			remainingTicks--;
-			actualTicks++;
-			ShardHealth prevHealth = previousHealthIt.next();
-			averageHealth.add(prevHealth, allPluginDataSampleCounts);
-		}
-
-		if (actualTicks <= 0) {
-			actualTicks = 1;
-		}
-
-		averageHealth.divide(actualTicks, allPluginDataSampleCounts);
+		ShardHealth averageHealth = ShardHealthManager.HISTORY.average(ticks);
 
 		for (Map.Entry<String, JsonObject> pluginDataEntry : averageHealth.mPluginData.entrySet()) {
 			String pluginIdentifier = pluginDataEntry.getKey();
@@ -228,22 +209,11 @@ public class ShardHealth implements ComponentLike {
 		return result;
 	}
 
-	protected void add(
-		ShardHealth sample,
+	protected void addPluginData(
+		Map<String, JsonObject> samplePluginDataMap,
 		Map<String, JsonObject> allPluginDataSampleCounts
 	) {
-		mMemoryHealth += sample.mMemoryHealth;
-		mTickHealth += sample.mTickHealth;
-
-		if (sample.mGcHealth != null) {
-			if (mGcHealth == null) {
-				mGcHealth = sample.mGcHealth;
-			} else {
-				mGcHealth = mGcHealth.add(sample.mGcHealth);
-			}
-		} // else GcHealth is the same anyways
-
-		for (Map.Entry<String, JsonObject> sampleDataEntry : sample.mPluginData.entrySet()) {
+		for (Map.Entry<String, JsonObject> sampleDataEntry : samplePluginDataMap.entrySet()) {
 			String pluginIdentifier = sampleDataEntry.getKey();
 			JsonObject samplePluginData = sampleDataEntry.getValue();
 			if (samplePluginData == null) {
@@ -265,17 +235,9 @@ public class ShardHealth implements ComponentLike {
 		}
 	}
 
-	protected void divide(
-		int divisor,
+	protected void dividePluginData(
 		Map<String, JsonObject> allPluginDataSampleCounts
 	) {
-		mMemoryHealth /= divisor;
-		mTickHealth /= divisor;
-
-		if (mGcHealth != null) {
-			mGcHealth = mGcHealth.divide(divisor);
-		}
-
 		for (Map.Entry<String, JsonObject> sampleDataEntry : new HashMap<>(mPluginData).entrySet()) {
 			String pluginIdentifier = sampleDataEntry.getKey();
 			JsonObject runningTotalPluginDataOriginal = sampleDataEntry.getValue();
@@ -0,0 +1,234 @@
+package com.playmonumenta.networkrelay.shardhealth;
+
+import com.google.gson.JsonObject;
+import com.playmonumenta.networkrelay.shardhealth.g1.G1GcHealth;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Fixed-size history of per-tick shard health samples.
+ * <p>
+ * Numeric values are stored one array per value, alongside running sums so the average
+ * over any window is a subtraction rather than a walk over every sample in it.
+ * Recording a sample writes into the preallocated arrays and does not allocate.
+ * <p>
+ * Plugin data is opaque to this plugin and can only be averaged through events,
+ * so the gathered maps are kept as-is and walked only when averaging.
+ * <p>
+ * Samples are recorded on the main thread; averages may be read from any thread.
+ */
+final class ShardHealthHistory {
+	private static final int MEMORY_HEALTH = 0;
+	private static final int TICK_HEALTH = 1;
+	private static final int GC_OLD_GEN_CYCLES = 2;
+	private static final int GC_OLD_GEN_FREED = 3;
+	private static final int GC_OLD_GEN_TIME = 4;
+	private static final int GC_YOUNG_GEN_CYCLES = 5;
+	private static final int GC_YOUNG_GEN_FREED = 6;
+	private static final int GC_YOUNG_GEN_TIME = 7;
+	private static final int GC_CONCURRENT_CYCLES = 8;
+	private static final int GC_CONCURRENT_FREED = 9;
+	private static final int GC_CONCURRENT_TIME = 10;
+	private static final int GC_OVERALL_CYCLES = 11;
+	private static final int GC_OVERALL_FREED = 12;
+	private static final int GC_OVERALL_TIME = 13;
+	// 1 for samples with GC health, so GC values are averaged only over the samples that have them
+	private static final int GC_SAMPLES = 14;
+	private static final int FIELD_COUNT = 15;
+
+	private final int mCapacity;
+	// mCumulative[field][k % (mCapacity + 1)] is the sum of the first k samples, less a per-field offset (see rebase)
+	private final double[][] mCumulative = new double[FIELD_COUNT][];
+	private final Map<String, JsonObject>[] mPluginData;
+	private long mSampleCount = 0;
+
+	@SuppressWarnings("unchecked")
+	ShardHealthHistory(int capacity) {
+		mCapacity = capacity;
+		for (int field = 0; field < FIELD_COUNT; field++) {
+			mCumulative[field] = new double[capacity + 1];
+		}
+		mPluginData = (Map<String, JsonObject>[]) new Map<?, ?>[capacity];
+	}
+
+	synchronized void record(
+		double memoryHealth,
+		double tickHealth,
+		@Nullable G1GcHealth gcHealth,
+		Map<String, JsonObject> pluginData
+	) {
+		int prevIndex = (int) (mSampleCount % (mCapacity + 1));
+		mSampleCount++;
+		int index = (int) (mSampleCount % (mCapacity + 1));
+
+		append(MEMORY_HEALTH, prevIndex, index, memoryHealth);
+		append(TICK_HEALTH, prevIndex, index, tickHealth);
+		if (gcHealth == null) {
+			for (int field = GC_OLD_GEN_CYCLES; field <= GC_SAMPLES; field++) {
+				append(field, prevIndex, index, 0.0);
+			}
+		} else {
+			append(GC_SAMPLES, prevIndex, index, 1.0);
+			append(GC_OLD_GEN_CYCLES, prevIndex, index, gcHealth.oldGenCycleInInterval());
+			append(GC_OLD_GEN_FREED, prevIndex, index, gcHealth.averageOldGenFreed());
+			append(GC_OLD_GEN_TIME, prevIndex, index, gcHealth.averageOldGenTime());
+			append(GC_YOUNG_GEN_CYCLES, prevIndex, index, gcHealth.youngGenCycleInInterval());
+			append(GC_YOUNG_GEN_FREED, prevIndex, index, gcHealth.averageYoungGenFreed());
+			append(GC_YOUNG_GEN_TIME, prevIndex, index, gcHealth.averageYoungGenTime());
+			append(GC_CONCURRENT_CYCLES, prevIndex, index, gcHealth.concurrentCycleInInterval());
+			append(GC_CONCURRENT_FREED, prevIndex, index, gcHealth.averageConcurrentFreed());
+			append(GC_CONCURRENT_TIME, prevIndex, index, gcHealth.averageConcurrentTime());
+			append(GC_OVERALL_CYCLES, prevIndex, index, gcHealth.overallCyclesInInterval());
+			append(GC_OVERALL_FREED, prevIndex, index, gcHealth.averageOverallFreed());
+			append(GC_OVERALL_TIME, prevIndex, index, gcHealth.averageOverallTime());
+		}
+
+		mPluginData[(int) ((mSampleCount - 1) % mCapacity)] = pluginData;
+
+		/*
+		 * The running sums grow forever, so every time the history wraps around,
+		 * shift them down to keep the subtraction in averages precise
+		 */
+		if (mSampleCount % mCapacity == 0) {
+			rebase();
+		}
+	}
+
+	/**
+	 * Returns the number of samples available to average, at most the capacity
+	 */
+	synchronized int size() {
+		return (int) Math.min(mSampleCount, mCapacity);
+	}
+
+	/**
+	 * Averages the most recent samples, up to the requested number of ticks.
+	 * Plugin data is summed and divided through the averaging events, most recent sample first.
+	 */
+	ShardHealth average(int ticks) {
+		double[] sums = new double[FIELD_COUNT];
+		Map<String, JsonObject>[] pluginDataSamples;
+		int sampleCount;
+
+		synchronized (this) {
+			sampleCount = Math.max(0, Math.min(ticks, size()));
+			int endIndex = (int) (mSampleCount % (mCapacity + 1));
+			int startIndex = (int) ((mSampleCount - sampleCount) % (mCapacity + 1));
+			for (int field = 0; field < FIELD_COUNT; field++) {
+				sums[field] = mCumulative[field][endIndex] - mCumulative[field][startIndex];
+			}
+
+			@SuppressWarnings("unchecked")
+			Map<String, JsonObject>[] samples = (Map<String, JsonObject>[]) new Map<?, ?>[sampleCount];
+			for (int i = 0; i < sampleCount; i++) {
+				samples[i] = mPluginData[(int) ((mSampleCount - 1 - i) % mCapacity)];
+			}
+			pluginDataSamples = samples;
+		}
+
+		int divisor = Math.max(1, sampleCount);
+		ShardHealth averageHealth = new ShardHealth(
+			sums[MEMORY_HEALTH] / divisor,
+			sums[TICK_HEALTH] / divisor,
+			gcHealth(sums, Math.max(1.0, sums[GC_SAMPLES])),
+			new HashMap<>(),
+			new HashMap<>()
+		);
+
+		Map<String, JsonObject> allPluginDataSampleCounts = new HashMap<>();
+		for (Map<String, JsonObject> pluginData : pluginDataSamples) {
+			averageHealth.addPluginData(pluginData, allPluginDataSampleCounts);
+		}
+		averageHealth.dividePluginData(allPluginDataSampleCounts);
+
+		return averageHealth;
+	}
+
+	/**
+	 * Iterates over the recorded samples, most recent first. Plugin health factors are not kept for each sample,
+	 * so the returned samples have none. Stops early once newer samples overwrite the ones not yet returned.
+	 */
+	Iterator<ShardHealth> newestFirst() {
+		long newestSample;
+		synchronized (this) {
+			newestSample = mSampleCount;
+		}
+
+		return new Iterator<>() {
+			// Number of the next sample to return, counting from 1 for the first sample ever recorded
+			long mNextSample = newestSample;
+
+			@Override
+			public boolean hasNext() {
+				synchronized (ShardHealthHistory.this) {
+					return mNextSample > 0 && mNextSample > mSampleCount - mCapacity;
+				}
+			}
+
+			@Override
+			public ShardHealth next() {
+				synchronized (ShardHealthHistory.this) {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					ShardHealth sample = sample(mNextSample);
+					mNextSample--;
+					return sample;
+				}
+			}
+		};
+	}
+
+	private ShardHealth sample(long sampleNumber) {
+		int index = (int) (sampleNumber % (mCapacity + 1));
+		int prevIndex = (int) ((sampleNumber - 1) % (mCapacity + 1));
+		double[] values = new double[FIELD_COUNT];
+		for (int field = 0; field < FIELD_COUNT; field++) {
+			values[field] = mCumulative[field][index] - mCumulative[field][prevIndex];
+		}
+
+		return new ShardHealth(
+			values[MEMORY_HEALTH],
+			values[TICK_HEALTH],
+			values[GC_SAMPLES] > 0.5 ? gcHealth(values, 1.0) : null,
+			new HashMap<>(mPluginData[(int) ((sampleNumber - 1) % mCapacity)]),
+			new HashMap<>()
+		);
+	}
+
+	private static G1GcHealth gcHealth(double[] sums, double divisor) {
+		return new G1GcHealth(
+			sums[GC_OLD_GEN_CYCLES] / divisor,
+			sums[GC_OLD_GEN_FREED] / divisor,
+			sums[GC_OLD_GEN_TIME] / divisor,
+			sums[GC_YOUNG_GEN_CYCLES] / divisor,
+			sums[GC_YOUNG_GEN_FREED] / divisor,
+			sums[GC_YOUNG_GEN_TIME] / divisor,
+			sums[GC_CONCURRENT_CYCLES] / divisor,
+			sums[GC_CONCURRENT_FREED] / divisor,
+			sums[GC_CONCURRENT_TIME] / divisor,
+			sums[GC_OVERALL_CYCLES] / divisor,
+			sums[GC_OVERALL_FREED] / divisor,
+			sums[GC_OVERALL_TIME] / divisor
+		);
+	}
+
+	private void append(int field, int prevIndex, int index, double value) {
+		double[] cumulative = mCumulative[field];
+		cumulative[index] = cumulative[prevIndex] + value;
+	}
+
+	private void rebase() {
+		// The oldest running sum still needed becomes zero; differences between the stored sums are unchanged
+		int oldestIndex = (int) ((mSampleCount - mCapacity) % (mCapacity + 1));
+		for (double[] cumulative : mCumulative) {
+			double base = cumulative[oldestIndex];
+			for (int i = 0; i < cumulative.length; i++) {
+				cumulative[i] -= base;
+			}
+		}
+	}
+}
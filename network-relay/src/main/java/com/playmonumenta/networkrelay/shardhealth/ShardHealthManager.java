@@ -1,16 +1,24 @@
 package com.playmonumenta.networkrelay.shardhealth;
 
+import com.google.gson.JsonObject;
 import com.playmonumenta.networkrelay.NetworkRelay;
 import com.playmonumenta.networkrelay.NetworkRelayAPI;
+import com.playmonumenta.networkrelay.shardhealth.g1.G1GcHealth;
 import com.playmonumenta.networkrelay.shardhealth.g1.G1Listener;
 import com.playmonumenta.networkrelay.util.MMLog;
 import dev.jorel.commandapi.CommandAPICommand;
 import dev.jorel.commandapi.arguments.ArgumentSuggestions;
 import dev.jorel.commandapi.arguments.TextArgument;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.JoinConfiguration;
@@ -30,9 +38,44 @@ public class ShardHealthManager {
 
 	public static final G1Listener G1_LISTENER = new G1Listener();
 
-	private static @Nullable BukkitRunnable mRunnable = null;
-	private static int mRotatingShardHealthLastUpdate = 0;
-	private static final List<ShardHealth> mRotatingShardHealth = new ArrayList<>();
+	// Intentionally 1 higher to avoid issues with async code
+	static final ShardHealthHistory HISTORY = new ShardHealthHistory(MAX_TICKS_FOR_AVERAGES + 1);
+
+	// Written on the main thread, read by awaitShardHealth from any thread
+	private static volatile @Nullable BukkitRunnable mRunnable = null;
+
+	/*
+	 * Callers of awaitShardHealth, checked on an async thread once per tick of the running average clock instead of
+	 * each polling on its own thread, and once as soon as they are added. Waiters with the same target share a single
+	 * health check. New waiters may be added from any thread and are moved into WAITERS by the checks, which hold
+	 * its lock while touching it.
+	 */
+	private record HealthTarget(double minHealthScore, double minMemoryHealth, double minTickHealth, int averageOverTicks) {
+	}
+
+	private static final class HealthWaiter {
+		private final HealthTarget mTarget;
+		private final Audience mAudience;
+		private final long mMaintainHealthForTicks;
+		private final CompletableFuture<Void> mFuture;
+		private long mHealthyTicksRemaining;
+		private boolean mFirstRun = true;
+
+		private HealthWaiter(HealthTarget target, Audience audience, long maintainHealthForTicks, CompletableFuture<Void> future) {
+			mTarget = target;
+			mAudience = audience;
+			mMaintainHealthForTicks = maintainHealthForTicks;
+			mFuture = future;
+			mHealthyTicksRemaining = maintainHealthForTicks;
+		}
+	}
+
+	private static final Queue<HealthWaiter> NEW_WAITERS = new ConcurrentLinkedQueue<>();
+	private static final Map<HealthTarget, List<HealthWaiter>> WAITERS = new HashMap<>();
+	// Whether WAITERS had waiters after the last check, so the clock only schedules checks while someone is waiting
+	private static volatile boolean mHasWaiters = false;
+	// Set while a per-tick check is scheduled or running; ticks that pass meanwhile are skipped rather than queued up
+	private static final AtomicBoolean TICK_CHECK_PENDING = new AtomicBoolean(false);
 
 	public static void init() {
 		if (!G1_LISTENER.beginListen()) {
@@ -51,14 +94,7 @@ public class ShardHealthManager {
 
 		CommandAPICommand averageDebugSubcommand = new CommandAPICommand("averagedebug")
 			.executes((sender, args) -> {
-				sender.sendMessage(Component.text("Rotating shard health length: " + mRotatingShardHealth.size(), NamedTextColor.GOLD));
-				int i = 0;
-				Iterator<ShardHealth> it = previousInstantHealthIterator();
-				while (it.hasNext()) {
-					i++;
-					it.next();
-				}
-				sender.sendMessage(Component.text("Iterator size: " + i, NamedTextColor.GOLD));
+				sender.sendMessage(Component.text("Shard health history length: " + HISTORY.size(), NamedTextColor.GOLD));
 			});
 
 		CommandAPICommand remoteSubcommand = new CommandAPICommand("remote")
@@ -94,7 +130,7 @@ public class ShardHealthManager {
 
 	/**
 	 * Pause execution until shard performance improves enough to continue
-	 * If the health starts in good condition, continues immediately
+	 * If the health starts in good condition, continues as soon as one async health check confirms it
 	 * This version attempts to provide sane defaults
 	 *
 	 * @param audience The players to notify of paused execution via actionbar messages
@@ -112,7 +148,7 @@ public class ShardHealthManager {
 
 	/**
 	 * Pause execution until shard performance improves enough to continue
-	 * If the health starts in good condition, continues immediately
+	 * If the health starts in good condition, continues as soon as one async health check confirms it
 	 *
 	 * @param audience               The players to notify of paused execution via actionbar messages
 	 * @param minHealthScore         The minimum overall health required to continue;
@@ -120,7 +156,8 @@ public class ShardHealthManager {
 	 * @param minTargetHealth        The specific health score targets to meet
 	 * @param maintainHealthForTicks The number of ticks the shard must remain healthy before the pause ends; 0 to disable
 	 * @param averageOverTicks       Get the average shard health over this many ticks
-	 * @return A CompletableFuture to wait for completion of before continuing
+	 * @return A CompletableFuture to wait for completion of before continuing;
+	 *         cancelled if the running average clock is not running or stops first
 	 */
 	public static CompletableFuture<Void> awaitShardHealth(
 		@Nullable Audience audience,
@@ -134,73 +171,135 @@ public class ShardHealthManager {
 		if (audience == null) {
 			audience = Audience.empty();
 		}
-		Audience finalAudience = audience;
 
 		if (minTargetHealth == null) {
 			minTargetHealth = ShardHealth.zeroHealth();
 		}
-		ShardHealth finalMinTargetHealth = minTargetHealth;
 
-		Bukkit.getScheduler().runTaskAsynchronously(NetworkRelay.getInstance(), () -> {
-			boolean firstRun = true;
-			long healthyTicksRemaining = maintainHealthForTicks;
-			while (true) {
-				List<Component> delayBecauseOf = new ArrayList<>();
+		HealthTarget target = new HealthTarget(
+			minHealthScore,
+			minTargetHealth.memoryHealth(),
+			minTargetHealth.tickHealth(),
+			averageOverTicks
+		);
+		HealthWaiter waiter = new HealthWaiter(target, audience, maintainHealthForTicks, future);
+		NEW_WAITERS.add(waiter);
+		// Checked after adding, so either this sees the clock stopped or stopRunningAverageClock sees the waiter
+		if (mRunnable == null) {
+			NEW_WAITERS.remove(waiter);
+			future.cancel(false);
+		} else {
+			// Check right away rather than on the next tick, so a healthy shard continues without delay
+			Bukkit.getScheduler().runTaskAsynchronously(NetworkRelay.getInstance(), () -> checkWaiters(false));
+		}
 
-				ShardHealth currentHealth = ShardHealth.averageHealth(averageOverTicks);
+		return future;
+	}
 
-				if (currentHealth.healthScore() < minHealthScore) {
-					delayBecauseOf.add(Component.text("low overall shard health"));
-				}
+	/*
+	 * Called on an async thread, once per tick after the latest health sample is recorded (newTick), and whenever a
+	 * waiter is added. Only the per-tick checks advance waiters that have already been checked, so those still count
+	 * healthy ticks; the others only give new waiters their first check.
+	 */
+	private static void checkWaiters(boolean newTick) {
+		synchronized (WAITERS) {
+			HealthWaiter newWaiter;
+			while ((newWaiter = NEW_WAITERS.poll()) != null) {
+				WAITERS.computeIfAbsent(newWaiter.mTarget, k -> new ArrayList<>()).add(newWaiter);
+			}
+			checkWaitersLocked(newTick);
+			mHasWaiters = !WAITERS.isEmpty();
+		}
+	}
 
-				if (currentHealth.memoryHealth() < finalMinTargetHealth.memoryHealth()) {
-					delayBecauseOf.add(Component.text("low memory"));
-				}
+	private static void checkWaitersLocked(boolean newTick) {
+		if (WAITERS.isEmpty()) {
+			return;
+		}
 
-				if (currentHealth.tickHealth() < finalMinTargetHealth.tickHealth()) {
-					delayBecauseOf.add(Component.text("low mspt"));
+		Map<Integer, ShardHealth> healthByAverageTicks = new HashMap<>();
+		List<CompletableFuture<Void>> completed = new ArrayList<>();
+		Iterator<Map.Entry<HealthTarget, List<HealthWaiter>>> targetIter = WAITERS.entrySet().iterator();
+		while (targetIter.hasNext()) {
+			Map.Entry<HealthTarget, List<HealthWaiter>> entry = targetIter.next();
+			HealthTarget target = entry.getKey();
+			List<HealthWaiter> waiters = entry.getValue();
+			if (!newTick && waiters.stream().noneMatch(waiter -> waiter.mFirstRun)) {
+				continue;
+			}
+
+			ShardHealth currentHealth = healthByAverageTicks.computeIfAbsent(target.averageOverTicks(), ShardHealth::averageHealth);
+			List<Component> delayBecauseOf = new ArrayList<>();
+
+			if (currentHealth.healthScore() < target.minHealthScore()) {
+				delayBecauseOf.add(Component.text("low overall shard health"));
+			}
+
+			if (currentHealth.memoryHealth() < target.minMemoryHealth()) {
+				delayBecauseOf.add(Component.text("low memory"));
+			}
+
+			if (currentHealth.tickHealth() < target.minTickHealth()) {
+				delayBecauseOf.add(Component.text("low mspt"));
+			}
+
+			Iterator<HealthWaiter> waiterIter = waiters.iterator();
+			while (waiterIter.hasNext()) {
+				HealthWaiter waiter = waiterIter.next();
+				if (waiter.mFuture.isDone()) {
+					// Cancelled by the caller
+					waiterIter.remove();
+					continue;
+				}
+				if (!newTick && !waiter.mFirstRun) {
+					continue;
 				}
 
 				if (delayBecauseOf.isEmpty()) {
-					healthyTicksRemaining--;
-					if (firstRun || healthyTicksRemaining <= 0L) {
-						break;
+					waiter.mHealthyTicksRemaining--;
+					if (waiter.mFirstRun || waiter.mHealthyTicksRemaining <= 0L) {
+						completed.add(waiter.mFuture);
+						waiterIter.remove();
+						continue;
 					}
-					delayBecauseOf.add(Component.text("health verification"));
-				} else {
-					firstRun = false;
-					healthyTicksRemaining = maintainHealthForTicks;
-				}
-
-				JoinConfiguration joinConfig;
-				if (delayBecauseOf.size() == 2) {
-					joinConfig = JoinConfiguration.separator(Component.text(" and "));
+					sendDelayMessage(waiter.mAudience, List.of(Component.text("health verification")));
 				} else {
-					joinConfig = JoinConfiguration.separators(
-						Component.text(", "),
-						Component.text(", and ")
-					);
+					waiter.mFirstRun = false;
+					waiter.mHealthyTicksRemaining = waiter.mMaintainHealthForTicks;
+					sendDelayMessage(waiter.mAudience, delayBecauseOf);
 				}
+			}
 
-				finalAudience.sendActionBar(Component.text(
-						"Delaying due to ",
-						NamedTextColor.YELLOW
-					)
-					.append(Component.join(
-						joinConfig,
-						delayBecauseOf
-					)));
-
-				CompletableFuture<Void> delayThreadFuture = new CompletableFuture<>();
-				Bukkit.getScheduler().runTaskLater(NetworkRelay.getInstance(),
-					() -> delayThreadFuture.complete(null), 1L);
-				delayThreadFuture.join();
+			if (waiters.isEmpty()) {
+				targetIter.remove();
 			}
+		}
 
+		// Still off the main thread, so callers' continuations run asynchronously as they always have
+		for (CompletableFuture<Void> future : completed) {
 			future.complete(null);
-		});
+		}
+	}
 
-		return future;
+	private static void sendDelayMessage(Audience audience, List<Component> delayBecauseOf) {
+		JoinConfiguration joinConfig;
+		if (delayBecauseOf.size() == 2) {
+			joinConfig = JoinConfiguration.separator(Component.text(" and "));
+		} else {
+			joinConfig = JoinConfiguration.separators(
+				Component.text(", "),
+				Component.text(", and ")
+			);
+		}
+
+		audience.sendActionBar(Component.text(
+				"Delaying due to ",
+				NamedTextColor.YELLOW
+			)
+			.append(Component.join(
+				joinConfig,
+				delayBecauseOf
+			)));
 	}
 
 	/**
@@ -250,12 +349,19 @@ public class ShardHealthManager {
 			return;
 		}
 
-		mRunnable = new BukkitRunnable() {
+		BukkitRunnable runnable = new BukkitRunnable() {
 			int mTicksUntilHeapDump = LOW_MEMORY_EVENT_AFTER_TICKS;
 
 			@Override
 			public void run() {
-				ShardHealth instantHealth = ShardHealth.instantHealth();
+				/*
+				 * Only the values that are averaged are sampled here; plugin health factors
+				 * are computed from the averaged plugin data, not from each tick's sample
+				 */
+				double memoryHealth = unallocatedMemoryPercent();
+				double tickHealth = lastTickUnusedPercent();
+				G1GcHealth gcHealth = G1_LISTENER.getHealth();
+				Map<String, JsonObject> pluginData = gatherPluginData();
 
 				// First tick (0) has no data to record
 				int lastTick = Bukkit.getCurrentTick() - 1;
@@ -265,19 +371,20 @@ public class ShardHealthManager {
 
 				G1_LISTENER.tick();
 
-				// Intentionally 1 higher to avoid issues with async code
-				int maxSizeForAverages = MAX_TICKS_FOR_AVERAGES + 1;
-				if (mRotatingShardHealth.size() < maxSizeForAverages) {
-					mRotatingShardHealth.add(instantHealth);
-					mRotatingShardHealthLastUpdate = lastTick;
-				} else {
-					int writeIndex = lastTick % maxSizeForAverages;
-					mRotatingShardHealth.set(writeIndex, instantHealth);
-					mRotatingShardHealthLastUpdate = writeIndex;
+				HISTORY.record(memoryHealth, tickHealth, gcHealth, pluginData);
+				// Averaging calls plugins' events for every sample, so it is kept off the main thread
+				if ((mHasWaiters || !NEW_WAITERS.isEmpty()) && TICK_CHECK_PENDING.compareAndSet(false, true)) {
+					Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+						try {
+							checkWaiters(true);
+						} finally {
+							TICK_CHECK_PENDING.set(false);
+						}
+					});
 				}
 
 				// Memory check for automated low memory handling
-				if (instantHealth.memoryHealth() >= LOW_MEMORY_EVENT_HEALTH_THRESHOLD) {
+				if (memoryHealth >= LOW_MEMORY_EVENT_HEALTH_THRESHOLD) {
 					mTicksUntilHeapDump = LOW_MEMORY_EVENT_AFTER_TICKS;
 				} else {
 					mTicksUntilHeapDump--;
@@ -291,49 +398,52 @@ public class ShardHealthManager {
 			}
 		};
 
-		mRunnable.runTaskTimer(plugin, 0L, 1L);
+		mRunnable = runnable;
+		runnable.runTaskTimer(plugin, 0L, 1L);
 	}
 
 	public static void stopRunningAverageClock() {
-		if (mRunnable == null) {
+		BukkitRunnable runnable = mRunnable;
+		if (runnable == null) {
 			return;
 		}
-		mRunnable.cancel();
+		runnable.cancel();
 		mRunnable = null;
+
+		// Nothing will check these again
+		synchronized (WAITERS) {
+			HealthWaiter newWaiter;
+			while ((newWaiter = NEW_WAITERS.poll()) != null) {
+				newWaiter.mFuture.cancel(false);
+			}
+			for (List<HealthWaiter> waiters : WAITERS.values()) {
+				for (HealthWaiter waiter : waiters) {
+					waiter.mFuture.cancel(false);
+				}
+			}
+			WAITERS.clear();
+			mHasWaiters = false;
+		}
 	}
 
 	/**
 	 * Returns an iterator of shard health for each of the previous ticks, starting with the previous tick and working backwards.
-	 * Stops iterating when out of ticks with health data, or when the rotating list catches up with the last written tick
+	 * Stops iterating when out of ticks with health data, or when newer ticks overwrite the ones not yet returned.
+	 * Plugin health factors are not kept for each tick, so the returned health has none; see ShardHealth::averageHealth
 	 *
 	 * @return An iterator of previous shard health
 	 */
 	public static Iterator<ShardHealth> previousInstantHealthIterator() {
-		int initialRawIndex = mRotatingShardHealthLastUpdate - 1;
-		if (initialRawIndex < 0) {
-			initialRawIndex += mRotatingShardHealth.size();
-		}
-		int finalInitialRawIndex = initialRawIndex;
-
-		return new Iterator<>() {
-			int mRemaining = mRotatingShardHealth.size() - 1;
-			int mRawIndex = finalInitialRawIndex;
-
-			@Override
-			public boolean hasNext() {
-				return mRemaining > 0 && mRawIndex != mRotatingShardHealthLastUpdate;
-			}
+		return HISTORY.newestFirst();
+	}
 
-			@Override
-			public ShardHealth next() {
-				ShardHealth result = mRotatingShardHealth.get(mRawIndex);
-				mRawIndex--;
-				if (mRawIndex < 0) {
-					mRawIndex += mRotatingShardHealth.size();
-				}
-				mRemaining--;
-				return result;
-			}
-		};
+	// Skips creating and calling the event when no plugin listens for it
+	private static Map<String, JsonObject> gatherPluginData() {
+		if (GatherShardHealthDataEvent.getHandlerList().getRegisteredListeners().length == 0) {
+			return Collections.emptyMap();
+		}
+		GatherShardHealthDataEvent gatherDataEvent = new GatherShardHealthDataEvent();
+		Bukkit.getPluginManager().callEvent(gatherDataEvent);
+		return gatherDataEvent.getPluginData();
 	}
 }
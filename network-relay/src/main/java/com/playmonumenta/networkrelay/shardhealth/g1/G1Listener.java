@@ -12,6 +12,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.management.NotificationBroadcaster;
 import javax.management.openmbean.CompositeData;
 import org.bukkit.Bukkit;
+import org.jetbrains.annotations.Nullable;
 
 public class G1Listener {
 	private static final int TICKS_PER_MINUTE = 20 * 60;
@@ -36,9 +37,19 @@ public class G1Listener {
 			this.mWindow = window;
 		}
 
-		public void tick() {
+		// Returns true if any cycles left the window
+		public boolean tick() {
 			final var currTick = Bukkit.getCurrentTick();
-			mCycleTicks.removeIf(tickId -> tickId + mWindow <= currTick);
+			// Cycle ticks are added in order, so expired ones are always at the front
+			int expired = 0;
+			while (expired < mCycleTicks.size() && mCycleTicks.get(expired) + mWindow <= currTick) {
+				expired++;
+			}
+			if (expired == 0) {
+				return false;
+			}
+			mCycleTicks.subList(0, expired).clear();
+			return true;
 		}
 
 		public void handleEvent(G1GcCycleInfo info) {
@@ -70,12 +81,20 @@ public class G1Listener {
 
 	private final ConcurrentLinkedQueue<G1GcCycleInfo> mEventQueue = new ConcurrentLinkedQueue<>();
 
+	// Health only changes when a cycle is recorded or expires, so it is cached between those
+	private @Nullable G1GcHealth mHealth = null;
+
 	public void tick() {
 		// evict old stuff
-		mAllTrackers.forEach(GcTracker::tick);
+		for (GcTracker tracker : mAllTrackers) {
+			if (tracker.tick()) {
+				mHealth = null;
+			}
+		}
 
 		G1GcCycleInfo info;
 		while ((info = mEventQueue.poll()) != null) {
+			mHealth = null;
 			switch (info.type()) {
 				case OLD -> mOldGenTracker.handleEvent(info);
 				case YOUNG -> mYoungGenTracker.handleEvent(info);
@@ -89,7 +108,11 @@ public class G1Listener {
 	}
 
 	public G1GcHealth getHealth() {
-		return new G1GcHealth(
+		G1GcHealth health = mHealth;
+		if (health != null) {
+			return health;
+		}
+		health = new G1GcHealth(
 			mOldGenTracker.cyclesInWindow(),
 			mOldGenTracker.averageFreedCount(),
 			mOldGenTracker.averageTime(),
@@ -103,6 +126,8 @@ public class G1Listener {
 			mOverallTracker.averageFreedCount(),
 			mOverallTracker.averageTime()
 		);
+		mHealth = health;
+		return health;
 	}
 
 	private static long getUsed(Map<String, MemoryUsage> map, String pool) {
@@ -0,0 +1,78 @@
+package com.playmonumenta.networkrelay;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AckWatermarkTest {
+
+	private static AckWatermark receivedUpTo(long lastDeliveryTag) {
+		AckWatermark watermark = new AckWatermark();
+		for (long deliveryTag = 1; deliveryTag <= lastDeliveryTag; deliveryTag++) {
+			watermark.received(deliveryTag);
+		}
+		return watermark;
+	}
+
+	@Test
+	void nothingReceived() {
+		AckWatermark watermark = new AckWatermark();
+		assertEquals(0, watermark.advance());
+	}
+
+	@Test
+	void inOrder() {
+		AckWatermark watermark = receivedUpTo(3);
+		assertEquals(0, watermark.advance(), "Acknowledged before anything was processed");
+
+		watermark.processed(1);
+		assertEquals(1, watermark.advance());
+		watermark.processed(2);
+		watermark.processed(3);
+		assertEquals(3, watermark.advance());
+		assertEquals(0, watermark.advance(), "Acknowledged the same deliveries twice");
+	}
+
+	@Test
+	void outOfOrder() {
+		AckWatermark watermark = receivedUpTo(5);
+
+		// Later deliveries finishing first must not be acknowledged past the oldest one still in progress
+		watermark.processed(3);
+		watermark.processed(5);
+		assertEquals(0, watermark.advance(), "Acknowledged past delivery 1, which is still in progress");
+
+		watermark.processed(1);
+		assertEquals(1, watermark.advance(), "Acknowledged past delivery 2, which is still in progress");
+
+		watermark.processed(2);
+		assertEquals(3, watermark.advance(), "Acknowledged past delivery 4, which is still in progress");
+
+		watermark.processed(4);
+		assertEquals(5, watermark.advance());
+	}
+
+	@Test
+	void receivedWhileProcessing() {
+		AckWatermark watermark = receivedUpTo(2);
+		watermark.processed(2);
+		watermark.received(3);
+		watermark.received(4);
+		watermark.processed(1);
+		watermark.processed(4);
+		assertEquals(2, watermark.advance(), "Acknowledged past delivery 3, which is still in progress");
+
+		watermark.processed(3);
+		assertEquals(4, watermark.advance());
+	}
+
+	@Test
+	void processedTwice() {
+		AckWatermark watermark = receivedUpTo(2);
+		watermark.processed(1);
+		watermark.processed(1);
+		assertEquals(1, watermark.advance());
+		watermark.processed(1);
+		assertEquals(0, watermark.advance(), "Processing a delivery again acknowledged more deliveries");
+	}
+}
@@ -0,0 +1,67 @@
+package com.playmonumenta.networkrelay;
+
+import com.google.gson.JsonObject;
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageDispatcherTest {
+
+	private record Ack(long mDeliveryTag, boolean mMultiple) {
+	}
+
+	// A channel that only records acknowledgements
+	private static Channel recordingChannel(List<Ack> acks) {
+		return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] {Channel.class},
+			(proxy, method, args) -> {
+				if (method.getName().equals("basicAck")) {
+					acks.add(new Ack((Long) args[0], (Boolean) args[1]));
+					return null;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			});
+	}
+
+	@Test
+	void withoutDispatchThreads() throws IOException {
+		List<Ack> acks = new CopyOnWriteArrayList<>();
+		MessageDispatcher dispatcher = new MessageDispatcher(recordingChannel(acks), 0);
+
+		dispatcher.received(1);
+		dispatcher.received(2);
+		dispatcher.acknowledge(2);
+		dispatcher.acknowledge(1);
+		assertEquals(List.of(new Ack(2, false), new Ack(1, false)), acks);
+		dispatcher.stop();
+	}
+
+	@Test
+	void dispatchedMessagesAcknowledgedInOrder() {
+		List<Ack> acks = new CopyOnWriteArrayList<>();
+		MessageDispatcher dispatcher = new MessageDispatcher(recordingChannel(acks), 4);
+
+		int messages = 200;
+		for (long deliveryTag = 1; deliveryTag <= messages; deliveryTag++) {
+			dispatcher.received(deliveryTag);
+			// Different sources are handled on different threads, so they finish in any order
+			dispatcher.dispatch("test.unhandled", "shard-" + (deliveryTag % 7), JsonObject::new, deliveryTag);
+		}
+		dispatcher.stop();
+
+		assertFalse(acks.isEmpty(), "No messages were acknowledged");
+		long previous = 0;
+		for (Ack ack : acks) {
+			assertTrue(ack.mMultiple(), "Dispatched messages should be acknowledged in batches");
+			assertTrue(ack.mDeliveryTag() > previous, () -> "Acknowledgements went backwards: " + acks);
+			previous = ack.mDeliveryTag();
+		}
+		assertEquals(messages, previous, "Not every dispatched message was acknowledged on stop");
+	}
+}
@@ -0,0 +1,167 @@
+package com.playmonumenta.networkrelay;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RelayMessageCodecTest {
+
+	private static JsonObject createRoot(JsonObject data) {
+		JsonObject root = new JsonObject();
+		root.addProperty("source", "valley");
+		root.addProperty("dest", "isles");
+		root.addProperty("channel", "test.channel");
+		root.add("data", data);
+		return root;
+	}
+
+	private static JsonObject createSmallData() {
+		JsonObject data = new JsonObject();
+		data.addProperty("message", "Hello world");
+		data.addProperty("count", 3);
+		return data;
+	}
+
+	// Repetitive, so it deflates well, and well over the compression threshold
+	private static JsonObject createLargeData() {
+		JsonArray players = new JsonArray();
+		for (int i = 0; i < 100; i++) {
+			JsonObject player = new JsonObject();
+			player.addProperty("name", "player" + i);
+			player.addProperty("shard", "valley");
+			player.addProperty("online", true);
+			players.add(player);
+		}
+		JsonObject data = new JsonObject();
+		data.add("players", players);
+		return data;
+	}
+
+	@Test
+	void jsonRoundTrip() throws IOException {
+		JsonObject data = createSmallData();
+		JsonObject root = createRoot(data);
+		root.addProperty("online", true);
+		JsonObject pluginData = new JsonObject();
+		pluginData.addProperty("version", "1.0");
+		root.add("pluginData", pluginData);
+		root.addProperty(RelayMessageCodec.BINARY_SUPPORT_KEY, RelayMessageCodec.BINARY_VERSION);
+
+		RelayMessageCodec.Envelope envelope = RelayMessageCodec.decode(null, RelayMessageCodec.encodeJson(root));
+		assertEquals("valley", envelope.mSource);
+		assertEquals("test.channel", envelope.mChannel);
+		assertEquals(Boolean.TRUE, envelope.mOnline);
+		assertEquals(pluginData, envelope.mPluginData);
+		assertNull(envelope.mHeartbeat);
+		assertEquals(data, envelope.mData.get());
+		assertTrue(envelope.mSupportsBinary, "Binary support key was not read from the JSON message");
+	}
+
+	@Test
+	void jsonWithoutOptionalFields() throws IOException {
+		JsonObject data = createSmallData();
+
+		RelayMessageCodec.Envelope envelope = RelayMessageCodec.decode(null, RelayMessageCodec.encodeJson(createRoot(data)));
+		assertNull(envelope.mOnline);
+		assertNull(envelope.mPluginData);
+		assertNull(envelope.mHeartbeat);
+		assertEquals(data, envelope.mData.get());
+		assertFalse(envelope.mSupportsBinary, "Message without the binary support key claims binary support");
+	}
+
+	@Test
+	void binaryRoundTrip() throws IOException {
+		JsonObject data = createSmallData();
+		JsonObject root = createRoot(data);
+		root.addProperty("online", false);
+		JsonObject pluginData = new JsonObject();
+		pluginData.addProperty("version", "1.0");
+		root.add("pluginData", pluginData);
+		JsonObject heartbeat = new JsonObject();
+		heartbeat.addProperty("sequence", 7);
+		root.add(HeartbeatDelta.HEARTBEAT_KEY, heartbeat);
+
+		RelayMessageCodec.Envelope envelope = RelayMessageCodec.decode(RelayMessageCodec.BINARY_CONTENT_TYPE,
+			RelayMessageCodec.encodeBinary(root));
+		assertEquals("valley", envelope.mSource);
+		assertEquals("test.channel", envelope.mChannel);
+		assertEquals(Boolean.FALSE, envelope.mOnline);
+		assertEquals(pluginData, envelope.mPluginData);
+		assertEquals(heartbeat, envelope.mHeartbeat);
+		assertEquals(data, envelope.mData.get());
+		assertTrue(envelope.mSupportsBinary, "Binary message sender does not claim binary support");
+	}
+
+	@Test
+	void binaryWithoutOptionalFields() throws IOException {
+		JsonObject data = createSmallData();
+
+		RelayMessageCodec.Envelope envelope = RelayMessageCodec.decode(RelayMessageCodec.BINARY_CONTENT_TYPE,
+			RelayMessageCodec.encodeBinary(createRoot(data)));
+		assertNull(envelope.mOnline);
+		assertNull(envelope.mPluginData);
+		assertNull(envelope.mHeartbeat);
+		assertEquals(data, envelope.mData.get());
+	}
+
+	@Test
+	void deflatedRoundTrip() throws IOException {
+		JsonObject data = createLargeData();
+		JsonObject root = createRoot(data);
+		JsonObject pluginData = createLargeData();
+		root.add("pluginData", pluginData);
+
+		byte[] json = RelayMessageCodec.encodeJson(root);
+		byte[] binary = RelayMessageCodec.encodeBinary(root);
+		assertTrue(binary.length < json.length / 2, () ->
+			"Large binary message was " + binary.length + " bytes, expected it deflated to well under "
+				+ json.length + " bytes of JSON");
+
+		RelayMessageCodec.Envelope envelope = RelayMessageCodec.decode(RelayMessageCodec.BINARY_CONTENT_TYPE, binary);
+		assertEquals(pluginData, envelope.mPluginData);
+		assertEquals(data, envelope.mData.get());
+	}
+
+	@Test
+	void deflateRoundTrip() throws IOException {
+		byte[] raw = RelayMessageCodec.encodeJson(createLargeData());
+		byte[] deflated = RelayMessageCodec.deflate(raw);
+		assertArrayEquals(raw, RelayMessageCodec.inflate(deflated, raw.length));
+		assertThrows(IOException.class, () -> RelayMessageCodec.inflate(deflated, raw.length + 1));
+	}
+
+	@Test
+	void inflateRejectsImplausibleLengths() {
+		byte[] deflated = RelayMessageCodec.deflate(new byte[16]);
+		// Each of these would be allocated before inflating if not rejected
+		assertThrows(IOException.class, () -> RelayMessageCodec.inflate(deflated, -1));
+		assertThrows(IOException.class, () -> RelayMessageCodec.inflate(deflated, Integer.MAX_VALUE));
+		assertThrows(IOException.class, () -> RelayMessageCodec.inflate(deflated, RelayMessageCodec.MAX_INFLATED_BYTES + 1));
+		assertThrows(IOException.class, () -> RelayMessageCodec.inflate(deflated, deflated.length * 2000));
+	}
+
+	@Test
+	void malformedMessages() throws IOException {
+		assertThrows(IOException.class, () ->
+			RelayMessageCodec.decode(null, "not json".getBytes(StandardCharsets.UTF_8)));
+		assertThrows(IOException.class, () ->
+			RelayMessageCodec.decode(null, "{\"source\":\"valley\",\"data\":{}}".getBytes(StandardCharsets.UTF_8)));
+
+		byte[] binary = RelayMessageCodec.encodeBinary(createRoot(createSmallData()));
+		assertThrows(IOException.class, () ->
+			RelayMessageCodec.decode(RelayMessageCodec.BINARY_CONTENT_TYPE, Arrays.copyOf(binary, binary.length - 4)));
+		binary[0] = (byte) (RelayMessageCodec.BINARY_VERSION + 1);
+		assertThrows(IOException.class, () ->
+			RelayMessageCodec.decode(RelayMessageCodec.BINARY_CONTENT_TYPE, binary));
+	}
+}
@@ -0,0 +1,178 @@
+package com.playmonumenta.networkrelay;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RemotePlayerBatchTest {
+
+	private static final class TestPlayer extends RemotePlayerAbstraction {
+		private TestPlayer(String name, String padding) {
+			super("valley", UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)), name, true, null);
+			JsonObject pluginData = new JsonObject();
+			pluginData.addProperty("padding", padding);
+			mPluginData.put("test", pluginData);
+		}
+
+		@Override
+		public RemotePlayerAbstraction asOffline() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String getServerType() {
+			return "test";
+		}
+	}
+
+	// A player whose json is exactly jsonLength characters, all ASCII
+	private static TestPlayer createPlayer(int index, int jsonLength) {
+		String name = "player" + index;
+		int unpadded = new TestPlayer(name, "").toJson().toString().length();
+		assertTrue(jsonLength >= unpadded, "Player json can't be that short");
+		return new TestPlayer(name, "x".repeat(jsonLength - unpadded));
+	}
+
+	private static List<JsonObject> toJson(List<TestPlayer> players) {
+		List<JsonObject> result = new ArrayList<>();
+		for (TestPlayer player : players) {
+			result.add(player.toJson());
+		}
+		return result;
+	}
+
+	private static List<JsonObject> decodeAll(List<JsonObject> messages) throws IOException {
+		List<JsonObject> result = new ArrayList<>();
+		for (JsonObject message : messages) {
+			result.addAll(RemotePlayerBatch.decode(message));
+		}
+		return result;
+	}
+
+	private static JsonObject deflated(String raw) {
+		byte[] bytes = raw.getBytes(StandardCharsets.UTF_8);
+		JsonObject data = new JsonObject();
+		data.addProperty("rawLength", bytes.length);
+		data.addProperty("deflated", Base64.getEncoder().encodeToString(RelayMessageCodec.deflate(bytes)));
+		return data;
+	}
+
+	@Test
+	void empty() {
+		assertTrue(RemotePlayerBatch.encode(List.of()).isEmpty());
+	}
+
+	@Test
+	void roundTrip() throws IOException {
+		List<TestPlayer> players = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			players.add(createPlayer(i, 200 + i));
+		}
+		List<JsonObject> messages = RemotePlayerBatch.encode(players);
+		assertTrue(messages.size() > 1, "Expected the batch to be split into several messages");
+		assertEquals(toJson(players), decodeAll(messages));
+	}
+
+	@Test
+	void compressionThreshold() throws IOException {
+		// A chunk's raw json is the player's json in brackets
+		TestPlayer below = createPlayer(0, RemotePlayerBatch.COMPRESSION_THRESHOLD - 3);
+		JsonObject belowMessage = RemotePlayerBatch.encode(List.of(below)).get(0);
+		assertTrue(belowMessage.has("players"), "Chunk below the compression threshold was compressed");
+		assertFalse(belowMessage.has("deflated"));
+		assertEquals(List.of(below.toJson()), RemotePlayerBatch.decode(belowMessage));
+
+		TestPlayer at = createPlayer(0, RemotePlayerBatch.COMPRESSION_THRESHOLD - 2);
+		JsonObject atMessage = RemotePlayerBatch.encode(List.of(at)).get(0);
+		assertTrue(atMessage.has("deflated"), "Chunk at the compression threshold was not compressed");
+		assertFalse(atMessage.has("players"));
+		assertEquals(RemotePlayerBatch.COMPRESSION_THRESHOLD, atMessage.get("rawLength").getAsInt());
+		assertEquals(List.of(at.toJson()), RemotePlayerBatch.decode(atMessage));
+	}
+
+	@Test
+	void chunkSplit() throws IOException {
+		// Two players this size fill a chunk exactly: 2 brackets, plus each player and a separator
+		int fillingLength = (RemotePlayerBatch.MAX_CHUNK_BYTES - 2) / 2 - 1;
+		List<TestPlayer> filling = List.of(createPlayer(0, fillingLength), createPlayer(1, fillingLength));
+		List<JsonObject> fillingMessages = RemotePlayerBatch.encode(filling);
+		assertEquals(1, fillingMessages.size(), "Players that fit in one chunk were split");
+		assertTrue(fillingMessages.get(0).get("rawLength").getAsInt() <= RemotePlayerBatch.MAX_CHUNK_BYTES);
+		assertEquals(toJson(filling), decodeAll(fillingMessages));
+
+		List<TestPlayer> overflowing = List.of(createPlayer(0, fillingLength), createPlayer(1, fillingLength + 1));
+		List<JsonObject> overflowingMessages = RemotePlayerBatch.encode(overflowing);
+		assertEquals(2, overflowingMessages.size(), "Players over the chunk size were not split");
+		assertEquals(toJson(overflowing), decodeAll(overflowingMessages));
+	}
+
+	@Test
+	void oversizedPlayer() throws IOException {
+		// A single player over the chunk size still has to be sent, alone
+		List<TestPlayer> players = List.of(
+			createPlayer(0, 1000),
+			createPlayer(1, RemotePlayerBatch.MAX_CHUNK_BYTES * 2),
+			createPlayer(2, 1000)
+		);
+		List<JsonObject> messages = RemotePlayerBatch.encode(players);
+		assertEquals(3, messages.size());
+		assertEquals(toJson(players), decodeAll(messages));
+	}
+
+	@Test
+	void skipsNonObjectPlayers() throws IOException {
+		JsonObject player = new TestPlayer("player0", "").toJson();
+		JsonArray players = new JsonArray();
+		players.add(player);
+		players.add(new JsonPrimitive("not a player"));
+		JsonObject data = new JsonObject();
+		data.add("players", players);
+		assertEquals(List.of(player), RemotePlayerBatch.decode(data));
+	}
+
+	@Test
+	void malformed() {
+		assertThrows(IOException.class, () -> RemotePlayerBatch.decode(new JsonObject()), "Missing players");
+
+		JsonObject notArray = new JsonObject();
+		notArray.addProperty("players", "not an array");
+		assertThrows(IOException.class, () -> RemotePlayerBatch.decode(notArray), "Players not an array");
+
+		JsonObject badBase64 = new JsonObject();
+		badBase64.addProperty("rawLength", 10);
+		badBase64.addProperty("deflated", "not base64!");
+		assertThrows(IOException.class, () -> RemotePlayerBatch.decode(badBase64), "Invalid base64");
+
+		JsonObject notDeflated = new JsonObject();
+		notDeflated.addProperty("rawLength", 10);
+		notDeflated.addProperty("deflated", Base64.getEncoder().encodeToString("not deflated".getBytes(StandardCharsets.UTF_8)));
+		assertThrows(IOException.class, () -> RemotePlayerBatch.decode(notDeflated), "Invalid deflate data");
+
+		JsonObject wrongLength = deflated("[]");
+		wrongLength.addProperty("rawLength", 100);
+		assertThrows(IOException.class, () -> RemotePlayerBatch.decode(wrongLength), "Wrong raw length");
+
+		JsonObject negativeLength = deflated("[]");
+		negativeLength.addProperty("rawLength", -1);
+		assertThrows(IOException.class, () -> RemotePlayerBatch.decode(negativeLength), "Negative raw length");
+
+		JsonObject hugeLength = deflated("[]");
+		hugeLength.addProperty("rawLength", RemotePlayerBatch.MAX_DECODED_CHUNK_BYTES + 1);
+		assertThrows(IOException.class, () -> RemotePlayerBatch.decode(hugeLength), "Raw length too large to allocate");
+
+		assertThrows(IOException.class, () -> RemotePlayerBatch.decode(deflated("{\"a\":1}")), "Not a json array");
+		assertThrows(IOException.class, () -> RemotePlayerBatch.decode(deflated("[{")), "Invalid json");
+	}
+}
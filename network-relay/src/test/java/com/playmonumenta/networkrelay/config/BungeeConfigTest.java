@@ -1,6 +1,7 @@
 package com.playmonumenta.networkrelay.config;
 
 import java.io.File;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.junit.jupiter.api.Test;
@@ -49,6 +50,21 @@ class BungeeConfigTest {
 		assertEquals(CommonConfig.DEFAULT_DEFAULT_TTL, defaultConfig.mDefaultTtl, () ->
 			"Uninitialized default TTL is set to " + defaultConfig.mDefaultTtl
 				+ " instead of default " + CommonConfig.DEFAULT_DEFAULT_TTL);
+		assertEquals(CommonConfig.DEFAULT_BINARY_WIRE_FORMAT, defaultConfig.mBinaryWireFormat, () ->
+			"Uninitialized binary wire format is set to " + defaultConfig.mBinaryWireFormat
+				+ " instead of default " + CommonConfig.DEFAULT_BINARY_WIRE_FORMAT);
+		assertEquals(CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL, defaultConfig.mHeartbeatKeyframeInterval, () ->
+			"Uninitialized heartbeat keyframe interval is set to " + defaultConfig.mHeartbeatKeyframeInterval
+				+ " instead of default " + CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL);
+		assertEquals(CommonConfig.DEFAULT_DISPATCH_THREADS, defaultConfig.mDispatchThreads, () ->
+			"Uninitialized dispatch threads is set to " + defaultConfig.mDispatchThreads
+				+ " instead of default " + CommonConfig.DEFAULT_DISPATCH_THREADS);
+		assertEquals(CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS, defaultConfig.mBroadcastSubscriptions, () ->
+			"Uninitialized broadcast subscriptions is set to " + defaultConfig.mBroadcastSubscriptions
+				+ " instead of default " + CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS);
+		assertEquals(CommonConfig.DEFAULT_BROADCAST_CHANNELS, defaultConfig.mBroadcastChannels, () ->
+			"Uninitialized broadcast channels is set to " + defaultConfig.mBroadcastChannels
+				+ " instead of default " + CommonConfig.DEFAULT_BROADCAST_CHANNELS);
 		assertTrue(defaultConfig.mRunReceivedCommands,
 			"Uninitialized run received commands is false instead of default true");
 		assertFalse(defaultConfig.mAutoRegisterServersToBungee,
@@ -77,6 +93,21 @@ class BungeeConfigTest {
 		assertEquals(CommonConfig.DEFAULT_DEFAULT_TTL, emptyConfig.mDefaultTtl, () ->
 			"Empty default TTL is set to " + emptyConfig.mDefaultTtl
 				+ " instead of default " + CommonConfig.DEFAULT_DEFAULT_TTL);
+		assertEquals(CommonConfig.DEFAULT_BINARY_WIRE_FORMAT, emptyConfig.mBinaryWireFormat, () ->
+			"Empty binary wire format is set to " + emptyConfig.mBinaryWireFormat
+				+ " instead of default " + CommonConfig.DEFAULT_BINARY_WIRE_FORMAT);
+		assertEquals(CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL, emptyConfig.mHeartbeatKeyframeInterval, () ->
+			"Empty heartbeat keyframe interval is set to " + emptyConfig.mHeartbeatKeyframeInterval
+				+ " instead of default " + CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL);
+		assertEquals(CommonConfig.DEFAULT_DISPATCH_THREADS, emptyConfig.mDispatchThreads, () ->
+			"Empty dispatch threads is set to " + emptyConfig.mDispatchThreads
+				+ " instead of default " + CommonConfig.DEFAULT_DISPATCH_THREADS);
+		assertEquals(CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS, emptyConfig.mBroadcastSubscriptions, () ->
+			"Empty broadcast subscriptions is set to " + emptyConfig.mBroadcastSubscriptions
+				+ " instead of default " + CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS);
+		assertEquals(CommonConfig.DEFAULT_BROADCAST_CHANNELS, emptyConfig.mBroadcastChannels, () ->
+			"Empty broadcast channels is set to " + emptyConfig.mBroadcastChannels
+				+ " instead of default " + CommonConfig.DEFAULT_BROADCAST_CHANNELS);
 		assertTrue(emptyConfig.mRunReceivedCommands,
 			"Empty run received commands is false instead of default true");
 		assertFalse(emptyConfig.mAutoRegisterServersToBungee,
@@ -106,6 +137,21 @@ class BungeeConfigTest {
 		assertEquals(604801, nonDefaultConfig.mDefaultTtl, () ->
 			"Non-default default TTL is set to " + nonDefaultConfig.mDefaultTtl
 				+ " instead of requested 604801");
+		assertTrue(nonDefaultConfig.mBinaryWireFormat, () ->
+			"Non-default binary wire format is set to " + nonDefaultConfig.mBinaryWireFormat
+				+ " instead of requested true");
+		assertEquals(10, nonDefaultConfig.mHeartbeatKeyframeInterval, () ->
+			"Non-default heartbeat keyframe interval is set to " + nonDefaultConfig.mHeartbeatKeyframeInterval
+				+ " instead of requested 10");
+		assertEquals(2, nonDefaultConfig.mDispatchThreads, () ->
+			"Non-default dispatch threads is set to " + nonDefaultConfig.mDispatchThreads
+				+ " instead of requested 2");
+		assertTrue(nonDefaultConfig.mBroadcastSubscriptions, () ->
+			"Non-default broadcast subscriptions is set to " + nonDefaultConfig.mBroadcastSubscriptions
+				+ " instead of requested true");
+		assertEquals(List.of("example.channel"), nonDefaultConfig.mBroadcastChannels, () ->
+			"Non-default broadcast channels is set to " + nonDefaultConfig.mBroadcastChannels
+				+ " instead of requested [example.channel]");
 		assertFalse(nonDefaultConfig.mRunReceivedCommands,
 			"Non-default run received commands is true instead of requested false");
 		assertTrue(nonDefaultConfig.mAutoRegisterServersToBungee,
@@ -134,6 +180,21 @@ class BungeeConfigTest {
 		assertEquals(CommonConfig.DEFAULT_DEFAULT_TTL, emptyWithFallbackConfig.mDefaultTtl, () ->
 			"Empty (with fallback) default TTL is set to " + emptyWithFallbackConfig.mDefaultTtl
 				+ " instead of default " + CommonConfig.DEFAULT_DEFAULT_TTL);
+		assertEquals(CommonConfig.DEFAULT_BINARY_WIRE_FORMAT, emptyWithFallbackConfig.mBinaryWireFormat, () ->
+			"Empty (with fallback) binary wire format is set to " + emptyWithFallbackConfig.mBinaryWireFormat
+				+ " instead of default " + CommonConfig.DEFAULT_BINARY_WIRE_FORMAT);
+		assertEquals(CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL, emptyWithFallbackConfig.mHeartbeatKeyframeInterval, () ->
+			"Empty (with fallback) heartbeat keyframe interval is set to " + emptyWithFallbackConfig.mHeartbeatKeyframeInterval
+				+ " instead of default " + CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL);
+		assertEquals(CommonConfig.DEFAULT_DISPATCH_THREADS, emptyWithFallbackConfig.mDispatchThreads, () ->
+			"Empty (with fallback) dispatch threads is set to " + emptyWithFallbackConfig.mDispatchThreads
+				+ " instead of default " + CommonConfig.DEFAULT_DISPATCH_THREADS);
+		assertEquals(CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS, emptyWithFallbackConfig.mBroadcastSubscriptions, () ->
+			"Empty (with fallback) broadcast subscriptions is set to " + emptyWithFallbackConfig.mBroadcastSubscriptions
+				+ " instead of default " + CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS);
+		assertEquals(CommonConfig.DEFAULT_BROADCAST_CHANNELS, emptyWithFallbackConfig.mBroadcastChannels, () ->
+			"Empty (with fallback) broadcast channels is set to " + emptyWithFallbackConfig.mBroadcastChannels
+				+ " instead of default " + CommonConfig.DEFAULT_BROADCAST_CHANNELS);
 		assertTrue(emptyWithFallbackConfig.mRunReceivedCommands,
 			"(with fallback) Empty run received commands is false instead of default true");
 		assertFalse(emptyWithFallbackConfig.mAutoRegisterServersToBungee,
@@ -163,6 +224,21 @@ class BungeeConfigTest {
 		assertEquals(604801, nonDefaultWithFallbackConfig.mDefaultTtl, () ->
 			"Non-default (with fallback) default TTL is set to " + nonDefaultWithFallbackConfig.mDefaultTtl
 				+ " instead of requested 604801");
+		assertTrue(nonDefaultWithFallbackConfig.mBinaryWireFormat, () ->
+			"Non-default (with fallback) binary wire format is set to " + nonDefaultWithFallbackConfig.mBinaryWireFormat
+				+ " instead of requested true");
+		assertEquals(10, nonDefaultWithFallbackConfig.mHeartbeatKeyframeInterval, () ->
+			"Non-default (with fallback) heartbeat keyframe interval is set to " + nonDefaultWithFallbackConfig.mHeartbeatKeyframeInterval
+				+ " instead of requested 10");
+		assertEquals(2, nonDefaultWithFallbackConfig.mDispatchThreads, () ->
+			"Non-default (with fallback) dispatch threads is set to " + nonDefaultWithFallbackConfig.mDispatchThreads
+				+ " instead of requested 2");
+		assertTrue(nonDefaultWithFallbackConfig.mBroadcastSubscriptions, () ->
+			"Non-default (with fallback) broadcast subscriptions is set to " + nonDefaultWithFallbackConfig.mBroadcastSubscriptions
+				+ " instead of requested true");
+		assertEquals(List.of("example.channel"), nonDefaultWithFallbackConfig.mBroadcastChannels, () ->
+			"Non-default (with fallback) broadcast channels is set to " + nonDefaultWithFallbackConfig.mBroadcastChannels
+				+ " instead of requested [example.channel]");
 		assertFalse(nonDefaultWithFallbackConfig.mRunReceivedCommands,
 			"Non-default (with fallback) run received commands is true instead of requested false");
 		assertTrue(nonDefaultWithFallbackConfig.mAutoRegisterServersToBungee,
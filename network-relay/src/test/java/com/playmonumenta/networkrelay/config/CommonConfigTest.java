@@ -36,6 +36,21 @@ class CommonConfigTest {
 		assertEquals(CommonConfig.DEFAULT_DEFAULT_TTL, config.mDefaultTtl, () ->
 			"Uninitialized default TTL is set to " + config.mDefaultTtl
 				+ " instead of default " + CommonConfig.DEFAULT_DEFAULT_TTL);
+		assertEquals(CommonConfig.DEFAULT_BINARY_WIRE_FORMAT, config.mBinaryWireFormat, () ->
+			"Uninitialized binary wire format is set to " + config.mBinaryWireFormat
+				+ " instead of default " + CommonConfig.DEFAULT_BINARY_WIRE_FORMAT);
+		assertEquals(CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL, config.mHeartbeatKeyframeInterval, () ->
+			"Uninitialized heartbeat keyframe interval is set to " + config.mHeartbeatKeyframeInterval
+				+ " instead of default " + CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL);
+		assertEquals(CommonConfig.DEFAULT_DISPATCH_THREADS, config.mDispatchThreads, () ->
+			"Uninitialized dispatch threads is set to " + config.mDispatchThreads
+				+ " instead of default " + CommonConfig.DEFAULT_DISPATCH_THREADS);
+		assertEquals(CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS, config.mBroadcastSubscriptions, () ->
+			"Uninitialized broadcast subscriptions is set to " + config.mBroadcastSubscriptions
+				+ " instead of default " + CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS);
+		assertEquals(CommonConfig.DEFAULT_BROADCAST_CHANNELS, config.mBroadcastChannels, () ->
+			"Uninitialized broadcast channels is set to " + config.mBroadcastChannels
+				+ " instead of default " + CommonConfig.DEFAULT_BROADCAST_CHANNELS);
 
 		Logger logger = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
@@ -61,12 +76,32 @@ class CommonConfigTest {
 		assertEquals(CommonConfig.DEFAULT_DEFAULT_TTL, config.mDefaultTtl, () ->
 			"Undefined default TTL is set to " + config.mDefaultTtl
 				+ " instead of default " + CommonConfig.DEFAULT_DEFAULT_TTL);
+		assertEquals(CommonConfig.DEFAULT_BINARY_WIRE_FORMAT, config.mBinaryWireFormat, () ->
+			"Undefined binary wire format is set to " + config.mBinaryWireFormat
+				+ " instead of default " + CommonConfig.DEFAULT_BINARY_WIRE_FORMAT);
+		assertEquals(CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL, config.mHeartbeatKeyframeInterval, () ->
+			"Undefined heartbeat keyframe interval is set to " + config.mHeartbeatKeyframeInterval
+				+ " instead of default " + CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL);
+		assertEquals(CommonConfig.DEFAULT_DISPATCH_THREADS, config.mDispatchThreads, () ->
+			"Undefined dispatch threads is set to " + config.mDispatchThreads
+				+ " instead of default " + CommonConfig.DEFAULT_DISPATCH_THREADS);
+		assertEquals(CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS, config.mBroadcastSubscriptions, () ->
+			"Undefined broadcast subscriptions is set to " + config.mBroadcastSubscriptions
+				+ " instead of default " + CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS);
+		assertEquals(CommonConfig.DEFAULT_BROADCAST_CHANNELS, config.mBroadcastChannels, () ->
+			"Undefined broadcast channels is set to " + config.mBroadcastChannels
+				+ " instead of default " + CommonConfig.DEFAULT_BROADCAST_CHANNELS);
 
 		// Invalid options
 		configMap.put("log-level", "WHAT");
 		configMap.put("heartbeat-interval", -1);
 		configMap.put("destination-timeout", -1);
 		configMap.put("default-time-to-live", -1);
+		configMap.put("binary-wire-format", "yes");
+		configMap.put("heartbeat-keyframe-interval", -1);
+		configMap.put("dispatch-threads", -1);
+		configMap.put("broadcast-subscriptions", "yes");
+		configMap.put("broadcast-channels", "example.channel");
 		CommonConfig invalidConfig = new CommonConfig();
 		invalidConfig.loadCommon(logger, configMap);
 
@@ -88,6 +123,21 @@ class CommonConfigTest {
 		assertEquals(CommonConfig.DEFAULT_DEFAULT_TTL, invalidConfig.mDefaultTtl, () ->
 			"Invalid default TTL is set to " + invalidConfig.mDefaultTtl
 				+ " instead of default " + CommonConfig.DEFAULT_DEFAULT_TTL);
+		assertEquals(CommonConfig.DEFAULT_BINARY_WIRE_FORMAT, invalidConfig.mBinaryWireFormat, () ->
+			"Invalid binary wire format is set to " + invalidConfig.mBinaryWireFormat
+				+ " instead of default " + CommonConfig.DEFAULT_BINARY_WIRE_FORMAT);
+		assertEquals(CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL, invalidConfig.mHeartbeatKeyframeInterval, () ->
+			"Invalid heartbeat keyframe interval is set to " + invalidConfig.mHeartbeatKeyframeInterval
+				+ " instead of default " + CommonConfig.DEFAULT_HEARTBEAT_KEYFRAME_INTERVAL);
+		assertEquals(CommonConfig.DEFAULT_DISPATCH_THREADS, invalidConfig.mDispatchThreads, () ->
+			"Invalid dispatch threads is set to " + invalidConfig.mDispatchThreads
+				+ " instead of default " + CommonConfig.DEFAULT_DISPATCH_THREADS);
+		assertEquals(CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS, invalidConfig.mBroadcastSubscriptions, () ->
+			"Invalid broadcast subscriptions is set to " + invalidConfig.mBroadcastSubscriptions
+				+ " instead of default " + CommonConfig.DEFAULT_BROADCAST_SUBSCRIPTIONS);
+		assertEquals(CommonConfig.DEFAULT_BROADCAST_CHANNELS, invalidConfig.mBroadcastChannels, () ->
+			"Invalid broadcast channels is set to " + invalidConfig.mBroadcastChannels
+				+ " instead of default " + CommonConfig.DEFAULT_BROADCAST_CHANNELS);
 
 		// Non-default options
 		configMap.put("log-level", "FINE");
@@ -96,6 +146,11 @@ class CommonConfigTest {
 		configMap.put("heartbeat-interval", 2);
 		configMap.put("destination-timeout", 6);
 		configMap.put("default-time-to-live", 604801);
+		configMap.put("binary-wire-format", true);
+		configMap.put("heartbeat-keyframe-interval", 10);
+		configMap.put("dispatch-threads", 2);
+		configMap.put("broadcast-subscriptions", true);
+		configMap.put("broadcast-channels", List.of("example.channel"));
 		CommonConfig nonDefaultConfig = new CommonConfig();
 		nonDefaultConfig.loadCommon(logger, configMap);
 
@@ -117,6 +172,21 @@ class CommonConfigTest {
 		assertEquals(604801, nonDefaultConfig.mDefaultTtl, () ->
 			"Undefined default TTL is set to " + nonDefaultConfig.mDefaultTtl
 				+ " instead of default " + 604801);
+		assertTrue(nonDefaultConfig.mBinaryWireFormat, () ->
+			"Undefined binary wire format is set to " + nonDefaultConfig.mBinaryWireFormat
+				+ " instead of default " + true);
+		assertEquals(10, nonDefaultConfig.mHeartbeatKeyframeInterval, () ->
+			"Undefined heartbeat keyframe interval is set to " + nonDefaultConfig.mHeartbeatKeyframeInterval
+				+ " instead of default " + 10);
+		assertEquals(2, nonDefaultConfig.mDispatchThreads, () ->
+			"Undefined dispatch threads is set to " + nonDefaultConfig.mDispatchThreads
+				+ " instead of default " + 2);
+		assertTrue(nonDefaultConfig.mBroadcastSubscriptions, () ->
+			"Undefined broadcast subscriptions is set to " + nonDefaultConfig.mBroadcastSubscriptions
+				+ " instead of default " + true);
+		assertEquals(List.of("example.channel"), nonDefaultConfig.mBroadcastChannels, () ->
+			"Undefined broadcast channels is set to " + nonDefaultConfig.mBroadcastChannels
+				+ " instead of default " + List.of("example.channel"));
 	}
 
 	@Test
@@ -2,8 +2,11 @@ package com.playmonumenta.redissync.adapters;
 
 import com.google.gson.JsonObject;
 import java.io.IOException;
+import java.util.Set;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
+import org.bukkit.scoreboard.Objective;
+import org.bukkit.scoreboard.Score;
 import org.bukkit.scoreboard.Scoreboard;
 import org.jetbrains.annotations.Nullable;
 
@@ -38,8 +41,61 @@ public interface VersionAdapter {
 		}
 	}
 
+	/**
+	 * A copy of one player's scores, taken on the main thread and safe to read from any thread.
+	 * <p>
+	 * Stored as parallel arrays so taking the snapshot is a single pass with no per-score objects.
+	 */
+	class ScoreSnapshot {
+		private final String[] mObjectives;
+		private final int[] mScores;
+		private final int mSize;
+
+		public ScoreSnapshot(String[] objectives, int[] scores, int size) {
+			mObjectives = objectives;
+			mScores = scores;
+			mSize = size;
+		}
+
+		public int size() {
+			return mSize;
+		}
+
+		/**
+		 * Builds the same {objective: score} object as getPlayerScoresAsJson
+		 */
+		public JsonObject toJson() {
+			JsonObject result = new JsonObject();
+			for (int i = 0; i < mSize; i++) {
+				result.addProperty(mObjectives[i], mScores[i]);
+			}
+			return result;
+		}
+	}
+
 	JsonObject getPlayerScoresAsJson(String playerName, Scoreboard scoreboard);
 
+	/**
+	 * Copies the player's set scores on the main thread, so they can be serialized elsewhere.
+	 * <p>
+	 * Adapters should override this to read the scores directly rather than through one Bukkit lookup per objective.
+	 */
+	default ScoreSnapshot snapshotPlayerScores(String playerName, Scoreboard scoreboard) {
+		Set<Objective> objectives = scoreboard.getObjectives();
+		String[] names = new String[objectives.size()];
+		int[] scores = new int[objectives.size()];
+		int size = 0;
+		for (Objective objective : objectives) {
+			Score score = objective.getScore(playerName);
+			if (score.isScoreSet()) {
+				names[size] = objective.getName();
+				scores[size] = score.getScore();
+				size++;
+			}
+		}
+		return new ScoreSnapshot(names, scores, size);
+	}
+
 	void resetPlayerScores(String playerName, Scoreboard scoreboard);
 
 	Object retrieveSaveData(byte[] data, JsonObject shardData) throws IOException;
@@ -6,6 +6,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.playmonumenta.mixinapi.v1.RedisSyncIO;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -17,6 +18,7 @@ import net.minecraft.nbt.FloatTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.NbtAccounter;
 import net.minecraft.nbt.NbtIo;
+import net.minecraft.world.scores.Objective;
 import net.minecraft.world.scores.Scoreboard;
 import org.apache.logging.log4j.Logger;
 import org.bukkit.craftbukkit.v1_20_R3.scoreboard.CraftScoreboard;
@@ -38,6 +40,21 @@ public class VersionAdapter_v1_20_R3 implements VersionAdapter {
 		return RedisSyncIO.getInstance().getPlayerScoresAsJson(playerName, scoreboard);
 	}
 
+	@Override
+	public ScoreSnapshot snapshotPlayerScores(String playerName, org.bukkit.scoreboard.Scoreboard scoreboard) {
+		Scoreboard nmsScoreboard = ((CraftScoreboard) scoreboard).getHandle();
+		Object2IntMap<Objective> playerScores = nmsScoreboard.listPlayerScores(() -> playerName);
+		String[] names = new String[playerScores.size()];
+		int[] scores = new int[playerScores.size()];
+		int size = 0;
+		for (Object2IntMap.Entry<Objective> entry : playerScores.object2IntEntrySet()) {
+			names[size] = entry.getKey().getName();
+			scores[size] = entry.getIntValue();
+			size++;
+		}
+		return new ScoreSnapshot(names, scores, size);
+	}
+
 	@Override
 	public void resetPlayerScores(String playerName, org.bukkit.scoreboard.Scoreboard scoreboard) {
 		Scoreboard nmsScoreboard = ((CraftScoreboard) scoreboard).getHandle();
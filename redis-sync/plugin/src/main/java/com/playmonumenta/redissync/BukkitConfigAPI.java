@@ -10,23 +10,48 @@ public class BukkitConfigAPI extends CommonConfig {
 	protected final int mTicksPerPlayerAutosave;
 	protected final boolean mSavingDisabled;
 	protected final boolean mScoreboardCleanupEnabled;
+	protected final boolean mHistoryDeltaEncoding;
+	protected final boolean mLazyPlayerIndex;
+	protected final int mPlayerIndexCacheSize;
+	protected final int mRBoardWriteBehindTicks;
+	protected final int mRBoardCacheMillis;
+	protected final int mLeaderboardFlushTicks;
+	protected final int mRemoteDataCacheSize;
+	protected final int mRemoteDataCacheMillis;
 
-	BukkitConfigAPI(Logger logger, String redisHost, int redisPort, String serverDomain, String shardName, int historyAmount, int ticksPerPlayerAutosave, boolean savingDisabled, boolean scoreboardCleanupEnabled) {
-		super(redisHost, redisPort, serverDomain, shardName);
+	BukkitConfigAPI(Logger logger, String redisHost, int redisPort, int redisConnectionPoolSize, String serverDomain, String shardName, int historyAmount, int ticksPerPlayerAutosave, boolean savingDisabled, boolean scoreboardCleanupEnabled, boolean historyDeltaEncoding, boolean lazyPlayerIndex, int playerIndexCacheSize, int rboardWriteBehindTicks, int rboardCacheMillis, int leaderboardFlushTicks, int remoteDataCacheSize, int remoteDataCacheMillis) {
+		super(redisHost, redisPort, redisConnectionPoolSize, serverDomain, shardName);
 		mHistoryAmount = historyAmount;
 		mTicksPerPlayerAutosave = ticksPerPlayerAutosave;
 		mSavingDisabled = savingDisabled;
 		mScoreboardCleanupEnabled = scoreboardCleanupEnabled;
+		mHistoryDeltaEncoding = historyDeltaEncoding;
+		mLazyPlayerIndex = lazyPlayerIndex;
+		mPlayerIndexCacheSize = Math.max(1, playerIndexCacheSize);
+		mRBoardWriteBehindTicks = Math.max(0, rboardWriteBehindTicks);
+		mRBoardCacheMillis = Math.max(0, rboardCacheMillis);
+		mLeaderboardFlushTicks = Math.max(0, leaderboardFlushTicks);
+		mRemoteDataCacheSize = Math.max(0, remoteDataCacheSize);
+		mRemoteDataCacheMillis = Math.max(0, remoteDataCacheMillis);
 
 		logger.info("Configuration:");
 		logger.info("  redis_host = " + (mRedisHost == null ? "null" : mRedisHost));
 		logger.info("  redis_port = " + mRedisPort);
+		logger.info("  redis_connection_pool_size = " + mRedisConnectionPoolSize);
 		logger.info("  server_domain = " + (mServerDomain == null ? "null" : mServerDomain));
 		logger.info("  shard_name = " + (mShardName == null ? "null" : mShardName));
 		logger.info("  history_amount = " + mHistoryAmount);
 		logger.info("  ticks_per_player_autosave = " + mTicksPerPlayerAutosave);
 		logger.info("  saving_disabled = " + mSavingDisabled);
 		logger.info("  scoreboard_cleanup_enabled = " + mScoreboardCleanupEnabled);
+		logger.info("  history_delta_encoding = " + mHistoryDeltaEncoding);
+		logger.info("  lazy_player_index = " + mLazyPlayerIndex);
+		logger.info("  player_index_cache_size = " + mPlayerIndexCacheSize);
+		logger.info("  rboard_write_behind_ticks = " + mRBoardWriteBehindTicks);
+		logger.info("  rboard_cache_millis = " + mRBoardCacheMillis);
+		logger.info("  leaderboard_flush_ticks = " + mLeaderboardFlushTicks);
+		logger.info("  remote_data_cache_size = " + mRemoteDataCacheSize);
+		logger.info("  remote_data_cache_millis = " + mRemoteDataCacheMillis);
 
 		BUKKIT_INSTANCE = this;
 	}
@@ -54,4 +79,61 @@ public class BukkitConfigAPI extends CommonConfig {
 	public static boolean getScoreboardCleanupEnabled() {
 		return getBukkitInstance().mScoreboardCleanupEnabled;
 	}
+
+	/**
+	 * Whether older player data history entries are stored as deltas against the next newer entry.
+	 * <p>
+	 * Entries are always readable regardless of this setting; it only controls how new saves are written.
+	 */
+	public static boolean getHistoryDeltaEncoding() {
+		return getBukkitInstance().mHistoryDeltaEncoding;
+	}
+
+	/**
+	 * Whether player name/UUID mappings are cached on demand up to getPlayerIndexCacheSize() entries,
+	 * rather than loaded in full at startup.
+	 */
+	public static boolean getLazyPlayerIndex() {
+		return getBukkitInstance().mLazyPlayerIndex;
+	}
+
+	public static int getPlayerIndexCacheSize() {
+		return getBukkitInstance().mPlayerIndexCacheSize;
+	}
+
+	/**
+	 * How often queued rboard writes are sent to Redis, or 0 to send every rboard operation immediately.
+	 */
+	public static int getRBoardWriteBehindTicks() {
+		return getBukkitInstance().mRBoardWriteBehindTicks;
+	}
+
+	/**
+	 * How long rboard values are cached locally when write-behind is enabled.
+	 */
+	public static int getRBoardCacheMillis() {
+		return getBukkitInstance().mRBoardCacheMillis;
+	}
+
+	/**
+	 * How often queued leaderboard updates are sent to Redis and leaderboard snapshots are refreshed,
+	 * or 0 to send every update and read immediately.
+	 */
+	public static int getLeaderboardFlushTicks() {
+		return getBukkitInstance().mLeaderboardFlushTicks;
+	}
+
+	/**
+	 * How many players' remote data is cached locally, or 0 to read remote data from Redis every time.
+	 */
+	public static int getRemoteDataCacheSize() {
+		return getBukkitInstance().mRemoteDataCacheSize;
+	}
+
+	/**
+	 * The longest a cached remote data value is used for, in case an invalidation from another shard is missed.
+	 */
+	public static int getRemoteDataCacheMillis() {
+		return getBukkitInstance().mRemoteDataCacheMillis;
+	}
 }
@@ -7,12 +7,14 @@ public abstract class CommonConfig {
 
 	protected final String mRedisHost;
 	protected final int mRedisPort;
+	protected final int mRedisConnectionPoolSize;
 	protected final String mServerDomain;
 	protected final String mShardName;
 
-	protected CommonConfig(String redisHost, int redisPort, String serverDomain, String shardName) {
+	protected CommonConfig(String redisHost, int redisPort, int redisConnectionPoolSize, String serverDomain, String shardName) {
 		mRedisHost = redisHost;
 		mRedisPort = redisPort;
+		mRedisConnectionPoolSize = Math.max(1, redisConnectionPoolSize);
 		mServerDomain = serverDomain;
 		mShardName = shardName;
 		COMMON_INSTANCE = this;
@@ -34,6 +36,17 @@ public abstract class CommonConfig {
 		return getCommonInstance().mRedisPort;
 	}
 
+	/**
+	 * Returns the number of connections of each codec type that {@link RedisAPI} spreads commands over.
+	 * <p>
+	 * Commands issued from the same thread always use the same connection and so stay in order.
+	 * With more than one connection, commands issued from different threads may execute in a different
+	 * order than they were issued in.
+	 */
+	public static int getRedisConnectionPoolSize() {
+		return getCommonInstance().mRedisConnectionPoolSize;
+	}
+
 	/**
 	 * Returns the current server domain as set in the config file for this plugin.
 	 * <p>
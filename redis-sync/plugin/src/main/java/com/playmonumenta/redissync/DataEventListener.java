@@ -12,18 +12,23 @@ import com.playmonumenta.common.event.PlayerTransferFailEvent;
 import com.playmonumenta.redissync.adapters.VersionAdapter;
 import com.playmonumenta.redissync.adapters.VersionAdapter.ReturnParams;
 import com.playmonumenta.redissync.adapters.VersionAdapter.SaveData;
+import com.playmonumenta.redissync.adapters.VersionAdapter.ScoreSnapshot;
 import com.playmonumenta.redissync.event.PlayerJoinSetWorldEvent;
 import com.playmonumenta.redissync.event.PlayerSaveEvent;
+import com.playmonumenta.redissync.utils.HistoryDelta;
 import com.playmonumenta.redissync.utils.MMLog;
 import com.playmonumenta.redissync.utils.ScoreboardUtils;
 import io.lettuce.core.RedisFuture;
-import io.lettuce.core.output.KeyValueStreamingChannel;
+import io.lettuce.core.ScriptOutputType;
 import io.papermc.paper.event.server.ServerResourcesReloadedEvent;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -31,6 +36,7 @@ import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -87,32 +93,6 @@ import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.Nullable;
 
 public class DataEventListener implements Listener {
-	private static class PlayerUuidToNameStreamingChannel implements KeyValueStreamingChannel<String, String> {
-		@Override
-		public void onKeyValue(String key /*UUID*/, String value /*name*/) {
-			UUID uuid;
-			try {
-				uuid = UUID.fromString(key);
-			} catch (Exception e) {
-				return;
-			}
-			MonumentaRedisSyncAPI.updateUuidToName(uuid, value);
-		}
-	}
-
-	private static class PlayerNameToUuidStreamingChannel implements KeyValueStreamingChannel<String, String> {
-		@Override
-		public void onKeyValue(String key /*name*/, String value /*UUID*/) {
-			UUID uuid;
-			try {
-				uuid = UUID.fromString(value);
-			} catch (Exception e) {
-				return;
-			}
-			MonumentaRedisSyncAPI.updateNameToUuid(key, uuid);
-		}
-	}
-
 	private static final Map<UUID, BukkitTask> TRANSFER_UNLOCK_TASKS = new HashMap<>(); // TODO Never queried
 	protected static final int TRANSFER_UNLOCK_TIMEOUT_TICKS = 10 * 20;
 	private static final Component LOAD_ERROR_MSG =
@@ -132,6 +112,38 @@ public class DataEventListener implements Listener {
 	private final Set<UUID> mLoadingPlayers = new HashSet<>();
 	private final Set<UUID> mLoadFailedPlayers = new HashSet<>();
 
+	/*
+	 * Only used when history delta encoding is enabled
+	 * The full player data currently at the head of each player's data history, which the next save turns into a delta
+	 * The most recent pending data history write for each player, so that writes are committed in save order
+	 */
+	private final Map<UUID, byte[]> mHistoryHeads = new HashMap<>();
+	private final Map<UUID, CompletableFuture<?>> mHistoryWrites = new HashMap<>();
+
+	/*
+	 * KEYS[1] = player data history, ARGV = [SHA1 hex of the expected head, delta, new data, history amount]
+	 * Replaces the head with the delta only if the head's SHA1 matches (an empty delta never replaces it),
+	 * then pushes the new data and trims the history. Returns 1 if the head was replaced, otherwise 0.
+	 */
+	private static final String HISTORY_DELTA_SCRIPT = String.join("\n",
+		"local replaced = 0",
+		"if ARGV[2] ~= '' then",
+		"  local head = redis.call('LINDEX', KEYS[1], 0)",
+		"  if head and redis.sha1hex(head) == ARGV[1] then",
+		"    redis.call('LSET', KEYS[1], 0, ARGV[2])",
+		"    replaced = 1",
+		"  end",
+		"end",
+		"redis.call('LPUSH', KEYS[1], ARGV[3])",
+		"redis.call('LTRIM', KEYS[1], 0, tonumber(ARGV[4]))",
+		"return replaced");
+
+	/*
+	 * The most recent pending scoreboard/plugindata batch for each player.
+	 * Scores are serialized off the main thread, so each batch waits for the previous one to keep the history in save order
+	 */
+	private final Map<UUID, CompletableFuture<?>> mScoreWrites = new HashMap<>();
+
 	/*
 	 * Cached local copy of shard data to provide to API to get player locations on other worlds
 	 * Every player that has fully logged into this shard is guaranteed to have an entry in this map
@@ -142,12 +154,7 @@ public class DataEventListener implements Listener {
 		mAdapter = adapter;
 		INSTANCE = this;
 
-		KeyValueStreamingChannel<String, String> uuidToNameChannel = new PlayerUuidToNameStreamingChannel();
-		KeyValueStreamingChannel<String, String> nameToUuidChannel = new PlayerNameToUuidStreamingChannel();
-		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
-			conn.hgetall(uuidToNameChannel, "uuid2name");
-			conn.hgetall(nameToUuidChannel, "name2uuid");
-		}
+		PlayerNameIndex.load(BukkitConfigAPI.getLazyPlayerIndex(), BukkitConfigAPI.getPlayerIndexCacheSize());
 	}
 
 	/* ******************* Protected API ******************* */
@@ -226,6 +233,14 @@ public class DataEventListener implements Listener {
 		return INSTANCE.mShardData.get(uuid);
 	}
 
+	/*
+	 * Must be called whenever something other than a regular save pushes to a player's data history,
+	 * otherwise the next save would encode the new head entry as a delta against stale data
+	 */
+	protected static void invalidateHistoryHead(UUID uuid) {
+		Bukkit.getScheduler().runTask(MonumentaRedisSync.getInstance(), () -> INSTANCE.mHistoryHeads.remove(uuid));
+	}
+
 	private void waitForPlayerToSaveInternal(Player player, Runnable callback, boolean sync) {
 		Plugin plugin = MonumentaRedisSync.getInstance();
 
@@ -429,8 +444,14 @@ public class DataEventListener implements Listener {
 				MMLog.warning("No data for player '" + player.getName() + "' - if they are not new, this is a serious error!");
 				return;
 			}
+			if (HistoryDelta.isDelta(data)) {
+				throw new IOException("Newest player data history entry is a delta, which should never happen");
+			}
 			MMLog.trace("Player data loaded for player=" + player.getName());
 			MMLog.trace(() -> "Player data: " + b64encode(data));
+			if (BukkitConfigAPI.getHistoryDeltaEncoding()) {
+				mHistoryHeads.put(player.getUniqueId(), data);
+			}
 
 			/* Load plugin data */
 			String pluginData = pluginDataFuture.get();
@@ -664,13 +685,17 @@ public class DataEventListener implements Listener {
 
 			MMLog.trace(() -> "data: " + b64encode(data.getData()));
 			String dataPath = MonumentaRedisSyncAPI.getRedisDataPath(player);
-			futures.add(RedisAPI.multiStringBytes(byteConn -> {
-				byteConn.lpush(dataPath, data.getData());
-				byteConn.ltrim(dataPath, 0, BukkitConfigAPI.getHistoryAmount());
-			}).exceptionally(ex -> {
-				MMLog.severe("Failed to save player nbt data for player=" + player.getName(), ex);
-				return null;
-			}));
+			if (BukkitConfigAPI.getHistoryDeltaEncoding()) {
+				futures.add(saveDataWithHistoryDelta(player, dataPath, data.getData()));
+			} else {
+				futures.add(RedisAPI.multiStringBytes(byteConn -> {
+					byteConn.lpush(dataPath, data.getData());
+					byteConn.ltrim(dataPath, 0, BukkitConfigAPI.getHistoryAmount());
+				}).exceptionally(ex -> {
+					MMLog.severe("Failed to save player nbt data for player=" + player.getName(), ex);
+					return null;
+				}));
+			}
 
 			/* Execute the sharddata, history and plugin data as a multi() batch */
 			/*
@@ -710,27 +735,39 @@ public class DataEventListener implements Listener {
 			String pluginDataStr = mGson.toJson(pluginData);
 			MMLog.trace(() -> "plugindata: " + pluginDataStr);
 
-			/* Scoreboards */
+			/* Scoreboards - only the copy happens on the main thread, serialization happens async */
 			MMLog.debug("Saving scoreboard data for player=" + player.getName());
 			long scoreStartTime = System.currentTimeMillis();
-			String scoreboardData = mGson.toJson(mAdapter.getPlayerScoresAsJson(player.getName(), Bukkit.getScoreboardManager().getMainScoreboard()));
-			MMLog.debug(() -> "Scoreboard saving took " + (System.currentTimeMillis() - scoreStartTime) + " " + "milliseconds on main thread");
-			MMLog.trace(() -> "Data:" + scoreboardData);
+			ScoreSnapshot scores = mAdapter.snapshotPlayerScores(player.getName(), Bukkit.getScoreboardManager().getMainScoreboard());
+			MMLog.debug(() -> "Scoreboard snapshot of " + scores.size() + " scores took " + (System.currentTimeMillis() - scoreStartTime) + " " + "milliseconds on main thread");
 			String scorePath = MonumentaRedisSyncAPI.getRedisScoresPath(player);
 
-			futures.add(RedisAPI.multi(commands -> {
-				commands.hset(shardDataPath, worldKey, data.getShardData());
-				commands.hset(shardDataPath, BukkitConfigAPI.getShardName(), overallShardDataStr);
-				commands.lpush(histPath, history);
-				commands.ltrim(histPath, 0, BukkitConfigAPI.getHistoryAmount());
-				commands.lpush(pluginDataPath, pluginDataStr);
-				commands.ltrim(pluginDataPath, 0, BukkitConfigAPI.getHistoryAmount());
-				commands.lpush(scorePath, scoreboardData);
-				commands.ltrim(scorePath, 0, BukkitConfigAPI.getHistoryAmount());
-			}).exceptionally(ex -> {
-				MMLog.severe("Failed to save player data for player=" + player.getName(), ex);
-				return null;
-			}));
+			UUID uuid = player.getUniqueId();
+			String playerName = player.getName();
+			int historyAmount = BukkitConfigAPI.getHistoryAmount();
+			String shardName = BukkitConfigAPI.getShardName();
+			CompletableFuture<?> previousWrite = mScoreWrites.getOrDefault(uuid, CompletableFuture.completedFuture(null));
+			CompletableFuture<?> write = previousWrite
+				.thenApplyAsync(unused -> {
+					String scoreboardData = mGson.toJson(scores.toJson());
+					MMLog.trace(() -> "Data:" + scoreboardData);
+					return scoreboardData;
+				})
+				.thenCompose(scoreboardData -> RedisAPI.multi(commands -> {
+					commands.hset(shardDataPath, worldKey, data.getShardData());
+					commands.hset(shardDataPath, shardName, overallShardDataStr);
+					commands.lpush(histPath, history);
+					commands.ltrim(histPath, 0, historyAmount);
+					commands.lpush(pluginDataPath, pluginDataStr);
+					commands.ltrim(pluginDataPath, 0, historyAmount);
+					commands.lpush(scorePath, scoreboardData);
+					commands.ltrim(scorePath, 0, historyAmount);
+				})).exceptionally(ex -> {
+					MMLog.severe("Failed to save player data for player=" + playerName, ex);
+					return null;
+				});
+			mScoreWrites.put(uuid, write);
+			futures.add(write);
 		} catch (IOException ex) {
 			MMLog.severe("Failed to save player data for player=" + player.getName(), ex);
 		}
@@ -739,6 +776,73 @@ public class DataEventListener implements Listener {
 		mPendingSaves.put(player.getUniqueId(), futures);
 	}
 
+	/*
+	 * Pushes the new player data whole and replaces the previous head entry with a delta that rebuilds it from the new data.
+	 * Encoding happens off the main thread, chained after this player's previous data write so entries stay in order.
+	 * If there is no known previous head or encoding fails, the previous head is simply left whole.
+	 *
+	 * The cached head can differ from what is actually in Redis, for example after a failed write or a save from another
+	 * shard, so the replacement only happens if the head entry in Redis still matches the data the delta was computed
+	 * against. If a write fails, the cached head is dropped so the next save doesn't encode against it either.
+	 */
+	private CompletableFuture<?> saveDataWithHistoryDelta(Player player, String dataPath, byte[] newData) {
+		UUID uuid = player.getUniqueId();
+		String playerName = player.getName();
+		int historyAmount = BukkitConfigAPI.getHistoryAmount();
+		byte[] previousHead = mHistoryHeads.put(uuid, newData);
+		CompletableFuture<?> previousWrite = mHistoryWrites.getOrDefault(uuid, CompletableFuture.completedFuture(null));
+
+		CompletableFuture<?> write = previousWrite
+			.thenApplyAsync(unused -> encodeHistoryDelta(playerName, newData, previousHead))
+			.thenCompose(delta -> {
+				byte[] expectedHeadSha1 = previousHead == null || delta == null ? new byte[0] : sha1Hex(previousHead);
+				RedisFuture<Long> replaced;
+				try (RedisAPI.BorrowedCommands<String, byte[]> byteConn = RedisAPI.borrowStringBytes()) {
+					replaced = byteConn.eval(HISTORY_DELTA_SCRIPT, ScriptOutputType.INTEGER, new String[] {dataPath},
+						expectedHeadSha1,
+						delta == null ? new byte[0] : delta,
+						newData,
+						Integer.toString(historyAmount).getBytes(StandardCharsets.UTF_8));
+				}
+				return replaced.toCompletableFuture();
+			}).thenAccept(replaced -> {
+				if (previousHead != null && replaced != null && replaced == 0) {
+					MMLog.debug(() -> "Kept previous player data history entry whole for player=" + playerName);
+				}
+			}).exceptionally(ex -> {
+				MMLog.severe("Failed to save player nbt data for player=" + playerName, ex);
+				invalidateHistoryHead(uuid);
+				return null;
+			});
+		mHistoryWrites.put(uuid, write);
+		return write;
+	}
+
+	private static byte[] sha1Hex(byte[] data) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-1").digest(data);
+			return HexFormat.of().formatHex(hash).getBytes(StandardCharsets.UTF_8);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-1 is not available", ex);
+		}
+	}
+
+	private static @Nullable byte[] encodeHistoryDelta(String playerName, byte[] newData, @Nullable byte[] previousHead) {
+		if (previousHead == null) {
+			return null;
+		}
+
+		long startTime = System.currentTimeMillis();
+		try {
+			byte[] delta = HistoryDelta.encode(newData, previousHead);
+			MMLog.debug(() -> "Encoding history delta for player=" + playerName + " took " + (System.currentTimeMillis() - startTime) + " milliseconds, " + previousHead.length + " -> " + delta.length + " bytes");
+			return delta.length < previousHead.length ? delta : null;
+		} catch (IOException ex) {
+			MMLog.warning("Failed to encode history delta for player=" + playerName + ", keeping previous entry whole", ex);
+			return null;
+		}
+	}
+
 	/* ******************* Transferring Restriction Event Handlers ******************* */
 
 	@EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = false)
@@ -753,8 +857,9 @@ public class DataEventListener implements Listener {
 		String uuidStr = uuid.toString();
 
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
-			conn.hset("uuid2name", uuidStr, nameStr);
-			conn.hset("name2uuid", nameStr, uuidStr);
+			conn.hset(PlayerNameIndex.UUID_TO_NAME_KEY, uuidStr, nameStr);
+			conn.hset(PlayerNameIndex.NAME_TO_UUID_KEY, nameStr, uuidStr);
+			conn.zadd(PlayerNameIndex.NAME_INDEX_KEY, 0, PlayerNameIndex.indexMember(nameStr));
 		}
 		MonumentaRedisSyncAPI.updateUuidToName(uuid, nameStr);
 		MonumentaRedisSyncAPI.updateNameToUuid(nameStr, uuid);
@@ -784,6 +889,9 @@ public class DataEventListener implements Listener {
 			if (Bukkit.getPlayer(playerUUID) == null) {
 				mPluginData.remove(playerUUID);
 				mShardData.remove(playerUUID);
+				mHistoryHeads.remove(playerUUID);
+				mHistoryWrites.remove(playerUUID);
+				mScoreWrites.remove(playerUUID);
 			}
 		}, 50);
 	}
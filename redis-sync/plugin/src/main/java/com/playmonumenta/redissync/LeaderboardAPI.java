@@ -7,10 +7,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
+/**
+ * Leaderboards stored as Redis sorted sets.
+ * <p>
+ * If leaderboard_flush_ticks is set, updates are queued and written in batches, and reads near the top of a
+ * leaderboard are served from a local snapshot refreshed at the same interval. See LeaderboardQueue.
+ */
 public class LeaderboardAPI {
 
 	/**
 	 * Retrieve the leaderboard entries between the specified start and stop indices (inclusive)
+	 * <p>
+	 * If updates are batched, results may be up to one flush interval out of date.
 	 *
 	 * @param objective The leaderboard objective name (one leaderboard per objective)
 	 * @param start Starting index to retrieve (inclusive)
@@ -18,6 +26,14 @@ public class LeaderboardAPI {
 	 * @param ascending If true, leaderboard and results are smallest to largest and vice versa
 	 */
 	public static CompletableFuture<Map<String, Integer>> get(String objective, long start, long stop, boolean ascending) {
+		LeaderboardQueue queue = LeaderboardQueue.getInstance();
+		if (queue != null) {
+			CompletableFuture<Map<String, Integer>> snapshot = queue.get(objective, start, stop, ascending);
+			if (snapshot != null) {
+				return snapshot;
+			}
+		}
+
 		final RedisFuture<List<ScoredValue<String>>> values;
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
 			if (ascending) {
@@ -40,13 +56,20 @@ public class LeaderboardAPI {
 	/**
 	 * Updates the specified leaderboard with name/value.
 	 * <p>
-	 * Update is dispatched asynchronously, this method does not block or return success/failure
+	 * Update is dispatched asynchronously, this method does not block or return success/failure.
+	 * If updates are batched, only the latest value for each name within a flush interval is written.
 	 *
 	 * @param objective The leaderboard objective name (one leaderboard per objective)
 	 * @param name The name to associate with the value
 	 * @param value Leaderboard value
 	 */
 	public static void updateAsync(String objective, String name, long value) {
+		LeaderboardQueue queue = LeaderboardQueue.getInstance();
+		if (queue != null) {
+			queue.update(objective, name, value);
+			return;
+		}
+
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
 			conn.zadd(getRedisPath(objective), (double)value, name);
 		}
@@ -0,0 +1,209 @@
+package com.playmonumenta.redissync;
+
+import com.playmonumenta.redissync.utils.MMLog;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScoredValue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.Nullable;
+
+/*
+ * Batched mode for LeaderboardAPI.
+ *
+ * Updates are queued per leaderboard, keeping only the latest value for each name, and every flush interval each
+ * leaderboard's queue is written as one ZADD. Reads of the top of a leaderboard are answered from a local snapshot
+ * of its first entries, which is refreshed every flush interval while it is still being read.
+ *
+ * Flushes and snapshot fetches are all sent from one WriteBehindThread, so a refresh that follows a flush always
+ * includes its updates. Each fetch is numbered when it is sent and a snapshot only replaces an older one, so a slow
+ * response can never roll a snapshot back.
+ */
+final class LeaderboardQueue {
+	// Reads further down a leaderboard than this go directly to Redis
+	private static final int MAX_SNAPSHOT_ENTRIES = 1000;
+	// Limits the size of a single ZADD when a very large number of names were updated at once
+	private static final int MAX_MEMBERS_PER_ZADD = 1000;
+	// Snapshots that haven't been read for this long stop being refreshed and are dropped
+	private static final long SNAPSHOT_IDLE_MILLIS = 60000;
+
+	private static volatile @Nullable LeaderboardQueue INSTANCE = null;
+
+	private record SnapshotKey(String mObjective, boolean mAscending) {
+	}
+
+	private static final class Snapshot {
+		private final long mVersion;
+		// How many entries were requested; fewer are present if the leaderboard is shorter than that
+		private final int mRequested;
+		private final List<ScoredValue<String>> mEntries;
+		private volatile long mLastRead;
+
+		private Snapshot(long version, int requested, List<ScoredValue<String>> entries, long lastRead) {
+			mVersion = version;
+			mRequested = requested;
+			mEntries = entries;
+			mLastRead = lastRead;
+		}
+
+		private boolean covers(long stop) {
+			return stop < mRequested || mEntries.size() < mRequested;
+		}
+	}
+
+	private final Map<SnapshotKey, Snapshot> mSnapshots = new ConcurrentHashMap<>();
+	// Guarded by the instance lock
+	private Map<String, Map<String, Long>> mPending = new HashMap<>();
+	// Only used on mRedisThread
+	private long mNextVersion = 1;
+	private final WriteBehindThread mRedisThread;
+
+	private LeaderboardQueue(int flushTicks) {
+		mRedisThread = new WriteBehindThread("MonumentaRedisSync Leaderboard Thread", flushTicks, this::tick);
+	}
+
+	static void start(int flushTicks) {
+		if (flushTicks > 0) {
+			INSTANCE = new LeaderboardQueue(flushTicks);
+		}
+	}
+
+	/* Sends the latest queued scores before the Redis connections close; snapshots are simply dropped */
+	static void onDisable() {
+		LeaderboardQueue instance = INSTANCE;
+		INSTANCE = null;
+		if (instance != null) {
+			instance.mRedisThread.shutdown(instance::flush, "queued leaderboard updates");
+		}
+	}
+
+	static @Nullable LeaderboardQueue getInstance() {
+		return INSTANCE;
+	}
+
+	void update(String objective, String name, long value) {
+		synchronized (this) {
+			mPending.computeIfAbsent(objective, key -> new HashMap<>()).put(name, value);
+		}
+	}
+
+	/* Returns null if the range can't be served from a snapshot, in which case the caller should read it directly */
+	@Nullable CompletableFuture<Map<String, Integer>> get(String objective, long start, long stop, boolean ascending) {
+		if (start < 0 || stop < 0 || stop >= MAX_SNAPSHOT_ENTRIES) {
+			// Negative indices count from the end of the leaderboard, which a snapshot of its start can't answer
+			return null;
+		}
+
+		SnapshotKey key = new SnapshotKey(objective, ascending);
+		Snapshot snapshot = mSnapshots.get(key);
+		if (snapshot != null && snapshot.covers(stop)) {
+			snapshot.mLastRead = System.currentTimeMillis();
+			return CompletableFuture.completedFuture(slice(snapshot, start, stop));
+		}
+
+		int requested = (int) Math.max(stop + 1, snapshot == null ? 0 : snapshot.mRequested);
+		long now = System.currentTimeMillis();
+		return mRedisThread.submit(() -> fetch(key, requested, now))
+			.thenApply(fetched -> slice(fetched, start, stop));
+	}
+
+	private static Map<String, Integer> slice(Snapshot snapshot, long start, long stop) {
+		Map<String, Integer> map = new LinkedHashMap<>();
+		int end = (int) Math.min(stop + 1, snapshot.mEntries.size());
+		for (int i = (int) start; i < end; i++) {
+			ScoredValue<String> value = snapshot.mEntries.get(i);
+			map.put(value.getValue(), (int) value.getScore());
+		}
+		return map;
+	}
+
+	/* Must be called on mRedisThread */
+	private void tick() {
+		try {
+			flush();
+			refresh();
+		} catch (Exception ex) {
+			MMLog.severe("Failed to update leaderboards", ex);
+		}
+	}
+
+	/* Must be called on mRedisThread */
+	private CompletableFuture<?> flush() {
+		Map<String, Map<String, Long>> batch;
+		synchronized (this) {
+			if (mPending.isEmpty()) {
+				return CompletableFuture.completedFuture(null);
+			}
+			batch = mPending;
+			mPending = new HashMap<>();
+		}
+
+		List<CompletableFuture<Long>> results = new ArrayList<>();
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			for (Map.Entry<String, Map<String, Long>> board : batch.entrySet()) {
+				String redisPath = LeaderboardAPI.getRedisPath(board.getKey());
+				List<ScoredValue<String>> members = new ArrayList<>(Math.min(board.getValue().size(), MAX_MEMBERS_PER_ZADD));
+				for (Map.Entry<String, Long> update : board.getValue().entrySet()) {
+					members.add(ScoredValue.just((double) update.getValue(), update.getKey()));
+					if (members.size() == MAX_MEMBERS_PER_ZADD) {
+						results.add(zadd(conn, redisPath, members));
+						members.clear();
+					}
+				}
+				if (!members.isEmpty()) {
+					results.add(zadd(conn, redisPath, members));
+				}
+			}
+		}
+
+		return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).whenComplete((unused, ex) -> {
+			if (ex != null) {
+				MMLog.severe("Failed to flush queued updates for " + batch.size() + " leaderboards", ex);
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static CompletableFuture<Long> zadd(RedisAPI.BorrowedCommands<String, String> conn, String redisPath, List<ScoredValue<String>> members) {
+		return conn.zadd(redisPath, members.toArray(new ScoredValue[0])).toCompletableFuture();
+	}
+
+	/* Must be called on mRedisThread */
+	private void refresh() {
+		long now = System.currentTimeMillis();
+		mSnapshots.entrySet().removeIf(entry -> now - entry.getValue().mLastRead > SNAPSHOT_IDLE_MILLIS);
+		for (Map.Entry<SnapshotKey, Snapshot> entry : mSnapshots.entrySet()) {
+			fetch(entry.getKey(), entry.getValue().mRequested, entry.getValue().mLastRead);
+		}
+	}
+
+	/* Must be called on mRedisThread */
+	private CompletableFuture<Snapshot> fetch(SnapshotKey key, int requested, long lastRead) {
+		long version = mNextVersion++;
+		final RedisFuture<List<ScoredValue<String>>> values;
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			String redisPath = LeaderboardAPI.getRedisPath(key.mObjective());
+			if (key.mAscending()) {
+				values = conn.zrangeWithScores(redisPath, 0, requested - 1);
+			} else {
+				values = conn.zrevrangeWithScores(redisPath, 0, requested - 1);
+			}
+		}
+
+		return values.toCompletableFuture().thenApply(entries -> {
+			Snapshot fetched = new Snapshot(version, requested, List.copyOf(entries), lastRead);
+			mSnapshots.merge(key, fetched, (existing, replacement) -> {
+				if (existing.mVersion > replacement.mVersion) {
+					return existing;
+				}
+				replacement.mLastRead = Math.max(existing.mLastRead, replacement.mLastRead);
+				return replacement;
+			});
+			return fetched;
+		});
+	}
+}
@@ -91,7 +91,10 @@ public class MonumentaRedisSync extends JavaPlugin {
 		}
 
 		loadConfig();
-		mRedisAPI = new RedisAPI(BukkitConfigAPI.getRedisHost(), BukkitConfigAPI.getRedisPort());
+		mRedisAPI = new RedisAPI(BukkitConfigAPI.getRedisHost(), BukkitConfigAPI.getRedisPort(), BukkitConfigAPI.getRedisConnectionPoolSize());
+		RBoardWriteBehind.start(BukkitConfigAPI.getRBoardWriteBehindTicks(), BukkitConfigAPI.getRBoardCacheMillis());
+		LeaderboardQueue.start(BukkitConfigAPI.getLeaderboardFlushTicks());
+		RemoteDataCache.start(this, BukkitConfigAPI.getRemoteDataCacheSize(), BukkitConfigAPI.getRemoteDataCacheMillis());
 		getServer().getPluginManager().registerEvents(new DataEventListener(mVersionAdapter), this);
 		getServer().getPluginManager().registerEvents(new ScoreboardCleanupListener(this, mVersionAdapter), this);
 		getServer().getPluginManager().registerEvents(AccountTransferManager.getInstance(), this);
@@ -106,6 +109,10 @@ public class MonumentaRedisSync extends JavaPlugin {
 	public void onDisable() {
 		INSTANCE = null;
 		AccountTransferManager.onDisable();
+		PlayerDataUpgrader.onDisable();
+		RBoardWriteBehind.onDisable();
+		LeaderboardQueue.onDisable();
+		RemoteDataCache.onDisable();
 		if (mRedisAPI != null) {
 			mRedisAPI.shutdown();
 		}
@@ -135,6 +142,7 @@ public class MonumentaRedisSync extends JavaPlugin {
 		FileConfiguration config = YamlConfiguration.loadConfiguration(configFile);
 		String redisHost = config.getString("redis_host", "redis");
 		int redisPort = config.getInt("redis_port", 6379);
+		int redisConnectionPoolSize = config.getInt("redis_connection_pool_size", 1);
 		String serverDomain = config.getString("server_domain", "default_domain");
 
 		/* Get default shard name from network relay if enabled */
@@ -148,8 +156,16 @@ public class MonumentaRedisSync extends JavaPlugin {
 		int ticksPerPlayerAutosave = config.getInt("ticks_per_player_autosave", 6060);
 		boolean savingDisabled = config.getBoolean("saving_disabled", false);
 		boolean scoreboardCleanupEnabled = config.getBoolean("scoreboard_cleanup_enabled", true);
-
-		new BukkitConfigAPI(getLogger(), redisHost, redisPort, serverDomain, shardName, historyAmount, ticksPerPlayerAutosave, savingDisabled, scoreboardCleanupEnabled);
+		boolean historyDeltaEncoding = config.getBoolean("history_delta_encoding", false);
+		boolean lazyPlayerIndex = config.getBoolean("lazy_player_index", false);
+		int playerIndexCacheSize = config.getInt("player_index_cache_size", 10000);
+		int rboardWriteBehindTicks = config.getInt("rboard_write_behind_ticks", 0);
+		int rboardCacheMillis = config.getInt("rboard_cache_millis", 1000);
+		int leaderboardFlushTicks = config.getInt("leaderboard_flush_ticks", 0);
+		int remoteDataCacheSize = config.getInt("remote_data_cache_size", 0);
+		int remoteDataCacheMillis = config.getInt("remote_data_cache_millis", 30000);
+
+		new BukkitConfigAPI(getLogger(), redisHost, redisPort, redisConnectionPoolSize, serverDomain, shardName, historyAmount, ticksPerPlayerAutosave, savingDisabled, scoreboardCleanupEnabled, historyDeltaEncoding, lazyPlayerIndex, playerIndexCacheSize, rboardWriteBehindTicks, rboardCacheMillis, leaderboardFlushTicks, remoteDataCacheSize, remoteDataCacheMillis);
 	}
 
 	/** @deprecated Use {@link MMLog} static methods instead. */
@@ -9,23 +9,21 @@ import com.google.gson.JsonObject;
 import com.playmonumenta.common.event.PlayerServerTransferEvent;
 import com.playmonumenta.redissync.adapters.VersionAdapter.SaveData;
 import com.playmonumenta.redissync.event.PlayerContentEvent;
+import com.playmonumenta.redissync.utils.HistoryDelta;
 import com.playmonumenta.redissync.utils.MMLog;
-import com.playmonumenta.redissync.utils.Trie;
 import dev.jorel.commandapi.arguments.ArgumentSuggestions;
 import dev.jorel.commandapi.wrappers.Rotation;
 import io.lettuce.core.KeyValue;
 import io.lettuce.core.RedisFuture;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import net.kyori.adventure.text.Component;
@@ -111,40 +109,40 @@ public class MonumentaRedisSyncAPI {
 	}
 
 	public static final int TIMEOUT_SECONDS = 10;
-	public static final ArgumentSuggestions<CommandSender> SUGGESTIONS_ALL_CACHED_PLAYER_NAMES = ArgumentSuggestions.strings((info) ->
-		getAllCachedPlayerNames().toArray(String[]::new));
-
-	private static final Trie<UUID> mNameToUuidTrie = new Trie<>();
-	private static final Map<String, UUID> mNameToUuid = new ConcurrentHashMap<>();
-	private static final Map<String, UUID> mNameLowercaseToUuid = new ConcurrentHashMap<>();
-	private static final Map<UUID, String> mUuidToName = new ConcurrentHashMap<>();
+	private static final int MAX_LAZY_NAME_SUGGESTIONS = 100;
+	public static final ArgumentSuggestions<CommandSender> SUGGESTIONS_ALL_CACHED_PLAYER_NAMES = ArgumentSuggestions.stringsAsync((info) -> {
+		PlayerNameIndex index = PlayerNameIndex.getInstance();
+		if (!index.isLazy()) {
+			return CompletableFuture.completedFuture(index.getNames().toArray(String[]::new));
+		}
+		// Only a fraction of players are cached in lazy mode, so suggest from the full index instead
+		return index.suggestions(info.currentArg(), MAX_LAZY_NAME_SUGGESTIONS).thenApply(names -> names.toArray(String[]::new));
+	});
 
 	protected static void updateUuidToName(UUID uuid, String name) {
-		mUuidToName.put(uuid, name);
+		PlayerNameIndex.getInstance().updateUuidToName(uuid, name);
 	}
 
 	protected static void updateNameToUuid(String name, UUID uuid) {
-		mNameToUuid.put(name, uuid);
-		mNameLowercaseToUuid.put(name.toLowerCase(Locale.ROOT), uuid);
-		mNameToUuidTrie.put(name, uuid);
+		PlayerNameIndex.getInstance().updateNameToUuid(name, uuid);
 	}
 
 	public static CompletableFuture<String> uuidToName(UUID uuid) {
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
-			return conn.hget("uuid2name", uuid.toString()).toCompletableFuture();
+			return conn.hget(PlayerNameIndex.UUID_TO_NAME_KEY, uuid.toString()).toCompletableFuture();
 		}
 	}
 
 	public static CompletableFuture<UUID> nameToUUID(String name) {
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
-			return conn.hget("name2uuid", name).thenApply((uuid) -> (uuid == null || uuid.isEmpty()) ? null : UUID.fromString(uuid)).toCompletableFuture();
+			return conn.hget(PlayerNameIndex.NAME_TO_UUID_KEY, name).thenApply((uuid) -> (uuid == null || uuid.isEmpty()) ? null : UUID.fromString(uuid)).toCompletableFuture();
 		}
 	}
 
 	public static CompletableFuture<Set<String>> getAllPlayerNames() {
 		RedisFuture<Map<String, String>> future;
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
-			future = conn.hgetall("name2uuid");
+			future = conn.hgetall(PlayerNameIndex.NAME_TO_UUID_KEY);
 		}
 		return future.thenApply(Map::keySet).toCompletableFuture();
 	}
@@ -152,32 +150,33 @@ public class MonumentaRedisSyncAPI {
 	public static CompletableFuture<Set<UUID>> getAllPlayerUUIDs() {
 		RedisFuture<Map<String, String>> future;
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
-			future = conn.hgetall("uuid2name");
+			future = conn.hgetall(PlayerNameIndex.UUID_TO_NAME_KEY);
 		}
 		return future.thenApply((data) -> data.keySet().stream().map(UUID::fromString).collect(Collectors.toSet())).toCompletableFuture();
 	}
 
-	// Thread-safe: backed by ConcurrentHashMap, callable from any thread
+	/*
+	 * The cached* methods below only see players in the local cache.
+	 * With the lazy player index enabled that is a bounded subset of players, and a miss fetches the player in the
+	 * background so a later call succeeds; otherwise every player is cached at startup.
+	 */
+
+	// Thread-safe, callable from any thread
 	public static @Nullable String cachedUuidToName(UUID uuid) {
-		return mUuidToName.get(uuid);
+		return PlayerNameIndex.getInstance().uuidToName(uuid);
 	}
 
-	// Thread-safe: backed by ConcurrentHashMap, callable from any thread
+	// Thread-safe, callable from any thread
 	public static @Nullable UUID cachedNameToUuid(String name) {
-		// Player names are case-sensitive (see scoreboard values) - only use case-insensitive version as a fallback.
-		UUID caseSensitiveUuid = mNameToUuid.get(name);
-		if (caseSensitiveUuid != null) {
-			return caseSensitiveUuid;
-		}
-		return mNameLowercaseToUuid.get(name.toLowerCase(Locale.ROOT));
+		return PlayerNameIndex.getInstance().nameToUuid(name);
 	}
 
 	public static Set<String> getAllCachedPlayerNames() {
-		return Collections.unmodifiableSet(mNameToUuid.keySet());
+		return PlayerNameIndex.getInstance().getNames();
 	}
 
 	public static Set<UUID> getAllCachedPlayerUuids() {
-		return Collections.unmodifiableSet(mUuidToName.keySet());
+		return PlayerNameIndex.getInstance().getUuids();
 	}
 
 	public static @Nullable String getCachedCurrentName(String oldName) {
@@ -189,7 +188,7 @@ public class MonumentaRedisSyncAPI {
 	}
 
 	public static String getClosestPlayerName(String longestPossibleName) {
-		@Nullable String result = mNameToUuidTrie.closestKey(longestPossibleName);
+		@Nullable String result = PlayerNameIndex.getInstance().closestName(longestPossibleName);
 		if (result == null) {
 			return "";
 		}
@@ -197,7 +196,16 @@ public class MonumentaRedisSyncAPI {
 	}
 
 	public static List<String> getSuggestedPlayerNames(String currentInput, int maxSuggestions) {
-		return mNameToUuidTrie.suggestions(currentInput, maxSuggestions);
+		return PlayerNameIndex.getInstance().cachedSuggestions(currentInput, maxSuggestions);
+	}
+
+	/**
+	 * Suggests the names of any players who have ever joined, starting with the input ignoring case.
+	 * <p>
+	 * Unlike getSuggestedPlayerNames, this includes players that are not cached locally.
+	 */
+	public static CompletableFuture<List<String>> getSuggestedPlayerNamesAsync(String currentInput, int maxSuggestions) {
+		return PlayerNameIndex.getInstance().suggestions(currentInput, maxSuggestions);
 	}
 
 	public static boolean isPlayerTransferring(Player player) {
@@ -385,6 +393,7 @@ public class MonumentaRedisSyncAPI {
 				byte[] historyOut = ("stash@" + new String(historyRaw, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
 
 				/* Write all five fields to the player's data atomically as bytes */
+				DataEventListener.invalidateHistoryHead(player.getUniqueId());
 				RedisAPI.multiStringBytes(conn -> {
 					conn.lpush(getRedisDataPath(player), data);
 					conn.lpush(getRedisAdvancementsPath(player), advance);
@@ -518,8 +527,9 @@ public class MonumentaRedisSyncAPI {
 								uuid = null;
 							}
 							Component result = Component.text(stashName).clickEvent(ClickEvent.copyToClipboard(stashName));
-							if (uuid != null && mUuidToName.containsKey(uuid)) {
-								result = result.hoverEvent(Component.text("This UUID belongs to " + mUuidToName.get(uuid)));
+							@Nullable String uuidName = uuid == null ? null : cachedUuidToName(uuid);
+							if (uuidName != null) {
+								result = result.hoverEvent(Component.text("This UUID belongs to " + uuidName));
 							} else {
 								result = result.hoverEvent(Component.empty());
 							}
@@ -556,9 +566,9 @@ public class MonumentaRedisSyncAPI {
 
 		/* Wait for save to complete */
 		DataEventListener.waitForPlayerToSaveThenSync(player, () -> {
-			/* Read all five fields atomically as bytes */
+			/* Read all five fields atomically as bytes - data history up to the index, as older entries may be deltas */
 			RedisAPI.multiStringBytes(conn -> {
-				conn.lindex(getRedisDataPath(player), rollbackIndex);
+				conn.lrange(getRedisDataPath(player), 0, rollbackIndex);
 				conn.lindex(getRedisAdvancementsPath(player), rollbackIndex);
 				conn.lindex(getRedisScoresPath(player), rollbackIndex);
 				conn.lindex(getRedisPluginDataPath(player), rollbackIndex);
@@ -570,7 +580,14 @@ public class MonumentaRedisSyncAPI {
 					return;
 				}
 
-				byte[] data = (byte[]) readResult.get(0);
+				byte[] data;
+				try {
+					data = resolveDataHistoryEntry(readResult.get(0), rollbackIndex);
+				} catch (IOException ex) {
+					MMLog.severe("Failed to rebuild rollback data for player '" + player.getName() + "'", ex);
+					moderator.sendMessage(Component.text("Failed to rebuild rollback data: " + ex.getMessage(), NamedTextColor.RED));
+					return;
+				}
 				byte[] advance = (byte[]) readResult.get(1);
 				byte[] score = (byte[]) readResult.get(2);
 				byte[] plugin = (byte[]) readResult.get(3);
@@ -585,6 +602,7 @@ public class MonumentaRedisSyncAPI {
 				byte[] historyOut = ("rollback@" + new String(historyRaw, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
 
 				/* Write all five fields atomically as bytes */
+				DataEventListener.invalidateHistoryHead(player.getUniqueId());
 				RedisAPI.multiStringBytes(conn -> {
 					conn.lpush(getRedisDataPath(player), data);
 					conn.lpush(getRedisAdvancementsPath(player), advance);
@@ -619,9 +637,9 @@ public class MonumentaRedisSyncAPI {
 
 		/* Wait for save to complete */
 		DataEventListener.waitForPlayerToSaveThenSync(loadTo, () -> {
-			/* Read all five fields atomically as bytes */
+			/* Read all five fields atomically as bytes - data history up to the index, as older entries may be deltas */
 			RedisAPI.multiStringBytes(conn -> {
-				conn.lindex(getRedisDataPath(loadFrom), index);
+				conn.lrange(getRedisDataPath(loadFrom), 0, index);
 				conn.lindex(getRedisAdvancementsPath(loadFrom), index);
 				conn.lindex(getRedisScoresPath(loadFrom), index);
 				conn.lindex(getRedisPluginDataPath(loadFrom), index);
@@ -633,7 +651,14 @@ public class MonumentaRedisSyncAPI {
 					return;
 				}
 
-				byte[] data = (byte[]) readResult.get(0);
+				byte[] data;
+				try {
+					data = resolveDataHistoryEntry(readResult.get(0), index);
+				} catch (IOException ex) {
+					MMLog.severe("Failed to rebuild data for player '" + loadFrom.getName() + "'", ex);
+					loadTo.sendMessage(Component.text("Failed to rebuild data: " + ex.getMessage(), NamedTextColor.RED));
+					return;
+				}
 				byte[] advance = (byte[]) readResult.get(1);
 				byte[] score = (byte[]) readResult.get(2);
 				byte[] plugin = (byte[]) readResult.get(3);
@@ -648,6 +673,7 @@ public class MonumentaRedisSyncAPI {
 				byte[] historyOut = ("loadfrom@" + loadFrom.getName() + "@" + new String(historyRaw, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
 
 				/* Write all five fields atomically as bytes */
+				DataEventListener.invalidateHistoryHead(loadTo.getUniqueId());
 				RedisAPI.multiStringBytes(conn -> {
 					conn.lpush(getRedisDataPath(loadTo), data);
 					conn.lpush(getRedisAdvancementsPath(loadTo), advance);
@@ -667,6 +693,23 @@ public class MonumentaRedisSyncAPI {
 		});
 	}
 
+	/**
+	 * Rebuilds a full player data blob from the start of a player's data history list.
+	 * <p>
+	 * Older entries in the list may be stored as deltas against the next newer entry (see {@link HistoryDelta}).
+	 *
+	 * @param entries  The data history list from index 0 through at least {@code index}, as returned by LRANGE
+	 * @param index    Index of the entry to rebuild
+	 *
+	 * @return the full gzip-compressed player data, or null if the list does not have an entry at that index
+	 */
+	public static @Nullable byte[] resolveDataHistoryEntry(@Nullable List<byte[]> entries, int index) throws IOException {
+		if (entries == null || index >= entries.size()) {
+			return null;
+		}
+		return HistoryDelta.resolve(entries, index);
+	}
+
 	public static String getRedisDataPath(Player player) {
 		return getRedisDataPath(player.getUniqueId());
 	}
@@ -1145,6 +1188,7 @@ public class MonumentaRedisSyncAPI {
 		MonumentaRedisSync mrs = MonumentaRedisSync.getInstance();
 
 		SaveData splitData = mrs.getVersionAdapter().extractSaveData(data.getNbtTagCompoundData(), null);
+		DataEventListener.invalidateHistoryHead(data.getUniqueId());
 		return RedisAPI.multiStringBytes(conn -> {
 			conn.lpush(getRedisDataPath(data.getUniqueId()), splitData.getData());
 			conn.lpush(getRedisAdvancementsPath(data.getUniqueId()), data.getAdvancements().getBytes(StandardCharsets.UTF_8));
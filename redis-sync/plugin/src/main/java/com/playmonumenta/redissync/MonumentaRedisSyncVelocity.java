@@ -56,7 +56,7 @@ public class MonumentaRedisSyncVelocity {
 		System.setProperty("com.playmonumenta.redissync.internal.netty", "com.playmonumenta.redissync.internal");
 
 		loadConfig();
-		mRedisAPI = new RedisAPI(ProxyConfigAPI.getRedisHost(), ProxyConfigAPI.getRedisPort());
+		mRedisAPI = new RedisAPI(ProxyConfigAPI.getRedisHost(), ProxyConfigAPI.getRedisPort(), ProxyConfigAPI.getRedisConnectionPoolSize());
 	}
 
 	@Subscribe
@@ -91,6 +91,7 @@ public class MonumentaRedisSyncVelocity {
 
 		String redisHost = mConfig.mRedisHost;
 		int redisPort = mConfig.mRedisPort;
+		int redisConnectionPoolSize = mConfig.mRedisConnectionPoolSize;
 		String serverDomain = mConfig.mServerDomain;
 		String shardName = mConfig.mShardName;
 		String defaultServer = mConfig.mDefaultServer;
@@ -100,6 +101,7 @@ public class MonumentaRedisSyncVelocity {
 			mLogger,
 			redisHost,
 			redisPort,
+			redisConnectionPoolSize,
 			serverDomain,
 			shardName,
 			defaultServer,
@@ -128,6 +130,9 @@ public class MonumentaRedisSyncVelocity {
 		@Setting(value = "redis_port")
 		public int mRedisPort = 6379;
 
+		@Setting(value = "redis_connection_pool_size")
+		public int mRedisConnectionPoolSize = 1;
+
 		@Setting(value = "server_domain")
 		public String mServerDomain = "bungee";
 
@@ -0,0 +1,335 @@
+package com.playmonumenta.redissync;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.playmonumenta.redissync.MonumentaRedisSyncAPI.RedisPlayerData;
+import com.playmonumenta.redissync.adapters.VersionAdapter;
+import com.playmonumenta.redissync.adapters.VersionAdapter.SaveData;
+import com.playmonumenta.redissync.utils.MMLog;
+import io.lettuce.core.MapScanCursor;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Upgrades the stored data of every offline player to the current game version without blocking the main thread.
+ * <p>
+ * Players are streamed from the uuid2name hash with HSCAN instead of being loaded all at once. The players in each
+ * scan page are upgraded on a worker pool, at most maxInFlight at a time, and each group is written back as a single
+ * pipelined transaction. Once a page is fully written the scan cursor is stored in redis, so a run that is stopped
+ * or interrupted by a restart resumes after the last completed page. Players from a partially completed page are
+ * upgraded again on resume, which only adds another history entry.
+ * <p>
+ * Players online on this shard are skipped; the game upgrades their data when it is next loaded anyway.
+ */
+public class PlayerDataUpgrader {
+	public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+
+	private static @Nullable PlayerDataUpgrader RUNNING = null;
+
+	private static class UpgradedPlayer {
+		private final RedisPlayerData mData;
+		private final SaveData mSaveData;
+
+		private UpgradedPlayer(RedisPlayerData data, SaveData saveData) {
+			mData = data;
+			mSaveData = saveData;
+		}
+	}
+
+	private final MonumentaRedisSync mPlugin;
+	private final VersionAdapter mAdapter;
+	private final int mMaxInFlight;
+	private final ExecutorService mWorkers;
+	private final long mStartTime = System.currentTimeMillis();
+	private final AtomicInteger mUpgraded = new AtomicInteger(0);
+	private final AtomicInteger mSkipped = new AtomicInteger(0);
+	private final AtomicInteger mFailed = new AtomicInteger(0);
+	private volatile boolean mStopRequested = false;
+
+	private PlayerDataUpgrader(MonumentaRedisSync plugin, int maxInFlight) {
+		mPlugin = plugin;
+		mAdapter = plugin.getVersionAdapter();
+		mMaxInFlight = maxInFlight;
+		// Leave most cores to the server; the redis round trips overlap with upgrading either way
+		int threads = Math.max(1, Math.min(maxInFlight, Runtime.getRuntime().availableProcessors() / 2));
+		mWorkers = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("MonumentaRedisSync Upgrade Thread %d").build());
+	}
+
+	/**
+	 * Starts upgrading all players, resuming from the stored checkpoint unless restart is set.
+	 *
+	 * @param maxInFlight Maximum number of players read, upgraded and written at the same time
+	 * @param restart     Discard any stored checkpoint and start from the first player
+	 */
+	public static synchronized void start(MonumentaRedisSync plugin, int maxInFlight, boolean restart) throws Exception {
+		if (RUNNING != null) {
+			throw new Exception("A player data upgrade is already running");
+		}
+		PlayerDataUpgrader upgrader = new PlayerDataUpgrader(plugin, maxInFlight);
+		try {
+			upgrader.begin(restart);
+		} catch (Exception ex) {
+			upgrader.mWorkers.shutdown();
+			throw ex;
+		}
+		RUNNING = upgrader;
+	}
+
+	/**
+	 * Requests that the running upgrade stops after the players currently in flight.
+	 *
+	 * @return Whether an upgrade was running
+	 */
+	public static synchronized boolean stop() {
+		PlayerDataUpgrader upgrader = RUNNING;
+		if (upgrader == null) {
+			return false;
+		}
+		upgrader.mStopRequested = true;
+		return true;
+	}
+
+	protected static synchronized void onDisable() {
+		PlayerDataUpgrader upgrader = RUNNING;
+		if (upgrader != null) {
+			upgrader.mStopRequested = true;
+			upgrader.mWorkers.shutdownNow();
+			RUNNING = null;
+		}
+	}
+
+	public static String getRedisCheckpointPath() {
+		return String.format("%s:upgradeallplayers:cursor", CommonConfig.getServerDomain());
+	}
+
+	private void begin(boolean restart) {
+		CompletableFuture<ScanCursor> startCursor;
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			if (restart) {
+				startCursor = conn.del(getRedisCheckpointPath()).toCompletableFuture().thenApply(unused -> ScanCursor.INITIAL);
+			} else {
+				startCursor = conn.get(getRedisCheckpointPath()).toCompletableFuture()
+					.thenApply(cursor -> cursor == null ? ScanCursor.INITIAL : ScanCursor.of(cursor));
+			}
+		}
+
+		startCursor.whenCompleteAsync((cursor, ex) -> {
+			if (ex != null) {
+				finish(ex);
+				return;
+			}
+			if (cursor == ScanCursor.INITIAL) {
+				broadcast("Player data upgrade has started for offline players, " + mMaxInFlight + " at a time", NamedTextColor.WHITE);
+			} else {
+				broadcast("Player data upgrade is resuming from its last checkpoint, " + mMaxInFlight + " players at a time", NamedTextColor.WHITE);
+			}
+			scanPage(cursor);
+		}, mWorkers);
+	}
+
+	private void scanPage(ScanCursor cursor) {
+		if (mStopRequested) {
+			finish(null);
+			return;
+		}
+
+		CompletableFuture<MapScanCursor<String, String>> page;
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			page = conn.hscan(PlayerNameIndex.UUID_TO_NAME_KEY, cursor, ScanArgs.Builder.limit(mMaxInFlight)).toCompletableFuture();
+		}
+
+		// Redis is only used from the worker threads, never from the threads completing redis futures
+		page.thenComposeAsync(result -> upgradePlayers(new ArrayList<>(result.getMap().keySet()), 0).thenApply(completed -> completed ? result : null), mWorkers)
+			.thenComposeAsync(this::saveCheckpoint, mWorkers)
+			.whenCompleteAsync((result, ex) -> {
+				if (ex != null) {
+					finish(ex);
+				} else if (result == null || result.isFinished()) {
+					// Either stopped part way through the page, or every player has been visited
+					finish(null);
+				} else {
+					MMLog.info(() -> "Player data upgrade progress: " + progress());
+					scanPage(result);
+				}
+			}, mWorkers);
+	}
+
+	/* Upgrades the players from start onwards, mMaxInFlight at a time. Completes with false if stopped before the end. */
+	private CompletableFuture<Boolean> upgradePlayers(List<String> uuids, int start) {
+		if (start >= uuids.size()) {
+			return CompletableFuture.completedFuture(true);
+		}
+		if (mStopRequested) {
+			return CompletableFuture.completedFuture(false);
+		}
+
+		int end = Math.min(uuids.size(), start + mMaxInFlight);
+		List<CompletableFuture<UpgradedPlayer>> upgrades = new ArrayList<>();
+		for (String uuid : uuids.subList(start, end)) {
+			upgrades.add(upgradePlayer(uuid));
+		}
+
+		return CompletableFuture.allOf(upgrades.toArray(new CompletableFuture<?>[0]))
+			.thenComposeAsync(unused -> savePlayers(upgrades.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList()), mWorkers)
+			.thenComposeAsync(unused -> upgradePlayers(uuids, end), mWorkers);
+	}
+
+	private CompletableFuture<UpgradedPlayer> upgradePlayer(String uuidStr) {
+		UUID uuid;
+		CompletableFuture<RedisPlayerData> load;
+		try {
+			uuid = UUID.fromString(uuidStr);
+			load = MonumentaRedisSyncAPI.getOfflinePlayerData(uuid);
+		} catch (Exception ex) {
+			// Invalid entry or player is online here
+			MMLog.fine(() -> "Skipping player data upgrade for " + uuidStr + ": " + ex.getMessage());
+			mSkipped.incrementAndGet();
+			return CompletableFuture.completedFuture(null);
+		}
+
+		return load.thenApplyAsync(data -> upgradePlayer(uuid, data), mWorkers).exceptionally(ex -> {
+			MMLog.severe("Failed to load player for upgrade: " + uuid, ex);
+			mFailed.incrementAndGet();
+			return null;
+		});
+	}
+
+	private @Nullable UpgradedPlayer upgradePlayer(UUID uuid, @Nullable RedisPlayerData data) {
+		if (data == null) {
+			mSkipped.incrementAndGet();
+			return null;
+		}
+
+		try {
+			Object newData = mAdapter.upgradePlayerData(data.getNbtTagCompoundData());
+			if (newData == null) {
+				MMLog.severe("Failed to upgrade player data: " + uuid);
+				mFailed.incrementAndGet();
+				return null;
+			}
+			data.setNbtTagCompoundData(newData);
+
+			String newAdvancements = mAdapter.upgradePlayerAdvancements(data.getAdvancements());
+			if (newAdvancements == null) {
+				MMLog.severe("Failed to upgrade player advancements: " + uuid);
+				mFailed.incrementAndGet();
+				return null;
+			}
+			data.setAdvancements(newAdvancements);
+
+			data.setHistory("VERSION_UPGRADE|" + System.currentTimeMillis() + "|" + uuid);
+
+			return new UpgradedPlayer(data, mAdapter.extractSaveData(newData, null));
+		} catch (Exception ex) {
+			MMLog.severe("Failed to upgrade player: " + uuid, ex);
+			mFailed.incrementAndGet();
+			return null;
+		}
+	}
+
+	/* Writes a group of upgraded players in one transaction, the same way saveOfflinePlayerData writes one */
+	private CompletableFuture<Void> savePlayers(List<UpgradedPlayer> players) {
+		if (players.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		for (UpgradedPlayer player : players) {
+			DataEventListener.invalidateHistoryHead(player.mData.getUniqueId());
+		}
+		return RedisAPI.multiStringBytes(conn -> {
+			for (UpgradedPlayer player : players) {
+				RedisPlayerData data = player.mData;
+				UUID uuid = data.getUniqueId();
+				conn.lpush(MonumentaRedisSyncAPI.getRedisDataPath(uuid), player.mSaveData.getData());
+				conn.lpush(MonumentaRedisSyncAPI.getRedisAdvancementsPath(uuid), data.getAdvancements().getBytes(StandardCharsets.UTF_8));
+				conn.lpush(MonumentaRedisSyncAPI.getRedisScoresPath(uuid), data.getScores().getBytes(StandardCharsets.UTF_8));
+				conn.lpush(MonumentaRedisSyncAPI.getRedisPluginDataPath(uuid), data.getPluginData().getBytes(StandardCharsets.UTF_8));
+				conn.lpush(MonumentaRedisSyncAPI.getRedisHistoryPath(uuid), data.getHistory().getBytes(StandardCharsets.UTF_8));
+			}
+		}).handle((result, ex) -> {
+			if (ex != null) {
+				MMLog.severe("Failed to commit " + players.size() + " upgraded players", ex);
+				mFailed.addAndGet(players.size());
+				return null;
+			}
+			if (result.wasDiscarded() || result.size() != players.size() * 5) {
+				MMLog.severe("Failed to commit " + players.size() + " upgraded players");
+				mFailed.addAndGet(players.size());
+				return null;
+			}
+			for (int i = 0; i < players.size(); i++) {
+				boolean committed = true;
+				for (int j = 0; j < 5; j++) {
+					if (result.get(i * 5 + j) == null) {
+						committed = false;
+					}
+				}
+				if (committed) {
+					mUpgraded.incrementAndGet();
+				} else {
+					MMLog.severe("Failed to commit upgraded player: " + players.get(i).mData.getUniqueId());
+					mFailed.incrementAndGet();
+				}
+			}
+			return null;
+		});
+	}
+
+	private CompletableFuture<MapScanCursor<String, String>> saveCheckpoint(@Nullable MapScanCursor<String, String> result) {
+		if (result == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		CompletableFuture<?> save;
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			if (result.isFinished()) {
+				save = conn.del(getRedisCheckpointPath()).toCompletableFuture();
+			} else {
+				save = conn.set(getRedisCheckpointPath(), result.getCursor()).toCompletableFuture();
+			}
+		}
+		return save.thenApply(unused -> result);
+	}
+
+	private void finish(@Nullable Throwable ex) {
+		synchronized (PlayerDataUpgrader.class) {
+			if (RUNNING == this) {
+				RUNNING = null;
+			}
+		}
+		mWorkers.shutdown();
+
+		if (ex != null) {
+			MMLog.severe("Player data upgrade failed", ex);
+			broadcast("Player data upgrade failed, run it again to resume: " + ex.getMessage() + " (" + progress() + ")", NamedTextColor.RED);
+		} else if (mStopRequested) {
+			broadcast("Player data upgrade stopped, run it again to resume (" + progress() + ")", NamedTextColor.WHITE);
+		} else {
+			broadcast("Player data upgrade complete (" + progress() + ")", NamedTextColor.WHITE);
+		}
+	}
+
+	private String progress() {
+		return "upgraded: " + mUpgraded.get() + ", skipped: " + mSkipped.get() + ", failed: " + mFailed.get()
+			+ ", elapsed: " + (System.currentTimeMillis() - mStartTime) / 1000 + "s";
+	}
+
+	private void broadcast(String message, NamedTextColor color) {
+		MMLog.info(message);
+		if (mPlugin.isEnabled()) {
+			Bukkit.getScheduler().runTask(mPlugin, () -> Bukkit.getServer().sendMessage(Component.text(message, color)));
+		}
+	}
+}
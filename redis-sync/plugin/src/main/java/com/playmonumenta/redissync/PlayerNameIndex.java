@@ -0,0 +1,420 @@
+package com.playmonumenta.redissync;
+
+import com.playmonumenta.redissync.utils.MMLog;
+import com.playmonumenta.redissync.utils.Trie;
+import io.lettuce.core.Limit;
+import io.lettuce.core.MapScanCursor;
+import io.lettuce.core.Range;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.ScoredValue;
+import io.lettuce.core.output.KeyValueStreamingChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Local copy of the player name/UUID mappings stored in the uuid2name and name2uuid hashes.
+ * <p>
+ * In the default eager mode, both hashes are loaded in full when the plugin starts and every known player is cached.
+ * <p>
+ * In lazy mode nothing is loaded at startup. Players are cached as they log in anywhere on the network or are looked
+ * up, up to a fixed number of entries with the least recently used evicted first. A lookup that misses returns null
+ * and fetches the mapping in the background, so the same lookup succeeds shortly afterwards. Names that do not match
+ * exactly are looked up ignoring case through the NAME_INDEX_KEY sorted set, like the eager case-insensitive fallback. Players that turn out
+ * not to exist are remembered for MISS_CACHE_MILLIS, so repeated lookups of them do not each query redis.
+ * <p>
+ * Prefix suggestions over every player ever seen are served from the NAME_INDEX_KEY sorted set, which holds
+ * "lowercasename:Name" members with score 0 so ZRANGEBYLEX can match case-insensitive prefixes.
+ * The sorted set is written on every login and built from name2uuid the first time a shard finds it has not been
+ * built yet. NAME_INDEX_BUILT_KEY is only set once a build has finished, so an interrupted build is started again.
+ * <p>
+ * All methods are thread safe.
+ */
+public class PlayerNameIndex {
+	public static final String UUID_TO_NAME_KEY = "uuid2name";
+	public static final String NAME_TO_UUID_KEY = "name2uuid";
+	public static final String NAME_INDEX_KEY = "nameindex";
+	public static final String NAME_INDEX_BUILT_KEY = "nameindex:built";
+
+	private static final int INDEX_BUILD_PAGE_SIZE = 1000;
+	// One past the last character allowed in player names, so [prefix, prefix + this) covers every name with that prefix
+	private static final char INDEX_PREFIX_END = '\u007f';
+	// How long a lookup of an unknown player is answered from the cache before redis is asked again
+	private static final long MISS_CACHE_MILLIS = 30_000;
+
+	private static volatile PlayerNameIndex INSTANCE = new PlayerNameIndex(false, 0);
+
+	private final boolean mLazy;
+	private final int mMaxCached;
+	private final Trie<UUID> mNameToUuidTrie = new Trie<>();
+	private final Map<String, UUID> mNameToUuid = new ConcurrentHashMap<>();
+	private final Map<String, UUID> mNameLowercaseToUuid = new ConcurrentHashMap<>();
+	private final Map<UUID, String> mUuidToName = new ConcurrentHashMap<>();
+
+	/*
+	 * Lazy mode only - cached entries in least to most recently used order, for eviction.
+	 * Guarded by synchronizing on each set.
+	 */
+	private final LinkedHashSet<UUID> mUuidRecency = new LinkedHashSet<>();
+	private final LinkedHashSet<String> mNameRecency = new LinkedHashSet<>();
+	private final Set<UUID> mPendingUuids = ConcurrentHashMap.newKeySet();
+	private final Set<String> mPendingNames = ConcurrentHashMap.newKeySet();
+	// Lazy mode only - players not found in redis, and when the lookup may be tried again
+	private final Map<UUID, Long> mMissingUuids = new ConcurrentHashMap<>();
+	private final Map<String, Long> mMissingNames = new ConcurrentHashMap<>();
+
+	private PlayerNameIndex(boolean lazy, int maxCached) {
+		mLazy = lazy;
+		mMaxCached = maxCached;
+	}
+
+	/**
+	 * Replaces the index with one using the given mode and starts loading it. Called once redis is available.
+	 */
+	protected static void load(boolean lazy, int maxCached) {
+		PlayerNameIndex index = new PlayerNameIndex(lazy, maxCached);
+		INSTANCE = index;
+
+		if (!lazy) {
+			try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+				conn.hgetall(index.new UuidToNameStreamingChannel(), UUID_TO_NAME_KEY);
+				conn.hgetall(index.new NameToUuidStreamingChannel(), NAME_TO_UUID_KEY);
+			}
+		}
+
+		CompletableFuture<Long> indexBuilt;
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			indexBuilt = conn.exists(NAME_INDEX_BUILT_KEY).toCompletableFuture();
+		}
+		indexBuilt.thenAcceptAsync(exists -> {
+			if (exists == 0) {
+				MMLog.info("Building player name index from " + NAME_TO_UUID_KEY);
+				buildNameIndex(ScanCursor.INITIAL, 0);
+			}
+		}).exceptionally(ex -> {
+			MMLog.severe("Failed to check for the player name index", ex);
+			return null;
+		});
+	}
+
+	protected static PlayerNameIndex getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the member stored in the NAME_INDEX_KEY sorted set for this name.
+	 */
+	public static String indexMember(String name) {
+		return name.toLowerCase(Locale.ROOT) + ":" + name;
+	}
+
+	public boolean isLazy() {
+		return mLazy;
+	}
+
+	/* ******************* Cache updates ******************* */
+
+	protected void updateUuidToName(UUID uuid, String name) {
+		mUuidToName.put(uuid, name);
+		if (mLazy) {
+			mMissingUuids.remove(uuid);
+			touch(mUuidRecency, uuid);
+			evict(mUuidRecency, mUuidToName::remove);
+		}
+	}
+
+	protected void updateNameToUuid(String name, UUID uuid) {
+		mNameToUuid.put(name, uuid);
+		mNameLowercaseToUuid.put(name.toLowerCase(Locale.ROOT), uuid);
+		mNameToUuidTrie.put(name, uuid);
+		if (mLazy) {
+			mMissingNames.remove(name);
+			touch(mNameRecency, name);
+			evict(mNameRecency, this::removeName);
+		}
+	}
+
+	private void removeName(String name) {
+		UUID uuid = mNameToUuid.remove(name);
+		if (uuid != null) {
+			mNameLowercaseToUuid.remove(name.toLowerCase(Locale.ROOT), uuid);
+		}
+		mNameToUuidTrie.remove(name);
+	}
+
+	private static <K> void touch(LinkedHashSet<K> recency, K key) {
+		synchronized (recency) {
+			recency.remove(key);
+			recency.add(key);
+		}
+	}
+
+	/* Returns whether a recent lookup of this key found nothing, forgetting the miss once it has expired */
+	private static <K> boolean isRecentMiss(Map<K, Long> misses, K key) {
+		Long expiry = misses.get(key);
+		if (expiry == null) {
+			return false;
+		}
+		if (System.currentTimeMillis() < expiry) {
+			return true;
+		}
+		misses.remove(key, expiry);
+		return false;
+	}
+
+	private <K> void addMiss(Map<K, Long> misses, K key) {
+		long now = System.currentTimeMillis();
+		// Bounded like the cache itself, so looking up many unknown players cannot grow it without limit
+		if (misses.size() >= mMaxCached) {
+			misses.values().removeIf(expiry -> expiry <= now);
+			if (misses.size() >= mMaxCached) {
+				misses.clear();
+			}
+		}
+		misses.put(key, now + MISS_CACHE_MILLIS);
+	}
+
+	private <K> void evict(LinkedHashSet<K> recency, Consumer<K> remove) {
+		List<K> evicted = null;
+		synchronized (recency) {
+			Iterator<K> iter = recency.iterator();
+			while (recency.size() > mMaxCached && iter.hasNext()) {
+				if (evicted == null) {
+					evicted = new ArrayList<>();
+				}
+				evicted.add(iter.next());
+				iter.remove();
+			}
+		}
+		if (evicted != null) {
+			evicted.forEach(remove);
+		}
+	}
+
+	/* ******************* Lookups ******************* */
+
+	public @Nullable String uuidToName(UUID uuid) {
+		String name = mUuidToName.get(uuid);
+		if (mLazy) {
+			if (name != null) {
+				touch(mUuidRecency, uuid);
+			} else if (!isRecentMiss(mMissingUuids, uuid) && mPendingUuids.add(uuid)) {
+				fetchName(uuid);
+			}
+		}
+		return name;
+	}
+
+	public @Nullable UUID nameToUuid(String name) {
+		// Player names are case-sensitive (see scoreboard values) - only use case-insensitive version as a fallback.
+		UUID uuid = mNameToUuid.get(name);
+		if (uuid == null) {
+			uuid = mNameLowercaseToUuid.get(name.toLowerCase(Locale.ROOT));
+		}
+		if (mLazy) {
+			if (uuid != null) {
+				if (mNameToUuid.containsKey(name)) {
+					touch(mNameRecency, name);
+				}
+			} else if (!isRecentMiss(mMissingNames, name) && mPendingNames.add(name)) {
+				fetchUuid(name);
+			}
+		}
+		return uuid;
+	}
+
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(mNameToUuid.keySet());
+	}
+
+	public Set<UUID> getUuids() {
+		return Collections.unmodifiableSet(mUuidToName.keySet());
+	}
+
+	public @Nullable String closestName(String longestPossibleName) {
+		return mNameToUuidTrie.closestKey(longestPossibleName);
+	}
+
+	public List<String> cachedSuggestions(String currentInput, int maxSuggestions) {
+		return mNameToUuidTrie.suggestions(currentInput, maxSuggestions);
+	}
+
+	/**
+	 * Suggests names of any known player, cached or not, starting with the input ignoring case.
+	 */
+	public CompletableFuture<List<String>> suggestions(String currentInput, int maxSuggestions) {
+		String prefix = currentInput.toLowerCase(Locale.ROOT);
+		CompletableFuture<List<String>> members;
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			members = conn.zrangebylex(NAME_INDEX_KEY,
+				Range.from(Range.Boundary.including(prefix), Range.Boundary.excluding(prefix + INDEX_PREFIX_END)),
+				Limit.create(0, maxSuggestions)).toCompletableFuture();
+		}
+		return members.thenApply(result -> {
+			List<String> names = new ArrayList<>(result.size());
+			for (String member : result) {
+				names.add(member.substring(member.indexOf(':') + 1));
+			}
+			return names;
+		});
+	}
+
+	/* ******************* Lazy loading ******************* */
+
+	private void fetchName(UUID uuid) {
+		CompletableFuture<String> name;
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			name = conn.hget(UUID_TO_NAME_KEY, uuid.toString()).toCompletableFuture();
+		}
+		name.whenComplete((result, ex) -> {
+			if (ex != null) {
+				MMLog.warning("Failed to look up name for " + uuid, ex);
+			} else if (result != null) {
+				updateUuidToName(uuid, result);
+			} else {
+				addMiss(mMissingUuids, uuid);
+			}
+			mPendingUuids.remove(uuid);
+		});
+	}
+
+	private void fetchUuid(String name) {
+		CompletableFuture<String> uuid;
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			uuid = conn.hget(NAME_TO_UUID_KEY, name).toCompletableFuture();
+		}
+		uuid.thenCompose(result -> result != null && !result.isEmpty()
+				? CompletableFuture.completedFuture(Optional.of(Map.entry(name, result)))
+				: fetchUuidIgnoringCase(name))
+			.whenComplete((result, ex) -> {
+				if (ex != null) {
+					MMLog.warning("Failed to look up UUID for " + name, ex);
+				} else if (result.isPresent()) {
+					try {
+						updateNameToUuid(result.get().getKey(), UUID.fromString(result.get().getValue()));
+					} catch (IllegalArgumentException ignored) {
+						// Corrupt entry, treat as unknown
+						addMiss(mMissingNames, name);
+					}
+				} else {
+					addMiss(mMissingNames, name);
+				}
+				mPendingNames.remove(name);
+			});
+	}
+
+	/*
+	 * Finds the name as it is actually cased through its lowercase NAME_INDEX_KEY member, then that name's UUID,
+	 * as eager mode would find it through mNameLowercaseToUuid. Empty if no player has the name in any case.
+	 */
+	private static CompletableFuture<Optional<Map.Entry<String, String>>> fetchUuidIgnoringCase(String name) {
+		// Names cannot contain ':', so these members all start with exactly this lowercase name
+		String prefix = name.toLowerCase(Locale.ROOT) + ":";
+		CompletableFuture<List<String>> members;
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			members = conn.zrangebylex(NAME_INDEX_KEY,
+				Range.from(Range.Boundary.including(prefix), Range.Boundary.excluding(prefix + INDEX_PREFIX_END)),
+				Limit.create(0, 1)).toCompletableFuture();
+		}
+		return members.thenCompose(result -> {
+			if (result.isEmpty()) {
+				return CompletableFuture.completedFuture(Optional.empty());
+			}
+			String casedName = result.get(0).substring(prefix.length());
+			CompletableFuture<String> uuid;
+			try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+				uuid = conn.hget(NAME_TO_UUID_KEY, casedName).toCompletableFuture();
+			}
+			return uuid.thenApply(uuidResult -> uuidResult == null || uuidResult.isEmpty()
+				? Optional.empty()
+				: Optional.of(Map.entry(casedName, uuidResult)));
+		});
+	}
+
+	/*
+	 * Adds every name in name2uuid to the sorted set index, one HSCAN page at a time, then marks the index as built.
+	 * Adding a name that is already in the index changes nothing, so a build that was interrupted is simply redone.
+	 */
+	private static void buildNameIndex(ScanCursor cursor, long added) {
+		CompletableFuture<MapScanCursor<String, String>> page;
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			page = conn.hscan(NAME_TO_UUID_KEY, cursor, ScanArgs.Builder.limit(INDEX_BUILD_PAGE_SIZE)).toCompletableFuture();
+		}
+		page.thenComposeAsync(result -> {
+			if (result.getMap().isEmpty()) {
+				return CompletableFuture.completedFuture(result);
+			}
+			List<ScoredValue<String>> members = new ArrayList<>(result.getMap().size());
+			for (String name : result.getMap().keySet()) {
+				members.add(ScoredValue.just(0, indexMember(name)));
+			}
+			CompletableFuture<Long> zadd;
+			try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+				@SuppressWarnings("unchecked")
+				ScoredValue<String>[] membersArray = members.toArray(new ScoredValue[0]);
+				zadd = conn.zadd(NAME_INDEX_KEY, membersArray).toCompletableFuture();
+			}
+			return zadd.thenApply(unused -> result);
+		}).whenCompleteAsync((result, ex) -> {
+			if (ex != null) {
+				MMLog.severe("Failed to build player name index", ex);
+			} else if (result.isFinished()) {
+				markNameIndexBuilt(added + result.getMap().size());
+			} else {
+				buildNameIndex(result, added + result.getMap().size());
+			}
+		});
+	}
+
+	private static void markNameIndexBuilt(long added) {
+		CompletableFuture<String> set;
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			set = conn.set(NAME_INDEX_BUILT_KEY, "1").toCompletableFuture();
+		}
+		set.whenComplete((unused, ex) -> {
+			if (ex != null) {
+				MMLog.severe("Failed to mark the player name index as built", ex);
+			} else {
+				MMLog.info("Built player name index with " + added + " names");
+			}
+		});
+	}
+
+	private class UuidToNameStreamingChannel implements KeyValueStreamingChannel<String, String> {
+		@Override
+		public void onKeyValue(String key /*UUID*/, String value /*name*/) {
+			UUID uuid;
+			try {
+				uuid = UUID.fromString(key);
+			} catch (Exception e) {
+				return;
+			}
+			updateUuidToName(uuid, value);
+		}
+	}
+
+	private class NameToUuidStreamingChannel implements KeyValueStreamingChannel<String, String> {
+		@Override
+		public void onKeyValue(String key /*name*/, String value /*UUID*/) {
+			UUID uuid;
+			try {
+				uuid = UUID.fromString(value);
+			} catch (Exception e) {
+				return;
+			}
+			updateNameToUuid(key, uuid);
+		}
+	}
+}
@@ -15,18 +15,20 @@ public class ProxyConfigAPI extends CommonConfig {
 		Logger logger,
 		String redisHost,
 		int redisPort,
+		int redisConnectionPoolSize,
 		String serverDomain,
 		String shardName,
 		String defaultServer,
 		List<String> excludedServers
 	) {
-		super(redisHost, redisPort, serverDomain, shardName);
+		super(redisHost, redisPort, redisConnectionPoolSize, serverDomain, shardName);
 		mDefaultServer = defaultServer;
 		mExcludedServers.addAll(excludedServers);
 
 		logger.info("Configuration:");
 		logger.info("  redis_host = {}", (mRedisHost == null ? "null" : mRedisHost));
 		logger.info("  redis_port = {}", mRedisPort);
+		logger.info("  redis_connection_pool_size = {}", mRedisConnectionPoolSize);
 		logger.info("  server_domain = {}", (mServerDomain == null ? "null" : mServerDomain));
 		logger.info("  shard_name = {}", (mShardName == null ? "null" : mShardName));
 		logger.info("  default_server = {}", (mDefaultServer == null ? "null" : mDefaultServer));
@@ -7,14 +7,47 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
+/**
+ * Shared key/value boards stored as Redis hashes.
+ * <p>
+ * If rboard_write_behind_ticks is set, sets and adds are queued and written in batches, and gets are served from a
+ * short-lived local cache that includes this shard's queued writes. See RBoardWriteBehind.
+ */
 public class RBoardAPI {
+	private static final Pattern NAME_PATTERN = Pattern.compile("^[-_0-9A-Za-z$]+$");
+	// Board names come from scripts and functions, so there are few distinct ones; the cache simply refills if exceeded
+	private static final int MAX_CACHED_PATHS = 4096;
+	private static final Map<String, String> REDIS_PATHS = new ConcurrentHashMap<>();
 
 	public static String getRedisPath(String name) throws IllegalArgumentException {
-		if (!name.matches("^[-_0-9A-Za-z$]+$")) {
+		String redisPath = REDIS_PATHS.get(name);
+		if (redisPath != null) {
+			return redisPath;
+		}
+		if (!NAME_PATTERN.matcher(name).matches()) {
 			throw new IllegalArgumentException("Name '" + name + "' contains illegal characters, must match '^[-_$0-9A-Za-z$]+'");
 		}
-		return String.format("%s:rboard:%s", CommonConfig.getServerDomain(), name);
+		redisPath = String.format("%s:rboard:%s", CommonConfig.getServerDomain(), name);
+		if (REDIS_PATHS.size() >= MAX_CACHED_PATHS) {
+			REDIS_PATHS.clear();
+		}
+		REDIS_PATHS.put(name, redisPath);
+		return redisPath;
+	}
+
+	/**
+	 * Drops any locally cached values for the board, so the next get reads them from Redis.
+	 * <p>
+	 * Only needed after the board's hash has been changed without going through this API.
+	 */
+	public static void invalidate(String name) {
+		RBoardWriteBehind writeBehind = RBoardWriteBehind.getInstance();
+		if (writeBehind != null) {
+			writeBehind.invalidate(getRedisPath(name));
+		}
 	}
 
 	/* ******************* Set ******************* */
@@ -28,6 +61,11 @@ public class RBoardAPI {
 			return future;
 		}
 
+		RBoardWriteBehind writeBehind = RBoardWriteBehind.getInstance();
+		if (writeBehind != null) {
+			return writeBehind.set(redisPath, data);
+		}
+
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
 			return conn.hset(redisPath, data).toCompletableFuture();
 		}
@@ -50,6 +88,11 @@ public class RBoardAPI {
 			return future;
 		}
 
+		RBoardWriteBehind writeBehind = RBoardWriteBehind.getInstance();
+		if (writeBehind != null) {
+			return writeBehind.add(redisPath, key, amount);
+		}
+
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
 			return conn.hincrby(redisPath, key, amount).toCompletableFuture();
 		}
@@ -66,6 +109,11 @@ public class RBoardAPI {
 			return future;
 		}
 
+		RBoardWriteBehind writeBehind = RBoardWriteBehind.getInstance();
+		if (writeBehind != null) {
+			return writeBehind.get(redisPath, keys);
+		}
+
 		// Use single-element fixed-memory-location array to store values from lambda
 		@SuppressWarnings("unchecked")
 		final CompletableFuture<List<KeyValue<String, String>>>[] hmgetRef = new CompletableFuture[1];
@@ -104,6 +152,14 @@ public class RBoardAPI {
 			return future;
 		}
 
+		RBoardWriteBehind writeBehind = RBoardWriteBehind.getInstance();
+		if (writeBehind != null) {
+			return writeBehind.direct(redisPath, () -> getAndResetDirect(redisPath, keys));
+		}
+		return getAndResetDirect(redisPath, keys);
+	}
+
+	private static CompletableFuture<Map<String, String>> getAndResetDirect(String redisPath, String[] keys) {
 		// Use single-element fixed-memory-location array to store values from lambda
 		@SuppressWarnings("unchecked")
 		final RedisFuture<List<KeyValue<String, String>>>[] hmgetRef = new RedisFuture[1];
@@ -129,6 +185,15 @@ public class RBoardAPI {
 			return future;
 		}
 
+		RBoardWriteBehind writeBehind = RBoardWriteBehind.getInstance();
+		if (writeBehind != null) {
+			return writeBehind.direct(redisPath, () -> {
+				try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+					return conn.hkeys(redisPath).toCompletableFuture();
+				}
+			});
+		}
+
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
 			return conn.hkeys(redisPath).toCompletableFuture();
 		}
@@ -145,6 +210,15 @@ public class RBoardAPI {
 			return future;
 		}
 
+		RBoardWriteBehind writeBehind = RBoardWriteBehind.getInstance();
+		if (writeBehind != null) {
+			return writeBehind.direct(redisPath, () -> {
+				try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+					return conn.hgetall(redisPath).toCompletableFuture();
+				}
+			});
+		}
+
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
 			return conn.hgetall(redisPath).toCompletableFuture();
 		}
@@ -161,6 +235,15 @@ public class RBoardAPI {
 			return future;
 		}
 
+		RBoardWriteBehind writeBehind = RBoardWriteBehind.getInstance();
+		if (writeBehind != null) {
+			return writeBehind.direct(redisPath, () -> {
+				try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+					return conn.hdel(redisPath, keys).toCompletableFuture();
+				}
+			});
+		}
+
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
 			return conn.hdel(redisPath, keys).toCompletableFuture();
 		}
@@ -177,6 +260,15 @@ public class RBoardAPI {
 			return future;
 		}
 
+		RBoardWriteBehind writeBehind = RBoardWriteBehind.getInstance();
+		if (writeBehind != null) {
+			return writeBehind.direct(redisPath, () -> {
+				try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+					return conn.del(redisPath).toCompletableFuture();
+				}
+			});
+		}
+
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
 			return conn.del(redisPath).toCompletableFuture();
 		}
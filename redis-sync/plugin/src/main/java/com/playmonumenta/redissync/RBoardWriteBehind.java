@@ -0,0 +1,368 @@
+package com.playmonumenta.redissync;
+
+import com.playmonumenta.redissync.utils.MMLog;
+import io.lettuce.core.RedisFuture;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.Nullable;
+
+/*
+ * Write-behind mode for RBoardAPI.
+ *
+ * Sets and increments are queued per board and field, merging consecutive operations of the same kind, and the
+ * whole queue is written in a single MULTI every few ticks. Futures returned for queued writes complete once the
+ * flush that carries them does, with the same values a direct write would have produced.
+ *
+ * Field values read through get() are kept for a short time, so repeated polling of the same fields is answered
+ * locally. Reads always include this shard's queued and in-flight writes, so they only lag behind writes made by
+ * other shards, and then by at most the cache duration.
+ *
+ * Reads and flushes are all sent from one WriteBehindThread, so Redis answers them in order. When a read
+ * completes, every flush sent before it has been applied, and the flushes still in flight are exactly those the
+ * read did not see.
+ *
+ * Queue and cache state is guarded by the instance lock, which is never held while talking to Redis.
+ */
+final class RBoardWriteBehind {
+	private static volatile @Nullable RBoardWriteBehind INSTANCE = null;
+
+	/* One queued HSET or HINCRBY, along with the callers waiting for it */
+	private static final class FieldOp {
+		// Null for increments
+		private final @Nullable String mSetValue;
+		private long mIncrement = 0;
+		private final List<CompletableFuture<Boolean>> mSetWaiters = new ArrayList<>();
+		private final List<AddWaiter> mAddWaiters = new ArrayList<>();
+		private @Nullable RedisFuture<?> mResult = null;
+
+		private FieldOp(@Nullable String setValue) {
+			mSetValue = setValue;
+		}
+
+		private @Nullable String apply(@Nullable String value) {
+			if (mSetValue != null) {
+				return mSetValue;
+			}
+			try {
+				return Long.toString((value == null ? 0 : Long.parseLong(value)) + mIncrement);
+			} catch (NumberFormatException ex) {
+				// Redis will refuse this increment too, leaving the value unchanged
+				return value;
+			}
+		}
+	}
+
+	/* Each add completes with the value just after its own increment: the flushed value less the increments merged in after it */
+	private record AddWaiter(CompletableFuture<Long> mFuture, long mIncrementSoFar) {
+	}
+
+	private record CachedValue(@Nullable String mValue, long mExpiresAt) {
+	}
+
+	private static final class Board {
+		private Map<String, List<FieldOp>> mPending = new LinkedHashMap<>();
+		// Flushes sent to Redis but not yet acknowledged, oldest first
+		private final Deque<Map<String, List<FieldOp>>> mInFlight = new ArrayDeque<>();
+		private final Map<String, CachedValue> mCache = new HashMap<>();
+
+		private boolean isIdle() {
+			return mPending.isEmpty() && mInFlight.isEmpty() && mCache.isEmpty();
+		}
+
+		/* Applies this shard's writes that the given value from Redis does not include yet */
+		private @Nullable String overlay(String key, @Nullable String value) {
+			for (Map<String, List<FieldOp>> flush : mInFlight) {
+				value = overlay(flush.get(key), value);
+			}
+			return overlay(mPending.get(key), value);
+		}
+
+		private static @Nullable String overlay(@Nullable List<FieldOp> ops, @Nullable String value) {
+			if (ops != null) {
+				for (FieldOp op : ops) {
+					value = op.apply(value);
+				}
+			}
+			return value;
+		}
+	}
+
+	private final long mCacheMillis;
+	private final Map<String, Board> mBoards = new HashMap<>();
+	private final WriteBehindThread mRedisThread;
+
+	private RBoardWriteBehind(int flushTicks, long cacheMillis) {
+		mCacheMillis = cacheMillis;
+		mRedisThread = new WriteBehindThread("MonumentaRedisSync RBoard Thread", flushTicks, this::flushAll);
+	}
+
+	static void start(int flushTicks, long cacheMillis) {
+		if (flushTicks > 0) {
+			INSTANCE = new RBoardWriteBehind(flushTicks, cacheMillis);
+		}
+	}
+
+	/* Sends the rboard writes still queued before the Redis connections close; their callers are still waiting on them */
+	static void onDisable() {
+		RBoardWriteBehind instance = INSTANCE;
+		INSTANCE = null;
+		if (instance != null) {
+			instance.mRedisThread.shutdown(instance::flushAll, "queued rboard writes");
+		}
+	}
+
+	static @Nullable RBoardWriteBehind getInstance() {
+		return INSTANCE;
+	}
+
+	/* ******************* Writes ******************* */
+	CompletableFuture<Long> set(String redisPath, Map<String, String> data) {
+		List<CompletableFuture<Boolean>> created = new ArrayList<>(data.size());
+		synchronized (this) {
+			Board board = mBoards.computeIfAbsent(redisPath, path -> new Board());
+			for (Map.Entry<String, String> entry : data.entrySet()) {
+				List<FieldOp> ops = board.mPending.computeIfAbsent(entry.getKey(), key -> new ArrayList<>());
+				FieldOp last = ops.isEmpty() ? null : ops.get(ops.size() - 1);
+				FieldOp op = new FieldOp(entry.getValue());
+				if (last != null && last.mSetValue != null) {
+					// The earlier value is overwritten before it is ever written, so only the new one is sent
+					op.mSetWaiters.addAll(last.mSetWaiters);
+					ops.set(ops.size() - 1, op);
+				} else {
+					ops.add(op);
+				}
+				CompletableFuture<Boolean> future = new CompletableFuture<>();
+				op.mSetWaiters.add(future);
+				created.add(future);
+			}
+		}
+
+		/* Like HSET, complete with the number of fields that did not exist before */
+		return CompletableFuture.allOf(created.toArray(new CompletableFuture<?>[0])).thenApply(unused -> {
+			long count = 0;
+			for (CompletableFuture<Boolean> future : created) {
+				if (future.join()) {
+					count++;
+				}
+			}
+			return count;
+		});
+	}
+
+	CompletableFuture<Long> add(String redisPath, String key, long amount) {
+		CompletableFuture<Long> future = new CompletableFuture<>();
+		synchronized (this) {
+			Board board = mBoards.computeIfAbsent(redisPath, path -> new Board());
+			List<FieldOp> ops = board.mPending.computeIfAbsent(key, k -> new ArrayList<>());
+			FieldOp op = ops.isEmpty() ? null : ops.get(ops.size() - 1);
+			if (op == null || op.mSetValue != null) {
+				op = new FieldOp(null);
+				ops.add(op);
+			}
+			op.mIncrement += amount;
+			op.mAddWaiters.add(new AddWaiter(future, op.mIncrement));
+		}
+		return future;
+	}
+
+	/* ******************* Reads ******************* */
+	CompletableFuture<Map<String, String>> get(String redisPath, String... keys) {
+		final List<String> misses = new ArrayList<>();
+		synchronized (this) {
+			Board board = mBoards.computeIfAbsent(redisPath, path -> new Board());
+			long now = System.currentTimeMillis();
+			for (String key : keys) {
+				CachedValue cached = board.mCache.get(key);
+				if (cached == null || cached.mExpiresAt() < now) {
+					misses.add(key);
+				}
+			}
+			if (misses.isEmpty()) {
+				return CompletableFuture.completedFuture(result(board, keys, Map.of()));
+			}
+		}
+
+		/*
+		 * Only the fields that aren't cached are read. A direct get creates missing fields as 0 before reading them,
+		 * so missing fields read as 0 here too, without the writes.
+		 */
+		String[] missKeys = misses.toArray(new String[0]);
+		return mRedisThread.submit(() -> {
+			try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+				return conn.hmget(redisPath, missKeys).toCompletableFuture();
+			}
+		}).thenApply(list -> {
+			Map<String, String> fetched = new HashMap<>();
+			list.forEach(item -> fetched.put(item.getKey(), item.getValueOrElse("0")));
+			synchronized (this) {
+				Board board = mBoards.computeIfAbsent(redisPath, path -> new Board());
+				long expiresAt = System.currentTimeMillis() + mCacheMillis;
+				fetched.forEach((key, value) -> board.mCache.put(key, new CachedValue(value, expiresAt)));
+				return result(board, keys, fetched);
+			}
+		});
+	}
+
+	private static Map<String, String> result(Board board, String[] keys, Map<String, String> fetched) {
+		Map<String, String> result = new LinkedHashMap<>();
+		for (String key : keys) {
+			String value;
+			if (fetched.containsKey(key)) {
+				value = fetched.get(key);
+			} else {
+				CachedValue cached = board.mCache.get(key);
+				value = cached == null ? null : cached.mValue();
+			}
+			result.put(key, board.overlay(key, value));
+		}
+		return result;
+	}
+
+	/*
+	 * Runs an operation that reads or deletes more than the cached fields: the board's queued writes are sent first
+	 * so the operation sees them, and the board's cached values are dropped once it completes.
+	 */
+	<T> CompletableFuture<T> direct(String redisPath, Supplier<CompletableFuture<T>> operation) {
+		return mRedisThread.submit(() -> {
+			Map<String, Map<String, List<FieldOp>>> batch = new HashMap<>();
+			synchronized (this) {
+				Board board = mBoards.get(redisPath);
+				if (board != null && !board.mPending.isEmpty()) {
+					batch.put(redisPath, takePending(board));
+				}
+			}
+			flush(batch);
+			return operation.get();
+		}).whenComplete((result, ex) -> invalidate(redisPath));
+	}
+
+	synchronized void invalidate(String redisPath) {
+		Board board = mBoards.get(redisPath);
+		if (board != null) {
+			board.mCache.clear();
+		}
+	}
+
+	/* ******************* Flushing ******************* */
+	/* Must be called on mRedisThread */
+	private CompletableFuture<?> flushAll() {
+		Map<String, Map<String, List<FieldOp>>> batch = new HashMap<>();
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			mBoards.values().removeIf(board -> {
+				board.mCache.values().removeIf(cached -> cached.mExpiresAt() < now);
+				return board.isIdle();
+			});
+			for (Map.Entry<String, Board> entry : mBoards.entrySet()) {
+				if (!entry.getValue().mPending.isEmpty()) {
+					batch.put(entry.getKey(), takePending(entry.getValue()));
+				}
+			}
+		}
+		return flush(batch);
+	}
+
+	private static Map<String, List<FieldOp>> takePending(Board board) {
+		Map<String, List<FieldOp>> pending = board.mPending;
+		board.mPending = new LinkedHashMap<>();
+		board.mInFlight.addLast(pending);
+		return pending;
+	}
+
+	/* Must be called on mRedisThread */
+	private CompletableFuture<?> flush(Map<String, Map<String, List<FieldOp>>> batch) {
+		if (batch.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		CompletableFuture<?> transaction;
+		try {
+			transaction = RedisAPI.multi(conn -> {
+				for (Map.Entry<String, Map<String, List<FieldOp>>> board : batch.entrySet()) {
+					for (Map.Entry<String, List<FieldOp>> field : board.getValue().entrySet()) {
+						for (FieldOp op : field.getValue()) {
+							if (op.mSetValue != null) {
+								op.mResult = conn.hset(board.getKey(), field.getKey(), op.mSetValue);
+							} else {
+								op.mResult = conn.hincrby(board.getKey(), field.getKey(), op.mIncrement);
+							}
+						}
+					}
+				}
+			});
+		} catch (Exception ex) {
+			transaction = CompletableFuture.failedFuture(ex);
+		}
+
+		return transaction.handle((unused, transactionEx) -> {
+			if (transactionEx != null) {
+				MMLog.severe("Failed to flush queued writes for " + batch.size() + " rboards", transactionEx);
+			}
+			synchronized (this) {
+				long expiresAt = System.currentTimeMillis() + mCacheMillis;
+				for (Map.Entry<String, Map<String, List<FieldOp>>> entry : batch.entrySet()) {
+					Board board = mBoards.computeIfAbsent(entry.getKey(), path -> new Board());
+					board.mInFlight.remove(entry.getValue());
+					for (Map.Entry<String, List<FieldOp>> field : entry.getValue().entrySet()) {
+						List<FieldOp> ops = field.getValue();
+						String value = transactionEx == null ? flushedValue(ops.get(ops.size() - 1)) : null;
+						if (value != null) {
+							board.mCache.put(field.getKey(), new CachedValue(value, expiresAt));
+						} else {
+							board.mCache.remove(field.getKey());
+						}
+					}
+				}
+			}
+			for (Map<String, List<FieldOp>> fields : batch.values()) {
+				for (List<FieldOp> ops : fields.values()) {
+					ops.forEach(op -> complete(op, transactionEx));
+				}
+			}
+			return null;
+		});
+	}
+
+	/* The field's value after the flush, or null if that isn't known */
+	private static @Nullable String flushedValue(FieldOp op) {
+		if (op.mSetValue != null) {
+			return op.mSetValue;
+		}
+		try {
+			return op.mResult == null ? null : Long.toString((Long) op.mResult.toCompletableFuture().join());
+		} catch (Exception ex) {
+			// e.g. incrementing a non-numeric value
+			return null;
+		}
+	}
+
+	private static void complete(FieldOp op, @Nullable Throwable transactionEx) {
+		try {
+			if (transactionEx != null) {
+				throw transactionEx;
+			}
+			if (op.mResult == null) {
+				throw new IllegalStateException("Queued rboard write was not sent");
+			}
+			Object result = op.mResult.toCompletableFuture().join();
+			if (op.mSetValue != null) {
+				op.mSetWaiters.forEach(future -> future.complete(Boolean.TRUE.equals(result)));
+			} else {
+				long value = (Long) result;
+				for (AddWaiter waiter : op.mAddWaiters) {
+					waiter.mFuture().complete(value - (op.mIncrement - waiter.mIncrementSoFar()));
+				}
+			}
+		} catch (Throwable ex) {
+			op.mSetWaiters.forEach(future -> future.completeExceptionally(ex));
+			op.mAddWaiters.forEach(waiter -> waiter.mFuture().completeExceptionally(ex));
+		}
+	}
+}
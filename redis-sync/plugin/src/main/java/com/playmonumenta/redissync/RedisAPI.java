@@ -10,6 +10,7 @@ import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.async.RedisAsyncCommands;
 import io.lettuce.core.codec.RedisCodec;
 import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
 import io.lettuce.core.resource.ClientResources;
 import io.lettuce.core.resource.NettyCustomizer;
 import io.netty.bootstrap.Bootstrap;
@@ -18,9 +19,15 @@ import io.netty.channel.ChannelOption;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import org.apache.logging.log4j.Level;
+import org.jetbrains.annotations.Nullable;
 
 public class RedisAPI {
 	private static final class StringByteCodec implements RedisCodec<String, byte[]> {
@@ -77,21 +84,136 @@ public class RedisAPI {
 		return sb.toString();
 	}
 
+	/**
+	 * A fixed set of connections sharing one codec, each guarded by its own lock.
+	 *
+	 * <p>Auto-flush is disabled on every connection. When a borrow ends, a flush of its
+	 * connection is scheduled on a Lettuce event loop thread rather than done by the caller,
+	 * and only if one is not already pending. Commands that any caller enqueues on the
+	 * connection before that flush runs are written to the socket with it, so concurrent
+	 * callers share one pipelined write instead of each paying for their own. This is the
+	 * only sharing there is with the default pool size of 1.
+	 *
+	 * <p>Each calling thread is pinned to one connection so that its commands still execute in
+	 * the order they were issued. Commands from different threads are only ordered relative to
+	 * each other when they use the same connection, which is always true for a pool size of 1.
+	 * Larger pools trade that ordering for spreading unrelated threads over several locks and
+	 * sockets; callers that need cross-thread ordering must send from a single thread, as the
+	 * write-behind queues do.
+	 */
+	private static final class ConnectionPool<V> {
+		private final String mName;
+		private final RedisCodec<String, V> mCodec;
+		private final List<StatefulRedisConnection<String, V>> mConnections = new ArrayList<>();
+		private final List<ReentrantLock> mLocks = new ArrayList<>();
+		// Whether each connection has a flush scheduled that has not started yet
+		private final List<AtomicBoolean> mFlushPending = new ArrayList<>();
+		private final Executor mFlushExecutor;
+
+		private ConnectionPool(String name, RedisClient client, RedisCodec<String, V> codec, int size) {
+			mName = name;
+			mCodec = codec;
+			mFlushExecutor = client.getResources().eventExecutorGroup();
+			for (int i = 0; i < size; i++) {
+				StatefulRedisConnection<String, V> connection = client.connect(codec);
+				connection.setAutoFlushCommands(false);
+				mConnections.add(connection);
+				mLocks.add(new ReentrantLock());
+				mFlushPending.add(new AtomicBoolean(false));
+			}
+		}
+
+		/*
+		 * Flushes a connection's buffered commands shortly, unless a flush is already pending.
+		 * The pending flag is cleared before flushing, so commands enqueued during a flush schedule another one.
+		 */
+		private void scheduleFlush(int slot) {
+			AtomicBoolean pending = mFlushPending.get(slot);
+			if (pending.compareAndSet(false, true)) {
+				StatefulRedisConnection<String, V> connection = mConnections.get(slot);
+				mFlushExecutor.execute(() -> {
+					pending.set(false);
+					connection.flushCommands();
+				});
+			}
+		}
+
+		private int slot() {
+			if (mConnections.size() == 1) {
+				return 0;
+			}
+			return (int) Math.floorMod(Thread.currentThread().getId(), (long) mConnections.size());
+		}
+
+		@MustBeClosed
+		private BorrowedCommands<String, V> borrow() {
+			int slot = slot();
+			ReentrantLock lock = mLocks.get(slot);
+			MMLog.debug(() -> "[" + mName + "] acquiring lock " + slot + "...");
+			lock.lock();
+			MMLog.debug(() -> "[" + mName + "] lock " + slot + " acquired");
+			return new BorrowedCommands<>(mConnections.get(slot), mCodec, lock, () -> scheduleFlush(slot));
+		}
+
+		private CompletableFuture<TransactionResult> multi(Consumer<BorrowedCommands<String, V>> block) {
+			int slot = slot();
+			StatefulRedisConnection<String, V> connection = mConnections.get(slot);
+			ReentrantLock lock = mLocks.get(slot);
+			MMLog.debug(() -> "[" + mName + "] acquiring lock " + slot + "...");
+			lock.lock();
+			MMLog.debug(() -> "[" + mName + "] lock " + slot + " acquired");
+			try {
+				BorrowedCommands<String, V> conn = new BorrowedCommands<>(connection, mCodec, lock, () -> scheduleFlush(slot));
+				conn.multi();
+				block.accept(conn);
+				return conn.exec().toCompletableFuture();
+			} catch (Exception e) {
+				connection.async().discard();
+				throw e;
+			} finally {
+				scheduleFlush(slot);
+				MMLog.debug(() -> "[" + mName + "] releasing lock " + slot);
+				lock.unlock();
+				MMLog.debug(() -> "[" + mName + "] lock " + slot + " released");
+			}
+		}
+
+		private boolean isOpen() {
+			for (StatefulRedisConnection<String, V> connection : mConnections) {
+				if (!connection.isOpen()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void close() {
+			for (StatefulRedisConnection<String, V> connection : mConnections) {
+				// Send anything a scheduled flush has not got to yet
+				connection.flushCommands();
+				connection.close();
+			}
+		}
+	}
+
 	@SuppressWarnings("NullAway") // Required to avoid many null checks, this class will always be instantiated if this plugin is loaded
 	private static RedisAPI INSTANCE = null;
 
 	private final RedisClient mRedisClient;
 	private final ClientResources mClientResources;
-	private final StatefulRedisConnection<String, String> mConnection;
-	private final StatefulRedisConnection<String, byte[]> mStringByteConnection;
-	private final ReentrantLock mLock = new ReentrantLock();
-	private final ReentrantLock mBytesLock = new ReentrantLock();
+	private final ConnectionPool<String> mStringPool;
+	private final ConnectionPool<byte[]> mStringBytePool;
+	/* Auto-flushing connections handed out by the deprecated unlocked accessors, only created if something uses them */
+	private @Nullable StatefulRedisConnection<String, String> mLegacyConnection = null;
+	private @Nullable StatefulRedisConnection<String, byte[]> mLegacyStringByteConnection = null;
 
 	/**
 	 * Exclusive, try-with-resources handle to a Redis connection.
 	 *
 	 * <p>Holds a lock that prevents other threads from interleaving commands on the
-	 * shared connection for the lifetime of the block. Always obtain via
+	 * shared connection for the lifetime of the block. Commands are buffered and sent
+	 * to Redis in a pipelined flush scheduled when the block exits, together with any
+	 * other callers' commands enqueued on the connection by then. Always obtain via
 	 * {@link RedisAPI#borrow()} or {@link RedisAPI#borrowStringBytes()}.
 	 *
 	 * <pre>{@code
@@ -106,14 +228,17 @@ public class RedisAPI {
 	 */
 	public static final class BorrowedCommands<K, V> extends AbstractRedisAsyncCommands<K, V> implements AutoCloseable {
 		private final ReentrantLock mLock;
+		private final Runnable mScheduleFlush;
 
-		private BorrowedCommands(StatefulRedisConnection<K, V> connection, RedisCodec<K, V> codec, ReentrantLock lock) {
+		private BorrowedCommands(StatefulRedisConnection<K, V> connection, RedisCodec<K, V> codec, ReentrantLock lock, Runnable scheduleFlush) {
 			super(connection, codec);
 			mLock = lock;
+			mScheduleFlush = scheduleFlush;
 		}
 
 		@Override
 		public void close() {
+			mScheduleFlush.run();
 			MMLog.debug("[BorrowedCommands] releasing lock");
 			mLock.unlock();
 			MMLog.debug("[BorrowedCommands] lock released");
@@ -121,39 +246,38 @@ public class RedisAPI {
 	}
 
 	/**
-	 * Borrows exclusive access to the String/String Redis connection.
+	 * Borrows exclusive access to a String/String Redis connection.
 	 * Must be used in a try-with-resources statement.
 	 */
 	@MustBeClosed
 	public static BorrowedCommands<String, String> borrow() {
 		RedisAPI api = INSTANCE;
-		MMLog.debug("[borrow] caller: " + callerFrames());
-		MMLog.debug("[borrow] acquiring lock...");
-		api.mLock.lock();
-		MMLog.debug("[borrow] lock acquired");
-		return new BorrowedCommands<>(api.mConnection, STRING_STRING_CODEC, api.mLock);
+		if (MMLog.isLevelEnabled(Level.DEBUG)) {
+			MMLog.debug("[borrow] caller: " + callerFrames());
+		}
+		return api.mStringPool.borrow();
 	}
 
 	/**
-	 * Borrows exclusive access to the String/byte[] Redis connection.
+	 * Borrows exclusive access to a String/byte[] Redis connection.
 	 * Must be used in a try-with-resources statement.
 	 */
 	@MustBeClosed
 	public static BorrowedCommands<String, byte[]> borrowStringBytes() {
 		RedisAPI api = INSTANCE;
-		MMLog.debug("[borrowStringBytes] caller: " + callerFrames());
-		MMLog.debug("[borrowStringBytes] acquiring lock...");
-		api.mBytesLock.lock();
-		MMLog.debug("[borrowStringBytes] lock acquired");
-		return new BorrowedCommands<>(api.mStringByteConnection, STRING_BYTE_CODEC, api.mBytesLock);
+		if (MMLog.isLevelEnabled(Level.DEBUG)) {
+			MMLog.debug("[borrowStringBytes] caller: " + callerFrames());
+		}
+		return api.mStringBytePool.borrow();
 	}
 
 	/**
-	 * Executes a MULTI/EXEC transaction on the String/String connection.
+	 * Executes a MULTI/EXEC transaction on a String/String connection.
 	 *
 	 * <p>Acquires the connection lock, issues MULTI, runs {@code block}, then issues
 	 * EXEC automatically. The connection cannot escape the block and EXEC is
-	 * guaranteed to be called (or DISCARD on exception).
+	 * guaranteed to be called (or DISCARD on exception). The whole transaction is
+	 * pinned to one connection and sent in the same pipelined flush.
 	 *
 	 * <pre>{@code
 	 * RedisAPI.multi(conn -> {
@@ -164,54 +288,33 @@ public class RedisAPI {
 	 */
 	public static CompletableFuture<TransactionResult> multi(Consumer<BorrowedCommands<String, String>> block) {
 		RedisAPI api = INSTANCE;
-		MMLog.debug("[multi] caller: " + callerFrames());
-		MMLog.debug("[multi] acquiring lock...");
-		api.mLock.lock();
-		MMLog.debug("[multi] lock acquired");
-		try {
-			BorrowedCommands<String, String> conn = new BorrowedCommands<>(api.mConnection, STRING_STRING_CODEC, api.mLock);
-			conn.multi();
-			block.accept(conn);
-			return conn.exec().toCompletableFuture();
-		} catch (Exception e) {
-			api.mConnection.async().discard();
-			throw e;
-		} finally {
-			MMLog.debug("[multi] releasing lock");
-			api.mLock.unlock();
-			MMLog.debug("[multi] lock released");
+		if (MMLog.isLevelEnabled(Level.DEBUG)) {
+			MMLog.debug("[multi] caller: " + callerFrames());
 		}
+		return api.mStringPool.multi(block);
 	}
 
 	/**
-	 * Executes a MULTI/EXEC transaction on the String/byte[] connection.
+	 * Executes a MULTI/EXEC transaction on a String/byte[] connection.
 	 *
 	 * <p>Acquires the connection lock, issues MULTI, runs {@code block}, then issues
 	 * EXEC automatically. The connection cannot escape the block and EXEC is
-	 * guaranteed to be called (or DISCARD on exception).
+	 * guaranteed to be called (or DISCARD on exception). The whole transaction is
+	 * pinned to one connection and sent in the same pipelined flush.
 	 */
 	public static CompletableFuture<TransactionResult> multiStringBytes(Consumer<BorrowedCommands<String, byte[]>> block) {
 		RedisAPI api = INSTANCE;
-		MMLog.debug("[multiStringBytes] caller: " + callerFrames());
-		MMLog.debug("[multiStringBytes] acquiring lock...");
-		api.mBytesLock.lock();
-		MMLog.debug("[multiStringBytes] lock acquired");
-		try {
-			BorrowedCommands<String, byte[]> conn = new BorrowedCommands<>(api.mStringByteConnection, STRING_BYTE_CODEC, api.mBytesLock);
-			conn.multi();
-			block.accept(conn);
-			return conn.exec().toCompletableFuture();
-		} catch (Exception e) {
-			api.mStringByteConnection.async().discard();
-			throw e;
-		} finally {
-			MMLog.debug("[multiStringBytes] releasing lock");
-			api.mBytesLock.unlock();
-			MMLog.debug("[multiStringBytes] lock released");
+		if (MMLog.isLevelEnabled(Level.DEBUG)) {
+			MMLog.debug("[multiStringBytes] caller: " + callerFrames());
 		}
+		return api.mStringBytePool.multi(block);
 	}
 
 	protected RedisAPI(String hostname, int port) {
+		this(hostname, port, 1);
+	}
+
+	protected RedisAPI(String hostname, int port, int connectionPoolSize) {
 		// OutOfDirectMemoryError workaround: https://github.com/redis/lettuce/issues/2590#issuecomment-1888683541
 		mClientResources = ClientResources.builder()
 			.nettyCustomizer(new NettyCustomizer() {
@@ -221,15 +324,23 @@ public class RedisAPI {
 				}
 			}).build();
 		mRedisClient = RedisClient.create(mClientResources, RedisURI.Builder.redis(hostname, port).build());
-		mConnection = mRedisClient.connect();
-		mStringByteConnection = mRedisClient.connect(StringByteCodec.INSTANCE);
+		mStringPool = new ConnectionPool<>("borrow", mRedisClient, STRING_STRING_CODEC, Math.max(1, connectionPoolSize));
+		mStringBytePool = new ConnectionPool<>("borrowStringBytes", mRedisClient, STRING_BYTE_CODEC, Math.max(1, connectionPoolSize));
 
 		INSTANCE = this;
 	}
 
 	protected void shutdown() {
-		mConnection.close();
-		mStringByteConnection.close();
+		mStringPool.close();
+		mStringBytePool.close();
+		synchronized (this) {
+			if (mLegacyConnection != null) {
+				mLegacyConnection.close();
+			}
+			if (mLegacyStringByteConnection != null) {
+				mLegacyStringByteConnection.close();
+			}
+		}
 		mRedisClient.shutdown();
 		mClientResources.shutdown();
 	}
@@ -238,21 +349,45 @@ public class RedisAPI {
 		return INSTANCE;
 	}
 
+	/**
+	 * Opens a dedicated String/String connection for subscribing to channels.
+	 *
+	 * <p>Subscriptions can't share the pooled connections, which must stay free for commands.
+	 * The caller owns the returned connection and must close it before this plugin disables.
+	 */
+	public StatefulRedisPubSubConnection<String, String> connectPubSub() {
+		return mRedisClient.connectPubSub(STRING_STRING_CODEC);
+	}
+
 	/** @deprecated Use {@link #borrow()} instead. */
 	@Deprecated
-	public RedisAsyncCommands<String, String> async() {
-		MMLog.debug("[async] caller: " + callerFrames());
-		return mConnection.async();
+	public synchronized RedisAsyncCommands<String, String> async() {
+		if (MMLog.isLevelEnabled(Level.DEBUG)) {
+			MMLog.debug("[async] caller: " + callerFrames());
+		}
+		StatefulRedisConnection<String, String> connection = mLegacyConnection;
+		if (connection == null) {
+			connection = mRedisClient.connect(STRING_STRING_CODEC);
+			mLegacyConnection = connection;
+		}
+		return connection.async();
 	}
 
 	/** @deprecated Use {@link #borrowStringBytes()} instead. */
 	@Deprecated
-	public RedisAsyncCommands<String, byte[]> asyncStringBytes() {
-		MMLog.debug("[asyncStringBytes] caller: " + callerFrames());
-		return mStringByteConnection.async();
+	public synchronized RedisAsyncCommands<String, byte[]> asyncStringBytes() {
+		if (MMLog.isLevelEnabled(Level.DEBUG)) {
+			MMLog.debug("[asyncStringBytes] caller: " + callerFrames());
+		}
+		StatefulRedisConnection<String, byte[]> connection = mLegacyStringByteConnection;
+		if (connection == null) {
+			connection = mRedisClient.connect(STRING_BYTE_CODEC);
+			mLegacyStringByteConnection = connection;
+		}
+		return connection.async();
 	}
 
 	public boolean isReady() {
-		return mConnection.isOpen() && mStringByteConnection.isOpen();
+		return mStringPool.isOpen() && mStringBytePool.isOpen();
 	}
 }
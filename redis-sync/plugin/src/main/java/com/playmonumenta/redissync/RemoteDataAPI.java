@@ -1,12 +1,22 @@
 package com.playmonumenta.redissync;
 
 import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisFuture;
 import io.lettuce.core.Value;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Per-player key/value data stored in a Redis hash, shared between all shards.
+ * <p>
+ * If remote_data_cache_size is set, recently used players' data is cached locally and reads of cached fields
+ * complete immediately. Writes from any shard invalidate other shards' cached copies, see RemoteDataCache.
+ */
 public class RemoteDataAPI {
 	/**
 	 * Gets a specific remote data entry for a player.
@@ -24,9 +34,11 @@ public class RemoteDataAPI {
 			return future;
 		}
 
-		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
-			return conn.hget(getRedisPath(uuid), key).toCompletableFuture();
+		RemoteDataCache cache = RemoteDataCache.getInstance();
+		if (cache != null) {
+			return cache.get(uuid, key, () -> hget(uuid, key));
 		}
+		return hget(uuid, key);
 	}
 
 	/**
@@ -45,9 +57,11 @@ public class RemoteDataAPI {
 			return future;
 		}
 
-		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
-			return conn.hmget(getRedisPath(uuid), keys).toCompletableFuture().thenApply((listResult) -> listResult.stream().filter(Value::hasValue).collect(Collectors.toMap(KeyValue::getKey, Value::getValue)));
+		RemoteDataCache cache = RemoteDataCache.getInstance();
+		if (cache != null) {
+			return cache.getMulti(uuid, keys, () -> hmget(uuid, keys));
 		}
+		return hmget(uuid, keys).thenApply((listResult) -> listResult.stream().filter(Value::hasValue).collect(Collectors.toMap(KeyValue::getKey, Value::getValue)));
 	}
 
 	/**
@@ -66,9 +80,7 @@ public class RemoteDataAPI {
 			return future;
 		}
 
-		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
-			return conn.hset(getRedisPath(uuid), key, value).toCompletableFuture();
-		}
+		return write(uuid, key, conn -> conn.hset(getRedisPath(uuid), key, value), (result) -> value);
 	}
 
 	/**
@@ -89,9 +101,7 @@ public class RemoteDataAPI {
 			return future;
 		}
 
-		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
-			return conn.hincrby(getRedisPath(uuid), key, incBy).toCompletableFuture();
-		}
+		return write(uuid, key, conn -> conn.hincrby(getRedisPath(uuid), key, incBy), (result) -> Long.toString(result));
 	}
 
 	/**
@@ -110,9 +120,7 @@ public class RemoteDataAPI {
 			return future;
 		}
 
-		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
-			return conn.hdel(getRedisPath(uuid), key).thenApply((val) -> val == 1).toCompletableFuture();
-		}
+		return write(uuid, key, conn -> conn.hdel(getRedisPath(uuid), key), (result) -> null).thenApply((val) -> val == 1);
 	}
 
 	/**
@@ -131,11 +139,55 @@ public class RemoteDataAPI {
 			return future;
 		}
 
+		RemoteDataCache cache = RemoteDataCache.getInstance();
+		if (cache != null) {
+			return cache.getAll(uuid, () -> hgetall(uuid));
+		}
+		return hgetall(uuid);
+	}
+
+	private static CompletableFuture<String> hget(UUID uuid, String key) {
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			return conn.hget(getRedisPath(uuid), key).toCompletableFuture();
+		}
+	}
+
+	private static CompletableFuture<List<KeyValue<String, String>>> hmget(UUID uuid, String... keys) {
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			return conn.hmget(getRedisPath(uuid), keys).toCompletableFuture();
+		}
+	}
+
+	private static CompletableFuture<Map<String, String>> hgetall(UUID uuid) {
 		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
 			return conn.hgetall(getRedisPath(uuid)).toCompletableFuture();
 		}
 	}
 
+	/*
+	 * Writes a single field, publishing an invalidation for it so shards caching remote data drop their copy,
+	 * if any shard caches remote data.
+	 * The invalidation is sent after the write on the same connection, so anyone re-reading on hearing it gets the new value.
+	 * valueAfter maps the result to the field's new value (null if deleted), for this shard's own cache.
+	 */
+	private static <T> CompletableFuture<T> write(UUID uuid, String key, Function<RedisAPI.BorrowedCommands<String, String>, RedisFuture<T>> command, Function<T, String> valueAfter) {
+		Supplier<CompletableFuture<T>> send = () -> {
+			try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+				RedisFuture<T> result = command.apply(conn);
+				if (RemoteDataCache.hasSubscribers()) {
+					conn.publish(RemoteDataCache.getChannel(), RemoteDataCache.getInvalidationMessage(uuid, key));
+				}
+				return result.toCompletableFuture();
+			}
+		};
+
+		RemoteDataCache cache = RemoteDataCache.getInstance();
+		if (cache != null) {
+			return cache.write(uuid, key, send, valueAfter);
+		}
+		return send.get();
+	}
+
 	public static String getRedisPath(UUID uuid) {
 		return String.format("%s:playerdata:%s:remotedata", CommonConfig.getServerDomain(), uuid.toString());
 	}
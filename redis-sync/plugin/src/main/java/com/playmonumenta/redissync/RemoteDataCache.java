@@ -0,0 +1,279 @@
+package com.playmonumenta.redissync;
+
+import com.playmonumenta.redissync.utils.MMLog;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+
+/*
+ * Local cache of players' remote data, used by RemoteDataAPI when remote_data_cache_size is set.
+ *
+ * Every RemoteDataAPI write publishes the changed field on a channel, whether or not the writer caches, and each
+ * caching shard drops that field when it hears about it. So that networks where no shard caches don't pay for this,
+ * every shard checks how many subscribers the channel has every SUBSCRIBER_CHECK_TICKS, and only publishes while
+ * there are any. A shard that starts caching can miss writes from shards that have not noticed it yet for up to
+ * that long, which the expiry below also covers. Messages can be missed while the subscription reconnects,
+ * so cached values also expire after remote_data_cache_millis, which bounds how stale a read can be.
+ *
+ * A read only stores its result if nothing invalidated the player's entry while it was in flight, so a slow read
+ * can't put back a value that has already been replaced. Writes made through this shard store the value they wrote
+ * under the same rule.
+ */
+final class RemoteDataCache {
+	// Lets each shard ignore its own invalidations, having already updated its cache for those writes
+	private static final String SENDER_ID = UUID.randomUUID().toString();
+	private static final long SUBSCRIBER_CHECK_TICKS = 20;
+
+	private static volatile @Nullable RemoteDataCache INSTANCE = null;
+	// Whether any shard was subscribed to invalidations at the last check; assumed until the first check completes
+	private static volatile boolean mHasSubscribers = true;
+
+	private record CachedValue(@Nullable String mValue, long mExpiresAt) {
+	}
+
+	private static final class Entry {
+		private final Map<String, CachedValue> mFields = new HashMap<>();
+		// Until this time, mFields holds every field of the hash, as loaded by getAll
+		private long mCompleteUntil = 0;
+		private long mVersion = 0;
+
+		private void invalidate(String key) {
+			mFields.remove(key);
+			mCompleteUntil = 0;
+			mVersion++;
+		}
+	}
+
+	private final long mCacheMillis;
+	// Least recently used first; guarded by the instance lock
+	private final LinkedHashMap<UUID, Entry> mEntries;
+	private final StatefulRedisPubSubConnection<String, String> mSubscription;
+
+	private RemoteDataCache(int maxPlayers, long cacheMillis) {
+		mCacheMillis = cacheMillis;
+		mEntries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+				return size() > maxPlayers;
+			}
+		};
+
+		mSubscription = RedisAPI.getInstance().connectPubSub();
+		mSubscription.addListener(new RedisPubSubAdapter<>() {
+			@Override
+			public void message(String channel, String message) {
+				onInvalidation(message);
+			}
+		});
+		mSubscription.async().subscribe(getChannel());
+	}
+
+	static void start(Plugin plugin, int maxPlayers, long cacheMillis) {
+		if (maxPlayers > 0) {
+			INSTANCE = new RemoteDataCache(maxPlayers, cacheMillis);
+		}
+		Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, RemoteDataCache::checkSubscribers, 0, SUBSCRIBER_CHECK_TICKS);
+	}
+
+	private static void checkSubscribers() {
+		String channel = getChannel();
+		CompletableFuture<Map<String, Long>> numsub;
+		try (RedisAPI.BorrowedCommands<String, String> conn = RedisAPI.borrow()) {
+			numsub = conn.pubsubNumsub(channel).toCompletableFuture();
+		}
+		numsub.whenComplete((result, ex) -> {
+			if (ex != null) {
+				// Keep publishing, as a cache may be relying on it
+				mHasSubscribers = true;
+				MMLog.warning("Failed to check for remote data cache subscribers: " + ex.getMessage());
+			} else {
+				Long subscribers = result.get(channel);
+				mHasSubscribers = subscribers != null && subscribers > 0;
+			}
+		});
+	}
+
+	/* Whether writes need to publish invalidations, which is only the case while some shard caches remote data */
+	static boolean hasSubscribers() {
+		return mHasSubscribers;
+	}
+
+	static void onDisable() {
+		RemoteDataCache instance = INSTANCE;
+		INSTANCE = null;
+		if (instance != null) {
+			instance.mSubscription.close();
+		}
+	}
+
+	static @Nullable RemoteDataCache getInstance() {
+		return INSTANCE;
+	}
+
+	static String getChannel() {
+		return String.format("%s:remotedata:invalidate", CommonConfig.getServerDomain());
+	}
+
+	/* Format: "<sender> <player uuid> <field>"; neither of the first two contain spaces, the field may */
+	static String getInvalidationMessage(UUID uuid, String key) {
+		return SENDER_ID + " " + uuid + " " + key;
+	}
+
+	private void onInvalidation(String message) {
+		String[] parts = message.split(" ", 3);
+		if (parts.length != 3 || parts[0].equals(SENDER_ID)) {
+			return;
+		}
+		try {
+			UUID uuid = UUID.fromString(parts[1]);
+			synchronized (this) {
+				Entry entry = mEntries.get(uuid);
+				if (entry != null) {
+					entry.invalidate(parts[2]);
+				}
+			}
+		} catch (IllegalArgumentException ex) {
+			MMLog.warning("Ignoring malformed remote data invalidation '" + message + "'");
+		}
+	}
+
+	/* ******************* Reads ******************* */
+	CompletableFuture<String> get(UUID uuid, String key, Supplier<CompletableFuture<String>> load) {
+		Entry entry;
+		long version;
+		synchronized (this) {
+			entry = mEntries.computeIfAbsent(uuid, k -> new Entry());
+			CachedValue cached = entry.mFields.get(key);
+			if (cached != null && cached.mExpiresAt() >= System.currentTimeMillis()) {
+				return CompletableFuture.completedFuture(cached.mValue());
+			}
+			version = entry.mVersion;
+		}
+
+		return load.get().thenApply(value -> {
+			store(uuid, entry, version, Map.of(key, new CachedValue(value, System.currentTimeMillis() + mCacheMillis)));
+			return value;
+		});
+	}
+
+	CompletableFuture<Map<String, String>> getMulti(UUID uuid, String[] keys, Supplier<CompletableFuture<List<KeyValue<String, String>>>> load) {
+		Entry entry;
+		long version;
+		synchronized (this) {
+			entry = mEntries.computeIfAbsent(uuid, k -> new Entry());
+			long now = System.currentTimeMillis();
+			Map<String, String> result = new HashMap<>();
+			boolean hit = true;
+			for (String key : keys) {
+				CachedValue cached = entry.mFields.get(key);
+				if (cached == null || cached.mExpiresAt() < now) {
+					hit = false;
+					break;
+				}
+				if (cached.mValue() != null) {
+					result.put(key, cached.mValue());
+				}
+			}
+			if (hit) {
+				return CompletableFuture.completedFuture(result);
+			}
+			version = entry.mVersion;
+		}
+
+		return load.get().thenApply(list -> {
+			long expiresAt = System.currentTimeMillis() + mCacheMillis;
+			Map<String, CachedValue> fetched = new HashMap<>();
+			Map<String, String> result = new HashMap<>();
+			for (KeyValue<String, String> item : list) {
+				String value = item.getValueOrElse(null);
+				fetched.put(item.getKey(), new CachedValue(value, expiresAt));
+				if (value != null) {
+					result.put(item.getKey(), value);
+				}
+			}
+			store(uuid, entry, version, fetched);
+			return result;
+		});
+	}
+
+	CompletableFuture<Map<String, String>> getAll(UUID uuid, Supplier<CompletableFuture<Map<String, String>>> load) {
+		Entry entry;
+		long version;
+		synchronized (this) {
+			entry = mEntries.computeIfAbsent(uuid, k -> new Entry());
+			long now = System.currentTimeMillis();
+			if (entry.mCompleteUntil >= now) {
+				Map<String, String> result = new HashMap<>();
+				boolean hit = true;
+				for (Map.Entry<String, CachedValue> field : entry.mFields.entrySet()) {
+					if (field.getValue().mExpiresAt() < now) {
+						hit = false;
+						break;
+					}
+					if (field.getValue().mValue() != null) {
+						result.put(field.getKey(), field.getValue().mValue());
+					}
+				}
+				if (hit) {
+					return CompletableFuture.completedFuture(result);
+				}
+			}
+			version = entry.mVersion;
+		}
+
+		return load.get().thenApply(all -> {
+			long expiresAt = System.currentTimeMillis() + mCacheMillis;
+			Map<String, CachedValue> fetched = new HashMap<>();
+			all.forEach((key, value) -> fetched.put(key, new CachedValue(value, expiresAt)));
+			synchronized (this) {
+				if (store(uuid, entry, version, fetched)) {
+					// Fields missing from the hash are known to be absent until the entry is next invalidated
+					entry.mFields.keySet().retainAll(all.keySet());
+					entry.mCompleteUntil = expiresAt;
+				}
+			}
+			return all;
+		});
+	}
+
+	/* ******************* Writes ******************* */
+	/*
+	 * Runs a write of a single field. valueAfter maps the write's result to the field's new value, or null if the
+	 * field no longer exists.
+	 */
+	<T> CompletableFuture<T> write(UUID uuid, String key, Supplier<CompletableFuture<T>> command, Function<T, String> valueAfter) {
+		Entry entry;
+		long version;
+		synchronized (this) {
+			entry = mEntries.computeIfAbsent(uuid, k -> new Entry());
+			entry.invalidate(key);
+			version = entry.mVersion;
+		}
+
+		return command.get().whenComplete((result, ex) -> {
+			if (ex == null) {
+				store(uuid, entry, version, Map.of(key, new CachedValue(valueAfter.apply(result), System.currentTimeMillis() + mCacheMillis)));
+			}
+		});
+	}
+
+	/* Returns whether the values were stored, which they aren't if the entry was invalidated or evicted since version was read */
+	private synchronized boolean store(UUID uuid, Entry entry, long version, Map<String, CachedValue> values) {
+		if (entry.mVersion != version || mEntries.get(uuid) != entry) {
+			return false;
+		}
+		entry.mFields.putAll(values);
+		return true;
+	}
+}
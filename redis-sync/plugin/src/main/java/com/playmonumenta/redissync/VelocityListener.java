@@ -16,8 +16,8 @@ import net.kyori.adventure.text.format.NamedTextColor;
 import org.jetbrains.annotations.Nullable;
 
 public class VelocityListener {
-	public static final String uuidToNamePath = "uuid2name";
-	public static final String nameToUUIDPath = "name2uuid";
+	public static final String uuidToNamePath = PlayerNameIndex.UUID_TO_NAME_KEY;
+	public static final String nameToUUIDPath = PlayerNameIndex.NAME_TO_UUID_KEY;
 
 	private final MonumentaRedisSyncVelocity mPlugin;
 
@@ -106,6 +106,7 @@ public class VelocityListener {
 		RedisAPI.multi(conn -> {
 			conn.hset(uuidToNamePath, uuid.toString(), name);
 			conn.hset(nameToUUIDPath, name, uuid.toString());
+			conn.zadd(PlayerNameIndex.NAME_INDEX_KEY, 0, PlayerNameIndex.indexMember(name));
 		});
 	}
 
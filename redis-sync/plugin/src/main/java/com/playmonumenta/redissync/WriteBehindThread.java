@@ -0,0 +1,45 @@
+package com.playmonumenta.redissync;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.playmonumenta.redissync.utils.MMLog;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * The thread a write-behind queue sends all of its Redis commands from, flushing the queue on a fixed interval.
+ *
+ * Commands sent from one thread all go over the same pooled connection (see RedisAPI), so Redis processes and
+ * answers them in the order they were sent. The queues rely on this to know which of their own writes a read has
+ * already seen.
+ */
+final class WriteBehindThread {
+	// How long shutdown waits for the final flush, which delays the plugin from disabling
+	private static final long SHUTDOWN_FLUSH_TIMEOUT_SECONDS = 5;
+
+	private final ScheduledExecutorService mExecutor;
+
+	WriteBehindThread(String name, int flushTicks, Runnable flush) {
+		mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat(name).build());
+		long flushMillis = flushTicks * 50L;
+		mExecutor.scheduleWithFixedDelay(flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/* Runs an operation on this thread, completing once the Redis commands it sent do */
+	<T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> operation) {
+		return CompletableFuture.supplyAsync(operation, mExecutor).thenCompose(future -> future);
+	}
+
+	/* Runs a final flush and waits briefly for Redis to acknowledge it, then stops the thread */
+	void shutdown(Supplier<CompletableFuture<?>> flush, String description) {
+		try {
+			CompletableFuture.supplyAsync(flush, mExecutor).thenCompose(future -> future)
+				.get(SHUTDOWN_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (Exception ex) {
+			MMLog.severe("Failed to flush " + description + " on shutdown", ex);
+		}
+		mExecutor.shutdownNow();
+	}
+}
@@ -0,0 +1,264 @@
+package com.playmonumenta.redissync.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary deltas between player data history entries.
+ * <p>
+ * Player data is stored as a redis list of gzip-compressed NBT blobs, newest first. When delta encoding is
+ * enabled, only the newest entry is stored whole; each older entry may instead be a delta that rebuilds it
+ * from the next newer entry in the list. Full and delta entries can be mixed freely, so lists written
+ * before delta encoding was enabled (or entries pushed whole by rollback/stash) remain readable.
+ * <p>
+ * Deltas are computed on the uncompressed NBT, since two gzip streams of nearly identical data share
+ * almost nothing once the first difference is reached.
+ */
+public final class HistoryDelta {
+	private static final byte[] MAGIC = {'M', 'R', 'S', 'D'};
+	private static final int FORMAT_VERSION = 1;
+	/* Minimum run of identical bytes worth encoding as a copy instead of literal bytes */
+	private static final int MIN_MATCH = 8;
+	private static final int OP_COPY = 0;
+	private static final int OP_INSERT = 1;
+
+	private HistoryDelta() {
+	}
+
+	/** Returns whether a history entry is a delta rather than a full gzip-compressed NBT blob */
+	public static boolean isDelta(byte[] entry) {
+		if (entry.length < MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (entry[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Encodes a delta that rebuilds {@code target} from {@code base}.
+	 *
+	 * @param base   Full gzip-compressed entry that will remain in the list directly in front of the delta
+	 * @param target Full gzip-compressed entry to replace with the delta
+	 */
+	public static byte[] encode(byte[] base, byte[] target) throws IOException {
+		byte[] baseRaw = gunzip(base);
+		byte[] targetRaw = gunzip(target);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(out);
+		header.write(MAGIC);
+		header.writeByte(FORMAT_VERSION);
+		header.writeInt(crc(baseRaw));
+		header.writeInt(crc(targetRaw));
+		header.writeInt(targetRaw.length);
+		header.flush();
+
+		try (DeflaterOutputStream ops = new DeflaterOutputStream(out)) {
+			writeOps(ops, baseRaw, targetRaw);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Rebuilds the full entry at {@code index} of a history list.
+	 * <p>
+	 * {@code entries} must be the list starting at index 0 (newest) and contain at least {@code index + 1}
+	 * elements. If the requested entry is already stored whole it is returned unchanged, otherwise it is
+	 * rebuilt from the nearest newer full entry and returned gzip-compressed.
+	 */
+	public static byte[] resolve(List<byte[]> entries, int index) throws IOException {
+		if (index < 0 || index >= entries.size()) {
+			throw new IOException("History index " + index + " is out of range, only " + entries.size() + " entries available");
+		}
+
+		int fullIndex = index;
+		while (isDelta(entries.get(fullIndex))) {
+			fullIndex--;
+			if (fullIndex < 0) {
+				throw new IOException("History entry " + index + " has no full entry to rebuild it from");
+			}
+		}
+		if (fullIndex == index) {
+			return entries.get(index);
+		}
+
+		byte[] raw = gunzip(entries.get(fullIndex));
+		for (int i = fullIndex + 1; i <= index; i++) {
+			raw = apply(raw, entries.get(i));
+		}
+		return gzip(raw);
+	}
+
+	private static byte[] apply(byte[] baseRaw, byte[] delta) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta));
+		in.skipBytes(MAGIC.length);
+		int version = in.readUnsignedByte();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported history delta version " + version);
+		}
+		int baseCrc = in.readInt();
+		int targetCrc = in.readInt();
+		int targetLength = in.readInt();
+		if (crc(baseRaw) != baseCrc) {
+			throw new IOException("History delta does not match the entry it was encoded against");
+		}
+
+		byte[] result = new byte[targetLength];
+		int pos = 0;
+		try (InputStream ops = new InflaterInputStream(in)) {
+			int op;
+			while ((op = ops.read()) != -1) {
+				int len;
+				if (op == OP_COPY) {
+					int offset = readVarInt(ops);
+					len = readVarInt(ops);
+					if (offset < 0 || len < 0 || offset + len > baseRaw.length || pos + len > targetLength) {
+						throw new IOException("Corrupt history delta copy operation");
+					}
+					System.arraycopy(baseRaw, offset, result, pos, len);
+				} else if (op == OP_INSERT) {
+					len = readVarInt(ops);
+					if (len < 0 || pos + len > targetLength) {
+						throw new IOException("Corrupt history delta insert operation");
+					}
+					readFully(ops, result, pos, len);
+				} else {
+					throw new IOException("Unknown history delta operation " + op);
+				}
+				pos += len;
+			}
+		}
+
+		if (pos != targetLength || crc(result) != targetCrc) {
+			throw new IOException("History delta produced corrupt data");
+		}
+		return result;
+	}
+
+	private static void writeOps(OutputStream out, byte[] base, byte[] target) throws IOException {
+		/* Open-addressed index of the last base position for each MIN_MATCH byte prefix hash, stored as position + 1 */
+		int tableSize = Integer.highestOneBit(Math.max(base.length, 1) * 2 - 1) << 1;
+		int mask = tableSize - 1;
+		int[] table = new int[tableSize];
+		for (int i = 0; i + MIN_MATCH <= base.length; i++) {
+			table[hash(base, i) & mask] = i + 1;
+		}
+
+		int literalStart = 0;
+		int pos = 0;
+		while (pos + MIN_MATCH <= target.length) {
+			int candidate = table[hash(target, pos) & mask] - 1;
+			if (candidate < 0 || !Arrays.equals(base, candidate, candidate + MIN_MATCH, target, pos, pos + MIN_MATCH)) {
+				pos++;
+				continue;
+			}
+
+			/* Extend the match forwards, then backwards into any pending literal bytes */
+			int len = MIN_MATCH;
+			while (candidate + len < base.length && pos + len < target.length && base[candidate + len] == target[pos + len]) {
+				len++;
+			}
+			while (candidate > 0 && pos > literalStart && base[candidate - 1] == target[pos - 1]) {
+				candidate--;
+				pos--;
+				len++;
+			}
+
+			writeInsert(out, target, literalStart, pos);
+			out.write(OP_COPY);
+			writeVarInt(out, candidate);
+			writeVarInt(out, len);
+			pos += len;
+			literalStart = pos;
+		}
+		writeInsert(out, target, literalStart, target.length);
+	}
+
+	private static void writeInsert(OutputStream out, byte[] target, int start, int end) throws IOException {
+		if (end > start) {
+			out.write(OP_INSERT);
+			writeVarInt(out, end - start);
+			out.write(target, start, end - start);
+		}
+	}
+
+	private static int hash(byte[] data, int pos) {
+		long value = 0;
+		for (int i = 0; i < MIN_MATCH; i++) {
+			value = (value << 8) | (data[pos + i] & 0xFF);
+		}
+		value *= 0x9E3779B97F4A7C15L;
+		return (int) (value >>> 32);
+	}
+
+	private static void writeVarInt(OutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readVarInt(InputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.read();
+			if (b == -1) {
+				throw new EOFException("Truncated history delta");
+			}
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint in history delta");
+	}
+
+	private static void readFully(InputStream in, byte[] dest, int offset, int len) throws IOException {
+		while (len > 0) {
+			int read = in.read(dest, offset, len);
+			if (read == -1) {
+				throw new EOFException("Truncated history delta");
+			}
+			offset += read;
+			len -= read;
+		}
+	}
+
+	private static int crc(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return (int) crc.getValue();
+	}
+
+	private static byte[] gunzip(byte[] data) throws IOException {
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+			return in.readAllBytes();
+		}
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(data);
+		}
+		return out.toByteArray();
+	}
+}
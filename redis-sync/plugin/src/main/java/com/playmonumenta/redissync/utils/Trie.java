@@ -1,210 +1,377 @@
 package com.playmonumenta.redissync.utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import org.jetbrains.annotations.Nullable;
 
 // A data structure used to efficiently complete many strings, and/or map them to values.
+/*
+ * Implemented as a radix tree: each node holds the characters leading into it as a single array, so a chain of
+ * nodes with one child each (most of every player name) is stored as one node rather than one node per character.
+ * Children are kept in arrays sorted by the first character of their edge.
+ *
+ * Nodes are immutable. Writers copy the path from the root to the changed node and then publish the new root,
+ * so readers never lock and always see a consistent snapshot. Writes are serialized with each other.
+ */
 public class Trie<V> implements Cloneable {
-	private final Map<Character, Trie<V>> mChildren;
-	private @Nullable V mValue;
-	private final int mDepth;
+	private static final char[] NO_CHARS = new char[0];
+	private static final Node<?>[] NO_CHILDREN = new Node<?>[0];
+
+	private static final class Node<V> {
+		// Characters between the parent node and this node; empty only for the root
+		private final char[] mEdge;
+		private final @Nullable V mValue;
+		// mFirstChars[i] == mChildren[i].mEdge[0], sorted ascending
+		private final char[] mFirstChars;
+		private final Node<V>[] mChildren;
+
+		private Node(char[] edge, @Nullable V value, char[] firstChars, Node<V>[] children) {
+			mEdge = edge;
+			mValue = value;
+			mFirstChars = firstChars;
+			mChildren = children;
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <V> Node<V> empty() {
+			return new Node<>(NO_CHARS, null, NO_CHARS, (Node<V>[]) NO_CHILDREN);
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <V> Node<V> leaf(char[] edge, V value) {
+			return new Node<>(edge, value, NO_CHARS, (Node<V>[]) NO_CHILDREN);
+		}
+
+		private Node<V> withValue(@Nullable V value) {
+			return new Node<>(mEdge, value, mFirstChars, mChildren);
+		}
+
+		private Node<V> withEdge(char[] edge) {
+			return new Node<>(edge, mValue, mFirstChars, mChildren);
+		}
+
+		private int childIndex(char c) {
+			return Arrays.binarySearch(mFirstChars, c);
+		}
+
+		private Node<V> withChild(Node<V> child) {
+			int index = childIndex(child.mEdge[0]);
+			if (index >= 0) {
+				Node<V>[] children = mChildren.clone();
+				children[index] = child;
+				return new Node<>(mEdge, mValue, mFirstChars, children);
+			}
+
+			int insertAt = -index - 1;
+			char[] firstChars = new char[mFirstChars.length + 1];
+			@SuppressWarnings("unchecked")
+			Node<V>[] children = (Node<V>[]) new Node<?>[mChildren.length + 1];
+			System.arraycopy(mFirstChars, 0, firstChars, 0, insertAt);
+			System.arraycopy(mChildren, 0, children, 0, insertAt);
+			firstChars[insertAt] = child.mEdge[0];
+			children[insertAt] = child;
+			System.arraycopy(mFirstChars, insertAt, firstChars, insertAt + 1, mFirstChars.length - insertAt);
+			System.arraycopy(mChildren, insertAt, children, insertAt + 1, mChildren.length - insertAt);
+			return new Node<>(mEdge, mValue, firstChars, children);
+		}
 
-	private Trie(int depth) {
-		mChildren = new ConcurrentHashMap<>();
-		mValue = null;
-		mDepth = depth;
+		@SuppressWarnings("unchecked")
+		private Node<V> withoutChild(int index) {
+			if (mChildren.length == 1) {
+				return new Node<>(mEdge, mValue, NO_CHARS, (Node<V>[]) NO_CHILDREN);
+			}
+			char[] firstChars = new char[mFirstChars.length - 1];
+			Node<V>[] children = (Node<V>[]) new Node<?>[mChildren.length - 1];
+			System.arraycopy(mFirstChars, 0, firstChars, 0, index);
+			System.arraycopy(mChildren, 0, children, 0, index);
+			System.arraycopy(mFirstChars, index + 1, firstChars, index, mFirstChars.length - index - 1);
+			System.arraycopy(mChildren, index + 1, children, index, mChildren.length - index - 1);
+			return new Node<>(mEdge, mValue, firstChars, children);
+		}
+	}
+
+	private volatile Node<V> mRoot;
+
+	private Trie(Node<V> root) {
+		mRoot = root;
 	}
 
 	public Trie() {
-		mChildren = new ConcurrentHashMap<>();
-		mValue = null;
-		mDepth = 0;
+		this(Node.empty());
 	}
 
 	public Trie(Map<String, ? extends V> m) {
-		mChildren = new ConcurrentHashMap<>();
-		mValue = null;
-		mDepth = 0;
+		this(Node.empty());
 		putAll(m);
 	}
 
-	public void clear() {
-		mChildren.clear();
-		mValue = null;
+	public synchronized void clear() {
+		mRoot = Node.empty();
 	}
 
+	/* Constant time, as the clone shares the current snapshot with this trie */
 	@SuppressWarnings("MethodDoesntCallSuperMethod")
 	@Override
 	public Trie<V> clone() {
-		Trie<V> result = new Trie<>(mDepth);
-		result.mValue = mValue;
-		for (Map.Entry<Character, Trie<V>> entry : mChildren.entrySet()) {
-			Character c = entry.getKey();
-			result.mChildren.put(c, entry.getValue().clone());
-		}
-		return result;
+		return new Trie<>(mRoot);
 	}
 
 	public boolean containsKey(String key) {
-		if (key == null || key.length() == mDepth) {
-			return mValue != null;
-		}
-		Character c = key.charAt(mDepth);
-		Trie<V> child = mChildren.get(c);
-		if (child == null) {
-			return false;
-		}
-		return child.containsKey(key);
+		return get(key) != null;
 	}
 
+	/* Returns the longest key in the trie that the given key starts with */
 	public @Nullable String closestKey(String key) {
 		if (key == null) {
 			key = "";
 		}
-		String result = null;
-		if (key.length() > mDepth) {
-			Character c = key.charAt(mDepth);
-			Trie<V> child = mChildren.get(c);
-			if (child != null) {
-				String childClosestKey = child.closestKey(key);
-				if (childClosestKey != null) {
-					result = c + child.closestKey(key);
-				}
+		Node<V> node = mRoot;
+		int pos = 0;
+		int closestLength = node.mValue != null ? 0 : -1;
+		while (pos < key.length()) {
+			int index = node.childIndex(key.charAt(pos));
+			if (index < 0) {
+				break;
+			}
+			Node<V> child = node.mChildren[index];
+			if (!regionMatches(child.mEdge, key, pos)) {
+				break;
+			}
+			pos += child.mEdge.length;
+			node = child;
+			if (node.mValue != null) {
+				closestLength = pos;
 			}
 		}
-		if (result == null && mValue != null) {
-			result = "";
-		}
-		return result;
+		return closestLength < 0 ? null : key.substring(0, closestLength);
 	}
 
 	public @Nullable V get(String key) {
-		if (key == null || key.length() == mDepth) {
-			return mValue;
+		if (key == null) {
+			key = "";
 		}
-
-		Character c = key.charAt(mDepth);
-		Trie<V> child = mChildren.get(c);
-		if (child != null) {
-			return child.get(key);
+		Node<V> node = mRoot;
+		int pos = 0;
+		while (pos < key.length()) {
+			int index = node.childIndex(key.charAt(pos));
+			if (index < 0) {
+				return null;
+			}
+			node = node.mChildren[index];
+			if (!regionMatches(node.mEdge, key, pos)) {
+				return null;
+			}
+			pos += node.mEdge.length;
 		}
-
-		return null;
+		return node.mValue;
 	}
 
 	public boolean isEmpty() {
-		return mValue == null && mChildren.isEmpty();
+		Node<V> root = mRoot;
+		return root.mValue == null && root.mChildren.length == 0;
 	}
 
 	/* NOTE: Not a set view of the map */
 	public Set<String> keySet() {
 		Set<String> result = new HashSet<>();
-		if (mValue != null) {
-			result.add("");
-		}
-
-		for (Map.Entry<Character, Trie<V>> entry : mChildren.entrySet()) {
-			String c = String.valueOf(entry.getKey());
-			Trie<V> child = entry.getValue();
-			for (String subKey : child.keySet()) {
-				result.add(c + subKey);
-			}
-		}
-
+		collectKeys(mRoot, new StringBuilder(), result, Integer.MAX_VALUE);
 		return result;
 	}
 
-	public @Nullable V put(String key, V value) {
+	public synchronized @Nullable V put(String key, V value) {
 		if (value == null) {
 			remove(key);
 			return null;
 		}
-
-		if (key == null || key.length() == mDepth) {
-			mValue = value;
-			return mValue;
-		}
-
-		Character c = key.charAt(mDepth);
-		Trie<V> child = mChildren.computeIfAbsent(c, k -> new Trie<>(mDepth + 1));
-		return child.put(key, value);
+		mRoot = put(mRoot, key == null ? "" : key, 0, value);
+		return value;
 	}
 
-	public void putAll(Map<? extends String, ? extends V> m) {
+	/* Inserts every entry, publishing the result to readers once at the end */
+	public synchronized void putAll(Map<? extends String, ? extends V> m) {
+		Node<V> root = mRoot;
 		for (Map.Entry<? extends String, ? extends V> entry : m.entrySet()) {
-			String key = entry.getKey();
+			String key = entry.getKey() == null ? "" : entry.getKey();
 			V value = entry.getValue();
-			put(key, value);
+			if (value == null) {
+				Node<V> removed = remove(root, key, 0);
+				root = removed == null ? Node.empty() : removed;
+			} else {
+				root = put(root, key, 0, value);
+			}
 		}
+		mRoot = root;
 	}
 
-	public @Nullable V remove(String key) {
-		if (key == null || key.length() == mDepth) {
-			mValue = null;
-			return null;
-		}
-
-		Character c = key.charAt(mDepth);
-		Trie<V> child = mChildren.get(c);
-		if (child == null) {
-			return null;
+	public synchronized @Nullable V remove(String key) {
+		if (key == null) {
+			key = "";
 		}
-		V value = child.remove(key);
-		if (child.isEmpty()) {
-			mChildren.remove(c);
+		V previous = get(key);
+		if (previous != null) {
+			Node<V> root = remove(mRoot, key, 0);
+			mRoot = root == null ? Node.empty() : root;
 		}
-		return value;
+		return previous;
 	}
 
 	public int size() {
-		int result = (mValue != null) ? 1 : 0;
-
-		for (Trie<V> child : mChildren.values()) {
-			result += child.size();
-		}
-
-		return result;
+		return size(mRoot);
 	}
 
 	public List<String> suggestions(String start, int limit) {
+		List<String> result = new ArrayList<>();
 		if (limit <= 0) {
-			return new ArrayList<>();
+			return result;
 		}
 
 		if (start == null) {
 			start = "";
 		}
 
-		if (start.length() > mDepth) {
-			Character c = start.charAt(mDepth);
-			Trie<V> child = mChildren.get(c);
-			if (child == null) {
-				return new ArrayList<>();
+		/* Find the node whose subtree holds every key starting with start */
+		Node<V> node = mRoot;
+		StringBuilder prefix = new StringBuilder(start);
+		int pos = 0;
+		while (pos < start.length()) {
+			int index = node.childIndex(start.charAt(pos));
+			if (index < 0) {
+				return result;
+			}
+			node = node.mChildren[index];
+			int remaining = start.length() - pos;
+			if (remaining < node.mEdge.length) {
+				// start ends part way along this edge - every key below it matches if the edge continues start
+				for (int i = 0; i < remaining; i++) {
+					if (node.mEdge[i] != start.charAt(pos + i)) {
+						return result;
+					}
+				}
+				prefix.append(node.mEdge, remaining, node.mEdge.length - remaining);
+				break;
+			}
+			if (!regionMatches(node.mEdge, start, pos)) {
+				return result;
+			}
+			pos += node.mEdge.length;
+		}
+
+		if (node.mValue != null) {
+			result.add(prefix.toString());
+		}
+		for (Node<V> child : node.mChildren) {
+			if (result.size() >= limit) {
+				break;
 			}
-			return child.suggestions(start, limit);
+			collectKeys(child, prefix, result, limit);
 		}
+		return result;
+	}
 
-		List<String> result = new ArrayList<>();
+	private static <V> Node<V> put(Node<V> node, String key, int pos, V value) {
+		if (pos == key.length()) {
+			return node.withValue(value);
+		}
 
-		if (mValue != null) {
-			result.add(start);
+		int index = node.childIndex(key.charAt(pos));
+		if (index < 0) {
+			return node.withChild(Node.leaf(key.substring(pos).toCharArray(), value));
 		}
 
-		for (Map.Entry<Character, Trie<V>> entry : mChildren.entrySet()) {
-			if (result.size() >= limit) {
-				return result;
+		Node<V> child = node.mChildren[index];
+		int common = commonPrefixLength(child.mEdge, key, pos);
+		if (common == child.mEdge.length) {
+			return node.withChild(put(child, key, pos + common, value));
+		}
+
+		/* The key leaves this edge part way along, so split the edge at that point */
+		Node<V> split = Node.<V>empty()
+			.withEdge(Arrays.copyOfRange(child.mEdge, 0, common))
+			.withChild(child.withEdge(Arrays.copyOfRange(child.mEdge, common, child.mEdge.length)));
+		return node.withChild(put(split, key, pos + common, value));
+	}
+
+	/* Returns the node with the key removed, or null if nothing is left below it */
+	private static <V> @Nullable Node<V> remove(Node<V> node, String key, int pos) {
+		Node<V> result;
+		if (pos == key.length()) {
+			result = node.withValue(null);
+		} else {
+			int index = node.childIndex(key.charAt(pos));
+			if (index < 0) {
+				return node;
 			}
+			Node<V> child = node.mChildren[index];
+			if (!regionMatches(child.mEdge, key, pos)) {
+				return node;
+			}
+			Node<V> newChild = remove(child, key, pos + child.mEdge.length);
+			result = newChild == null ? node.withoutChild(index) : node.withChild(newChild);
+		}
 
-			Character c = entry.getKey();
-			Trie<V> child = entry.getValue();
-			result.addAll(child.suggestions(start + c, limit - result.size()));
+		if (result.mEdge.length == 0) {
+			// The root is never removed or merged
+			return result;
+		}
+		if (result.mValue == null && result.mChildren.length == 0) {
+			return null;
+		}
+		if (result.mValue == null && result.mChildren.length == 1) {
+			/* Merge a node that no longer has a value into its only child */
+			Node<V> only = result.mChildren[0];
+			char[] edge = Arrays.copyOf(result.mEdge, result.mEdge.length + only.mEdge.length);
+			System.arraycopy(only.mEdge, 0, edge, result.mEdge.length, only.mEdge.length);
+			return only.withEdge(edge);
 		}
+		return result;
+	}
 
+	private static <V> void collectKeys(Node<V> node, StringBuilder prefix, Collection<String> result, int limit) {
+		int prefixLength = prefix.length();
+		prefix.append(node.mEdge);
+		if (node.mValue != null && result.size() < limit) {
+			result.add(prefix.toString());
+		}
+		for (Node<V> child : node.mChildren) {
+			if (result.size() >= limit) {
+				break;
+			}
+			collectKeys(child, prefix, result, limit);
+		}
+		prefix.setLength(prefixLength);
+	}
+
+	private static int size(Node<?> node) {
+		int result = node.mValue != null ? 1 : 0;
+		for (Node<?> child : node.mChildren) {
+			result += size(child);
+		}
 		return result;
 	}
+
+	private static boolean regionMatches(char[] edge, String key, int pos) {
+		if (key.length() - pos < edge.length) {
+			return false;
+		}
+		for (int i = 0; i < edge.length; i++) {
+			if (edge[i] != key.charAt(pos + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int commonPrefixLength(char[] edge, String key, int pos) {
+		int max = Math.min(edge.length, key.length() - pos);
+		int i = 0;
+		while (i < max && edge[i] == key.charAt(pos + i)) {
+			i++;
+		}
+		return i;
+	}
 }
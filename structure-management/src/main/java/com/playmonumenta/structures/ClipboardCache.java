@@ -0,0 +1,221 @@
+package com.playmonumenta.structures;
+
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import java.io.File;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Size-bounded, least-recently-used cache of loaded structure clipboards.
+ * <p>
+ * Entries are keyed by the structure file's path and are only returned while the file's modification time and
+ * length are unchanged, so saving over a structure never returns the stale copy.
+ * <p>
+ * Clipboards returned from the cache are shared between callers and must not be modified.
+ * <p>
+ * The cache owns the clipboards it holds, and closes each one once it is evicted or invalidated. A clipboard
+ * that is pinned (see {@link #pin}) when that happens stays open until it is no longer pinned.
+ * <p>
+ * Thread safe, since structures are loaded on async threads.
+ */
+public class ClipboardCache {
+	/*
+	 * Approximate memory used per block of a loaded clipboard (block state plus a share of biome and tile entity data).
+	 * Only used to keep the total cache size roughly within the configured limit.
+	 */
+	private static final long BYTES_PER_BLOCK = 4;
+
+	private static class Entry {
+		private final BlockArrayClipboard mClipboard;
+		private final long mLastModified;
+		private final long mFileLength;
+		private final long mSizeBytes;
+
+		private Entry(BlockArrayClipboard clipboard, long lastModified, long fileLength, long sizeBytes) {
+			mClipboard = clipboard;
+			mLastModified = lastModified;
+			mFileLength = fileLength;
+			mSizeBytes = sizeBytes;
+		}
+	}
+
+	// Access-ordered, so iteration starts with the least recently used entry
+	private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+	private long mMaxBytes;
+	private long mTotalBytes = 0;
+	private long mHits = 0;
+	private long mMisses = 0;
+	// Pin counts of clipboards in use, and clipboards that left the cache while pinned and must be closed once unpinned
+	private final Map<BlockArrayClipboard, Integer> mPins = new IdentityHashMap<>();
+	private final Set<BlockArrayClipboard> mClosePending = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	public ClipboardCache(long maxBytes) {
+		mMaxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the cached clipboard for this file, or null if it is not cached or the file has changed since it was cached.
+	 */
+	public synchronized @Nullable BlockArrayClipboard get(File file) {
+		return get(file, false);
+	}
+
+	/**
+	 * Returns the cached clipboard for this file, or null if it is not cached or the file has changed since it was cached.
+	 * If pin is true, a returned clipboard is also pinned, as if by {@link #pin}.
+	 */
+	public synchronized @Nullable BlockArrayClipboard get(File file, boolean pin) {
+		String key = file.getAbsolutePath();
+		Entry entry = mEntries.get(key);
+		if (entry != null && entry.mLastModified == file.lastModified() && entry.mFileLength == file.length()) {
+			mHits++;
+			if (pin) {
+				pin(entry.mClipboard);
+			}
+			return entry.mClipboard;
+		}
+		if (entry != null) {
+			removeEntry(key);
+		}
+		mMisses++;
+		return null;
+	}
+
+	/**
+	 * Caches a clipboard that was just loaded from this file, evicting the least recently used entries as needed.
+	 * <p>
+	 * Clipboards larger than the whole cache are not cached.
+	 */
+	public synchronized void put(File file, BlockArrayClipboard clipboard, long lastModified, long fileLength) {
+		put(file, clipboard, lastModified, fileLength, false);
+	}
+
+	/**
+	 * Caches a clipboard that was just loaded from this file, evicting the least recently used entries as needed.
+	 * If pin is true, the clipboard is also pinned, as if by {@link #pin}.
+	 * <p>
+	 * Clipboards larger than the whole cache are not cached, and so are never closed by the cache.
+	 */
+	public synchronized void put(File file, BlockArrayClipboard clipboard, long lastModified, long fileLength, boolean pin) {
+		String key = file.getAbsolutePath();
+		removeEntry(key);
+		if (pin) {
+			pin(clipboard);
+		}
+
+		long sizeBytes = estimateSize(clipboard);
+		if (sizeBytes > mMaxBytes) {
+			return;
+		}
+		mEntries.put(key, new Entry(clipboard, lastModified, fileLength, sizeBytes));
+		mTotalBytes += sizeBytes;
+		evict();
+	}
+
+	/**
+	 * Drops the cached clipboard for this file, if any.
+	 */
+	public synchronized void invalidate(File file) {
+		removeEntry(file.getAbsolutePath());
+	}
+
+	public synchronized void clear() {
+		for (Entry entry : mEntries.values()) {
+			release(entry.mClipboard);
+		}
+		mEntries.clear();
+		mTotalBytes = 0;
+	}
+
+	/**
+	 * Keeps a clipboard open while it is in use, even if it leaves the cache meanwhile.
+	 * Every call must be matched by a call to {@link #unpin}.
+	 */
+	public synchronized void pin(BlockArrayClipboard clipboard) {
+		mPins.merge(clipboard, 1, Integer::sum);
+	}
+
+	/**
+	 * Ends one use of a pinned clipboard, closing it if it left the cache while pinned and is no longer pinned.
+	 */
+	public synchronized void unpin(BlockArrayClipboard clipboard) {
+		Integer pins = mPins.get(clipboard);
+		if (pins == null) {
+			return;
+		}
+		if (pins > 1) {
+			mPins.put(clipboard, pins - 1);
+			return;
+		}
+		mPins.remove(clipboard);
+		if (mClosePending.remove(clipboard)) {
+			clipboard.close();
+		}
+	}
+
+	/**
+	 * Changes the maximum total size of the cache, evicting entries if it is now over the limit. 0 disables caching.
+	 */
+	public synchronized void setMaxBytes(long maxBytes) {
+		mMaxBytes = maxBytes;
+		evict();
+	}
+
+	public synchronized long getMaxBytes() {
+		return mMaxBytes;
+	}
+
+	public synchronized long getTotalBytes() {
+		return mTotalBytes;
+	}
+
+	public synchronized int size() {
+		return mEntries.size();
+	}
+
+	public synchronized long getHits() {
+		return mHits;
+	}
+
+	public synchronized long getMisses() {
+		return mMisses;
+	}
+
+	private void removeEntry(String key) {
+		Entry removed = mEntries.remove(key);
+		if (removed != null) {
+			mTotalBytes -= removed.mSizeBytes;
+			release(removed.mClipboard);
+		}
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> iter = mEntries.entrySet().iterator();
+		while (mTotalBytes > mMaxBytes && iter.hasNext()) {
+			Entry evicted = iter.next().getValue();
+			iter.remove();
+			mTotalBytes -= evicted.mSizeBytes;
+			release(evicted.mClipboard);
+		}
+	}
+
+	// Closes a clipboard that just left the cache, or once it is unpinned if it is in use
+	private void release(BlockArrayClipboard clipboard) {
+		if (mPins.containsKey(clipboard)) {
+			mClosePending.add(clipboard);
+		} else {
+			clipboard.close();
+		}
+	}
+
+	private static long estimateSize(BlockArrayClipboard clipboard) {
+		BlockVector3 dimensions = clipboard.getDimensions();
+		return (long) dimensions.getBlockX() * dimensions.getBlockY() * dimensions.getBlockZ() * BYTES_PER_BLOCK;
+	}
+}
@@ -29,14 +29,18 @@ import it.unimi.dsi.fastutil.longs.LongSet;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import net.kyori.adventure.text.Component;
@@ -60,6 +64,8 @@ import org.jetbrains.annotations.Nullable;
 public class StructuresAPI {
 	public static final String FORMAT = "sponge";
 
+	private static final ClipboardCache CLIPBOARD_CACHE = new ClipboardCache(StructuresPlugin.DEFAULT_CLIPBOARD_CACHE_SIZE_MB * 1024L * 1024L);
+
 	/**
 	 * Convenience function to combine both loadStructure() and pasteStructure() into one operation.
 	 * <p>
@@ -86,13 +92,17 @@ public class StructuresAPI {
 		/* Clone the input variable to make sure the caller doesn't change it while we're still loading */
 		Location pasteLoc = loc.clone();
 
-		return loadStructure(path).thenCompose((clipboard) -> pasteStructure(clipboard, pasteLoc, includeEntities, includeBiomes));
+		return acquireStructure(path).thenCompose((clipboard) -> pasteStructure(clipboard, pasteLoc, includeEntities, includeBiomes)
+			.whenComplete((unused, ex) -> releaseStructure(clipboard)));
 	}
 
 	/**
 	 * Loads a structure from the disk and returns it.
 	 * <p>
 	 * Must be called from main thread, will return immediately and do its work on an async thread
+	 * <p>
+	 * The returned clipboard is always freshly loaded from disk and belongs to the caller, which may modify it and
+	 * should close it once done. Use {@link #acquireStructure(String)} instead to share a cached copy.
 	 *
 	 * @param path Relative path under the structures/ folder of the structure to load, not including the extension
 	 *
@@ -101,6 +111,32 @@ public class StructuresAPI {
 	 * clipboard will be non-null on success, otherwise ex will be a non-null exception if something went wrong
 	 */
 	public static CompletableFuture<BlockArrayClipboard> loadStructure(@NotNull String path) {
+		return loadStructure(path, false);
+	}
+
+	/**
+	 * Loads a structure like {@link #loadStructure(String)}, but through the cache of recently loaded structures (see
+	 * {@link #getClipboardCache()}), so the returned clipboard may be shared with other callers and must not be
+	 * modified or closed. It is kept open until it is passed to {@link #releaseStructure(BlockArrayClipboard)}, even if
+	 * the cache evicts it in the meantime.
+	 * <p>
+	 * Every clipboard returned by this function must be released exactly once.
+	 *
+	 * @param path Relative path under the structures/ folder of the structure to load, not including the extension
+	 */
+	public static CompletableFuture<BlockArrayClipboard> acquireStructure(@NotNull String path) {
+		return loadStructure(path, true);
+	}
+
+	/**
+	 * Releases a clipboard returned by {@link #acquireStructure(String)}, allowing the cache to close it once evicted.
+	 */
+	public static void releaseStructure(@NotNull BlockArrayClipboard clipboard) {
+		CLIPBOARD_CACHE.unpin(clipboard);
+	}
+
+	/* Shared clipboards are pinned in the cache for the caller; others are loaded uncached and owned by the caller */
+	private static CompletableFuture<BlockArrayClipboard> loadStructure(String path, boolean shared) {
 		CompletableFuture<BlockArrayClipboard> future = new CompletableFuture<>();
 
 		MMLog.debug("loadStructure: Started loading structure '" + path + "'");
@@ -111,6 +147,16 @@ public class StructuresAPI {
 			try {
 				File file = CommandUtils.getAndValidateSchematicPath(StructuresPlugin.getInstance(), path, true);
 
+				BlockArrayClipboard cached = shared ? CLIPBOARD_CACHE.get(file, true) : null;
+				if (cached != null) {
+					MMLog.debug("loadStructure: Using cached structure '" + path + "'");
+					Bukkit.getScheduler().runTask(StructuresPlugin.getInstance(), () -> future.complete(cached));
+					return;
+				}
+				/* Read before loading, so a save that happens while loading is never hidden by the cached copy */
+				long lastModified = file.lastModified();
+				long fileLength = file.length();
+
 				ClipboardFormat format = ClipboardFormats.findByAlias(FORMAT);
 				if (format == null) {
 					future.completeExceptionally(new Exception("Could not find structure format " + FORMAT));
@@ -125,6 +171,9 @@ public class StructuresAPI {
 					future.completeExceptionally(new Exception("Loaded unknown clipboard type: " + newClip.getClass()));
 					return;
 				}
+				if (shared) {
+					CLIPBOARD_CACHE.put(file, clipboard, lastModified, fileLength, true);
+				}
 				MMLog.debug("loadStructure: Async loaded structure '" + path + "'");
 
 				Bukkit.getScheduler().runTask(StructuresPlugin.getInstance(), () -> {
@@ -145,6 +194,13 @@ public class StructuresAPI {
 		return future;
 	}
 
+	/**
+	 * Returns the cache of recently loaded structures, which also tracks cache hit and miss counts.
+	 */
+	public static ClipboardCache getClipboardCache() {
+		return CLIPBOARD_CACHE;
+	}
+
 	/**
 	 * Save a structure given a bounding box at the specified path.
 	 * <p>
@@ -204,6 +260,7 @@ public class StructuresAPI {
 				BufferedOutputStream bos = closer.register(new BufferedOutputStream(fos));
 				ClipboardWriter writer = closer.register(format.getWriter(bos));
 				writer.write(clipboard);
+				CLIPBOARD_CACHE.invalidate(file);
 
 				MMLog.debug("copyAreaAndSaveStructure: Wrote output to file '" + path + "'");
 
@@ -341,26 +398,31 @@ public class StructuresAPI {
 		 */
 		CompletableFuture<Void> signal = new CompletableFuture<>();
 
-		PENDING_TASKS.add(new PendingTask(signal, () -> {
-			final long initialTime = System.currentTimeMillis(); // <-- START
+		/* The clipboard may be one the cache owns, so keep it open until it has been pasted */
+		CLIPBOARD_CACHE.pin(clipboard);
+		signal.whenComplete((unused, ex) -> CLIPBOARD_CACHE.unpin(clipboard));
 
-			final Region sourceRegion = clipboard.getRegion();
-			final BlockVector3 size = sourceRegion.getMaximumPoint().subtract(sourceRegion.getMinimumPoint());
-			final org.bukkit.World world = pasteLoc.getWorld();
-			final BlockVector3 to = BlockVector3.at(pasteLoc.getBlockX(), pasteLoc.getBlockY(), pasteLoc.getBlockZ());
-			final Vector pos1 = new Vector(to.getX(), to.getY(), (double)to.getZ());
-			final Vector pos2 = pos1.clone().add(new Vector(size.getX() + 1, size.getY() + 1, size.getZ() + 1));
-			final BoundingBox box = new BoundingBox(pos1.getX(), pos1.getY(), pos1.getZ(), pos2.getX(), pos2.getY(), pos2.getZ());
+		final Region sourceRegion = clipboard.getRegion();
+		final BlockVector3 size = sourceRegion.getMaximumPoint().subtract(sourceRegion.getMinimumPoint());
+		final org.bukkit.World world = pasteLoc.getWorld();
+		final BlockVector3 to = BlockVector3.at(pasteLoc.getBlockX(), pasteLoc.getBlockY(), pasteLoc.getBlockZ());
+		final Vector pos1 = new Vector(to.getX(), to.getY(), (double)to.getZ());
+		final Vector pos2 = pos1.clone().add(new Vector(size.getX() + 1, size.getY() + 1, size.getZ() + 1));
+		final BoundingBox box = new BoundingBox(pos1.getX(), pos1.getY(), pos1.getZ(), pos2.getX(), pos2.getY(), pos2.getZ());
 
-			/*
-			 * Clipboards seem to be offset at their original save location now, rather than at 0 0 0
-			 * This offset can be added to a relative position to get the correct location within the clipboard
-			 */
-			final Region shiftedRegion = clipboard.getRegion().clone();
-			final BlockVector3 clipboardAddOffset = shiftedRegion.getMinimumPoint();
-			final Vector clipboardAddOffsetVec = new Vector(clipboardAddOffset.getX(), clipboardAddOffset.getY(), clipboardAddOffset.getZ());
-			shiftedRegion.shift(clipboardAddOffset.multiply(-1, -1, -1));
-			shiftedRegion.shift(to);
+		/*
+		 * Clipboards seem to be offset at their original save location now, rather than at 0 0 0
+		 * This offset can be added to a relative position to get the correct location within the clipboard
+		 */
+		final Region shiftedRegion = clipboard.getRegion().clone();
+		final BlockVector3 clipboardAddOffset = shiftedRegion.getMinimumPoint();
+		final Vector clipboardAddOffsetVec = new Vector(clipboardAddOffset.getX(), clipboardAddOffset.getY(), clipboardAddOffset.getZ());
+		shiftedRegion.shift(clipboardAddOffset.multiply(-1, -1, -1));
+		shiftedRegion.shift(to);
+
+		/* Relighting also updates the chunks around the pasted ones, so other pastes must stay clear of those too */
+		PENDING_TASKS.add(new PendingTask(signal, world.getUID(), getChunkKeys(shiftedRegion, RELIGHT_CHUNK_MARGIN), clipboard, () -> {
+			final long initialTime = System.currentTimeMillis(); // <-- START
 
 			/* Set of positions (relative to the clipboard / origin) that should not be overwritten when pasting */
 			final LongSet noLoadPositions = new LongOpenHashSet();
@@ -450,6 +512,13 @@ public class StructuresAPI {
 							copy.setFilterFunction(filterFunction);
 							copy.setCopyingEntities(includeEntities);
 							Operations.completeBlindly(copy);
+						} catch (Exception e) {
+							MMLog.severe("Failed to paste structure", e);
+							/* Complete the signal so the paste's chunks are freed for other pastes */
+							signal.completeExceptionally(e);
+							future.completeExceptionally(e);
+							Bukkit.getScheduler().runTask(plugin, () -> unmarkChunksAsync(world, shiftedRegion));
+							return;
 						}
 						MMLog.trace(() -> "Loading structure took " + (System.currentTimeMillis() - pasteTime) + " milliseconds (async)"); // STOP -->
 
@@ -467,7 +536,7 @@ public class StructuresAPI {
 			});
 		}));
 
-		ensureTask(plugin);
+		schedulePendingTasks(plugin);
 
 		return future;
 	}
@@ -585,12 +654,37 @@ public class StructuresAPI {
 
 	private static class PendingTask {
 		private final CompletableFuture<Void> mSignal;
+		private final UUID mWorldId;
+		/* Chunks this paste modifies or relights; pastes sharing any chunk are never run at the same time */
+		private final LongSet mChunkKeys;
+		/* Clipboards are not safe to read from several threads, so pastes of the same one are never run at the same time */
+		private final BlockArrayClipboard mClipboard;
 		private final Runnable mStartTask;
 
-		protected PendingTask(CompletableFuture<Void> signal, Runnable startTask) {
+		protected PendingTask(CompletableFuture<Void> signal, UUID worldId, LongSet chunkKeys, BlockArrayClipboard clipboard, Runnable startTask) {
 			mSignal = signal;
+			mWorldId = worldId;
+			mChunkKeys = chunkKeys;
+			mClipboard = clipboard;
 			mStartTask = startTask;
 		}
+
+		protected boolean conflictsWith(PendingTask other) {
+			if (mClipboard == other.mClipboard) {
+				return true;
+			}
+			if (!mWorldId.equals(other.mWorldId)) {
+				return false;
+			}
+			LongSet smaller = mChunkKeys.size() <= other.mChunkKeys.size() ? mChunkKeys : other.mChunkKeys;
+			LongSet larger = smaller == mChunkKeys ? other.mChunkKeys : mChunkKeys;
+			for (long chunkKey : smaller) {
+				if (larger.contains(chunkKey)) {
+					return true;
+				}
+			}
+			return false;
+		}
 	}
 
 	public static class WorldChunkKey {
@@ -620,9 +714,18 @@ public class StructuresAPI {
 		}
 	}
 
+	private static final long PASTE_TIMEOUT_SECONDS = 45;
+	// Chunks around a paste that relighting may also modify
+	private static final int RELIGHT_CHUNK_MARGIN = 1;
+
 	private static final HashMap<WorldChunkKey, Integer> CHUNK_TICKET_REFERENCE_COUNT = new HashMap<>();
-	private static final Deque<PendingTask> PENDING_TASKS = new ConcurrentLinkedDeque<>();
-	private static @Nullable BukkitRunnable RUNNING_TASK = null;
+	/* Pastes waiting to start, in the order they were requested. Only accessed from the main thread */
+	private static final Deque<PendingTask> PENDING_TASKS = new ArrayDeque<>();
+	/* Pastes that have started and not yet signalled completion. Only accessed from the main thread */
+	private static final List<PendingTask> ACTIVE_TASKS = new ArrayList<>();
+	private static int MAX_CONCURRENT_PASTES = StructuresPlugin.DEFAULT_MAX_CONCURRENT_PASTES;
+	private static long COMPLETED_PASTES = 0;
+	private static long TIMED_OUT_PASTES = 0;
 
 	private static final EnumSet<EntityType> keptEntities = EnumSet.of(
 		EntityType.PLAYER,
@@ -680,36 +783,104 @@ public class StructuresAPI {
 				((long) (z & ((1 << 24) - 1)));
 	}
 
-	private static void ensureTask(Plugin plugin) {
-		if (RUNNING_TASK != null) {
-			return;
+	/**
+	 * Sets how many structures may be pasted at the same time. Pastes that share any chunk (including the chunks around
+	 * them that are relit) or the same clipboard are always run one at a time.
+	 * <p>
+	 * Must be called from main thread
+	 */
+	public static void setMaxConcurrentPastes(int maxConcurrentPastes) {
+		MAX_CONCURRENT_PASTES = Math.max(1, maxConcurrentPastes);
+		Plugin plugin = StructuresPlugin.getInstance();
+		if (plugin != null) {
+			schedulePendingTasks(plugin);
 		}
+	}
 
-		RUNNING_TASK = new BukkitRunnable() {
-			@Override
-			public void run() {
-				while (true) {
-					PendingTask task = PENDING_TASKS.pollFirst();
-
-					if (task != null) {
-						try {
-							Bukkit.getScheduler().runTask(plugin, task.mStartTask);
-							task.mSignal.get(45, TimeUnit.SECONDS);
-						} catch (Exception ex) {
-							MMLog.severe("Structure task took longer than 45s to complete! Continuing to the next task.", ex);
-						}
-					}
+	public static int getMaxConcurrentPastes() {
+		return MAX_CONCURRENT_PASTES;
+	}
 
-					try {
-						Thread.sleep(50);
-					} catch (Exception ex) {
-						MMLog.info("Structure loading task sleep was interrupted");
-						RUNNING_TASK = null;
-						break;
-					}
+	/** Number of pastes waiting to start. Must be called from main thread */
+	public static int getPendingPasteCount() {
+		return PENDING_TASKS.size();
+	}
+
+	/** Number of pastes currently in progress. Must be called from main thread */
+	public static int getActivePasteCount() {
+		return ACTIVE_TASKS.size();
+	}
+
+	/** Number of pastes that have finished, including ones that failed or timed out */
+	public static long getCompletedPasteCount() {
+		return COMPLETED_PASTES;
+	}
+
+	/** Number of pastes that took longer than the timeout. These still hold their chunks until they finish */
+	public static long getTimedOutPasteCount() {
+		return TIMED_OUT_PASTES;
+	}
+
+	/* Keys of the chunks in the region, and of those up to margin chunks away from it */
+	private static LongSet getChunkKeys(Region region, int margin) {
+		LongSet chunkKeys = new LongOpenHashSet();
+		for (BlockVector2 chunkCoords : region.getChunks()) {
+			for (int dx = -margin; dx <= margin; dx++) {
+				for (int dz = -margin; dz <= margin; dz++) {
+					chunkKeys.add(Chunk.getChunkKey(chunkCoords.getX() + dx, chunkCoords.getZ() + dz));
 				}
 			}
-		};
-		RUNNING_TASK.runTaskAsynchronously(plugin);
+		}
+		return chunkKeys;
+	}
+
+	/*
+	 * Starts as many pending pastes as allowed. A paste is started only if it does not share a chunk or a clipboard with
+	 * an active paste or with an earlier pending paste, so conflicting pastes still run in the order they were requested.
+	 *
+	 * Must be called from main thread
+	 */
+	private static void schedulePendingTasks(Plugin plugin) {
+		List<PendingTask> blockingTasks = new ArrayList<>(ACTIVE_TASKS);
+		Iterator<PendingTask> iter = PENDING_TASKS.iterator();
+		while (ACTIVE_TASKS.size() < MAX_CONCURRENT_PASTES && iter.hasNext()) {
+			PendingTask task = iter.next();
+			boolean conflicts = false;
+			for (PendingTask blockingTask : blockingTasks) {
+				if (task.conflictsWith(blockingTask)) {
+					conflicts = true;
+					break;
+				}
+			}
+			blockingTasks.add(task);
+			if (conflicts) {
+				continue;
+			}
+
+			iter.remove();
+			ACTIVE_TASKS.add(task);
+			/*
+			 * A paste that takes too long is only reported. It keeps its chunks until it actually finishes, as it may
+			 * still be writing to them; pastes elsewhere continue in the meantime.
+			 */
+			task.mSignal.copy().orTimeout(PASTE_TIMEOUT_SECONDS, TimeUnit.SECONDS).whenComplete((unused, ex) -> {
+				if (ex instanceof TimeoutException) {
+					MMLog.severe("Structure task took longer than " + PASTE_TIMEOUT_SECONDS + "s to complete! Continuing with pastes that do not overlap it.");
+					Bukkit.getScheduler().runTask(plugin, () -> TIMED_OUT_PASTES++);
+				}
+			});
+			task.mSignal.whenComplete((unused, ex) -> Bukkit.getScheduler().runTask(plugin, () -> {
+				if (ACTIVE_TASKS.remove(task)) {
+					COMPLETED_PASTES++;
+				}
+				schedulePendingTasks(plugin);
+			}));
+			try {
+				task.mStartTask.run();
+			} catch (Exception ex) {
+				MMLog.severe("Failed to start structure paste", ex);
+				task.mSignal.completeExceptionally(ex);
+			}
+		}
 	}
 }
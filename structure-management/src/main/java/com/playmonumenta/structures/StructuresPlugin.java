@@ -29,6 +29,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class StructuresPlugin extends JavaPlugin implements Executor {
+	public static final long DEFAULT_CLIPBOARD_CACHE_SIZE_MB = 256;
+	public static final int DEFAULT_MAX_CONCURRENT_PASTES = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
 	public @Nullable RespawnManager mRespawnManager = null;
 
 	private static @Nullable StructuresPlugin INSTANCE = null;
@@ -117,6 +120,10 @@ public class StructuresPlugin extends JavaPlugin implements Executor {
 
 		CommandUtils.reloadStructurePathSuggestions();
 
+		long clipboardCacheSizeMb = config.getLong("clipboard_cache_size_mb", DEFAULT_CLIPBOARD_CACHE_SIZE_MB);
+		StructuresAPI.getClipboardCache().setMaxBytes(Math.max(0, clipboardCacheSizeMb) * 1024L * 1024L);
+		StructuresAPI.setMaxConcurrentPastes(config.getInt("max_concurrent_pastes", DEFAULT_MAX_CONCURRENT_PASTES));
+
 		/* TODO: Non-hardcoded worlds! These should be saved into the respawning structure */
 		mRespawnManager = new RespawnManager(this, Bukkit.getWorlds().get(0), config, shardState);
 	}
@@ -1,5 +1,7 @@
 package com.playmonumenta.structures.commands;
 
+import com.playmonumenta.structures.ClipboardCache;
+import com.playmonumenta.structures.StructuresAPI;
 import com.playmonumenta.structures.StructuresPlugin;
 import dev.jorel.commandapi.CommandAPICommand;
 import dev.jorel.commandapi.CommandPermission;
@@ -13,6 +15,13 @@ public class ReloadStructures {
 				.executes((sender, args) -> {
 					plugin.reloadConfig();
 					sender.sendMessage(Component.text("Structures reloaded", NamedTextColor.GREEN));
+					ClipboardCache cache = StructuresAPI.getClipboardCache();
+					sender.sendMessage(Component.text("Structure cache: " + cache.size() + " structures, "
+						+ (cache.getTotalBytes() / (1024 * 1024)) + "/" + (cache.getMaxBytes() / (1024 * 1024)) + " MB, "
+						+ cache.getHits() + " hits, " + cache.getMisses() + " misses", NamedTextColor.GRAY));
+					sender.sendMessage(Component.text("Structure pastes: " + StructuresAPI.getActivePasteCount() + "/"
+						+ StructuresAPI.getMaxConcurrentPastes() + " active, " + StructuresAPI.getPendingPasteCount() + " pending, "
+						+ StructuresAPI.getCompletedPasteCount() + " completed, " + StructuresAPI.getTimedOutPasteCount() + " timed out", NamedTextColor.GRAY));
 				})
 				.register();
 	}
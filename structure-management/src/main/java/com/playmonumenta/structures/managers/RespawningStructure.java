@@ -9,6 +9,7 @@ import com.playmonumenta.structures.StructuresPlugin;
 import com.playmonumenta.structures.events.StructureRespawnEvent;
 import com.playmonumenta.structures.utils.MMLog;
 import com.playmonumenta.structures.utils.MessagingUtils;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.block.BlockType;
@@ -193,8 +194,9 @@ public class RespawningStructure implements Comparable<RespawningStructure> {
 				postRespawnCommand,
 				nextRespawnPath, spawnerBreakTrigger);
 
-			// Load the first schematic to get its size
-			return StructuresAPI.loadStructure(structure.mGenericVariants.get(0)).thenApply((clipboard) -> {
+			// Load the first schematic to get its size, keeping it open until it has been read
+			CompletableFuture<BlockArrayClipboard> firstVariant = StructuresAPI.acquireStructure(structure.mGenericVariants.get(0));
+			return firstVariant.thenApply((clipboard) -> {
 				if (specialPaths != null) {
 					structure.mSpecialVariants.addAll(specialPaths);
 				}
@@ -230,10 +232,8 @@ public class RespawningStructure implements Comparable<RespawningStructure> {
 
 				structure.registerZone();
 
-				clipboard.close();
-
 				return structure;
-			});
+			}).whenComplete((unused, ex) -> firstVariant.thenAccept(StructuresAPI::releaseStructure));
 		} catch (Exception ex) {
 			future.completeExceptionally(ex);
 			return future;